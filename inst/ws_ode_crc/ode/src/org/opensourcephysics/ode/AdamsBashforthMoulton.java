@@ -0,0 +1,110 @@
+package org.opensourcephysics.ode;
+import org.opensourcephysics.numerics.*;
+
+/**
+ * Title:        AdamsBashforthMoulton
+ * Description:  Variable order, variable step size Adams-Bashforth-Moulton ODE solver.
+ *
+ * A step of order k predicts the new state with the k-step Adams-Bashforth formula, evaluates the rate at
+ * the prediction, corrects with the Adams-Moulton formula of order k and evaluates the rate at the corrected
+ * state (PECE).  A step therefore costs two rate evaluations independent of the order.  The coefficients are
+ * the integrals of the Lagrange polynomials through the actual times of the stored rates.  The errors of the
+ * orders k-1, k and k+1 are estimated from the differences of the correctors of neighbouring orders, and the
+ * order that allows the largest step is chosen.  The order is between 1 and 12.
+ *
+ * The method is not suited for stiff equations, use BDF or Radau5 for them.
+ *
+ * Reference:
+ *    L. F. Shampine, M. K. Gordon, Computer Solution of Ordinary Differential Equations, Freeman 1975.
+ *
+ * @version 1.0
+ */
+public class AdamsBashforthMoulton extends LinearMultistepSolver {
+  static final int MAX_ORDER = 12;
+  private double[] predictedRate;
+  private double[][] rates = new double[MAX_ORDER+1][];      // the rates of the history, latest first
+  private double[] pastNodes = new double[MAX_ORDER+1];      // their times in units of the step size
+  private double[] correctorNodes = new double[MAX_ORDER+2];
+  private double[] predictor = new double[MAX_ORDER+2];
+  private double[][] correctors = new double[4][MAX_ORDER+2]; // weights of the correctors of the orders k-1 to k+2
+  private double[] corrected = new double[4];
+  private double[] scratch = new double[MAX_ORDER+2];
+
+  /**
+   * Constructs the solver for a system of ordinary differential equations.
+   *
+   * @param ode the system of differential equations
+   */
+  public AdamsBashforthMoulton(ODE ode) {
+    // the corrector of order k+2 needs k+1 rates of the history
+    super(ode, MAX_ORDER, MAX_ORDER+1);
+    initialize(stepSize);
+  }
+
+  protected void allocate() {
+    predictedRate = new double[numEqn];
+  }
+
+  protected void start() {
+    System.arraycopy(rate, 0, push(time), 0, numEqn);
+  }
+
+  protected boolean attempt(double h) {
+    int past = getHistorySize();
+    order = Math.min(order, past);
+    int k = order;
+    correctorNodes[0] = 1;
+    for(int j = 0; j<past; j++) {
+      rates[j] = getHistory(j);
+      pastNodes[j] = correctorNodes[j+1] = getHistoryTime(j, h);
+    }
+    // the predictor integrates the polynomial through the rates of the last k steps
+    integralWeights(pastNodes, k, predictor, scratch);
+    for(int i = 0; i<numEqn; i++) {
+      double sum = 0;
+      for(int j = 0; j<k; j++) {
+        sum += predictor[j]*rates[j][i];
+      }
+      newState[i] = state[i]+h*sum;
+    }
+    ode.getRate(newState, predictedRate);
+    // the corrector of order p integrates the polynomial through the predicted rate and the last p-1 rates
+    int lowest = Math.max(1, k-1), highest = Math.min(k+2, past+1);
+    for(int p = lowest; p<=highest; p++) {
+      integralWeights(correctorNodes, p, correctors[p-k+1], scratch);
+    }
+    double e0 = 0, e1 = 0, e2 = 0;
+    for(int i = 0; i<numEqn; i++) {
+      for(int p = lowest; p<=highest; p++) {
+        double[] w = correctors[p-k+1];
+        double sum = w[0]*predictedRate[i];
+        for(int j = 1; j<p; j++) {
+          sum += w[j]*rates[j-1][i];
+        }
+        corrected[p-k+1] = state[i]+h*sum;
+      }
+      newState[i] = corrected[1];
+      double sk = tolerance+tolerance*Math.max(Math.abs(state[i]), Math.abs(corrected[1]));
+      if(k>1) {
+        e0 += sq((corrected[1]-corrected[0])/sk);
+      }
+      e1 += sq((corrected[2]-corrected[1])/sk);
+      if(highest>k+1) {
+        e2 += sq((corrected[3]-corrected[2])/sk);
+      }
+    }
+    errors[0] = (k>1) ? Math.sqrt(e0/numEqn) : Double.NaN;
+    errors[1] = Math.sqrt(e1/numEqn);
+    errors[2] = (highest>k+1) ? Math.sqrt(e2/numEqn) : Double.NaN;
+    return true;
+  }
+
+  protected void accept() {
+    ode.getRate(state, push(time));
+  }
+
+  private static double sq(double x) {
+    return x*x;
+  }
+
+}
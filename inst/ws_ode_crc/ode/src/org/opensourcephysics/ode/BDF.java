@@ -0,0 +1,399 @@
+package org.opensourcephysics.ode;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import org.opensourcephysics.numerics.*;
+import org.opensourcephysics.ode.IRK.LAESolverLU;
+import org.opensourcephysics.ode.IRK.LAEquation;
+import org.opensourcephysics.ode.IRK.SparsityPattern;
+
+/**
+ * Title:        BDF
+ * Description:  Variable order, variable step size backward differentiation formula solver for stiff ODEs.
+ *
+ * A step of order k finds the new state y so that the derivative at the new time of the polynomial through
+ * y and the last k states equals the rate at y.  The implicit equation is solved by a simplified Newton
+ * iteration that starts from the extrapolation of the last k+1 states.  The Newton matrix I-gamma*J is only
+ * decomposed again if gamma changes by more than 30 percent and the Jacobian J is only evaluated again if
+ * the iteration fails or after 20 steps, so that a step usually costs one to three rate evaluations.  The
+ * errors of the orders k-1, k and k+1 are estimated from the differences between the new state and the
+ * extrapolations of the history, and the order that allows the largest step is chosen.  The order is between
+ * 1 and 5.
+ *
+ * The Jacobian is approximated by finite differences unless the ODE implements ODEWithJacobian.  If the ODE
+ * implements ODEWithJacobianPattern the Newton matrix is decomposed as a band or sparse matrix, as in Radau5.
+ *
+ * Reference:
+ *    E. Hairer, G. Wanner, Solving Ordinary Differential Equations II, Springer 1996, Section III.5.
+ *
+ * @version 1.0
+ */
+public class BDF extends LinearMultistepSolver {
+  static final int MAX_ORDER = 5;
+  static final int MAX_NEWTON_ITERATIONS = 4;
+  static final int MAX_JACOBIAN_AGE = 20;
+  static final double NEWTON_TOLERANCE = 0.1;
+  static final double uRound = 2.220446049250313E-16;
+  private ODE userODE; // the ODE without the statistics wrapper
+  private SparsityPattern pattern;  // null if the Jacobian is dense
+  private LAESolverLU linearSolver;
+  private double[][] jacobian;
+  private boolean jacobianIsCurrent; // true if the Jacobian has been evaluated at the current state
+  private int jacobianAge;
+  private double gamma, decomposedGamma; // decomposedGamma is zero if there is no decomposition
+  private double[] predicted, psi, residual, correction, someState, someRate, delta;
+  private double[][] states = new double[MAX_ORDER+1][];   // the states of the history, latest first
+  private double[] pastNodes = new double[MAX_ORDER+1];    // their times in units of the step size
+  private double[] correctorNodes = new double[MAX_ORDER+2];
+  private double[] predictor = new double[MAX_ORDER+1];
+  private double[] lower = new double[MAX_ORDER+1];
+  private double[] higher = new double[MAX_ORDER+1];
+  private double[] corrector = new double[MAX_ORDER+1];
+  private int nJacobianEvaluations, nDecompositions, nNewtonIterations;
+
+  /**
+   * Constructs the solver for a system of ordinary differential equations.
+   *
+   * @param ode the system of differential equations
+   */
+  public BDF(ODE ode) {
+    super(ode, MAX_ORDER, MAX_ORDER+1);
+    userODE = ode;
+    if(ode instanceof ODEWithJacobianPattern) {
+      pattern = new SparsityPattern(((ODEWithJacobianPattern) ode).getJacobianPattern());
+    }
+    initialize(stepSize);
+  }
+
+  protected void allocate() {
+    predicted = new double[numEqn];
+    psi = new double[numEqn];
+    residual = new double[numEqn];
+    correction = new double[numEqn];
+    someState = new double[numEqn];
+    someRate = new double[numEqn];
+    delta = new double[numEqn];
+    if((pattern!=null)&&(pattern.getNumEqn()!=numEqn)) {
+      throw new IllegalArgumentException("The Jacobian pattern does not match the number of equations."); //$NON-NLS-1$
+    }
+    jacobian = (pattern==null) ? new double[numEqn][numEqn] : pattern.createMatrix();
+    linearSolver = new LAESolverLU(new NewtonMatrix(), pattern);
+  }
+
+  public void initialize(double stepSize) {
+    super.initialize(stepSize);
+    jacobianIsCurrent = false;
+    jacobianAge = MAX_JACOBIAN_AGE; // the first step evaluates the Jacobian
+    decomposedGamma = 0;
+  }
+
+  protected void start() {
+    System.arraycopy(state, 0, push(time), 0, numEqn);
+  }
+
+  protected boolean attempt(double h) {
+    int past = getHistorySize();
+    order = Math.min(order, Math.max(1, past-1));
+    int k = order;
+    correctorNodes[0] = 1;
+    for(int j = 0; j<past; j++) {
+      states[j] = getHistory(j);
+      pastNodes[j] = correctorNodes[j+1] = getHistoryTime(j, h);
+    }
+    // the predictor extrapolates the polynomial through the last k+1 states
+    double errorFactor;
+    if(past>k) {
+      valueWeights(pastNodes, k+1, 1, predictor);
+      extrapolate(predictor, k+1, predicted);
+      errorFactor = 1/(1-pastNodes[k]);
+    } else { // the first step starts with an Euler step
+      for(int i = 0; i<numEqn; i++) {
+        predicted[i] = state[i]+h*rate[i];
+      }
+      errorFactor = 0.5;
+    }
+    // the corrector equation is y - gamma*rate(y) + psi = 0
+    derivativeWeights(correctorNodes, k+1, corrector);
+    gamma = h/corrector[0];
+    for(int i = 0; i<numEqn; i++) {
+      double sum = 0;
+      for(int j = 1; j<=k; j++) {
+        sum += corrector[j]*states[j-1][i];
+      }
+      psi[i] = sum/corrector[0];
+    }
+    if(jacobianAge>=MAX_JACOBIAN_AGE) {
+      evaluateJacobian();
+    }
+    if((decomposedGamma==0)||(Math.abs(gamma/decomposedGamma-1)>0.3)) {
+      decompose();
+    }
+    while(!solveCorrector()) {
+      if(jacobianIsCurrent) {
+        return false;
+      }
+      evaluateJacobian();
+      decompose();
+    }
+    // error estimates from the extrapolations of the orders k-1, k and k+1
+    boolean hasLower = k>1, hasHigher = past>k+1;
+    if(hasLower) {
+      valueWeights(pastNodes, k, 1, lower);
+    }
+    if(hasHigher) {
+      valueWeights(pastNodes, k+2, 1, higher);
+    }
+    double e0 = 0, e1 = 0, e2 = 0;
+    for(int i = 0; i<numEqn; i++) {
+      double y = newState[i];
+      double sk = tolerance+tolerance*Math.max(Math.abs(state[i]), Math.abs(y));
+      double d = (y-predicted[i])/sk;
+      e1 += d*d;
+      if(hasLower) {
+        double sum = 0;
+        for(int j = 0; j<k; j++) {
+          sum += lower[j]*states[j][i];
+        }
+        d = (y-sum)/sk;
+        e0 += d*d;
+      }
+      if(hasHigher) {
+        double sum = 0;
+        for(int j = 0; j<k+2; j++) {
+          sum += higher[j]*states[j][i];
+        }
+        d = (y-sum)/sk;
+        e2 += d*d;
+      }
+    }
+    errors[0] = hasLower ? Math.sqrt(e0/numEqn)/(1-pastNodes[k-1]) : Double.NaN;
+    errors[1] = errorFactor*Math.sqrt(e1/numEqn);
+    errors[2] = hasHigher ? Math.sqrt(e2/numEqn)/(1-pastNodes[k+1]) : Double.NaN;
+    return true;
+  }
+
+  private void extrapolate(double[] w, int m, double[] result) {
+    for(int i = 0; i<numEqn; i++) {
+      double sum = 0;
+      for(int j = 0; j<m; j++) {
+        sum += w[j]*states[j][i];
+      }
+      result[i] = sum;
+    }
+  }
+
+  /**
+   * Solves the corrector equation by a simplified Newton iteration that starts from the prediction.
+   *
+   * @return true if the iteration converged
+   */
+  private boolean solveCorrector() {
+    System.arraycopy(predicted, 0, newState, 0, numEqn);
+    // a matrix that has been decomposed for a different gamma gives a scaled correction
+    double scale = 2/(1+gamma/decomposedGamma);
+    double previousNorm = 0;
+    for(int n = 0; n<MAX_NEWTON_ITERATIONS; n++) {
+      nNewtonIterations++;
+      ode.getRate(newState, someRate);
+      for(int i = 0; i<numEqn; i++) {
+        residual[i] = gamma*someRate[i]-newState[i]-psi[i];
+      }
+      linearSolver.resolve(correction);
+      for(int i = 0; i<numEqn; i++) {
+        newState[i] += scale*correction[i];
+      }
+      double norm = scale*norm(correction, newState);
+      if(Double.isNaN(norm)) {
+        return false;
+      }
+      if(n==0) {
+        if(norm<=0.01*NEWTON_TOLERANCE) {
+          return true;
+        }
+      } else {
+        double convergenceRate = norm/previousNorm;
+        if(convergenceRate>=0.9) {
+          return false;
+        }
+        if(convergenceRate/(1-convergenceRate)*norm<=NEWTON_TOLERANCE) {
+          return true;
+        }
+      }
+      previousNorm = norm;
+    }
+    return false;
+  }
+
+  protected void accept() {
+    System.arraycopy(state, 0, push(time), 0, numEqn);
+    jacobianIsCurrent = false;
+    jacobianAge++;
+  }
+
+  private void decompose() {
+    decomposedGamma = gamma;
+    linearSolver.initialize();
+    nDecompositions++;
+  }
+
+  /**
+   * Evaluates the Jacobian at the current state.
+   */
+  private void evaluateJacobian() {
+    if(userODE instanceof ODEWithJacobian) {
+      if(pattern!=null) {
+        // the diagonal may have been appended to the user's pattern
+        int[] diagonal = pattern.getDiagonal();
+        for(int i = 0; i<numEqn; i++) {
+          jacobian[i][diagonal[i]] = 0;
+        }
+      }
+      ((ODEWithJacobian) userODE).getJacobian(state, jacobian);
+    } else {
+      ode.getRate(state, rate);
+      System.arraycopy(state, 0, someState, 0, numEqn);
+      if(pattern!=null) {
+        evaluateGroupedJacobian();
+      } else {
+        for(int j = 0; j<numEqn; j++) {
+          double d = Math.sqrt(uRound*Math.max(1.0e-5, Math.abs(state[j])));
+          someState[j] += d;
+          ode.getRate(someState, someRate);
+          someState[j] = state[j];
+          for(int i = 0; i<numEqn; i++) {
+            jacobian[i][j] = (someRate[i]-rate[i])/d;
+          }
+        }
+      }
+    }
+    jacobianIsCurrent = true;
+    jacobianAge = 0;
+    decomposedGamma = 0;
+    nJacobianEvaluations++;
+  }
+
+  /**
+   * Approximates a sparse Jacobian by finite differences.  All columns of a group are perturbed at once
+   * because they have no nonzero row in common.
+   */
+  private void evaluateGroupedJacobian() {
+    int[][] groups = pattern.getColumnGroups();
+    int[][] columnRows = pattern.getColumnRows();
+    int[][] columnSlots = pattern.getColumnSlots();
+    for(int g = 0; g<groups.length; g++) {
+      int[] group = groups[g];
+      for(int n = 0; n<group.length; n++) {
+        int j = group[n];
+        delta[j] = Math.sqrt(uRound*Math.max(1.0e-5, Math.abs(state[j])));
+        someState[j] += delta[j];
+      }
+      ode.getRate(someState, someRate);
+      for(int n = 0; n<group.length; n++) {
+        int j = group[n];
+        someState[j] = state[j];
+        int[] rows = columnRows[j];
+        int[] slots = columnSlots[j];
+        for(int p = 0; p<rows.length; p++) {
+          int i = rows[p];
+          jacobian[i][slots[p]] = (someRate[i]-rate[i])/delta[j];
+        }
+      }
+    }
+  }
+
+  /**
+   * The Newton matrix I-gamma*J and the residual of the corrector equation.
+   */
+  private class NewtonMatrix implements LAEquation {
+    public int getDimension() {
+      return numEqn;
+    }
+
+    public void getMatrix(double[][] matrix) {
+      for(int i = 0; i<numEqn; i++) {
+        double[] row = matrix[i], jrow = jacobian[i];
+        for(int k = 0; k<row.length; k++) {
+          row[k] = -gamma*jrow[k];
+        }
+        row[(pattern==null) ? i : pattern.getDiagonal()[i]] += 1;
+      }
+    }
+
+    public void getVector(double[] vector) {
+      System.arraycopy(residual, 0, vector, 0, numEqn);
+    }
+
+  }
+
+  /**
+   * Gets the number of Jacobian evaluations.
+   * @return the number of evaluations
+   */
+  public int getNumberOfJacobianEvaluations() {
+    return nJacobianEvaluations;
+  }
+
+  /**
+   * Gets the number of LU decompositions of the Newton matrix.
+   * @return the number of decompositions
+   */
+  public int getNumberOfDecompositions() {
+    return nDecompositions;
+  }
+
+  /**
+   * Gets the number of Newton iterations.
+   * @return the number of iterations
+   */
+  public int getNumberOfNewtonIterations() {
+    return nNewtonIterations;
+  }
+
+  /**
+   * Returns a serializer that saves the history, the Jacobian and the age of the Jacobian in a checkpoint.
+   * The Newton matrix is decomposed again when the checkpoint is loaded.
+   *
+   * @return the serializer
+   */
+  public static ODESolverCheckpoint.StateSerializer getSerializer() {
+    return new Serializer();
+  }
+
+  /**
+   * A class to save and load the internal state of a BDF solver.
+   */
+  static class Serializer extends LinearMultistepSolver.Serializer {
+    public void saveState(DataOutput out, ODESolver obj) throws IOException {
+      super.saveState(out, obj);
+      BDF solver = (BDF) obj;
+      out.writeDouble(solver.gamma);
+      out.writeDouble(solver.decomposedGamma);
+      out.writeBoolean(solver.jacobianIsCurrent);
+      out.writeInt(solver.jacobianAge);
+      out.writeInt(solver.nJacobianEvaluations);
+      out.writeInt(solver.nDecompositions);
+      out.writeInt(solver.nNewtonIterations);
+      ODESolverCheckpoint.writeArray(out, solver.jacobian);
+    }
+
+    public void loadState(DataInput in, ODESolver obj) throws IOException {
+      super.loadState(in, obj);
+      BDF solver = (BDF) obj;
+      double gamma = in.readDouble();
+      solver.decomposedGamma = in.readDouble();
+      solver.jacobianIsCurrent = in.readBoolean();
+      solver.jacobianAge = in.readInt();
+      solver.nJacobianEvaluations = in.readInt();
+      solver.nDecompositions = in.readInt();
+      solver.nNewtonIterations = in.readInt();
+      ODESolverCheckpoint.readArray(in, solver.jacobian);
+      if(solver.decomposedGamma!=0) { // the decomposition is a function of the Jacobian and gamma
+        solver.gamma = solver.decomposedGamma;
+        solver.linearSolver.initialize();
+      }
+      solver.gamma = gamma;
+    }
+
+  }
+
+}
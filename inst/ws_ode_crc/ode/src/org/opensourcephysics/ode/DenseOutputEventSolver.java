@@ -0,0 +1,324 @@
+package org.opensourcephysics.ode;
+
+import java.util.Arrays;
+import org.opensourcephysics.numerics.ODE;
+import org.opensourcephysics.numerics.ODEAdaptiveSolver;
+import org.opensourcephysics.numerics.ODEEventSolver;
+import org.opensourcephysics.numerics.StateEvent;
+
+/**
+ * DenseOutputEventSolver finds the StateEvents of an ODE on the interpolation polynomial of the accepted steps.
+ *
+ * An event happens in a step if its function is above -tolerance at the start of the step and at or below
+ * -tolerance at the end.  The time of the event is found by the Illinois variant of the regula falsi on the
+ * step's continuous output, which costs no rate evaluations.  If several events happen in a step the earliest
+ * one is taken; events whose functions are within their tolerance at the same state are applied together.  If
+ * an action asks to continue, the solver completes the rest of the step from the modified state.  An event whose
+ * action leaves its function within the tolerance band cannot happen again until the function has risen above the
+ * band.
+ *
+ * Example of use:
+ * <pre>
+ *   solver = new DenseOutputEventSolver(anOde, new Dopri5(anOde));
+ *   solver.addEvent(aStateEvent);
+ *   // for the rest it works as any other ODESolver.
+ * </pre>
+ *
+ * Dopri853 needs three extra rate evaluations for its continuous output in steps that have events.
+ *
+ * @see org.opensourcephysics.numerics.ODEBisectionEventSolver
+ * @version 1.0
+ */
+public class DenseOutputEventSolver implements ODEEventSolver, ODEAdaptiveSolver {
+  /**
+   * Maximum number of iterations to locate an event and of partial steps to complete a step
+   */
+  static final public int MAX = 50;
+  private ODE ode;
+  private ODEDenseOutputSolver solver;
+  private StateEvent[] events = new StateEvent[0];
+  private double[] state;
+  private double[] initialState;
+  private double[] eventState;
+  private double[] initialValues = new double[0]; // event functions at the start of the step
+  private double[] finalValues = new double[0];   // event functions at the end of the step
+  private boolean[] disarmed = new boolean[0];    // events left within their band by their own action
+  private int errorCode = ODEAdaptiveSolver.NO_ERROR;
+  private boolean eventHappened = false;
+  private double eventTime; // time from the start of the step to the earliest event
+
+  /**
+   * Constructs the event solver.
+   *
+   * @param ode the ODE
+   * @param solver the solver that advances the ODE and provides the continuous output
+   */
+  public DenseOutputEventSolver(ODE ode, ODEDenseOutputSolver solver) {
+    this.ode = ode;
+    this.solver = solver;
+  }
+
+  /**
+   * Adds a StateEvent to the list of events
+   * @param event The event to be added
+   */
+  public void addEvent(StateEvent event) {
+    StateEvent[] list = new StateEvent[events.length+1];
+    System.arraycopy(events, 0, list, 0, events.length);
+    list[events.length] = event;
+    setEvents(list);
+  }
+
+  /**
+   * Removes a StateEvent from the list of events
+   * @param event The event to be removed
+   */
+  public void removeEvent(StateEvent event) {
+    for(int i = 0; i<events.length; i++) {
+      if(events[i]==event) {
+        StateEvent[] list = new StateEvent[events.length-1];
+        System.arraycopy(events, 0, list, 0, i);
+        System.arraycopy(events, i+1, list, i, events.length-i-1);
+        setEvents(list);
+        return;
+      }
+    }
+  }
+
+  private void setEvents(StateEvent[] list) {
+    events = list;
+    initialValues = new double[list.length];
+    finalValues = new double[list.length];
+    disarmed = new boolean[list.length];
+  }
+
+  public void initialize(double stepSize) {
+    Arrays.fill(disarmed, false);
+    solver.initialize(stepSize);
+  }
+
+  public void setStepSize(double stepSize) {
+    solver.setStepSize(stepSize);
+  }
+
+  public double getStepSize() {
+    return solver.getStepSize();
+  }
+
+  public void setTolerance(double tol) {
+    solver.setTolerance(tol);
+  }
+
+  public double getTolerance() {
+    return solver.getTolerance();
+  }
+
+  /**
+   * Gets the eventHappend flag.  The flag is true if an event occured during the last step.
+   * @return boolean
+   */
+  public boolean getEventHappened() {
+    return eventHappened;
+  }
+
+  /**
+   * Gets the error code.
+   * Error codes:
+   *   ODEAdaptiveSolver.NO_ERROR
+   *   ODEAdaptiveSolver.DID_NOT_CONVERGE
+   *   ODEAdaptiveSolver.BISECTION_EVENT_NOT_FOUND=2;
+   * @return int
+   */
+  public int getErrorCode() {
+    return errorCode;
+  }
+
+  /**
+   * Advances the ODE by a step of the solver, except if an event takes place.
+   * Then the state is moved to the event and the event's action is applied.
+   * @return The actual step taken
+   */
+  public double step() {
+    errorCode = ODEAdaptiveSolver.NO_ERROR;
+    eventHappened = false;
+    StateEvent[] list = events;
+    state = ode.getState();
+    double t = 0, dt = 0, nextStepSize = 0;
+    for(int partial = 0; partial<MAX; partial++) {
+      saveInitialState(list);
+      double h = solver.step();
+      if(solver.getErrorCode()!=ODEAdaptiveSolver.NO_ERROR) {
+        errorCode = solver.getErrorCode();
+      }
+      if(partial==0) {
+        dt = h;
+        nextStepSize = solver.getStepSize();
+      }
+      int first = findFirstEvent(list, h);
+      if(first<0) {
+        t += h;
+      } else { // the state is now at the earliest event
+        eventHappened = true;
+        t += eventTime;
+        if(applyActions(list, first)) {
+          break;
+        }
+      }
+      if(!eventHappened||(Math.abs(t)>=Math.abs(dt)*(1-1e-12))) {
+        break;
+      }
+      solver.setStepSize(dt-t); // complete the step from the modified state
+    }
+    if(eventHappened) { // a step that was cut short does not justify a larger step
+      solver.setStepSize((Math.abs(t)<Math.abs(dt)*(1-1e-12)) ? dt : nextStepSize);
+    }
+    return t;
+  }
+
+  /**
+   * Copies the state and evaluates the events at the start of the step.
+   * Events that are above their tolerance band can happen again.
+   */
+  private void saveInitialState(StateEvent[] list) {
+    if((initialState==null)||(initialState.length!=state.length)) {
+      initialState = new double[state.length];
+      eventState = new double[state.length];
+    }
+    if(list.length==0) {
+      return;
+    }
+    System.arraycopy(state, 0, initialState, 0, state.length);
+    for(int i = 0; i<list.length; i++) {
+      initialValues[i] = list[i].evaluate(initialState);
+      if(initialValues[i]>=list[i].getTolerance()) {
+        disarmed[i] = false;
+      }
+    }
+  }
+
+  /**
+   * Locates the earliest event of the step and moves the state to it.
+   * @return the index of the event or -1 if no event happened
+   */
+  private int findFirstEvent(StateEvent[] list, double h) {
+    int first = -1;
+    double firstTheta = 2;
+    for(int i = 0; i<list.length; i++) {
+      double tol = list[i].getTolerance();
+      finalValues[i] = list[i].evaluate(state);
+      if(finalValues[i]>-tol) {
+        continue;
+      }
+      double theta;
+      if(disarmed[i]) {
+        theta = locateAfterAction(list[i], initialValues[i], finalValues[i], h, firstTheta);
+      } else if(initialValues[i]<tol) { // found at the start of the step
+        theta = 0;
+      } else {
+        theta = locate(list[i], 0, initialValues[i], finalValues[i], h, firstTheta);
+      }
+      if(theta<firstTheta) {
+        firstTheta = theta;
+        first = i;
+      }
+    }
+    if(first>=0) {
+      eventTime = firstTheta*h;
+      solver.doInterpolation(eventTime, eventState);
+      System.arraycopy(eventState, 0, state, 0, state.length);
+    }
+    return first;
+  }
+
+  /**
+   * Finds the fraction of the step at which an event that was left within its tolerance band by its own action
+   * happens again.  The function must first rise above the band, which is looked for on points of the continuous
+   * output that are denser near the start of the step.
+   */
+  private double locateAfterAction(StateEvent event, double ga, double gb, double h, double limit) {
+    double tol = event.getTolerance();
+    for(int k = -30; k<15; k++) {
+      double theta = (k<=0) ? Math.pow(2, k-4) : (k+1)/16.0; // 2^-34 to 1/16, then 2/16 to 15/16
+      if(theta>=limit) {
+        return limit;
+      }
+      solver.doInterpolation(theta*h, eventState);
+      double g = event.evaluate(eventState);
+      if(g>=tol) {
+        return locate(event, theta, g, gb, h, limit);
+      }
+    }
+    return locate(event, 0, ga, gb, h, limit); // the function did not leave the band
+  }
+
+  /**
+   * Finds the fraction of the step, after the given start, at which an event function enters its tolerance band.
+   * The search stops early if the event cannot happen before the given limit.
+   */
+  private double locate(StateEvent event, double a, double ga, double gb, double h, double limit) {
+    double tol = event.getTolerance();
+    double b = 1;
+    int side = 0;
+    for(int i = 0; i<MAX; i++) {
+      double theta = (a*gb-b*ga)/(gb-ga);
+      if(!(theta>a&&theta<b)) {
+        theta = 0.5*(a+b);
+      }
+      solver.doInterpolation(theta*h, eventState);
+      double g = event.evaluate(eventState);
+      if(Math.abs(g)<tol) {
+        return theta;
+      }
+      if(g<0) {
+        b = theta;
+        gb = g;
+        if(side==-1) {
+          ga *= 0.5;
+        }
+        side = -1;
+      } else {
+        if(theta>=limit) {
+          return limit;
+        }
+        a = theta;
+        ga = g;
+        if(side==1) {
+          gb *= 0.5;
+        }
+        side = 1;
+      }
+      if(b-a<1e-15) {
+        break;
+      }
+    }
+    errorCode = ODEAdaptiveSolver.BISECTION_EVENT_NOT_FOUND;
+    System.err.println("DenseOutputEventSolver Warning : Event not found after "+MAX+" iterations."); //$NON-NLS-1$ //$NON-NLS-2$
+    System.err.println("  Event = "+event); //$NON-NLS-1$
+    return b;
+  }
+
+  /**
+   * Applies the action of the event that was found and of the other events that are within their tolerance
+   * at the same state.  Events that are still within their band after the actions are disarmed.
+   * @return true if an action asks the solver to stop
+   */
+  private boolean applyActions(StateEvent[] list, int first) {
+    boolean[] applied = new boolean[list.length];
+    for(int i = 0; i<list.length; i++) {
+      applied[i] = (i==first)||(!disarmed[i]&&(finalValues[i]<=-list[i].getTolerance())&&(Math.abs(list[i].evaluate(state))<list[i].getTolerance()));
+    }
+    boolean stop = false;
+    for(int i = 0; i<list.length; i++) {
+      if(applied[i]) {
+        stop |= list[i].action();
+      }
+    }
+    for(int i = 0; i<list.length; i++) {
+      if(applied[i]) {
+        disarmed[i] = list[i].evaluate(state)<list[i].getTolerance();
+      }
+    }
+    return stop;
+  }
+
+}
@@ -0,0 +1,293 @@
+package org.opensourcephysics.ode;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * DenseTrajectory keeps the continuous solution of a run by storing the interpolation polynomial of every step.
+ *
+ * The coefficients are stored in chunks of primitive arrays and the state at any time within the run is found
+ * by a binary search for the step followed by an evaluation of the step's polynomial.  Consecutive requests
+ * within the same or the next step do not search.  For very long runs the old chunks can be spilled to a
+ * file that is memory mapped when the chunks are read again.
+ *
+ * Example:
+ * <pre>
+ * Dopri5 solver = new Dopri5(ode);
+ * DenseTrajectory trajectory = new DenseTrajectory(solver, 0);
+ * while(trajectory.getEndTime()&lt;100) trajectory.step();
+ * trajectory.stateAt(42.5, state);
+ * </pre>
+ *
+ * A DenseTrajectory is not thread safe.
+ *
+ * @version 1.0
+ */
+public class DenseTrajectory {
+  private static final int CHUNK_DOUBLES = 1<<20;      // 8 MB per chunk
+  private static final int FIRST_CHUNK_DOUBLES = 1<<10; // the first chunk starts at 8 KB and doubles as it fills
+  private ODEDenseOutputSolver solver;
+  private int stepLength;
+  private int stepsPerChunk;
+  private double[] times;   // times[n] is the start of step n and times[numSteps] is the end of the run
+  private int numSteps = 0;
+  private double direction = 0;
+  private ArrayList<double[]> chunks = new ArrayList<double[]>();
+  private int lastIndex = 0;
+  private double[] scratch;
+  // spilling
+  private RandomAccessFile spillFile;
+  private FileChannel channel;
+  private int maxResidentChunks = Integer.MAX_VALUE;
+  private int firstResidentChunk = 0;
+  private ArrayList<DoubleBuffer> views = new ArrayList<DoubleBuffer>();
+  private ByteBuffer writeBuffer;
+
+  /**
+   * Constructs a trajectory that records the steps of a solver.
+   *
+   * @param solver the solver
+   * @param initialTime the value of the independent variable at the start of the solver's next step
+   */
+  public DenseTrajectory(ODEDenseOutputSolver solver, double initialTime) {
+    this.solver = solver;
+    stepLength = solver.getDenseOutputSize();
+    stepsPerChunk = Math.max(1, CHUNK_DOUBLES/Math.max(1, stepLength));
+    scratch = new double[stepLength];
+    times = new double[1024];
+    times[0] = initialTime;
+  }
+
+  /**
+   * Steps the solver and records the step.
+   *
+   * @return the step size that was taken
+   */
+  public double step() {
+    double h = solver.step();
+    record(h);
+    return h;
+  }
+
+  /**
+   * Records the step that the solver has just taken.  Use this method if the solver is stepped by other code.
+   *
+   * @param stepSize the step size that was taken
+   */
+  public void record(double stepSize) {
+    if(stepSize==0) {
+      return;
+    }
+    if(direction==0) {
+      direction = Math.signum(stepSize);
+    } else if(direction*stepSize<0) {
+      throw new IllegalArgumentException("Steps must not change direction."); //$NON-NLS-1$
+    }
+    if(numSteps+1>=times.length) {
+      double[] t = new double[2*times.length];
+      System.arraycopy(times, 0, t, 0, times.length);
+      times = t;
+    }
+    int chunk = numSteps/stepsPerChunk;
+    int offset = (numSteps%stepsPerChunk)*stepLength;
+    int chunkLength = stepsPerChunk*stepLength;
+    if(chunk==chunks.size()) { // short runs do not allocate a whole chunk
+      chunks.add(new double[(chunk==0) ? Math.min(chunkLength, Math.max(stepLength, FIRST_CHUNK_DOUBLES)) : chunkLength]);
+      views.add(null);
+      spillChunks();
+    }
+    double[] data = chunks.get(chunk);
+    if(offset+stepLength>data.length) {
+      data = Arrays.copyOf(data, Math.min(chunkLength, 2*data.length));
+      chunks.set(chunk, data);
+    }
+    solver.getDenseOutput(data, offset);
+    times[numSteps+1] = times[numSteps]+stepSize;
+    numSteps++;
+  }
+
+  /**
+   * Gets the state at the given time.
+   *
+   * @param t the time between the start and the end of the recorded run
+   * @param result the array that receives the state
+   */
+  public void stateAt(double t, double[] result) {
+    int n = findStep(t);
+    double theta = (t-times[n])/(times[n+1]-times[n]);
+    int chunk = n/stepsPerChunk;
+    int offset = (n%stepsPerChunk)*stepLength;
+    double[] data = chunks.get(chunk);
+    if(data==null) {
+      DoubleBuffer view = mappedChunk(chunk);
+      view.position(offset);
+      view.get(scratch, 0, stepLength);
+      data = scratch;
+      offset = 0;
+    }
+    solver.interpolateDenseOutput(data, offset, theta, result);
+  }
+
+  /**
+   * Gets the states at equally spaced times.
+   *
+   * @param t0 the first time
+   * @param dt the time between samples
+   * @param result the array that receives the states, one row per sample
+   */
+  public void resample(double t0, double dt, double[][] result) {
+    for(int i = 0; i<result.length; i++) {
+      stateAt(t0+i*dt, result[i]);
+    }
+  }
+
+  /**
+   * Finds the step that contains the given time.
+   */
+  private int findStep(double t) {
+    if(numSteps==0) {
+      throw new IllegalStateException("The trajectory is empty."); //$NON-NLS-1$
+    }
+    double s = direction*t;
+    if((s<direction*times[0])||(s>direction*times[numSteps])) {
+      throw new IllegalArgumentException("Time "+t+" is outside of the trajectory ["+getStartTime()+", "+getEndTime()+"]."); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+    }
+    // sequential access usually hits the last step or the next one
+    for(int n = lastIndex; (n<=lastIndex+1)&&(n<numSteps); n++) {
+      if((s>=direction*times[n])&&(s<=direction*times[n+1])) {
+        return lastIndex = n;
+      }
+    }
+    int lo = 0, hi = numSteps-1;
+    while(lo<hi) {
+      int mid = (lo+hi+1)>>>1;
+      if(direction*times[mid]<=s) {
+        lo = mid;
+      } else {
+        hi = mid-1;
+      }
+    }
+    return lastIndex = lo;
+  }
+
+  /**
+   * Writes the oldest chunks to the spill file until no more than the allowed number of chunks is resident.
+   * The chunk that is being filled always stays resident.
+   */
+  private void spillChunks() {
+    if(channel==null) {
+      return;
+    }
+    int last = chunks.size()-1;
+    while((last-firstResidentChunk+1>maxResidentChunks)&&(firstResidentChunk<last)) {
+      double[] data = chunks.get(firstResidentChunk);
+      writeBuffer.clear();
+      writeBuffer.asDoubleBuffer().put(data);
+      long position = (long) firstResidentChunk*data.length*8;
+      try {
+        while(writeBuffer.hasRemaining()) {
+          position += channel.write(writeBuffer, position);
+        }
+      } catch(IOException ex) {
+        throw new RuntimeException("Could not write the trajectory spill file.", ex); //$NON-NLS-1$
+      }
+      chunks.set(firstResidentChunk, null);
+      firstResidentChunk++;
+    }
+  }
+
+  private DoubleBuffer mappedChunk(int chunk) {
+    DoubleBuffer view = views.get(chunk);
+    if(view==null) {
+      long size = (long) stepsPerChunk*stepLength*8;
+      try {
+        view = channel.map(FileChannel.MapMode.READ_ONLY, chunk*size, size).asDoubleBuffer();
+      } catch(IOException ex) {
+        throw new RuntimeException("Could not map the trajectory spill file.", ex); //$NON-NLS-1$
+      }
+      views.set(chunk, view);
+    }
+    return view;
+  }
+
+  /**
+   * Enables spilling of old steps to a file.  Chunks of steps beyond the given number of resident steps are
+   * written to the file and are memory mapped when they are needed again.  The file is overwritten.
+   *
+   * @param file the spill file
+   * @param maxResidentSteps the number of steps that are kept in memory
+   * @throws IOException if the file cannot be opened
+   */
+  public void setSpillFile(File file, int maxResidentSteps) throws IOException {
+    close();
+    spillFile = new RandomAccessFile(file, "rw"); //$NON-NLS-1$
+    spillFile.setLength(0);
+    channel = spillFile.getChannel();
+    writeBuffer = ByteBuffer.allocateDirect(stepsPerChunk*stepLength*8);
+    maxResidentChunks = Math.max(1, (maxResidentSteps+stepsPerChunk-1)/stepsPerChunk);
+    firstResidentChunk = 0;
+    spillChunks();
+  }
+
+  /**
+   * Closes the spill file.  If steps have been spilled the trajectory is cleared and restarts at its end time.
+   */
+  public void close() {
+    if(spillFile!=null) {
+      if(firstResidentChunk>0) {
+        clear(getEndTime());
+      }
+      try {
+        spillFile.close();
+      } catch(IOException ex) {}
+      spillFile = null;
+      channel = null;
+      writeBuffer = null;
+    }
+    maxResidentChunks = Integer.MAX_VALUE;
+  }
+
+  /**
+   * Removes all steps.
+   *
+   * @param initialTime the value of the independent variable at the start of the solver's next step
+   */
+  public void clear(double initialTime) {
+    chunks.clear();
+    views.clear();
+    firstResidentChunk = 0;
+    numSteps = 0;
+    lastIndex = 0;
+    direction = 0;
+    times[0] = initialTime;
+  }
+
+  public int getNumberOfSteps() {
+    return numSteps;
+  }
+
+  public double getStartTime() {
+    return times[0];
+  }
+
+  public double getEndTime() {
+    return times[numSteps];
+  }
+
+  /**
+   * Gets the start time of a step.
+   *
+   * @param n the index of the step, numberOfSteps gives the end time
+   * @return the time
+   */
+  public double getStepTime(int n) {
+    return times[n];
+  }
+
+}
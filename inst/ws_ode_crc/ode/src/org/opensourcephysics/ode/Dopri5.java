@@ -7,7 +7,7 @@ import org.opensourcephysics.numerics.*;
  * @author        Andrei Goussev
  * @version 1.0
  */
-public class Dopri5 extends ExplicitRKSolver implements ODEInterpolator {
+public class Dopri5 extends ExplicitRKSolver implements ODEDenseOutputSolver {
 
   static final double[][] a = {
     {0.2},
@@ -54,19 +54,53 @@ public class Dopri5 extends ExplicitRKSolver implements ODEInterpolator {
     double rtol = tolerance;
     // compute the error norm
     ode.getRate(state, intermidiateStages[6]);
+    double [] k0 = intermidiateStages[0], k2 = intermidiateStages[2], k3 = intermidiateStages[3];
+    double [] k4 = intermidiateStages[4], k5 = intermidiateStages[5], k6 = intermidiateStages[6];
     for(int i = 0; i < numEqn; i++) {
       sk = atol + rtol * Math.max(Math.abs(state[i]), Math.abs(initialState[i]));
-      truncErr = 0;
-      for (int s = 0; s < nStages+1; s++) truncErr += er[s]*intermidiateStages[s][i];
-      err += Math.pow(truncErr / sk, 2);
+      // er[1] is zero
+      truncErr = er[0]*k0[i] + er[2]*k2[i] + er[3]*k3[i] + er[4]*k4[i] + er[5]*k5[i] + er[6]*k6[i];
+      truncErr /= sk;
+      err += truncErr * truncErr;
     }
     err = Math.sqrt(err / (double)numEqn);
     return err;
   }
 
   public void doInterpolation(double remainder, double [] result){
+    computeInterpolationCoeffs();
+    double theta = remainder / takenStepSize;
+    double theta1 = 1 - theta;
+    if (result != state){
+      for (int i = 0; i < numEqn; i ++)
+        result[i] = coeffs[0][i] + theta * (coeffs[1][i] + theta1 * (coeffs[2][i] +
+                  theta * (coeffs[3][i] + theta1 * coeffs[4][i])));
+    } else
+      System.err.println("Can't interpolate to the internal state vector. Please call initialize(double, double []) method");
+  }
+
+  public int getDenseOutputSize(){
+    return 5 * numEqn;
+  }
+
+  public void getDenseOutput(double [] coefficients, int offset){
+    computeInterpolationCoeffs();
+    for (int k = 0; k < 5; k++)
+      System.arraycopy(coeffs[k], 0, coefficients, offset + k * numEqn, numEqn);
+  }
+
+  public void interpolateDenseOutput(double [] c, int offset, double theta, double [] result){
+    double theta1 = 1 - theta;
+    int n = numEqn;
+    for (int i = 0, j = offset; i < n; i++, j++)
+      result[i] = c[j] + theta * (c[j + n] + theta1 * (c[j + 2 * n] +
+                theta * (c[j + 3 * n] + theta1 * c[j + 4 * n])));
+  }
+
+  private void computeInterpolationCoeffs(){
     if (!interpolationIsValid) {
       interpolationIsValid = true;
+      if (coeffs[0].length != numEqn) coeffs = new double [5][numEqn];
   // calculation of coeffs matrix.
       for (int i = 0; i < numEqn; i++){
         coeffs[0][i] = initialState[i]; // i'am not sure -> Y[i]
@@ -77,13 +111,5 @@ public class Dopri5 extends ExplicitRKSolver implements ODEInterpolator {
         for (int s = 0; s < 7; s++) coeffs[4][i] += takenStepSize*dense[s]*intermidiateStages[s][i];
       }
     }
-    double theta = remainder / takenStepSize;
-    double theta1 = 1 - theta;
-    if (result != state){
-      for (int i = 0; i < numEqn; i ++)
-        result[i] = coeffs[0][i] + theta * (coeffs[1][i] + theta1 * (coeffs[2][i] +
-                  theta * (coeffs[3][i] + theta1 * coeffs[4][i])));
-    } else
-      System.err.println("Can't interpolate to the internal state vector. Please call initialize(double, double []) method");
   }
 }
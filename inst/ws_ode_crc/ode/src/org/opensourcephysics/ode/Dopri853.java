@@ -11,7 +11,7 @@ import org.opensourcephysics.numerics.*;
  * @author     Andrei Goussev
  * @version 1.0
  */
-public class Dopri853 extends ExplicitRKSolver implements ODEInterpolator {
+public class Dopri853 extends ExplicitRKSolver implements ODEDenseOutputSolver {
   static final double[][] a = {
     {5.26001519587677318785587544488E-2},
     {1.97250569845378994544595329183E-2, 5.91751709536136983633785987549E-2},
@@ -44,6 +44,8 @@ public class Dopri853 extends ExplicitRKSolver implements ODEInterpolator {
   };
 
   private double [][] coeffs;
+  private double [] denseState;
+  private double [] denseCoeff = new double [16];
   /**
    * Constructs the Dopri853core ODESolver for a system of ordinary  differential equations.
    *
@@ -52,6 +54,7 @@ public class Dopri853 extends ExplicitRKSolver implements ODEInterpolator {
   public Dopri853(ODE ode) {
     super(ode, a, b, 8, 12, 4);
     coeffs = new double [8][numEqn];
+    denseState = new double [numEqn];
     initialize(stepSize);
   }
 
@@ -76,10 +79,12 @@ public class Dopri853 extends ExplicitRKSolver implements ODEInterpolator {
       sk = atol + rtol * Math.max(Math.abs(state[i]), Math.abs(initialState[i]));
       truncErr = 0;
       for (int s = 0; s < nStages; s++) truncErr += er3[s]*intermidiateStages[s][i];
-      normErr3 += Math.pow(truncErr / sk, 2);
+      truncErr /= sk;
+      normErr3 += truncErr * truncErr;
       truncErr = 0;
       for (int s = 0; s < nStages; s++) truncErr += er5[s]*intermidiateStages[s][i];
-      normErr5 += Math.pow(truncErr / sk, 2);
+      truncErr /= sk;
+      normErr5 += truncErr * truncErr;
     }
 
     double deno = normErr5 + 0.01*normErr3;
@@ -93,20 +98,56 @@ public class Dopri853 extends ExplicitRKSolver implements ODEInterpolator {
  */
 
   public void doInterpolation(double remainder, double [] result){
+    computeInterpolationCoeffs();
+    double theta = remainder / takenStepSize;
+    double theta1 = 1 - theta;
+    if (result != state){
+      for (int i = 0; i < numEqn; i ++)
+        result[i] =  coeffs[0][i] + theta * (coeffs[1][i] + theta1 * (coeffs[2][i] +
+                theta * (coeffs[3][i] + theta1 * (coeffs[4][i] +
+                theta * (coeffs[5][i] + theta1 * (coeffs[6][i] +
+                theta * coeffs[7][i]))))));
+    } else
+      System.err.println("Cann't interpolate to the internal state vector. Please call initialize(double, double []) method");
+  }
+
+  public int getDenseOutputSize(){
+    return 8 * numEqn;
+  }
+
+  /**
+   * Copies the coefficients of the last step. The first call after a step costs three rate evaluations.
+   */
+  public void getDenseOutput(double [] coefficients, int offset){
+    computeInterpolationCoeffs();
+    for (int k = 0; k < 8; k++)
+      System.arraycopy(coeffs[k], 0, coefficients, offset + k * numEqn, numEqn);
+  }
+
+  public void interpolateDenseOutput(double [] c, int offset, double theta, double [] result){
+    double theta1 = 1 - theta;
+    int n = numEqn;
+    for (int i = 0, j = offset; i < n; i++, j++)
+      result[i] = c[j] + theta * (c[j + n] + theta1 * (c[j + 2 * n] +
+                theta * (c[j + 3 * n] + theta1 * (c[j + 4 * n] +
+                theta * (c[j + 5 * n] + theta1 * (c[j + 6 * n] +
+                theta * c[j + 7 * n]))))));
+  }
+
+  private void computeInterpolationCoeffs(){
     if (!interpolationIsValid) {
       interpolationIsValid = true;
-      double [] st = new double[numEqn];
+      if (denseState.length != numEqn) {
+        coeffs = new double [8][numEqn];
+        denseState = new double [numEqn];
+      }
+      double [] st = denseState;
   // compute f[12] -> k13
      ode.getRate(state,intermidiateStages[12]);
 
   // compute f[13..15] -> k14..k16
       for(int s = 13; s < 16; s++) {
-        for(int i = 0; i < numEqn; i++) {
-          st[i] = initialState[i];                 // reset to the initial state
-          for(int j = 0; j < s; j++) {
-            st[i] += takenStepSize * aDense[s - 13][j] * intermidiateStages[j][i];
-          }
-        }
+        RKStageKernels.combine(initialState, takenStepSize, aDense[s - 13], intermidiateStages, s, denseCoeff, st, numEqn);
         ode.getRate(st, intermidiateStages[s]);                  // get the intermediate rates
       }
 
@@ -122,15 +163,5 @@ public class Dopri853 extends ExplicitRKSolver implements ODEInterpolator {
         }
       }
     }
-    double theta = remainder / takenStepSize;
-    double theta1 = 1 - theta;
-    if (result != state){
-      for (int i = 0; i < numEqn; i ++)
-        result[i] =  coeffs[0][i] + theta * (coeffs[1][i] + theta1 * (coeffs[2][i] +
-                theta * (coeffs[3][i] + theta1 * (coeffs[4][i] +
-                theta * (coeffs[5][i] + theta1 * (coeffs[6][i] +
-                theta * coeffs[7][i]))))));
-    } else
-      System.err.println("Cann't interpolate to the internal state vector. Please call initialize(double, double []) method");
   }
 }
@@ -0,0 +1,70 @@
+package org.opensourcephysics.ode;
+import org.opensourcephysics.numerics.*;
+
+/**
+ * Title:        EnsembleDopri5
+ * Description:  Dormand Prince 5 solver with variable step size for every member of an EnsembleODE.
+ *
+ * The solver performs multiple Dopri5 steps on every member so that a uniform step size is maintained.
+ * Every member keeps its own adaptive step size.  The rate at the end of an accepted step is reused
+ * as the first rate of the next step.
+ *
+ * @see Dopri5
+ * @see EnsembleRK45MultiStep
+ * @version 1.0
+ */
+public class EnsembleDopri5 extends EnsembleRK45MultiStep {
+
+  /**
+   * Constructs the EnsembleDopri5 solver for an ensemble of ordinary differential equations.
+   *
+   * @param ode the ensemble of differential equations.
+   */
+  public EnsembleDopri5(EnsembleODE ode) {
+    super(ode, Dopri5.a, Dopri5.b, Dopri5.er, true);
+  }
+
+  /**
+   * Estimates the error using the mixed absolute and relative norm of Dopri5.
+   *
+   * @param initial the state at the start of the step
+   * @param next the state at the end of the step
+   * @param rates the intermediate rates
+   * @param h the step size
+   * @return the relative error
+   */
+  protected double estimateError(double[] initial, double[] next, double[][] rates, double h) {
+    double err = 0;
+    for(int i = 0; i < numEqn; i++) {
+      double sk = tol + tol * Math.max(Math.abs(next[i]), Math.abs(initial[i]));
+      double truncErr = 0;
+      for (int s = 0; s < er.length; s++) truncErr += er[s]*rates[s][i];
+      truncErr *= h / sk;
+      err += truncErr * truncErr;
+    }
+    return Math.sqrt(err / (double)numEqn);
+  }
+
+  /**
+   * Estimates the step size of the next try using the step size control of ExplicitRKSolver.
+   *
+   * @param h the step size of this try
+   * @param err the relative error of this try
+   * @return the new step size
+   */
+  protected double estimateStepSize(double h, double err) {
+    // fac1, fac2 - parameters for step size selection
+    // safe - safety factor
+    double fac1 = 0.33;
+    double fac2 = 6;
+    double safe = 0.9;
+    if (err == 0) return h * fac2;
+    double fac11 = Math.exp(Math.log(err) / 5.0);
+    if (err <= 1) {
+      // step accepted; we require fac1 <= HNEW/H <= fac2
+      return h / Math.max(1 / fac2, Math.min(1 / fac1, fac11 / safe));
+    }
+    // step rejected
+    return h / Math.min(1 / fac1, fac11 / safe);
+  }
+}
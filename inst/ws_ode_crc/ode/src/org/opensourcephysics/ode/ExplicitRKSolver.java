@@ -4,6 +4,9 @@
 * Copyright (c) 2001  H. Gould, J. Tobochnik, and W. Christian.
 */
 package org.opensourcephysics.ode;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import org.opensourcephysics.numerics.*;
 //import org.opensourcephysics.numerics.odetestgenerators.VerifUtils;
 
@@ -13,7 +16,7 @@ import org.opensourcephysics.numerics.*;
  * @version 1.0
  */
 
-public abstract class ExplicitRKSolver implements ODEInterpolator {
+public abstract class ExplicitRKSolver implements ODEInterpolator, ODESolverStats {
     int error_code=ODEAdaptiveSolver.NO_ERROR;
     protected int nStages;
     protected int methodOrder;
@@ -28,6 +31,12 @@ public abstract class ExplicitRKSolver implements ODEInterpolator {
     protected double [] initialState;
     protected double [][] intermidiateStages;
     protected ODE ode;
+    protected ODESolverStatistics statistics; // null unless statistics are enabled
+// work arrays for the initial step size estimate
+    private double [] trialState;
+    private double [] trialRate;
+    private double [] trialInitialRate;
+    private double [] coeff;  // coefficients times the step size
 
 // step size estimation's vars
     private double errOld = 1.e-4;
@@ -52,6 +61,10 @@ public abstract class ExplicitRKSolver implements ODEInterpolator {
         numEqn = state.length;
         initialState = new double[numEqn];
         intermidiateStages = new double[nStages+nInterpolationStages][numEqn];  // the intermidiate stages
+        trialState = new double[numEqn];
+        trialRate = new double[numEqn];
+        trialInitialRate = new double[numEqn];
+        coeff = new double[nStages + nInterpolationStages];
     }
 
     /**
@@ -70,6 +83,9 @@ public abstract class ExplicitRKSolver implements ODEInterpolator {
         numEqn = state.length;
         initialState = new double[numEqn];
         intermidiateStages = new double[nStages + nInterpolationStages][numEqn]; // the intermidiate stages
+        trialState = new double[numEqn];
+        trialRate = new double[numEqn];
+        trialInitialRate = new double[numEqn];
       }
     }
 
@@ -89,35 +105,31 @@ public abstract class ExplicitRKSolver implements ODEInterpolator {
         if(state.length != numEqn) {
             initialize(stepSize);
         }
-        int    i, j, s;  // counters
+        int    s;  // counter
         double err = 0;
         int    iterations = 500;
+        if (statistics != null) statistics.stepStarted();
         if (takenStepSize == 0 ) stepSize = getInitialStepSize(stepSize);
         System.arraycopy(state, 0, initialState, 0, numEqn);  // save the initial state
         ode.getRate(state, intermidiateStages[0]);                          // get the initial rates
         do {
             iterations--;
             takenStepSize = stepSize;
+            // the kernels add several stages per pass over memory
             for(s = 1; s < nStages; s++) {
-                for(i = 0; i < numEqn; i++) {
-                    state[i] = initialState[i];                 // reset to the initial state
-                    for(j = 0; j < s; j++) {
-                        state[i] += stepSize * a[s - 1][j] * intermidiateStages[j][i];
-                    }
-                }
+                RKStageKernels.combine(initialState, stepSize, a[s - 1], intermidiateStages, s, coeff, state, numEqn);
                 ode.getRate(state, intermidiateStages[s]);                  // get the intermediate rates
             }
-
-            for(i = 0; i < numEqn; i++) {
-                state[i] = initialState[i];
-                for(s = 0; s < nStages; s++) state[i] += stepSize * b[s] * intermidiateStages[s][i];
-            }
+            RKStageKernels.combine(initialState, stepSize, b, intermidiateStages, nStages, coeff, state, numEqn);
 
             err = estimateError();
+            if ((statistics != null) && (err > 1) && (iterations > 0)) statistics.stepRejected();
             stepSize = estimateStepSize(err);
             if (iterations < 499) stepSize = Math.min(stepSize, takenStepSize);
         } while((err > 1) && (iterations > 0));
+        if (statistics != null) statistics.stepFinished(takenStepSize);
         if ((err > 1) || Double.isNaN(err)){
+          if (statistics != null) statistics.stepFailed();
           System.err.println("Method did not converge");
           error_code=ODEAdaptiveSolver.DID_NOT_CONVERGE;
         }
@@ -136,6 +148,29 @@ public abstract class ExplicitRKSolver implements ODEInterpolator {
       return error_code;
     }
 
+    /**
+     * Enables or disables the collection of statistics.
+     * @param enabled true to collect statistics
+     */
+    public void setStatisticsEnabled(boolean enabled) {
+        if (enabled == (statistics != null)) return;
+        if (enabled) {
+            statistics = new ODESolverStatistics();
+            ode = statistics.monitor(ode);
+        } else {
+            ode = ODESolverStatistics.unmonitor(ode);
+            statistics = null;
+        }
+    }
+
+    /**
+     * Gets the statistics.
+     * @return the statistics or null if they are disabled
+     */
+    public ODESolverStatistics getStatistics() {
+        return statistics;
+    }
+
 
     /**
      * Estimates an error on the current iteration
@@ -187,9 +222,9 @@ public abstract class ExplicitRKSolver implements ODEInterpolator {
         int i;
         double normF, normX, sk, h, der2, der12;
         double [] initialState = this.state;
-        double [] state = new double[initialState.length];
-        double [] rate = new double [state.length];
-        double [] initialRate = new double [state.length];
+        double [] state = trialState;
+        double [] rate = trialRate;
+        double [] initialRate = trialInitialRate;
 
        // int posneg = MathAddon.sign(hMax);
        // xxx changed by W. Christian in order to compile
@@ -203,8 +238,8 @@ public abstract class ExplicitRKSolver implements ODEInterpolator {
         normX = 0.0 ;
         for(i = 0; i < numEqn; i++) {
             sk = tolerance + tolerance*Math.abs(initialState[i]);
-            normF += Math.pow(initialRate[i]/sk, 2);
-            normX += Math.pow(initialState[i]/sk, 2);
+            normF += (initialRate[i]/sk) * (initialRate[i]/sk);
+            normX += (initialState[i]/sk) * (initialState[i]/sk);
         }
 
         if((normF <= 1.e-10) || (normX <= 1.e-10)) {
@@ -221,9 +256,10 @@ public abstract class ExplicitRKSolver implements ODEInterpolator {
 //estimate the second derivative of the solution
         ode.getRate(state, rate);
         der2 = 0.0;
-        for(i = 0; i < state.length; i++) {
+        for(i = 0; i < numEqn; i++) {
             sk = tolerance + tolerance * Math.abs(initialState[i]);
-            der2 += Math.pow((rate[i] - initialRate[i]) / sk, 2);
+            double d = (rate[i] - initialRate[i]) / sk;
+            der2 += d * d;
         }
         der2 = Math.sqrt(der2) / h;
 //step size is computed as follows
@@ -262,4 +298,43 @@ public abstract class ExplicitRKSolver implements ODEInterpolator {
             for (int i = 0; i < numEqn; i++) result[i] = initialState[i] + (state[i]-initialState[i]) * shortStepValue / takenStepSize;
         } else  System.err.println("Cann't interpolate to the internal state vector. Please call initialize(double, double []) method");
     }
+
+    /**
+     * Returns a serializer that saves the step size control and the stages of the last step in a checkpoint,
+     * so that the continuous output of the last step is available after a restart.
+     * @return the serializer
+     */
+    public static ODESolverCheckpoint.StateSerializer getSerializer() {
+        return new Serializer();
+    }
+
+    /**
+     * A class to save and load the internal state of an explicit Runge Kutta solver.
+     */
+    static class Serializer implements ODESolverCheckpoint.StateSerializer {
+        public void saveState(DataOutput out, ODESolver obj) throws IOException {
+            ExplicitRKSolver solver = (ExplicitRKSolver) obj;
+            out.writeDouble(solver.stepSize);
+            out.writeDouble(solver.takenStepSize);
+            out.writeDouble(solver.tolerance);
+            out.writeDouble(solver.errOld);
+            out.writeDouble(solver.fac);
+            out.writeInt(solver.error_code);
+            ODESolverCheckpoint.writeArray(out, solver.initialState);
+            ODESolverCheckpoint.writeArray(out, solver.intermidiateStages);
+        }
+
+        public void loadState(DataInput in, ODESolver obj) throws IOException {
+            ExplicitRKSolver solver = (ExplicitRKSolver) obj;
+            solver.stepSize = in.readDouble();
+            solver.takenStepSize = in.readDouble();
+            solver.tolerance = in.readDouble();
+            solver.errOld = in.readDouble();
+            solver.fac = in.readDouble();
+            solver.error_code = in.readInt();
+            ODESolverCheckpoint.readArray(in, solver.initialState);
+            ODESolverCheckpoint.readArray(in, solver.intermidiateStages);
+            solver.interpolationIsValid = false; // the coefficients are computed again from the stages
+        }
+    }
 }
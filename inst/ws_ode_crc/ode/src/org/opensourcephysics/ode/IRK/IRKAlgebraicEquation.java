@@ -26,7 +26,6 @@ package org.opensourcephysics.ode.IRK;
  *   1  : unitary matrix                                                    <br>
  *                                                                          <br>
  */
-// TODO: Split onto IRK and IRK with analytical Jacobian.
 public interface IRKAlgebraicEquation{
     /**
      * Gets the current approximation
@@ -97,7 +96,13 @@ public interface IRKAlgebraicEquation{
      * Evaluates jacobian matrix of the "f(x)" function
      *
      * @param freeVariable the arguments array
-     * @param jacobian the jacobian matrix
+     * @param jacobian the jacobian matrix, in the ragged layout of the pattern if the pattern is not null
      */
     public void evaluateNonLinearComponentJacobian(double[] freeVariable, double [][] jacobian);
+    /**
+     * Gets the nonzero structure of the jacobian matrix of the "f(x)" function
+     *
+     * @return the pattern or null if the jacobian is dense
+     */
+    public SparsityPattern getJacobianPattern();
 }
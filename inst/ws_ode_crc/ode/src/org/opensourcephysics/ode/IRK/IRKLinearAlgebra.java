@@ -311,6 +311,268 @@ public class IRKLinearAlgebra {
         BI[0] = PRODI / DEN;
     }/*solc*/
 
+    /**
+     * -----------------------------------------------------------------------
+     *  MATRIX TRIANGULARIZATION BY GAUSSIAN ELIMINATION OF A BANDED MATRIX
+     *  WITH LOWER BANDWIDTH ML AND UPPER BANDWIDTH MU
+     *  INPUT..
+     *     N = ORDER OF THE ORIGINAL MATRIX A.
+     *     A = CONTAINS THE MATRIX IN BAND STORAGE. THE COLUMNS OF THE MATRIX
+     *         ARE STORED IN THE ROWS OF A, THE ELEMENT A(I,J) OF THE ORIGINAL
+     *         MATRIX IS STORED IN A[J][I - J + MD] WITH MD = ML + MU.
+     *         THE LENGTH OF THE ROWS OF A MUST BE AT LEAST 2 * ML + MU + 1
+     *         AND THE ELEMENTS THAT DO NOT BELONG TO THE BAND MUST BE ZERO.
+     *     ML = LOWER BANDWIDTH OF A (DIAGONAL IS NOT COUNTED).
+     *     MU = UPPER BANDWIDTH OF A (DIAGONAL IS NOT COUNTED).
+     *  OUTPUT..
+     *     A = AN UPPER TRIANGULAR MATRIX IN BAND STORAGE WITH UPPER
+     *         BANDWIDTH ML + MU AND THE MULTIPLIERS WHICH WERE USED
+     *         TO OBTAIN IT (NEGATIVE, AS IN DEC).
+     *     IP = INDEX VECTOR OF PIVOT ROWS.
+     *     IER = -1 IF MATRIX A IS NONSINGULAR, OR K IF FOUND TO BE
+     *             SINGULAR AT STAGE K.
+     *  USE  SOLB  TO OBTAIN SOLUTION OF LINEAR SYSTEM.
+     *
+     *  REFERENCE..
+     *     THIS IS THE BAND VERSION OF DEC, SEE ALSO LINPACK DGBFA.
+     * -----------------------------------------------------------------------
+     */
+    public int decb(int N, double[][] A, int ML, int MU, int[] IP) {
+        int K, LM, L, J, JU, MM, R, MD;
+        double T;
+        /**/
+
+        MD = ML + MU;
+        JU = 0;
+        for(K = 0; K < N; K++) {
+            LM = Math.min(ML, N - 1 - K);
+            L = MD;
+            for(R = MD + 1; R <= MD + LM; R++) {
+                if( Math.abs(A[K][R]) > Math.abs(A[K][L]) ) {
+                    L = R;
+                }/*if*/
+            }/*for*/
+            IP[K] = L - MD + K;
+            T = A[K][L];
+            if(T == 0.0) {
+                return K;
+            }/*if*/
+            if(L != MD) {
+                A[K][L] = A[K][MD];
+                A[K][MD] = T;
+            }/*if*/
+
+            T = -1.0 / T;
+            for(R = MD + 1; R <= MD + LM; R++) {
+                A[K][R] *= T;
+            }/*for*/
+
+            JU = Math.min(Math.max(JU, MU + IP[K]), N - 1);
+            for(J = K + 1; J <= JU; J++) {
+                L = IP[K] - J + MD;
+                MM = K - J + MD;
+                T = A[J][L];
+                if(L != MM) {
+                    A[J][L] = A[J][MM];
+                    A[J][MM] = T;
+                }/*if*/
+                if(T != 0.0) {
+                    for(R = 1; R <= LM; R++) {
+                        A[J][MM + R] += A[K][MD + R] * T;
+                    }/*for*/
+                }/*if*/
+            }/*for*/
+        }/*for*/
+
+        return -1;
+    }/*decb*/
+
+    /**
+     * -----------------------------------------------------------------------
+     *  SOLUTION OF LINEAR SYSTEM, A * X = B .
+     *  INPUT..
+     *    N = ORDER OF MATRIX A.
+     *    A = TRIANGULARIZED MATRIX OBTAINED FROM DECB.
+     *    ML = LOWER BANDWIDTH OF A (DIAGONAL IS NOT COUNTED).
+     *    MU = UPPER BANDWIDTH OF A (DIAGONAL IS NOT COUNTED).
+     *    B = RIGHT HAND SIDE VECTOR.
+     *    IP = PIVOT VECTOR OBTAINED FROM DECB.
+     *  DO NOT USE IF DECB HAS SET IER != -1.
+     *  OUTPUT..
+     *    B = SOLUTION VECTOR, X .
+     * -----------------------------------------------------------------------
+     */
+    public void solb(int N, double[][] A, int ML, int MU, double[] B, int[] IP) {
+        int K, L, LM, R, MD;
+        double T;
+        /**/
+
+        MD = ML + MU;
+        for(K = 0; K < N - 1; K++) {
+            LM = Math.min(ML, N - 1 - K);
+            L = IP[K];
+            T = B[L];
+            if(L != K) {
+                B[L] = B[K];
+                B[K] = T;
+            }/*if*/
+            for(R = 1; R <= LM; R++) {
+                B[K + R] += A[K][MD + R] * T;
+            }/*for*/
+        }/*for*/
+
+        for(K = N - 1; K >= 0; K--) {
+            B[K] /= A[K][MD];
+            LM = Math.min(K, MD);
+            T = -B[K];
+            for(R = 0; R < LM; R++) {
+                B[K - LM + R] += A[K][MD - LM + R] * T;
+            }/*for*/
+        }/*for*/
+    }/*solb*/
+
+    /**
+     * -----------------------------------------------------------------------
+     *  MATRIX TRIANGULARIZATION BY GAUSSIAN ELIMINATION OF A BANDED MATRIX
+     *  ------ MODIFICATION FOR COMPLEX MATRICES --------
+     *  INPUT..
+     *     N = ORDER OF THE ORIGINAL MATRIX A.
+     *     (AR, AI) = CONTAINS THE MATRIX IN BAND STORAGE, SEE DECB.
+     *     ML = LOWER BANDWIDTH OF A (DIAGONAL IS NOT COUNTED).
+     *     MU = UPPER BANDWIDTH OF A (DIAGONAL IS NOT COUNTED).
+     *  OUTPUT..
+     *     (AR, AI) = AN UPPER TRIANGULAR MATRIX IN BAND STORAGE AND THE
+     *                MULTIPLIERS WHICH WERE USED TO OBTAIN IT.
+     *     IP = INDEX VECTOR OF PIVOT ROWS.
+     *     IER = -1 IF MATRIX A IS NONSINGULAR, OR K IF FOUND TO BE
+     *             SINGULAR AT STAGE K.
+     *  USE  SOLBC  TO OBTAIN SOLUTION OF LINEAR SYSTEM.
+     * -----------------------------------------------------------------------
+     */
+    public int decbc(int N, double[][] AR, double[][] AI, int ML, int MU, int[] IP) {
+        int K, LM, L, J, JU, MM, R, MD;
+        double TR, TI, DEN, PRODR, PRODI;
+        /**/
+
+        MD = ML + MU;
+        JU = 0;
+        for(K = 0; K < N; K++) {
+            LM = Math.min(ML, N - 1 - K);
+            L = MD;
+            for(R = MD + 1; R <= MD + LM; R++) {
+                if( Math.abs(AR[K][R]) + Math.abs(AI[K][R]) > Math.abs(AR[K][L]) + Math.abs(AI[K][L]) ) {
+                    L = R;
+                }/*if*/
+            }/*for*/
+            IP[K] = L - MD + K;
+            TR = AR[K][L];
+            TI = AI[K][L];
+            if(Math.abs(TR) + Math.abs(TI) == 0.0) {
+                return K;
+            }/*if*/
+            if(L != MD) {
+                AR[K][L] = AR[K][MD];
+                AI[K][L] = AI[K][MD];
+                AR[K][MD] = TR;
+                AI[K][MD] = TI;
+            }/*if*/
+
+            DEN = TR * TR + TI * TI;
+            TR /= DEN;
+            TI /= -DEN;
+            for(R = MD + 1; R <= MD + LM; R++) {
+                PRODR = AR[K][R] * TR - AI[K][R] * TI;
+                PRODI = AI[K][R] * TR + AR[K][R] * TI;
+                AR[K][R] = -PRODR;
+                AI[K][R] = -PRODI;
+            }/*for*/
+
+            JU = Math.min(Math.max(JU, MU + IP[K]), N - 1);
+            for(J = K + 1; J <= JU; J++) {
+                L = IP[K] - J + MD;
+                MM = K - J + MD;
+                TR = AR[J][L];
+                TI = AI[J][L];
+                if(L != MM) {
+                    AR[J][L] = AR[J][MM];
+                    AI[J][L] = AI[J][MM];
+                    AR[J][MM] = TR;
+                    AI[J][MM] = TI;
+                }/*if*/
+                if(Math.abs(TR) + Math.abs(TI) == 0.0) {
+                    continue;
+                }/*if*/
+                for(R = 1; R <= LM; R++) {
+                    PRODR = AR[K][MD + R] * TR - AI[K][MD + R] * TI;
+                    PRODI = AI[K][MD + R] * TR + AR[K][MD + R] * TI;
+                    AR[J][MM + R] += PRODR;
+                    AI[J][MM + R] += PRODI;
+                }/*for*/
+            }/*for*/
+        }/*for*/
+
+        return -1;
+    }/*decbc*/
+
+    /**
+     * -----------------------------------------------------------------------
+     *  SOLUTION OF LINEAR SYSTEM, A * X = B .
+     *  INPUT..
+     *    N = ORDER OF MATRIX A.
+     *    (AR, AI) = TRIANGULARIZED MATRIX OBTAINED FROM DECBC.
+     *    ML = LOWER BANDWIDTH OF A (DIAGONAL IS NOT COUNTED).
+     *    MU = UPPER BANDWIDTH OF A (DIAGONAL IS NOT COUNTED).
+     *    (BR, BI) = RIGHT HAND SIDE VECTOR.
+     *    IP = PIVOT VECTOR OBTAINED FROM DECBC.
+     *  DO NOT USE IF DECBC HAS SET IER != -1.
+     *  OUTPUT..
+     *    (BR, BI) = SOLUTION VECTOR, X .
+     * -----------------------------------------------------------------------
+     */
+    public void solbc(int N, double[][] AR, double[][] AI, int ML, int MU,
+                      double[] BR, double[] BI, int[] IP) {
+        int K, L, LM, R, MD;
+        double TR, TI, DEN, PRODR, PRODI;
+        /**/
+
+        MD = ML + MU;
+        for(K = 0; K < N - 1; K++) {
+            LM = Math.min(ML, N - 1 - K);
+            L = IP[K];
+            TR = BR[L];
+            TI = BI[L];
+            if(L != K) {
+                BR[L] = BR[K];
+                BI[L] = BI[K];
+                BR[K] = TR;
+                BI[K] = TI;
+            }/*if*/
+            for(R = 1; R <= LM; R++) {
+                PRODR = AR[K][MD + R] * TR - AI[K][MD + R] * TI;
+                PRODI = AI[K][MD + R] * TR + AR[K][MD + R] * TI;
+                BR[K + R] += PRODR;
+                BI[K + R] += PRODI;
+            }/*for*/
+        }/*for*/
+
+        for(K = N - 1; K >= 0; K--) {
+            DEN = AR[K][MD] * AR[K][MD] + AI[K][MD] * AI[K][MD];
+            PRODR = BR[K] * AR[K][MD] + BI[K] * AI[K][MD];
+            PRODI = BI[K] * AR[K][MD] - BR[K] * AI[K][MD];
+            BR[K] = PRODR / DEN;
+            BI[K] = PRODI / DEN;
+            LM = Math.min(K, MD);
+            TR = -BR[K];
+            TI = -BI[K];
+            for(R = 0; R < LM; R++) {
+                PRODR = AR[K][MD - LM + R] * TR - AI[K][MD - LM + R] * TI;
+                PRODI = AI[K][MD - LM + R] * TR + AR[K][MD - LM + R] * TI;
+                BR[K - LM + R] += PRODR;
+                BI[K - LM + R] += PRODI;
+            }/*for*/
+        }/*for*/
+    }/*solbc*/
+
     static class Mathadd {
 
         public Mathadd() {
@@ -1,4 +1,11 @@
 package org.opensourcephysics.ode.IRK;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.opensourcephysics.numerics.ODESolverCheckpoint;
+
 /**
  * Simplified Newton interation algebraic equations system solver.
  * Purposed for numerical solution of algebraic equations systems
@@ -153,6 +160,26 @@ public class IRKSimplifiedNewton extends IRKSimplifiedNewtonStep implements Alge
         this.tolerance[index] = tolerance;
     }
 
+    void saveState(DataOutput out) throws IOException {
+        super.saveState(out);
+        out.writeInt(nIteration);
+        out.writeDouble(thetaqOld);
+        out.writeDouble(fnewt);
+        out.writeDouble(convergenceRateOld);
+        out.writeDouble(faccon);
+        ODESolverCheckpoint.writeArray(out, tolerance);
+    }
+
+    void loadState(DataInput in) throws IOException {
+        super.loadState(in);
+        nIteration = in.readInt();
+        thetaqOld = in.readDouble();
+        fnewt = in.readDouble();
+        convergenceRateOld = in.readDouble();
+        faccon = in.readDouble();
+        ODESolverCheckpoint.readArray(in, tolerance);
+    }
+
 }
 
 /**
@@ -1,5 +1,11 @@
 package org.opensourcephysics.ode.IRK;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.opensourcephysics.numerics.ODESolverCheckpoint;
+
 /**
  * Core of the simplified Newton iteration solver. <code>IRKSimplifiedNewtonStep</code>
  * can be used as simplest algebraic equation systems solver in cases when error is
@@ -40,6 +46,8 @@ public class IRKSimplifiedNewtonStep implements AlgebraicEquationSimpleSolver{
     private double [][] approximation;
     private double [][] substitutedApproximationIncrement;
     private double incrementNormOnPreviousStep = 1;
+    private int nDecompositions = 0;
+    private int nIterations = 0;
 
     /**
      * Simplified newton solver obtains each next increment to the current approximation
@@ -51,6 +59,7 @@ public class IRKSimplifiedNewtonStep implements AlgebraicEquationSimpleSolver{
      */
     private class InnerLinearAlgebraicEquation implements LAEquation, LAComplexEquation {
         private double [][] jac;
+        private int [] diagonal;
         private double [] realEigenvalues;
         private double [] complexEigenvalues;
         private double [][] substitutedNonLinearComponent ;
@@ -63,7 +72,15 @@ public class IRKSimplifiedNewtonStep implements AlgebraicEquationSimpleSolver{
             realEigenvalues = eqn.getRealEigenvalues();
             complexEigenvalues = eqn.getComplexEigenvalues();
             substitutedNonLinearComponent = new double [3][numEqn];
-            jac = new double [numEqn][numEqn];
+            SparsityPattern pattern = eqn.getJacobianPattern();
+            if (pattern == null) {
+                jac = new double [numEqn][numEqn];
+                diagonal = new int [numEqn];
+                for (int i = 0; i < numEqn; i++) diagonal[i] = i;
+            } else {
+                jac = pattern.createMatrix();
+                diagonal = pattern.getDiagonal();
+            }
         }
 
         /**
@@ -91,14 +108,15 @@ public class IRKSimplifiedNewtonStep implements AlgebraicEquationSimpleSolver{
 
         /**
          * Constructs the left hand matix of the real linear equations system
-         * related to the real eigenvalue.
+         * related to the real eigenvalue. A sparse matrix has the ragged layout of the jacobian.
          * @param matrix the left hand matix of linear equations system
          */
         public void getMatrix(double[][] matrix) {
             for (int i = 0 ; i < numEqn; i++ ){
-                for(int j = 0; j < numEqn; j++)
-                    matrix[i][j] = - jac[i][j];
-                matrix[i][i] += multiplier*realEigenvalues[0];
+                double [] row = jac[i];
+                for(int j = 0; j < row.length; j++)
+                    matrix[i][j] = - row[j];
+                matrix[i][diagonal[i]] += multiplier*realEigenvalues[0];
             }
         }
 
@@ -110,12 +128,13 @@ public class IRKSimplifiedNewtonStep implements AlgebraicEquationSimpleSolver{
          */
         public void getMatrixes(double[][] matrixRe, double [][] matrixIm) {
             for (int i = 0 ; i < numEqn; i++ ){
-                for(int j = 0; j < numEqn; j++){
-                    matrixRe[i][j] = - jac[i][j];
+                double [] row = jac[i];
+                for(int j = 0; j < row.length; j++){
+                    matrixRe[i][j] = - row[j];
                     matrixIm[i][j] = 0;
                 }
-                matrixRe[i][i] += multiplier*complexEigenvalues[0];
-                matrixIm[i][i] += multiplier*complexEigenvalues[1];
+                matrixRe[i][diagonal[i]] += multiplier*complexEigenvalues[0];
+                matrixIm[i][diagonal[i]] += multiplier*complexEigenvalues[1];
             }
         }
         /**
@@ -161,7 +180,7 @@ public class IRKSimplifiedNewtonStep implements AlgebraicEquationSimpleSolver{
         this.eqn = eqn;
         numEqn = eqn.getApproximation()[0].length;
         innerLinearAlgebraicEquation = new InnerLinearAlgebraicEquation();
-        initialize(new LAESolverLU(innerLinearAlgebraicEquation));
+        initialize(new LAESolverLU(innerLinearAlgebraicEquation, eqn.getJacobianPattern()));
     }
 
     /**
@@ -188,7 +207,7 @@ public class IRKSimplifiedNewtonStep implements AlgebraicEquationSimpleSolver{
     private void initialize(LAESolverLU laeSolver){
         this.laeSolver = laeSolver;
         laeSolver.assignEquation(innerLinearAlgebraicEquation);
-        laeComplexSolver = new LAEComplexSolverLU(innerLinearAlgebraicEquation);
+        laeComplexSolver = new LAEComplexSolverLU(innerLinearAlgebraicEquation, eqn.getJacobianPattern());
         this.approximation = eqn.getApproximation();
         temporary = new double [3][numEqn];
         substitutedApproximation = new double [3][numEqn];
@@ -218,6 +237,23 @@ public class IRKSimplifiedNewtonStep implements AlgebraicEquationSimpleSolver{
         incrementNormOnPreviousStep = 0;
     }
 
+    /**
+     * Gets the number of LU decompositions of the pair of real and complex
+     * linear systems that have been performed.
+     * @return the number of decompositions
+     */
+    public int getNumberOfDecompositions() {
+        return nDecompositions;
+    }
+
+    /**
+     * Gets the number of simplified Newton iterations that have been performed.
+     * @return the number of iterations
+     */
+    public int getNumberOfIterations() {
+        return nIterations;
+    }
+
     /**
      * Gets the vector containing the intermediate result of the computations.
      * @return the substituted increment to the current approximation vector.
@@ -236,7 +272,9 @@ public class IRKSimplifiedNewtonStep implements AlgebraicEquationSimpleSolver{
         if ((refreshLAEsMatrixes) || (bestConvergenceRequired)){
             laeSolver.initialize();
             laeComplexSolver.initialize();
+            nDecompositions++;
         };
+        nIterations++;
         laeSolver.resolve(substitutedApproximationIncrement[0]);
         laeComplexSolver.resolve(substitutedApproximationIncrement[1], substitutedApproximationIncrement[2]);
         refreshLAEsMatrixes = false;
@@ -287,4 +325,42 @@ public class IRKSimplifiedNewtonStep implements AlgebraicEquationSimpleSolver{
         return Math.sqrt(incrementNorm / (double)(3*numEqn));
     }
 
+    /**
+     * Writes the state of the iteration that is kept from one ODE solver step to the next.
+     * The decompositions are not written because they are computed again from the Jacobian.
+     * @param out the output
+     * @throws IOException if the state cannot be written
+     */
+    void saveState(DataOutput out) throws IOException {
+        out.writeDouble(multiplier);
+        out.writeBoolean(bestConvergenceRequired);
+        out.writeBoolean(refreshLAEsMatrixes);
+        out.writeDouble(incrementNormOnPreviousStep);
+        out.writeInt(nDecompositions);
+        out.writeInt(nIterations);
+        ODESolverCheckpoint.writeArray(out, substitutedApproximation);
+        ODESolverCheckpoint.writeArray(out, innerLinearAlgebraicEquation.jac);
+    }
+
+    /**
+     * Reads the state that has been written by <code>saveState</code> and decomposes the
+     * linear systems again, which gives the same factors as before.
+     * @param in the input
+     * @throws IOException if the state cannot be read
+     */
+    void loadState(DataInput in) throws IOException {
+        multiplier = in.readDouble();
+        bestConvergenceRequired = in.readBoolean();
+        refreshLAEsMatrixes = in.readBoolean();
+        incrementNormOnPreviousStep = in.readDouble();
+        nDecompositions = in.readInt();
+        nIterations = in.readInt();
+        ODESolverCheckpoint.readArray(in, substitutedApproximation);
+        ODESolverCheckpoint.readArray(in, innerLinearAlgebraicEquation.jac);
+        if (nDecompositions > 0) {
+            laeSolver.initialize();
+            laeComplexSolver.initialize();
+        }
+    }
+
 }
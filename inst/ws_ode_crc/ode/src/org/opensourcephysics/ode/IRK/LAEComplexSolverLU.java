@@ -1,9 +1,16 @@
 package org.opensourcephysics.ode.IRK;
 
+import java.util.Arrays;
+
 /**
  * Objective wrap for the LU solver of the liear equations systems that is
  * defined for(above) complex arithmetic.
  * Source solver is placed in the <code>IRKLinearAlgebra</code>. class
+ * If a sparsity pattern is given the matrixes are passed to the equation in the ragged
+ * layout of the pattern. Banded matrixes are factored by the complex band decomposition.
+ * General sparse matrixes are factored as the equivalent real system of twice the order,
+ * (Re A, -Im A; Im A, Re A), with the real and imaginary parts of every unknown placed
+ * next to each other so that the real sparse LU decomposition can be used.
  * @author Andrei Goussev
  */
 
@@ -16,20 +23,62 @@ public class LAEComplexSolverLU {
     double [] rightHandVectorRe;
     double [] rightHandVectorIm;
     int [] stuff;
+    private SparsityPattern pattern;
+    private double [][] bandRe;
+    private double [][] bandIm;
+    private SparseLUDecomposition sparseLU;
+    private double [][] realMatrix;
+    private double [] realVector;
 
     /**
      * Instances the solver for a system of equations
      * @param eqn the system of linear algebraic equations
      */
     public LAEComplexSolverLU(LAComplexEquation eqn) {
+        this(eqn, null);
+    }
+
+    /**
+     * Instances the solver for a system of equations with a sparse matrix
+     * @param eqn the system of linear algebraic equations
+     * @param pattern the nonzero structure of the matrix, null if the matrix is dense
+     */
+    public LAEComplexSolverLU(LAComplexEquation eqn, SparsityPattern pattern) {
         this.linalg = new IRKLinearAlgebra();
+        this.pattern = pattern;
         numEqn = eqn.getDimension();
         assignEquation(eqn);
-        luDecompositionRe = new double[numEqn][numEqn];
-        luDecompositionIm = new double[numEqn][numEqn];
         rightHandVectorRe = new double[numEqn];
         rightHandVectorIm = new double[numEqn];
         stuff = new int[numEqn];
+        if (pattern == null) {
+            luDecompositionRe = new double[numEqn][numEqn];
+            luDecompositionIm = new double[numEqn][numEqn];
+        } else {
+            luDecompositionRe = pattern.createMatrix();
+            luDecompositionIm = pattern.createMatrix();
+            if (pattern.isBanded()) {
+                int width = 2 * pattern.getLowerBandwidth() + pattern.getUpperBandwidth() + 1;
+                bandRe = new double[numEqn][width];
+                bandIm = new double[numEqn][width];
+            } else {
+                int[][] columns = pattern.getColumns();
+                int[][] realColumns = new int[2 * numEqn][];
+                for (int i = 0; i < numEqn; i++) {
+                    int[] row = new int[2 * columns[i].length];
+                    for (int k = 0; k < columns[i].length; k++) {
+                        row[2 * k] = 2 * columns[i][k];
+                        row[2 * k + 1] = 2 * columns[i][k] + 1;
+                    }
+                    realColumns[2 * i] = row;
+                    realColumns[2 * i + 1] = row;
+                }
+                sparseLU = new SparseLUDecomposition(realColumns);
+                realMatrix = new double[2 * numEqn][];
+                for (int i = 0; i < 2 * numEqn; i++) realMatrix[i] = new double[realColumns[i].length];
+                realVector = new double[2 * numEqn];
+            }
+        }
     }
 
     /**
@@ -53,7 +102,35 @@ public class LAEComplexSolverLU {
      */
     public void initialize(){
         eqn.getMatrixes(luDecompositionRe, luDecompositionIm);
-        linalg.decc(numEqn, numEqn, luDecompositionRe, luDecompositionIm, stuff);
+        if (bandRe != null) {
+            int ml = pattern.getLowerBandwidth(), mu = pattern.getUpperBandwidth();
+            int[][] columns = pattern.getColumns();
+            for (int j = 0; j < numEqn; j++) {
+                Arrays.fill(bandRe[j], 0);
+                Arrays.fill(bandIm[j], 0);
+            }
+            for (int i = 0; i < numEqn; i++)
+                for (int k = 0; k < columns[i].length; k++) {
+                    int j = columns[i][k];
+                    bandRe[j][i - j + ml + mu] = luDecompositionRe[i][k];
+                    bandIm[j][i - j + ml + mu] = luDecompositionIm[i][k];
+                }
+            linalg.decbc(numEqn, bandRe, bandIm, ml, mu, stuff);
+        } else if (sparseLU != null) {
+            for (int i = 0; i < numEqn; i++) {
+                double[] re = luDecompositionRe[i], im = luDecompositionIm[i];
+                double[] upper = realMatrix[2 * i], lower = realMatrix[2 * i + 1];
+                for (int k = 0; k < re.length; k++) {
+                    upper[2 * k] = re[k];
+                    upper[2 * k + 1] = -im[k];
+                    lower[2 * k] = im[k];
+                    lower[2 * k + 1] = re[k];
+                }
+            }
+            sparseLU.decompose(realMatrix);
+        } else {
+            linalg.decc(numEqn, numEqn, luDecompositionRe, luDecompositionIm, stuff);
+        }
     }
 
     /**
@@ -64,7 +141,21 @@ public class LAEComplexSolverLU {
     public void resolve(double [] solutionRe, double [] solutionIm){
         if ((luDecompositionRe != null)&&((luDecompositionIm != null))) {
             eqn.getVectors(rightHandVectorRe, rightHandVectorIm);
-            linalg.solc(numEqn,numEqn, luDecompositionRe,luDecompositionIm, rightHandVectorRe,rightHandVectorIm, stuff);
+            if (bandRe != null) {
+                linalg.solbc(numEqn, bandRe, bandIm, pattern.getLowerBandwidth(), pattern.getUpperBandwidth(), rightHandVectorRe, rightHandVectorIm, stuff);
+            } else if (sparseLU != null) {
+                for (int i = 0; i < numEqn; i++) {
+                    realVector[2 * i] = rightHandVectorRe[i];
+                    realVector[2 * i + 1] = rightHandVectorIm[i];
+                }
+                sparseLU.solve(realVector);
+                for (int i = 0; i < numEqn; i++) {
+                    rightHandVectorRe[i] = realVector[2 * i];
+                    rightHandVectorIm[i] = realVector[2 * i + 1];
+                }
+            } else {
+                linalg.solc(numEqn,numEqn, luDecompositionRe,luDecompositionIm, rightHandVectorRe,rightHandVectorIm, stuff);
+            }
             System.arraycopy(rightHandVectorRe, 0, solutionRe, 0, numEqn);
             System.arraycopy(rightHandVectorIm, 0, solutionIm, 0, numEqn);
         }
@@ -1,7 +1,12 @@
 package org.opensourcephysics.ode.IRK;
+
+import java.util.Arrays;
+
 /**
  * Objective wrap for the LU solver of the liear equations systems.
  * Source solver is placed in the <code>IRKLinearAlgebra</code>. class
+ * If a sparsity pattern is given the matrix is passed to the equation in the ragged layout
+ * of the pattern and is factored by the banded or the sparse LU decomposition.
  * @author Andrei Goussev
  */
 public class LAESolverLU {
@@ -11,6 +16,9 @@ public class LAESolverLU {
     double [][] luDecomposition;
     double [] rightHandVector;
     int [] stuff;
+    private SparsityPattern pattern;
+    private double [][] band;
+    private SparseLUDecomposition sparseLU;
 
     public LAEquation getEquation() {
         return eqn;
@@ -21,11 +29,19 @@ public class LAESolverLU {
      * will be assigned later
      */
     public LAESolverLU(int numEqn) {
+        this(numEqn, null);
+    }
+
+    /**
+     * Instances the solver for sparse matrices considering that system of equations
+     * will be assigned later
+     * @param numEqn the number of equations
+     * @param pattern the nonzero structure of the matrix, null if the matrix is dense
+     */
+    public LAESolverLU(int numEqn, SparsityPattern pattern) {
         this.linalg = new IRKLinearAlgebra();
         this.numEqn = numEqn;
-        luDecomposition = new double[numEqn][numEqn];
-        rightHandVector = new double[numEqn];
-        stuff = new int[numEqn];
+        allocate(pattern);
     }
 
     /**
@@ -33,12 +49,35 @@ public class LAESolverLU {
      * @param eqn the system of linear algebraic equations
      */
     public LAESolverLU(LAEquation eqn) {
+        this(eqn, null);
+    }
+
+    /**
+     * Instances the solver for a system of equations with a sparse matrix
+     * @param eqn the system of linear algebraic equations
+     * @param pattern the nonzero structure of the matrix, null if the matrix is dense
+     */
+    public LAESolverLU(LAEquation eqn, SparsityPattern pattern) {
         this.linalg = new IRKLinearAlgebra();
-        assignEquation(eqn);
         numEqn = eqn.getDimension();
-        luDecomposition = new double[numEqn][numEqn];
+        assignEquation(eqn);
+        allocate(pattern);
+    }
+
+    private void allocate(SparsityPattern pattern) {
+        this.pattern = pattern;
         rightHandVector = new double[numEqn];
         stuff = new int[numEqn];
+        if (pattern == null) {
+            luDecomposition = new double[numEqn][numEqn];
+        } else {
+            luDecomposition = pattern.createMatrix();
+            if (pattern.isBanded()) {
+                band = new double[numEqn][2 * pattern.getLowerBandwidth() + pattern.getUpperBandwidth() + 1];
+            } else {
+                sparseLU = new SparseLUDecomposition(pattern.getColumns());
+            }
+        }
     }
 
     /**
@@ -62,7 +101,22 @@ public class LAESolverLU {
      */
     public void initialize(){
         eqn.getMatrix(luDecomposition);
-        linalg.dec(numEqn, numEqn, luDecomposition, stuff);
+        if (band != null) {
+            int ml = pattern.getLowerBandwidth(), mu = pattern.getUpperBandwidth();
+            int[][] columns = pattern.getColumns();
+            for (int j = 0; j < numEqn; j++)
+                Arrays.fill(band[j], 0);
+            for (int i = 0; i < numEqn; i++)
+                for (int k = 0; k < columns[i].length; k++) {
+                    int j = columns[i][k];
+                    band[j][i - j + ml + mu] = luDecomposition[i][k];
+                }
+            linalg.decb(numEqn, band, ml, mu, stuff);
+        } else if (sparseLU != null) {
+            sparseLU.decompose(luDecomposition);
+        } else {
+            linalg.dec(numEqn, numEqn, luDecomposition, stuff);
+        }
     }
 
     /**
@@ -72,7 +126,13 @@ public class LAESolverLU {
     public void resolve(double [] solution){
         if (luDecomposition != null) {
             eqn.getVector(rightHandVector);
-            linalg.sol(numEqn,numEqn, luDecomposition, rightHandVector, stuff);
+            if (band != null) {
+                linalg.solb(numEqn, band, pattern.getLowerBandwidth(), pattern.getUpperBandwidth(), rightHandVector, stuff);
+            } else if (sparseLU != null) {
+                sparseLU.solve(rightHandVector);
+            } else {
+                linalg.sol(numEqn,numEqn, luDecomposition, rightHandVector, stuff);
+            }
             System.arraycopy(rightHandVector, 0, solution, 0, numEqn);
         }
     }
@@ -1,5 +1,10 @@
 package org.opensourcephysics.ode.IRK;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import org.opensourcephysics.numerics.ODE;
+import org.opensourcephysics.numerics.ODESolver;
+import org.opensourcephysics.numerics.ODESolverCheckpoint;
 
 /**
  * Numerical solution of a stiff system of first order ordinary
@@ -23,7 +28,7 @@ import org.opensourcephysics.numerics.ODE;
  * @author Andrei Goussev
  */
 
-public class Radau5 extends Radau5Adaptive implements org.opensourcephysics.ode.ODEInterpolator{
+public class Radau5 extends Radau5Adaptive implements org.opensourcephysics.ode.ODEDenseOutputSolver{
 
     final static double c1 = (4.0 - Math.sqrt(6.0)) / 10.0;
     final static double c2 = (4.0 + Math.sqrt(6.0)) / 10.0;
@@ -90,6 +95,30 @@ public class Radau5 extends Radau5Adaptive implements org.opensourcephysics.ode.
         }
     }
 
+    public int getDenseOutputSize() {
+        return 4 * numEqn;
+    }
+
+    public void getDenseOutput(double[] coefficients, int offset) {
+        for (int k = 0; k < 4; k++)
+            System.arraycopy(interpolationCoeffs[k], 0, coefficients, offset + k * numEqn, numEqn);
+    }
+
+    /**
+     * Evaluates the continuous output from stored coefficients.
+     * @param c the coefficients obtained by <code>getDenseOutput</code>
+     * @param offset the position of the first coefficient
+     * @param theta the fraction of the step, 0 at the beginning and 1 at the end
+     * @param result the approximated solution of ODE
+     */
+    public void interpolateDenseOutput(double[] c, int offset, double theta, double[] result) {
+        double s = theta - 1;
+        int n = numEqn;
+        for (int i = 0, j = offset; i < n; i++, j++) {
+            result[i] = c[j] + s * (c[j + n] + (s - c2m1) * (c[j + 2 * n] + (s - c1m1) * c[j + 3 * n]));
+        }
+    }
+
     /**
      * Predicits the increment to the stages vectors array for the next step
      * usigng the extrapolation
@@ -105,4 +134,32 @@ public class Radau5 extends Radau5Adaptive implements org.opensourcephysics.ode.
             initialvalue[2][i] = s * (interpolationCoeffs[1][i] + (s - c2m1) * (interpolationCoeffs[2][i] + (s - c1m1) * interpolationCoeffs[3][i]));
         }
     }
+
+    /**
+     * Returns a serializer that saves the continuous output of the last step in a checkpoint
+     * in addition to the state of the Radau5Adaptive solver.
+     * @return the serializer
+     */
+    public static ODESolverCheckpoint.StateSerializer getSerializer() {
+        return new Serializer();
+    }
+
+    /**
+     * A class to save and load the internal state of a Radau5 solver.
+     */
+    static class Serializer extends Radau5Adaptive.Serializer {
+        public void saveState(DataOutput out, ODESolver obj) throws IOException {
+            super.saveState(out, obj);
+            Radau5 solver = (Radau5) obj;
+            out.writeDouble(solver.takenStepSize);
+            ODESolverCheckpoint.writeArray(out, solver.interpolationCoeffs);
+        }
+
+        public void loadState(DataInput in, ODESolver obj) throws IOException {
+            super.loadState(in, obj);
+            Radau5 solver = (Radau5) obj;
+            solver.takenStepSize = in.readDouble();
+            ODESolverCheckpoint.readArray(in, solver.interpolationCoeffs);
+        }
+    }
 }
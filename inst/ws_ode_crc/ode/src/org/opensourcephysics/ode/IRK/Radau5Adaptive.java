@@ -1,6 +1,11 @@
 package org.opensourcephysics.ode.IRK;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import org.opensourcephysics.numerics.ODEAdaptiveSolver;
 import org.opensourcephysics.numerics.ODE;
+import org.opensourcephysics.numerics.ODESolver;
+import org.opensourcephysics.numerics.ODESolverCheckpoint;
 
 /**
  * Numerical solution of a stiff system of first order ordinary
@@ -8,6 +13,16 @@ import org.opensourcephysics.numerics.ODE;
  * Runge-Kutta method (Radau IIA) of order 5 with step size
  * control.<br>
  *
+ * The Jacobian is kept from step to step while the simplified Newton iterations
+ * converge faster than the Jacobian reuse threshold, and the LU decompositions are
+ * kept too if the proposed step size differs from the current one by a ratio within
+ * the step size ratio band. In that case the current step size is used for the next
+ * step. The defaults 0.001 and [1.0, 1.2] are those of the Fortran code. A threshold
+ * of about 0.1 is recommended there if the Jacobian is expensive and a band of
+ * [0.99, 2.0] for large systems, where the decompositions dominate. The numbers of rate
+ * and Jacobian evaluations, LU decompositions and accepted and rejected steps are
+ * reported by the statistics methods.<br>
+ *
  * The code is transferred from the Fortran sources.
  * authors of original Fortran code:
  *    E. Hairer and G. Wanner
@@ -32,6 +47,10 @@ public class Radau5Adaptive extends Radau5Light implements ODEAdaptiveSolver{
 
     private int nRejected = 0;
     private int nAcceptedSteps = 0;
+    private int nRejectedSteps = 0;
+    private double jacobianReuseThreshold = 0.001;
+    private double minStepSizeRatio = 1.0;
+    private double maxStepSizeRatio = 1.2;
     double [] scal;
 
     private ErrorFirstAproximationEquation errorApproximationEquation;
@@ -74,7 +93,7 @@ public class Radau5Adaptive extends Radau5Light implements ODEAdaptiveSolver{
      * @return simplified newton interation solver instance
      */
     protected AlgebraicEquationSimpleSolver getInnerSolver(IRKAlgebraicEquation algEqn) {
-        laeSolver = new LAESolverLU(numEqn);
+        laeSolver = new LAESolverLU(numEqn, algEqn.getJacobianPattern());
 //        return new IRKSimplifiedNewton(algEqn, laeSolver);
         return new MyNewton(algEqn, laeSolver);
     }
@@ -107,6 +126,7 @@ public class Radau5Adaptive extends Radau5Light implements ODEAdaptiveSolver{
      */
     public double step() {
         error_code=ODEAdaptiveSolver.NO_ERROR;
+        if (statistics != null) statistics.stepStarted();
         preStepPreparations();
         double error = 0;
         if (nAcceptedSteps > 0) {
@@ -121,20 +141,24 @@ public class Radau5Adaptive extends Radau5Light implements ODEAdaptiveSolver{
                 // TODO: ((MyNewton)aeSolver).getnIter()!!!
                 stepSize = estimateStepSize(error, ((MyNewton)aeSolver).getnIter(), 7);
                 if (error < 1) {
-                 // TODO: 0.001 is a paramether
-                    if ((Math.abs((stepSize / currentStepSize)-1.1) <= 0.1)&&(newtonConvergenceRate <= 0.001)){
+                    double ratio = stepSize / currentStepSize;
+                    if ((ratio >= minStepSizeRatio) && (ratio <= maxStepSizeRatio) && (newtonConvergenceRate <= jacobianReuseThreshold)){
                         stepSize = currentStepSize; // it's a very chip to stay stepsize as is.
                     }
-                    aeSolver.restart(newtonConvergenceRate > 0.001);
+                    aeSolver.restart(newtonConvergenceRate > jacobianReuseThreshold);
                 }
                 else {
                     nRejected++;
+                    nRejectedSteps++;
+                    if (statistics != null) statistics.stepRejected();
                     aeSolver.restart((jacobianAge > 0));
                 }
             } catch (NewtonLostOfConvergence e){
                 stepSize = currentStepSize / 2;
                 aeSolver.restart(jacobianAge > 0);
                 nRejected++;
+                nRejectedSteps++;
+                if (statistics != null) statistics.stepRejected();
                 error = 10; // also one loop, no other means
 // TODO: "hhfac = 0.5; && nmSingularMatrix" of original code had been lost on translation !!!
             } catch (NewtonLastIterationErrorIsTooLarge e){
@@ -142,11 +166,14 @@ public class Radau5Adaptive extends Radau5Light implements ODEAdaptiveSolver{
                 stepSize = currentStepSize * 0.8 * Math.pow(qnewt, -1.0 / (4.0 + e.getMaxIterationsAllowed() - 1 - e.getIterationNumber()));
                 aeSolver.restart(jacobianAge > 0);
                 nRejected++;
+                nRejectedSteps++;
+                if (statistics != null) statistics.stepRejected();
                 error = 10; // also one loop, no other means
             }
 // TODO: to do something
         } while (error > 1);
         commitStepResults();
+        if (statistics != null) statistics.stepFinished(currentStepSize);
         return currentStepSize;
     }
 
@@ -213,7 +240,8 @@ public class Radau5Adaptive extends Radau5Light implements ODEAdaptiveSolver{
          */
         public ErrorSecondApproximationEquation getSecondErrorAproximationEquation(double [] errorApproximation) {
             if (errorSecondApproximationEquation == null)
-                errorSecondApproximationEquation = new ErrorSecondApproximationEquation(numEqn, errorApproximation);
+                errorSecondApproximationEquation = new ErrorSecondApproximationEquation(numEqn);
+            errorSecondApproximationEquation.errorApproximation = errorApproximation;
             return errorSecondApproximationEquation;
         }
 
@@ -224,16 +252,16 @@ public class Radau5Adaptive extends Radau5Light implements ODEAdaptiveSolver{
          */
         private class ErrorSecondApproximationEquation implements LAEquation{
             double [] tmpRate;
-            double [] errorApproximation;
+            double [] tmpState;
+            double [] errorApproximation; // first approximation error of the current step
 
             /**
              * Constructs described below linear algebraic equation
              * @param numEqn numer of the components in the error vector
-             * @param errorApproximation first approximation error
              */
-            public ErrorSecondApproximationEquation(int numEqn, double [] errorApproximation) {
+            public ErrorSecondApproximationEquation(int numEqn) {
                 tmpRate = new double [numEqn];
-                this.errorApproximation = errorApproximation;
+                tmpState = new double [numEqn];
             }
 
             /**
@@ -259,10 +287,10 @@ public class Radau5Adaptive extends Radau5Light implements ODEAdaptiveSolver{
             public void getVector(double[] vector) {
                 if (temporary == null) System.err.println("Inner's getVector should be invoked earlier than that one");
                 for (int i = 0; i < numEqn; i++) {
-                    errorApproximation[i] += state[i];
+                    tmpState[i] = state[i] + errorApproximation[i];
                 }
 // TODO: develop exception to throw everytime getRate fault
-                ode.getRate(errorApproximation, tmpRate);
+                evaluateRate(tmpState, tmpRate);
                 for(int i = 0; i < numEqn; i++) {
                     vector[i] = temporary[i] + tmpRate[i];
                 }
@@ -361,6 +389,92 @@ public class Radau5Adaptive extends Radau5Light implements ODEAdaptiveSolver{
         return tolerance;
     }
 
+    /**
+     * Sets the Jacobian reuse threshold. The Jacobian is evaluated again after an accepted
+     * step only if the convergence rate of the simplified Newton iterations exceeded the
+     * threshold. Larger values save Jacobian evaluations at the cost of slower convergence.
+     * @param threshold the threshold, 0.001 by default
+     */
+    public void setJacobianReuseThreshold(double threshold) {
+        jacobianReuseThreshold = threshold;
+    }
+
+    public double getJacobianReuseThreshold() {
+        return jacobianReuseThreshold;
+    }
+
+    /**
+     * Sets the band of step size ratios for which the step size and the LU decompositions
+     * are kept after an accepted step. The band applies only if the Jacobian is kept too.
+     * @param min the smallest ratio of the proposed and the current step size, 1.0 by default
+     * @param max the largest ratio of the proposed and the current step size, 1.2 by default
+     */
+    public void setStepSizeRatioBand(double min, double max) {
+        if (min > max) {
+            throw new IllegalArgumentException("Empty step size ratio band: [" + min + ", " + max + "]");
+        }
+        minStepSizeRatio = min;
+        maxStepSizeRatio = max;
+    }
+
+    public double getMinStepSizeRatio() {
+        return minStepSizeRatio;
+    }
+
+    public double getMaxStepSizeRatio() {
+        return maxStepSizeRatio;
+    }
+
+    /**
+     * Gets the number of accepted steps.
+     * @return the number of accepted steps
+     */
+    public int getNumberOfAcceptedSteps() {
+        return nAcceptedSteps;
+    }
+
+    /**
+     * Gets the number of rejected step attempts, either because the error estimate
+     * was too large or because the Newton iterations did not converge.
+     * @return the number of rejected steps
+     */
+    public int getNumberOfRejectedSteps() {
+        return nRejectedSteps;
+    }
+
+    /**
+     * Gets the number of rate evaluations including those of finite difference Jacobians.
+     * @return the number of rate evaluations
+     */
+    public int getNumberOfRateEvaluations() {
+        return nRateEvaluations;
+    }
+
+    /**
+     * Gets the number of Jacobian evaluations, analytic or by finite differences.
+     * @return the number of Jacobian evaluations
+     */
+    public int getNumberOfJacobianEvaluations() {
+        return nJacobianEvaluations;
+    }
+
+    /**
+     * Gets the number of LU decompositions. The real and the complex system are
+     * counted as one decomposition.
+     * @return the number of LU decompositions
+     */
+    public int getNumberOfDecompositions() {
+        return ((IRKSimplifiedNewtonStep) aeSolver).getNumberOfDecompositions();
+    }
+
+    /**
+     * Gets the number of simplified Newton iterations.
+     * @return the number of Newton iterations
+     */
+    public int getNumberOfNewtonIterations() {
+        return ((IRKSimplifiedNewtonStep) aeSolver).getNumberOfIterations();
+    }
+
     /**
      * Gets the error code.
      * Error codes:
@@ -373,4 +487,52 @@ public class Radau5Adaptive extends Radau5Light implements ODEAdaptiveSolver{
       return error_code;
     }
 
+    /**
+     * Returns a serializer that saves the step size control and the state of the
+     * simplified Newton iterations in a checkpoint.
+     * @return the serializer
+     */
+    public static ODESolverCheckpoint.StateSerializer getSerializer() {
+        return new Serializer();
+    }
+
+    /**
+     * A class to save and load the internal state of a Radau5Adaptive solver.
+     */
+    static class Serializer extends Radau5Light.Serializer {
+        public void saveState(DataOutput out, ODESolver obj) throws IOException {
+            super.saveState(out, obj);
+            Radau5Adaptive solver = (Radau5Adaptive) obj;
+            out.writeDouble(solver.currentStepSize);
+            out.writeDouble(solver.tolerance);
+            out.writeInt(solver.nRejected);
+            out.writeInt(solver.nAcceptedSteps);
+            out.writeInt(solver.nRejectedSteps);
+            out.writeDouble(solver.jacobianReuseThreshold);
+            out.writeDouble(solver.minStepSizeRatio);
+            out.writeDouble(solver.maxStepSizeRatio);
+            out.writeDouble(solver.hacc);
+            out.writeDouble(solver.erracc);
+            out.writeInt(solver.error_code);
+            ODESolverCheckpoint.writeArray(out, solver.scal);
+        }
+
+        public void loadState(DataInput in, ODESolver obj) throws IOException {
+            super.loadState(in, obj);
+            Radau5Adaptive solver = (Radau5Adaptive) obj;
+            solver.currentStepSize = in.readDouble();
+            solver.tolerance = in.readDouble();
+            solver.nRejected = in.readInt();
+            solver.nAcceptedSteps = in.readInt();
+            solver.nRejectedSteps = in.readInt();
+            solver.jacobianReuseThreshold = in.readDouble();
+            solver.minStepSizeRatio = in.readDouble();
+            solver.maxStepSizeRatio = in.readDouble();
+            solver.hacc = in.readDouble();
+            solver.erracc = in.readDouble();
+            solver.error_code = in.readInt();
+            ODESolverCheckpoint.readArray(in, solver.scal);
+        }
+    }
+
 }
@@ -1,7 +1,16 @@
 package org.opensourcephysics.ode.IRK;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
 import org.opensourcephysics.numerics.ODE;
 import org.opensourcephysics.numerics.ODESolver;
+import org.opensourcephysics.numerics.ODESolverCheckpoint;
+import org.opensourcephysics.numerics.ODESolverStatistics;
+import org.opensourcephysics.numerics.ODESolverStats;
+import org.opensourcephysics.numerics.ODEWithJacobian;
+import org.opensourcephysics.numerics.ODEWithJacobianPattern;
 
 /**
  * Numerical solution of a stiffsystem of first order ordinary differential
@@ -10,6 +19,11 @@ import org.opensourcephysics.numerics.ODESolver;
  * it can be used only as simplest ODE solver in cases when error is
  * of no importance or as base for the solvers with error control.<br>
  *
+ * The Jacobian is approximated by finite differences unless the ODE implements
+ * <code>ODEWithJacobian</code>. If the ODE implements <code>ODEWithJacobianPattern</code>
+ * the linear systems are solved by banded or sparse LU decompositions and the finite
+ * difference Jacobian perturbs groups of independent columns at once.<br>
+ *
  * The code is transferred from the Fortran sources.
  * authors of original Fortran code:
  *    E. Hairer and G. Wanner
@@ -25,17 +39,21 @@ import org.opensourcephysics.numerics.ODESolver;
  *    Springer-Verlag 1991, second edition 1996.
  * @author Andrei Goussev
  */
-public class Radau5Light implements ODESolver{
+public class Radau5Light implements ODESolver, ODESolverStats{
     protected ODE ode;
 
     protected double stepSize = 1e-6;
     protected int numEqn;
     protected int jacobianAge = 0;
+    protected int nRateEvaluations = 0;
+    protected int nJacobianEvaluations = 0;
     private int nSteps = 0;
+    protected ODESolverStatistics statistics; // null unless statistics are enabled
 
     protected double [] state;
     protected double [] rate;
     protected double [][] intermediateStagesIncrement;
+    protected SparsityPattern jacobianPattern; // null if the Jacobian is dense
 
     protected AlgebraicEquationSimpleSolver aeSolver;
     protected static int maxNewtonIterations = 7;
@@ -51,6 +69,9 @@ public class Radau5Light implements ODESolver{
         numEqn = state.length;
         rate = new double [numEqn];
         intermediateStagesIncrement = new double[3][numEqn];
+        if (ode instanceof ODEWithJacobianPattern) {
+            jacobianPattern = new SparsityPattern(((ODEWithJacobianPattern) ode).getJacobianPattern());
+        }
         aeSolver = getInnerSolver(new DifferenceSchemeEquation(numEqn));
     }
 
@@ -85,6 +106,7 @@ public class Radau5Light implements ODESolver{
 
         private double [] someState;
         private double [] someRate;
+        private double [] delta;
 // TODO: uRound ??? to do something
         double uRound = 2.220446049250313E-16; // (2^52)^(-1)
 
@@ -146,7 +168,15 @@ public class Radau5Light implements ODESolver{
         public DifferenceSchemeEquation(int numEqn) {
             someState = new double[numEqn];
             someRate = new double[numEqn];
+            delta = new double[numEqn];
+        }
 
+        /**
+         * Gets the nonzero structure of the jacobian.
+         * @return the pattern or null if the jacobian is dense
+         */
+        public SparsityPattern getJacobianPattern() {
+            return jacobianPattern;
         }
 
         /**
@@ -185,28 +215,70 @@ public class Radau5Light implements ODESolver{
         public void evaluateNonLinearComponent(double[] freeVariable, double[] functionValue) {
             for (int i = 0; i < numEqn; i++)
                 someState[i] = state[i] + freeVariable[i];
-            ode.getRate(someState, functionValue);
+            evaluateRate(someState, functionValue);
         }
 
          /**
           * Evaluates the jacobian for the algebraic equations systems solver. Jacobian matrix
           * esitmates for the moments of the model time concuiding the steps, even in case if
-          * the delta within the step size persists
+          * the delta within the step size persists. The jacobian is stored in the ragged layout
+          * of the pattern if the ODE has a jacobian pattern.
           * @param freeVariable the arguments vector
           * @param jacobian the result jacobian matrix
           */
         public void evaluateNonLinearComponentJacobian(double[] freeVariable, double[][] jacobian) {
-            System.arraycopy(state, 0, someState, 0, numEqn);
-            for(int i = 0; i < numEqn; i++) {
-                double delta = Math.sqrt(uRound * Math.max(1.0e-5, Math.abs(state[i])));
-                someState[i] += delta;
-                ode.getRate(someState, someRate);
-                someState[i] -= delta;
-                for(int j = 0; j < numEqn; j++) {
-                    jacobian[j][i] = (someRate[j] - rate[j]) / delta;
+            if (ode instanceof ODEWithJacobian) {
+                if (jacobianPattern != null) {
+                    // the diagonal may have been appended to the user's pattern
+                    int[] diagonal = jacobianPattern.getDiagonal();
+                    for (int i = 0; i < numEqn; i++) jacobian[i][diagonal[i]] = 0;
+                }
+                ((ODEWithJacobian) ode).getJacobian(state, jacobian);
+            } else if (jacobianPattern != null) {
+                evaluateGroupedJacobian(jacobian);
+            } else {
+                System.arraycopy(state, 0, someState, 0, numEqn);
+                for(int i = 0; i < numEqn; i++) {
+                    double delta = Math.sqrt(uRound * Math.max(1.0e-5, Math.abs(state[i])));
+                    someState[i] += delta;
+                    evaluateRate(someState, someRate);
+                    someState[i] -= delta;
+                    for(int j = 0; j < numEqn; j++) {
+                        jacobian[j][i] = (someRate[j] - rate[j]) / delta;
+                    }
                 }
             }
             jacobianAge = 0;
+            nJacobianEvaluations++;
+        }
+
+        /**
+         * Approximates a sparse jacobian by finite differences. All columns of a group
+         * are perturbed at once because they have no nonzero row in common.
+         * @param jacobian the result jacobian matrix in the ragged layout of the pattern
+         */
+        private void evaluateGroupedJacobian(double[][] jacobian) {
+            System.arraycopy(state, 0, someState, 0, numEqn);
+            int[][] groups = jacobianPattern.columnGroups;
+            for (int g = 0; g < groups.length; g++) {
+                int[] group = groups[g];
+                for (int n = 0; n < group.length; n++) {
+                    int j = group[n];
+                    delta[j] = Math.sqrt(uRound * Math.max(1.0e-5, Math.abs(state[j])));
+                    someState[j] += delta[j];
+                }
+                evaluateRate(someState, someRate);
+                for (int n = 0; n < group.length; n++) {
+                    int j = group[n];
+                    someState[j] = state[j];
+                    int[] rows = jacobianPattern.columnRows[j];
+                    int[] slots = jacobianPattern.columnSlots[j];
+                    for (int p = 0; p < rows.length; p++) {
+                        int i = rows[p];
+                        jacobian[i][slots[p]] = (someRate[i] - rate[i]) / delta[j];
+                    }
+                }
+            }
         }
 
         public void directChangeOfVariables(double[][] freeVariable, double[][] substitutedVariable) {
@@ -228,11 +300,27 @@ public class Radau5Light implements ODESolver{
         }
     };
 
+    /**
+     * Evaluates the rate of the ODE and counts the evaluation.
+     * @param someState the state
+     * @param someRate the result rate
+     */
+    protected void evaluateRate(double[] someState, double[] someRate) {
+        nRateEvaluations++;
+        if (statistics == null) {
+            ode.getRate(someState, someRate);
+        } else {
+            long start = statistics.rateStarted();
+            ode.getRate(someState, someRate);
+            statistics.rateFinished(start);
+        }
+    }
+
     /**
      * Before the step performing actions
      */
     protected void preStepPreparations(){
-        ode.getRate(state, rate);
+        evaluateRate(state, rate);
     }
     /**
      * Calculates the incremet to the intermediate stages of difference
@@ -260,9 +348,12 @@ public class Radau5Light implements ODESolver{
      * @return the taken step size value
      */
     public double step() {
+        if (statistics != null) statistics.stepStarted();
         preStepPreparations();
+        performStep();
         commitStepResults();
         aeSolver.restart((++nSteps)%4 == 0);
+        if (statistics != null) statistics.stepFinished(stepSize);
         return stepSize;
     }
 
@@ -276,4 +367,60 @@ public class Radau5Light implements ODESolver{
 
     public void initialize(double stepSize) {
     }
+
+    /**
+     * Enables or disables the collection of statistics. The rate evaluations of finite
+     * difference Jacobians are included; the time of analytic Jacobians is solver time.
+     * @param enabled true to collect statistics
+     */
+    public void setStatisticsEnabled(boolean enabled) {
+        if (enabled == (statistics != null)) return;
+        statistics = enabled ? new ODESolverStatistics() : null;
+    }
+
+    /**
+     * Gets the statistics.
+     * @return the statistics or null if they are disabled
+     */
+    public ODESolverStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * Returns a serializer that saves the step size, the stages of the last step and the
+     * state of the simplified Newton iterations in a checkpoint.
+     * @return the serializer
+     */
+    public static ODESolverCheckpoint.StateSerializer getSerializer() {
+        return new Serializer();
+    }
+
+    /**
+     * A class to save and load the internal state of a Radau5Light solver.
+     */
+    static class Serializer implements ODESolverCheckpoint.StateSerializer {
+        public void saveState(DataOutput out, ODESolver obj) throws IOException {
+            Radau5Light solver = (Radau5Light) obj;
+            out.writeDouble(solver.stepSize);
+            out.writeInt(solver.jacobianAge);
+            out.writeInt(solver.nRateEvaluations);
+            out.writeInt(solver.nJacobianEvaluations);
+            out.writeInt(solver.nSteps);
+            ODESolverCheckpoint.writeArray(out, solver.intermediateStagesIncrement);
+            if (solver.aeSolver instanceof IRKSimplifiedNewtonStep)
+                ((IRKSimplifiedNewtonStep) solver.aeSolver).saveState(out);
+        }
+
+        public void loadState(DataInput in, ODESolver obj) throws IOException {
+            Radau5Light solver = (Radau5Light) obj;
+            solver.stepSize = in.readDouble();
+            solver.jacobianAge = in.readInt();
+            solver.nRateEvaluations = in.readInt();
+            solver.nJacobianEvaluations = in.readInt();
+            solver.nSteps = in.readInt();
+            ODESolverCheckpoint.readArray(in, solver.intermediateStagesIncrement);
+            if (solver.aeSolver instanceof IRKSimplifiedNewtonStep)
+                ((IRKSimplifiedNewtonStep) solver.aeSolver).loadState(in);
+        }
+    }
 }
@@ -0,0 +1,223 @@
+package org.opensourcephysics.ode.IRK;
+
+/**
+ * LU decomposition with partial pivoting of a general sparse matrix.
+ *
+ * The matrix is factored column by column with the left looking algorithm of Gilbert and
+ * Peierls so that the work is proportional to the number of floating point operations on
+ * nonzero elements. A diagonal pivot is preferred whenever it is not much smaller than the
+ * largest candidate because this keeps the fill-in of the diagonally dominant Newton matrices
+ * of implicit methods small. The columns are not reordered.<br>
+ *
+ * The storage of the factors is reused by subsequent decompositions of matrices with the
+ * same pattern.
+ *
+ * Reference:
+ *    T. A. Davis, Direct Methods for Sparse Linear Systems, SIAM 2006.
+ */
+public class SparseLUDecomposition {
+    private static final double pivotTolerance = 0.1;
+    private int n;
+    private int[][] positions;  // position of each element of the ragged input in the column storage
+    private int[] Ap, Ai;       // the matrix in compressed column storage
+    private double[] Ax;
+    private int[] Lp, Li, Up, Ui;
+    private double[] Lx, Ux;
+    private int[] pinv;         // pinv[i] is the pivot step at which row i has been chosen
+    private double[] x;
+    private int[] xi;           // depth first search stack and the reach of a column
+    private int[] pstack;
+    private int[] mark;
+    private int markValue = 0;
+
+    /**
+     * Constructs the decomposition for matrices with a given pattern.
+     * @param columns the column indices of the nonzero elements of every row
+     */
+    public SparseLUDecomposition(int[][] columns) {
+        n = columns.length;
+        Ap = new int[n + 1];
+        for (int i = 0; i < n; i++)
+            for (int k = 0; k < columns[i].length; k++) Ap[columns[i][k] + 1]++;
+        for (int j = 0; j < n; j++) Ap[j + 1] += Ap[j];
+        int nz = Ap[n];
+        Ai = new int[nz];
+        Ax = new double[nz];
+        int[] next = new int[n];
+        System.arraycopy(Ap, 0, next, 0, n);
+        positions = new int[n][];
+        for (int i = 0; i < n; i++) {
+            positions[i] = new int[columns[i].length];
+            for (int k = 0; k < columns[i].length; k++) {
+                int p = next[columns[i][k]]++;
+                Ai[p] = i;
+                positions[i][k] = p;
+            }
+        }
+        Lp = new int[n + 1];
+        Up = new int[n + 1];
+        Li = new int[4 * nz + n];
+        Lx = new double[Li.length];
+        Ui = new int[4 * nz + n];
+        Ux = new double[Ui.length];
+        pinv = new int[n];
+        x = new double[n];
+        xi = new int[n];
+        pstack = new int[n];
+        mark = new int[n];
+    }
+
+    /**
+     * Performs the LU decomposition.
+     * @param values the elements of the matrix stored in the ragged layout of the pattern
+     * @return -1 if the matrix is nonsingular, or k if it is found to be singular at stage k
+     */
+    public int decompose(double[][] values) {
+        for (int i = 0; i < n; i++)
+            for (int k = 0; k < values[i].length; k++) Ax[positions[i][k]] = values[i][k];
+        for (int i = 0; i < n; i++) pinv[i] = -1;
+        int lnz = 0, unz = 0;
+        for (int k = 0; k < n; k++) {
+            Lp[k] = lnz;
+            Up[k] = unz;
+            if (lnz + n > Li.length) growL(2 * Li.length + n);
+            if (unz + n > Ui.length) growU(2 * Ui.length + n);
+            int top = spsolve(k);
+            int ipiv = -1;
+            double a = -1;
+            for (int p = top; p < n; p++) {
+                int i = xi[p];
+                if (pinv[i] < 0) {
+                    double t = Math.abs(x[i]);
+                    if (t > a) {
+                        a = t;
+                        ipiv = i;
+                    }
+                } else {
+                    Ui[unz] = pinv[i];
+                    Ux[unz++] = x[i];
+                }
+            }
+            if ((ipiv == -1) || (a <= 0)) {
+                for (int p = top; p < n; p++) x[xi[p]] = 0;
+                return k;
+            }
+            if ((pinv[k] < 0) && (Math.abs(x[k]) >= a * pivotTolerance)) ipiv = k;
+            double pivot = x[ipiv];
+            Ui[unz] = k;
+            Ux[unz++] = pivot;
+            pinv[ipiv] = k;
+            Li[lnz] = ipiv;
+            Lx[lnz++] = 1;
+            for (int p = top; p < n; p++) {
+                int i = xi[p];
+                if (pinv[i] < 0) {
+                    Li[lnz] = i;
+                    Lx[lnz++] = x[i] / pivot;
+                }
+                x[i] = 0;
+            }
+        }
+        Lp[n] = lnz;
+        Up[n] = unz;
+        for (int p = 0; p < lnz; p++) Li[p] = pinv[Li[p]];
+        return -1;
+    }
+
+    /**
+     * Solves the system of equations using the decomposition.
+     * @param b the right hand vector that is replaced by the solution
+     */
+    public void solve(double[] b) {
+        for (int i = 0; i < n; i++) x[pinv[i]] = b[i];
+        for (int j = 0; j < n; j++) {
+            double xj = x[j];
+            if (xj == 0) continue;
+            for (int p = Lp[j] + 1; p < Lp[j + 1]; p++) x[Li[p]] -= Lx[p] * xj;
+        }
+        for (int j = n - 1; j >= 0; j--) {
+            x[j] /= Ux[Up[j + 1] - 1];
+            double xj = x[j];
+            if (xj == 0) continue;
+            for (int p = Up[j]; p < Up[j + 1] - 1; p++) x[Ui[p]] -= Ux[p] * xj;
+        }
+        System.arraycopy(x, 0, b, 0, n);
+        for (int i = 0; i < n; i++) x[i] = 0;
+    }
+
+    /**
+     * Solves L x = A(:,k) for the current column.
+     * @return the top of the stack that holds the nonzero pattern of x
+     */
+    private int spsolve(int k) {
+        int top = reach(k);
+        for (int p = Ap[k]; p < Ap[k + 1]; p++) x[Ai[p]] = Ax[p];
+        for (int px = top; px < n; px++) {
+            int j = xi[px];
+            int J = pinv[j];
+            if (J < 0) continue;
+            double xj = x[j];  // the diagonal of L is one
+            for (int p = Lp[J] + 1; p < Lp[J + 1]; p++) x[Li[p]] -= Lx[p] * xj;
+        }
+        return top;
+    }
+
+    /**
+     * Finds the rows that are reachable from the nonzeros of A(:,k) in the graph of L.
+     * @return the top of the stack, the rows are xi[top..n-1] in topological order
+     */
+    private int reach(int k) {
+        markValue++;
+        int top = n;
+        for (int p = Ap[k]; p < Ap[k + 1]; p++)
+            if (mark[Ai[p]] != markValue) top = dfs(Ai[p], top);
+        return top;
+    }
+
+    private int dfs(int j, int top) {
+        // the stack grows from the bottom of xi while the result grows from the top
+        int head = 0;
+        xi[0] = j;
+        while (head >= 0) {
+            j = xi[head];
+            int jnew = pinv[j];
+            if (mark[j] != markValue) {
+                mark[j] = markValue;
+                pstack[head] = (jnew < 0) ? 0 : Lp[jnew] + 1;
+            }
+            boolean done = true;
+            int p2 = (jnew < 0) ? 0 : Lp[jnew + 1];
+            for (int p = pstack[head]; p < p2; p++) {
+                int i = Li[p];
+                if (mark[i] == markValue) continue;
+                pstack[head] = p + 1;
+                xi[++head] = i;
+                done = false;
+                break;
+            }
+            if (done) {
+                head--;
+                xi[--top] = j;
+            }
+        }
+        return top;
+    }
+
+    private void growL(int size) {
+        int[] i = new int[size];
+        double[] v = new double[size];
+        System.arraycopy(Li, 0, i, 0, Li.length);
+        System.arraycopy(Lx, 0, v, 0, Lx.length);
+        Li = i;
+        Lx = v;
+    }
+
+    private void growU(int size) {
+        int[] i = new int[size];
+        double[] v = new double[size];
+        System.arraycopy(Ui, 0, i, 0, Ui.length);
+        System.arraycopy(Ux, 0, v, 0, Ux.length);
+        Ui = i;
+        Ux = v;
+    }
+}
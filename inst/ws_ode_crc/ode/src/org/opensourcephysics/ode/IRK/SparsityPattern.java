@@ -0,0 +1,202 @@
+package org.opensourcephysics.ode.IRK;
+
+import java.util.Arrays;
+
+/**
+ * Nonzero structure of the Jacobian matrix of a system of ordinary differential equations.
+ *
+ * The pattern lists the column indices of the nonzero elements of every row. The diagonal
+ * element is appended to a row if it is missing because the Newton matrices of implicit
+ * methods always have a nonzero diagonal. Matrices with this structure are stored row by row
+ * in ragged arrays: <code>values[i][k]</code> is the element in row <code>i</code> and column
+ * <code>getColumns()[i][k]</code>.<br>
+ *
+ * The pattern is analysed once. The lower and upper bandwidths decide whether the banded or
+ * the general sparse LU decomposition is used and the columns are split into groups of
+ * structurally orthogonal columns (Curtis, Powell and Reid) so that a finite difference
+ * Jacobian costs one rate evaluation per group instead of one per column.
+ */
+public class SparsityPattern {
+    private int numEqn;
+    private int[][] columns;
+    private int[] diagonal;
+    private int lowerBandwidth = 0;
+    private int upperBandwidth = 0;
+    private int maxRowLength = 0;
+    private int nonzeros = 0;
+    int[][] columnRows;
+    int[][] columnSlots;
+    int[][] columnGroups;
+
+    /**
+     * Constructs the pattern.
+     * @param pattern the distinct column indices of the nonzero elements of every row
+     */
+    public SparsityPattern(int[][] pattern) {
+        numEqn = pattern.length;
+        columns = new int[numEqn][];
+        diagonal = new int[numEqn];
+        int[] count = new int[numEqn];
+        for (int i = 0; i < numEqn; i++) {
+            int len = pattern[i].length;
+            int d = -1;
+            for (int k = 0; k < len; k++)
+                if (pattern[i][k] == i) d = k;
+            if (d < 0) {
+                columns[i] = new int[len + 1];
+                System.arraycopy(pattern[i], 0, columns[i], 0, len);
+                columns[i][len] = i;
+                d = len;
+            } else {
+                columns[i] = pattern[i].clone();
+            }
+            diagonal[i] = d;
+            maxRowLength = Math.max(maxRowLength, columns[i].length);
+            for (int k = 0; k < columns[i].length; k++) {
+                int j = columns[i][k];
+                if ((j < 0) || (j >= numEqn)) {
+                    throw new IllegalArgumentException("Column index out of range in row " + i + ": " + j);
+                }
+                lowerBandwidth = Math.max(lowerBandwidth, i - j);
+                upperBandwidth = Math.max(upperBandwidth, j - i);
+                count[j]++;
+                nonzeros++;
+            }
+        }
+        columnRows = new int[numEqn][];
+        columnSlots = new int[numEqn][];
+        for (int j = 0; j < numEqn; j++) {
+            columnRows[j] = new int[count[j]];
+            columnSlots[j] = new int[count[j]];
+            count[j] = 0;
+        }
+        for (int i = 0; i < numEqn; i++)
+            for (int k = 0; k < columns[i].length; k++) {
+                int j = columns[i][k];
+                columnRows[j][count[j]] = i;
+                columnSlots[j][count[j]] = k;
+                count[j]++;
+            }
+        groupColumns();
+    }
+
+    /**
+     * Colors the columns greedily so that columns of the same color have no row in common.
+     */
+    private void groupColumns() {
+        int[] color = new int[numEqn];
+        int[] forbidden = new int[numEqn];
+        Arrays.fill(color, -1);
+        Arrays.fill(forbidden, -1);
+        int numColors = 0;
+        for (int j = 0; j < numEqn; j++) {
+            for (int p = 0; p < columnRows[j].length; p++) {
+                int[] row = columns[columnRows[j][p]];
+                for (int k = 0; k < row.length; k++)
+                    if (color[row[k]] >= 0) forbidden[color[row[k]]] = j;
+            }
+            int c = 0;
+            while ((c < numColors) && (forbidden[c] == j)) c++;
+            color[j] = c;
+            if (c == numColors) numColors++;
+        }
+        int[] size = new int[numColors];
+        for (int j = 0; j < numEqn; j++) size[color[j]]++;
+        columnGroups = new int[numColors][];
+        for (int c = 0; c < numColors; c++) {
+            columnGroups[c] = new int[size[c]];
+            size[c] = 0;
+        }
+        for (int j = 0; j < numEqn; j++) columnGroups[color[j]][size[color[j]]++] = j;
+    }
+
+    /**
+     * Allocates a ragged array that holds a matrix with this pattern.
+     * @return the array
+     */
+    public double[][] createMatrix() {
+        double[][] matrix = new double[numEqn][];
+        for (int i = 0; i < numEqn; i++) matrix[i] = new double[columns[i].length];
+        return matrix;
+    }
+
+    /**
+     * Gets the column indices of the nonzero elements of every row including the diagonal.
+     * @return the column indices
+     */
+    public int[][] getColumns() {
+        return columns;
+    }
+
+    /**
+     * Gets the position of the diagonal element in every row.
+     * @return the positions
+     */
+    public int[] getDiagonal() {
+        return diagonal;
+    }
+
+    public int getNumEqn() {
+        return numEqn;
+    }
+
+    public int getLowerBandwidth() {
+        return lowerBandwidth;
+    }
+
+    public int getUpperBandwidth() {
+        return upperBandwidth;
+    }
+
+    /**
+     * Gets the number of nonzero elements including the diagonal.
+     * @return the number of nonzero elements
+     */
+    public int getNonzeros() {
+        return nonzeros;
+    }
+
+    /**
+     * Gets the number of rate evaluations needed for a finite difference Jacobian.
+     * @return the number of groups of structurally orthogonal columns
+     */
+    public int getNumberOfColumnGroups() {
+        return columnGroups.length;
+    }
+
+    /**
+     * Gets the groups of structurally orthogonal columns. A finite difference Jacobian perturbs
+     * all columns of a group at once.
+     * @return the column indices of every group
+     */
+    public int[][] getColumnGroups() {
+        return columnGroups;
+    }
+
+    /**
+     * Gets the rows of the nonzero elements of every column.
+     * @return the row indices
+     */
+    public int[][] getColumnRows() {
+        return columnRows;
+    }
+
+    /**
+     * Gets the positions of the nonzero elements of every column in the ragged rows, i.e., the
+     * element in column j and row <code>getColumnRows()[j][p]</code> is stored at position
+     * <code>getColumnSlots()[j][p]</code> of its row.
+     * @return the positions
+     */
+    public int[][] getColumnSlots() {
+        return columnSlots;
+    }
+
+    /**
+     * Tells if the banded LU decomposition should be used. The band is chosen if its width,
+     * including the fill-in caused by pivoting, is not much larger than the longest row.
+     * @return true if the matrix should be factored as a band matrix
+     */
+    public boolean isBanded() {
+        return 2 * lowerBandwidth + upperBandwidth + 1 <= 4 * maxRowLength;
+    }
+}
@@ -0,0 +1,486 @@
+package org.opensourcephysics.ode;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import org.opensourcephysics.numerics.*;
+
+/**
+ * Title:        LinearMultistepSolver
+ * Description:  Base class of the variable order, variable step size linear multistep solvers.
+ *
+ * The solvers keep the vectors of the last steps in a ring buffer of primitive arrays together with the
+ * times of the steps.  The coefficients of a step are computed from the actual times of the stored vectors,
+ * so the step size can change after every step without a restart.  The first step is taken at order one
+ * with a step size that is estimated from the initial rate, and the order follows the error estimates of
+ * the neighbouring orders as the history fills.
+ *
+ * The error of a step is the root mean square of the estimated errors relative to
+ * tolerance + tolerance*|state|, as in Dopri5.  Call initialize after changing the state of the ODE
+ * because the history refers to the old state.
+ *
+ * @version 1.0
+ */
+public abstract class LinearMultistepSolver implements ODEAdaptiveSolver, ODESolverStats {
+  static final int MAX_ITERATIONS = 500;
+  static final double MAX_STEP_RATIO = 2; // larger ratios may make the variable step formulas unstable
+  static final double MIN_STEP_RATIO = 0.2;
+  // Gauss-Legendre nodes and weights on [0, 1], exact for polynomials up to degree 15
+  static final double[] GAUSS_NODES = new double[8];
+  static final double[] GAUSS_WEIGHTS = new double[8];
+
+  static {
+    double[] x = {0.1834346424956498, 0.5255324099163290, 0.7966664774136267, 0.9602898564975363};
+    double[] w = {0.3626837833783620, 0.3137066458778873, 0.2223810344533745, 0.1012285362903763};
+    for(int i = 0; i<4; i++) {
+      GAUSS_NODES[2*i] = 0.5*(1-x[i]);
+      GAUSS_NODES[2*i+1] = 0.5*(1+x[i]);
+      GAUSS_WEIGHTS[2*i] = GAUSS_WEIGHTS[2*i+1] = 0.5*w[i];
+    }
+  }
+
+  protected ODE ode;
+  protected ODESolverStatistics statistics; // null unless statistics are enabled
+  protected int numEqn = 0;
+  protected double[] state;
+  protected double[] newState;            // the result of the attempted step
+  protected double[] rate;                // the rate at the start of the integration
+  protected double tolerance = 1.0e-6;
+  protected double stepSize = 0.1;
+  protected double takenStepSize = 0;
+  protected int order = 1;
+  protected int maxOrder;
+  /**
+   * Normalized error estimates of the attempted step at order-1, order and order+1.  An estimate is NaN if
+   * the history is too short for it.
+   */
+  protected double[] errors = new double[3];
+  protected double time = 0;              // the time of the state since the solver has been initialized
+  private int stepsAtOrder = 0;
+  private int errorCode = ODEAdaptiveSolver.NO_ERROR;
+  // the history ring buffer
+  private double[][] history;
+  private double[] times;
+  private int head = 0;
+  private int size = 0;
+
+  /**
+   * Constructs the solver.  The subclass initializes the solver when its fields are set.
+   *
+   * @param ode the system of differential equations
+   * @param maxOrder the highest order of the method
+   * @param historyLength the number of vectors that are kept in the history
+   */
+  protected LinearMultistepSolver(ODE ode, int maxOrder, int historyLength) {
+    this.ode = ode;
+    this.maxOrder = maxOrder;
+    times = new double[historyLength];
+    history = new double[historyLength][0];
+  }
+
+  /**
+   * Initializes the solver and clears the history.  The next step starts at order one.
+   *
+   * @param stepSize the largest size of the first step
+   */
+  public void initialize(double stepSize) {
+    this.stepSize = stepSize;
+    state = ode.getState();
+    if(state.length!=numEqn) {
+      numEqn = state.length;
+      newState = new double[numEqn];
+      rate = new double[numEqn];
+      for(int j = 0; j<history.length; j++) {
+        history[j] = new double[numEqn];
+      }
+      allocate();
+    }
+    size = 0;
+    time = 0;
+    takenStepSize = 0;
+    order = 1;
+    stepsAtOrder = 0;
+  }
+
+  /**
+   * Allocates the work arrays of the subclass after the number of equations has changed.
+   */
+  protected abstract void allocate();
+
+  /**
+   * Stores the first vector of the history.  The rate at the initial state is in the rate array.
+   */
+  protected abstract void start();
+
+  /**
+   * Attempts a step from the state.  The result is stored in newState and the normalized error estimates
+   * are stored in errors.  The order is not larger than the history allows.
+   *
+   * @param h the step size
+   * @return false if the step failed for other reasons than its error, e.g., a Newton iteration diverged
+   */
+  protected abstract boolean attempt(double h);
+
+  /**
+   * Stores the vector of the accepted step in the history.  The state already holds the new state and the
+   * time has been advanced.
+   */
+  protected abstract void accept();
+
+  /**
+   * Steps the differential equations.  The step is repeated with a smaller step size until its estimated
+   * error is within the tolerance.  The order and the size of the next step are chosen from the error
+   * estimates.
+   *
+   * @return the step size that was taken
+   */
+  public double step() {
+    errorCode = ODEAdaptiveSolver.NO_ERROR;
+    if(ode.getState().length!=numEqn) {
+      initialize(stepSize);
+    }
+    if(statistics!=null) {
+      statistics.stepStarted();
+    }
+    if(size==0) {
+      stepSize = getInitialStepSize(stepSize);
+      start();
+    }
+    boolean accepted = false;
+    double h = stepSize;
+    for(int iterations = 0; iterations<MAX_ITERATIONS; iterations++) {
+      h = stepSize;
+      boolean converged = attempt(h)&&!Double.isNaN(errors[1]);
+      if(converged&&(errors[1]<=1)) {
+        accepted = true;
+        break;
+      }
+      if(statistics!=null) {
+        statistics.stepRejected();
+      }
+      if(!converged) {
+        stepSize = 0.25*h;
+      } else {
+        stepSize = h*Math.max(MIN_STEP_RATIO, stepRatio(errors[1], order));
+        if((iterations>0)&&(order>1)) { // repeated rejections, the higher derivatives are unreliable
+          setOrder(order-1);
+        }
+      }
+    }
+    if(!accepted) { // the last attempt is taken
+      if(statistics!=null) {
+        statistics.stepFailed();
+      }
+      System.err.println("Method did not converge"); //$NON-NLS-1$
+      errorCode = ODEAdaptiveSolver.DID_NOT_CONVERGE;
+    }
+    System.arraycopy(newState, 0, state, 0, numEqn);
+    time += h;
+    takenStepSize = h;
+    accept();
+    stepsAtOrder++;
+    if(accepted) {
+      selectOrderAndStepSize(h);
+    }
+    if(statistics!=null) {
+      statistics.stepFinished(h);
+    }
+    return h;
+  }
+
+  /**
+   * Chooses the order with the largest step size among the current order and its neighbours.  The order is
+   * only changed after order+1 steps at the current order.
+   */
+  private void selectOrderAndStepSize(double h) {
+    double ratio = stepRatio(errors[1], order);
+    int newOrder = order;
+    if(stepsAtOrder>order) {
+      if((order>1)&&!Double.isNaN(errors[0])) {
+        double r = stepRatio(errors[0], order-1);
+        if(r>ratio) {
+          ratio = r;
+          newOrder = order-1;
+        }
+      }
+      if((order<maxOrder)&&!Double.isNaN(errors[2])) {
+        double r = stepRatio(errors[2], order+1);
+        if(r>1.1*ratio) { // prefer the cheaper lower order
+          ratio = r;
+          newOrder = order+1;
+        }
+      }
+    }
+    setOrder(newOrder);
+    if((ratio>1)&&(ratio<1.2)) {
+      ratio = 1; // keep the step size, implicit methods can reuse their iteration matrix
+    }
+    stepSize = h*Math.max(MIN_STEP_RATIO, Math.min(MAX_STEP_RATIO, ratio));
+  }
+
+  private void setOrder(int newOrder) {
+    if(newOrder!=order) {
+      order = newOrder;
+      stepsAtOrder = 0;
+    }
+  }
+
+  /**
+   * Gets the ratio of the new to the old step size for a method of the given order.
+   */
+  static double stepRatio(double error, int order) {
+    if(error<=0) {
+      return MAX_STEP_RATIO;
+    }
+    return 0.9*Math.pow(error, -1.0/(order+1));
+  }
+
+  /**
+   * Estimates the size of the first step from the initial rate and the change of the rate in an Euler step.
+   * The rate at the initial state is left in the rate array.
+   */
+  private double getInitialStepSize(double hMax) {
+    double direction = (hMax<0) ? -1 : 1;
+    hMax = Math.abs(hMax);
+    ode.getRate(state, rate);
+    double normX = norm(state, state), normF = norm(rate, state);
+    double h = ((normX<=1.0e-5)||(normF<=1.0e-5)) ? 1.0e-6 : 0.01*normX/normF;
+    if(hMax!=0) {
+      h = Math.min(h, hMax);
+    }
+    for(int i = 0; i<numEqn; i++) {
+      newState[i] = state[i]+direction*h*rate[i];
+    }
+    double[] eulerRate = history[0]; // the history is empty
+    ode.getRate(newState, eulerRate);
+    for(int i = 0; i<numEqn; i++) {
+      eulerRate[i] -= rate[i];
+    }
+    double der2 = norm(eulerRate, state)/h;
+    // the local error of an Euler step is h*h*|y''|/2
+    double h1 = (der2<=1.0e-15) ? Math.max(1.0e-6, h*1.0e-3) : Math.sqrt(0.5/der2);
+    h = Math.min(100*h, h1);
+    if(hMax!=0) {
+      h = Math.min(h, hMax);
+    }
+    return direction*h;
+  }
+
+  /**
+   * Computes the root mean square norm of a vector relative to tolerance + tolerance*|y|.
+   */
+  protected double norm(double[] v, double[] y) {
+    double sum = 0;
+    for(int i = 0; i<numEqn; i++) {
+      double d = v[i]/(tolerance+tolerance*Math.abs(y[i]));
+      sum += d*d;
+    }
+    return Math.sqrt(sum/numEqn);
+  }
+
+  /**
+   * Adds a vector to the history.  The oldest vector is overwritten if the history is full.
+   *
+   * @param t the time of the vector
+   * @return the array that has to be filled with the vector
+   */
+  protected double[] push(double t) {
+    head = (head+1)%history.length;
+    size = Math.min(size+1, history.length);
+    times[head] = t;
+    return history[head];
+  }
+
+  /**
+   * Gets a vector of the history.
+   *
+   * @param j 0 for the latest vector, 1 for the one before it, and so on
+   * @return the vector
+   */
+  protected double[] getHistory(int j) {
+    return history[(head-j+history.length)%history.length];
+  }
+
+  /**
+   * Gets the time of a vector of the history in units of a step size, relative to the current time.
+   *
+   * @param j 0 for the latest vector, 1 for the one before it, and so on
+   * @param h the step size
+   * @return the scaled time
+   */
+  protected double getHistoryTime(int j, double h) {
+    return (times[(head-j+history.length)%history.length]-time)/h;
+  }
+
+  /**
+   * Gets the number of vectors in the history.
+   * @return the number of vectors
+   */
+  protected int getHistorySize() {
+    return size;
+  }
+
+  /**
+   * Computes the weights of the values at the nodes for the value of the interpolating polynomial at x.
+   */
+  static void valueWeights(double[] nodes, int m, double x, double[] w) {
+    for(int j = 0; j<m; j++) {
+      double l = 1;
+      for(int k = 0; k<m; k++) {
+        if(k!=j) {
+          l *= (x-nodes[k])/(nodes[j]-nodes[k]);
+        }
+      }
+      w[j] = l;
+    }
+  }
+
+  /**
+   * Computes the weights of the values at the nodes for the integral of the interpolating polynomial from
+   * 0 to 1.
+   */
+  static void integralWeights(double[] nodes, int m, double[] w, double[] scratch) {
+    for(int j = 0; j<m; j++) {
+      w[j] = 0;
+    }
+    for(int g = 0; g<GAUSS_NODES.length; g++) {
+      valueWeights(nodes, m, GAUSS_NODES[g], scratch);
+      for(int j = 0; j<m; j++) {
+        w[j] += GAUSS_WEIGHTS[g]*scratch[j];
+      }
+    }
+  }
+
+  /**
+   * Computes the weights of the values at the nodes for the derivative of the interpolating polynomial at
+   * the first node.
+   */
+  static void derivativeWeights(double[] nodes, int m, double[] w) {
+    double x = nodes[0];
+    w[0] = 0;
+    for(int k = 1; k<m; k++) {
+      w[0] += 1/(x-nodes[k]);
+    }
+    for(int j = 1; j<m; j++) {
+      double l = 1/(nodes[j]-x);
+      for(int k = 1; k<m; k++) {
+        if(k!=j) {
+          l *= (x-nodes[k])/(nodes[j]-nodes[k]);
+        }
+      }
+      w[j] = l;
+    }
+  }
+
+  public void setStepSize(double stepSize) {
+    this.stepSize = stepSize;
+  }
+
+  /**
+   * Gets the size of the next step.
+   * @return the step size
+   */
+  public double getStepSize() {
+    return stepSize;
+  }
+
+  /**
+   * Gets the order of the next step.
+   * @return the order
+   */
+  public int getOrder() {
+    return order;
+  }
+
+  public void setTolerance(double tol) {
+    tolerance = Math.abs(tol);
+  }
+
+  public double getTolerance() {
+    return tolerance;
+  }
+
+  /**
+   * Gets the error code.
+   * Error codes:
+   *   ODEAdaptiveSolver.NO_ERROR
+   *   ODEAdaptiveSolver.DID_NOT_CONVERGE
+   * @return int
+   */
+  public int getErrorCode() {
+    return errorCode;
+  }
+
+  /**
+   * Enables or disables the collection of statistics.
+   * @param enabled true to collect statistics
+   */
+  public void setStatisticsEnabled(boolean enabled) {
+    if(enabled==(statistics!=null)) {
+      return;
+    }
+    if(enabled) {
+      statistics = new ODESolverStatistics();
+      ode = statistics.monitor(ode);
+    } else {
+      ode = ODESolverStatistics.unmonitor(ode);
+      statistics = null;
+    }
+  }
+
+  /**
+   * Gets the statistics.
+   * @return the statistics or null if they are disabled
+   */
+  public ODESolverStatistics getStatistics() {
+    return statistics;
+  }
+
+  /**
+   * Returns a serializer that saves the history, the order and the step size in a checkpoint.
+   *
+   * @return the serializer
+   */
+  public static ODESolverCheckpoint.StateSerializer getSerializer() {
+    return new Serializer();
+  }
+
+  /**
+   * A class to save and load the internal state of a linear multistep solver.
+   */
+  static class Serializer implements ODESolverCheckpoint.StateSerializer {
+    public void saveState(DataOutput out, ODESolver obj) throws IOException {
+      LinearMultistepSolver solver = (LinearMultistepSolver) obj;
+      out.writeDouble(solver.tolerance);
+      out.writeDouble(solver.stepSize);
+      out.writeDouble(solver.takenStepSize);
+      out.writeDouble(solver.time);
+      out.writeInt(solver.order);
+      out.writeInt(solver.stepsAtOrder);
+      out.writeInt(solver.errorCode);
+      out.writeInt(solver.head);
+      out.writeInt(solver.size);
+      ODESolverCheckpoint.writeArray(out, solver.times);
+      ODESolverCheckpoint.writeArray(out, solver.history);
+    }
+
+    public void loadState(DataInput in, ODESolver obj) throws IOException {
+      LinearMultistepSolver solver = (LinearMultistepSolver) obj;
+      if(solver.ode.getState().length!=solver.numEqn) {
+        solver.initialize(solver.stepSize);
+      }
+      solver.tolerance = in.readDouble();
+      solver.stepSize = in.readDouble();
+      solver.takenStepSize = in.readDouble();
+      solver.time = in.readDouble();
+      solver.order = in.readInt();
+      solver.stepsAtOrder = in.readInt();
+      solver.errorCode = in.readInt();
+      solver.head = in.readInt();
+      solver.size = in.readInt();
+      ODESolverCheckpoint.readArray(in, solver.times);
+      ODESolverCheckpoint.readArray(in, solver.history);
+    }
+
+  }
+
+}
@@ -0,0 +1,39 @@
+package org.opensourcephysics.ode;
+
+/**
+ * ODEDenseOutputSolver extends the ODEInterpolator to export the interpolation polynomial of the last step.
+ *
+ * The coefficients of a step can be stored and the polynomial can be evaluated later, after the solver has
+ * moved on, so that the continuous solution of a whole run can be kept.
+ *
+ * @see DenseTrajectory
+ */
+
+public interface ODEDenseOutputSolver extends ODEInterpolator {
+
+  /**
+   * Gets the number of coefficients that describe the interpolation polynomial of a step.
+   *
+   * @return int
+   */
+  public int getDenseOutputSize();
+
+  /**
+   * Copies the coefficients of the interpolation polynomial of the last step taken.
+   *
+   * @param coefficients the array that receives getDenseOutputSize() coefficients
+   * @param offset the position of the first coefficient in the array
+   */
+  public void getDenseOutput(double [] coefficients, int offset);
+
+  /**
+   * Evaluates an interpolation polynomial from its coefficients.
+   *
+   * @param coefficients the coefficients obtained by getDenseOutput
+   * @param offset the position of the first coefficient in the array
+   * @param theta the fraction of the step, 0 at the beginning and 1 at the end
+   * @param result the interpolated state
+   */
+  public void interpolateDenseOutput(double [] coefficients, int offset, double theta, double [] result);
+
+}
@@ -4,6 +4,8 @@ package org.opensourcephysics.ode;
 
 import org.opensourcephysics.numerics.ODE;
 import org.opensourcephysics.numerics.ODEAdaptiveSolver;
+import org.opensourcephysics.numerics.ODESolverStatistics;
+import org.opensourcephysics.numerics.ODESolverStats;
 import org.opensourcephysics.ode.IRK.Radau5;
 
 //~--- classes ----------------------------------------------------------------
@@ -15,7 +17,7 @@ import org.opensourcephysics.ode.IRK.Radau5;
  * @author       Wolfgang Christian
  * @version 1.0
  */
-public class ODEInterpolationSolver implements ODEAdaptiveSolver, ODE {
+public class ODEInterpolationSolver implements ODEAdaptiveSolver, ODE, ODESolverStats {
     private double          fixedStepSize = 0.1;    // default value
     private double          remainder     = fixedStepSize;
     private double          takenStepSize = 0;
@@ -129,6 +131,16 @@ public class ODEInterpolationSolver implements ODEAdaptiveSolver, ODE {
         return solverCore.getErrorCode();
     }
 
+    /**
+     * Gets the statistics of the solver core.
+     * @return the statistics or null if they are disabled
+     */
+    public ODESolverStatistics getStatistics() {
+        return (solverCore instanceof ODESolverStats)
+               ? ((ODESolverStats) solverCore).getStatistics()
+               : null;
+    }
+
     public void getRate(double[] state, double[] rate) {
         userODE.getRate(state, rate);
     }
@@ -188,6 +200,18 @@ public class ODEInterpolationSolver implements ODEAdaptiveSolver, ODE {
         fixedStepSize = stepSize;    // the fixed step size
     }
 
+    /**
+     * Enables or disables the collection of statistics by the solver core.
+     * The statistics count the internal steps of the core.
+     *
+     * @param enabled true to collect statistics
+     */
+    public void setStatisticsEnabled(boolean enabled) {
+        if (solverCore instanceof ODESolverStats) {
+            ((ODESolverStats) solverCore).setStatisticsEnabled(enabled);
+        }
+    }
+
     public void setTolerance(double _tol) {
         solverCore.setTolerance(_tol);
     }
@@ -0,0 +1,213 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+
+package org.opensourcephysics.benchmark;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import org.opensourcephysics.numerics.DormandPrince45;
+import org.opensourcephysics.numerics.ODE;
+import org.opensourcephysics.numerics.ODEAdaptiveSolver;
+import org.opensourcephysics.numerics.ODEMultistepSolver;
+import org.opensourcephysics.numerics.ODESolver;
+import org.opensourcephysics.numerics.ODESolverCheckpoint;
+import org.opensourcephysics.numerics.RK45MultiStep;
+import org.opensourcephysics.ode.AdamsBashforthMoulton;
+import org.opensourcephysics.ode.BDF;
+import org.opensourcephysics.ode.Dopri5;
+import org.opensourcephysics.ode.Dopri853;
+import org.opensourcephysics.ode.IRK.Radau5Adaptive;
+import org.opensourcephysics.ode.IRK.Radau5Light;
+
+/**
+ * CheckpointTest checks that a solver restored from an ODESolverCheckpoint continues bit for bit like the run
+ * that wrote the checkpoint.
+ *
+ * Each solver integrates the Van der Pol oscillator, whose relaxation oscillations make the adaptive solvers
+ * reject steps.  The implicit solvers integrate the stiff oscillator with mu = 1000.  The uninterrupted run
+ * takes a checkpoint every few steps.  Every checkpoint is restored into a new ODE and a new solver, and the
+ * restored run must produce the same states as the uninterrupted run up to the last step.  A checkpoint whose
+ * solver block is truncated, but whose checksum is correct, must be rejected without changing the ODE.  The
+ * test prints the result for each solver and exits with status 1 if a check fails.
+ *
+ * Usage: java org.opensourcephysics.benchmark.CheckpointTest [number of steps]
+ */
+public class CheckpointTest {
+  static final String[] SOLVERS = {"ODEMultistepSolver", "DormandPrince45", "RK45MultiStep", "Dopri5", "Dopri853", "Radau5Adaptive", "Radau5", "Radau5Light", "AdamsBashforthMoulton", "BDF"}; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$ //$NON-NLS-8$ //$NON-NLS-9$ //$NON-NLS-10$
+  static final double TOLERANCE = 1e-8, STEP_SIZE = 0.1;
+  static final int CHECKPOINT_INTERVAL = 37;
+
+  static class VanDerPol implements ODE {
+    double mu;
+    double[] state = {2, 0, 0}; // x, v, t
+
+    VanDerPol(String solver) {
+      mu = (solver.startsWith("Radau")||solver.equals("BDF")) ? 1000 : 10; //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    public double[] getState() {
+      return state;
+    }
+
+    public void getRate(double[] state, double[] rate) {
+      rate[0] = state[1];
+      rate[1] = mu*(1-state[0]*state[0])*state[1]-state[0];
+      rate[2] = 1;
+    }
+
+  }
+
+  static ODESolver createSolver(String name, ODE ode) {
+    ODESolver solver;
+    if(name.equals("ODEMultistepSolver")) {   //$NON-NLS-1$
+      solver = new ODEMultistepSolver(ode);
+    } else if(name.equals("DormandPrince45")) { //$NON-NLS-1$
+      solver = new DormandPrince45(ode);
+    } else if(name.equals("RK45MultiStep")) { //$NON-NLS-1$
+      solver = new RK45MultiStep(ode);
+    } else if(name.equals("Dopri5")) {        //$NON-NLS-1$
+      solver = new Dopri5(ode);
+    } else if(name.equals("Dopri853")) {      //$NON-NLS-1$
+      solver = new Dopri853(ode);
+    } else if(name.equals("Radau5Adaptive")) { //$NON-NLS-1$
+      solver = new Radau5Adaptive(ode);
+    } else if(name.equals("Radau5")) {        //$NON-NLS-1$
+      solver = new org.opensourcephysics.ode.IRK.Radau5(ode);
+    } else if(name.equals("Radau5Light")) {   //$NON-NLS-1$
+      solver = new Radau5Light(ode);
+      solver.setStepSize(STEP_SIZE); // the fixed step solver ignores the step size of initialize
+    } else if(name.equals("AdamsBashforthMoulton")) { //$NON-NLS-1$
+      solver = new AdamsBashforthMoulton(ode);
+    } else {
+      solver = new BDF(ode);
+    }
+    solver.initialize(STEP_SIZE);
+    if(solver instanceof ODEAdaptiveSolver) {
+      ((ODEAdaptiveSolver) solver).setTolerance(TOLERANCE);
+    }
+    return solver;
+  }
+
+  /**
+   * Removes the last bytes of the solver block of a checkpoint and appends a correct checksum.
+   *
+   * @param checkpoint the checkpoint
+   * @return the damaged checkpoint
+   */
+  static byte[] truncateSolverBlock(byte[] checkpoint) throws IOException {
+    int length = checkpoint.length-8-1;
+    CRC32 crc = new CRC32();
+    crc.update(checkpoint, 0, length);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    out.write(checkpoint, 0, length);
+    out.writeLong(crc.getValue());
+    out.flush();
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Checks that a checkpoint with a truncated solver block is rejected and leaves the ODE unchanged.
+   *
+   * @return true if the check passes
+   */
+  static boolean checkFailedRestore(String name, byte[] checkpoint) throws IOException {
+    VanDerPol copy = new VanDerPol(name);
+    ODESolver copySolver = createSolver(name, copy);
+    double[] before = copy.getState().clone();
+    try {
+      ODESolverCheckpoint.restore(truncateSolverBlock(checkpoint), copy, copySolver);
+      System.out.println(name+": a truncated checkpoint was accepted FAILED"); //$NON-NLS-1$
+      return false;
+    } catch(IllegalArgumentException ex) {
+      if(!Arrays.equals(copy.getState(), before)) {
+        System.out.println(name+": a rejected checkpoint changed the state of the ODE FAILED"); //$NON-NLS-1$
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public static void main(String[] args) throws IOException {
+    int steps = (args.length>0) ? Integer.parseInt(args[0]) : 1000;
+    boolean failed = false;
+    for(int n = 0; n<SOLVERS.length; n++) {
+      VanDerPol ode = new VanDerPol(SOLVERS[n]);
+      ODESolver solver = createSolver(SOLVERS[n], ode);
+      double[][] states = new double[steps+1][];
+      byte[][] checkpoints = new byte[steps+1][];
+      for(int step = 0; step<=steps; step++) {
+        if(step%CHECKPOINT_INTERVAL==0) {
+          checkpoints[step] = ODESolverCheckpoint.snapshot(ode, solver);
+        }
+        states[step] = ode.getState().clone();
+        if(step<steps) {
+          solver.step();
+        }
+      }
+      int restored = 0, firstDivergence = -1;
+      for(int start = 0; (start<=steps)&&(firstDivergence<0); start++) {
+        if(checkpoints[start]==null) {
+          continue;
+        }
+        VanDerPol copy = new VanDerPol(SOLVERS[n]);
+        ODESolver copySolver = createSolver(SOLVERS[n], copy);
+        ODESolverCheckpoint.restore(checkpoints[start], copy, copySolver);
+        restored++;
+        for(int step = start; step<=steps; step++) {
+          if(!Arrays.equals(copy.getState(), states[step])) {
+            firstDivergence = step;
+            break;
+          }
+          if(step<steps) {
+            copySolver.step();
+          }
+        }
+        if(firstDivergence>=0) {
+          System.out.println(SOLVERS[n]+": the run restored at step "+start+" diverges at step "+firstDivergence+" FAILED"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        }
+      }
+      if(firstDivergence<0) {
+        System.out.println(SOLVERS[n]+": "+restored+" restored runs match up to t = "+ode.getState()[2]+" ok"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+      }
+      failed |= (firstDivergence>=0);
+      failed |= !checkFailedRestore(SOLVERS[n], checkpoints[steps-steps%CHECKPOINT_INTERVAL]);
+    }
+    if(failed) {
+      System.exit(1);
+    }
+  }
+
+}
+
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */
@@ -0,0 +1,263 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+
+package org.opensourcephysics.benchmark;
+import java.awt.image.BufferedImage;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.opensourcephysics.display.Dataset;
+import org.opensourcephysics.display.HeadlessRenderer;
+import org.opensourcephysics.display.PlottingPanel;
+
+/**
+ * DatasetRingBufferTest compares a Dataset that is a ring buffer with a simple list model.
+ *
+ * Random sequences of single appends, appends of arrays, changes of the maximum number of points and clears
+ * are applied to both.  The arrays contain points that the dataset skips.  The maximum is lowered below the
+ * number of stored points and raised above the length of the arrays of the dataset.  After every operation the
+ * points and the range of the dataset must match the model.
+ *
+ * The test also inserts a point into the middle of a sorted dataset after it has been drawn, and compares the
+ * level-of-detail drawing with the drawing of every point.  Finally a thread appends increasing x values to a
+ * ring buffer while copies of the points are taken, and every copy must be in order.  The test exits with status 1 if a check fails.
+ *
+ * Usage: java org.opensourcephysics.benchmark.DatasetRingBufferTest [number of operations]
+ */
+public class DatasetRingBufferTest {
+  static Dataset dataset;
+  static ArrayDeque<double[]> model = new ArrayDeque<double[]>();
+  static int maxPoints;
+
+  static void add(double x, double y) {
+    if(Double.isNaN(x)||Double.isInfinite(x)||Double.isInfinite(y)) {
+      return;
+    }
+    model.addLast(new double[] {x, y});
+    while(model.size()>maxPoints) {
+      model.removeFirst();
+    }
+  }
+
+  static final int WIDTH = 800, HEIGHT = 600, SORTED_POINTS = 100000;
+
+  static BufferedImage draw(final Dataset dataset) {
+    return new HeadlessRenderer(WIDTH, HEIGHT).render(new HeadlessRenderer.Scene() {
+      public void initialize(PlottingPanel panel) {
+        panel.setPreferredMinMax(0, SORTED_POINTS, -2, 12);
+        panel.addDrawable(dataset);
+      }
+
+      public void setFrame(PlottingPanel panel, int frame) {}
+
+    }, 0);
+  }
+
+  static int countDifferences(BufferedImage a, BufferedImage b) {
+    int n = 0;
+    for(int y = 0; y<HEIGHT; y++) {
+      for(int x = 0; x<WIDTH; x++) {
+        if(a.getRGB(x, y)!=b.getRGB(x, y)) {
+          n++;
+        }
+      }
+    }
+    return n;
+  }
+
+  /**
+   * Draws sorted datasets with and without levels of detail, inserts a spike into the middle and draws them
+   * again.  The drawings may only differ in single pixels at the edge of the envelope.
+   */
+  static String checkLevelOfDetail() {
+    Dataset[] datasets = new Dataset[2];
+    for(int k = 0; k<2; k++) {
+      Random random = new Random(1);
+      datasets[k] = new Dataset();
+      datasets[k].setSorted(true);
+      datasets[k].setConnected(true);
+      datasets[k].setMarkerShape(Dataset.NO_MARKER);
+      datasets[k].setLevelOfDetail(k==1);
+      for(int i = 0; i<SORTED_POINTS; i++) {
+        datasets[k].append(i, Math.sin(i*1e-4)+0.1*random.nextGaussian());
+      }
+    }
+    int before = countDifferences(draw(datasets[0]), draw(datasets[1]));
+    for(int k = 0; k<2; k++) {
+      datasets[k].append(0.5*SORTED_POINTS+0.5, 10);
+    }
+    int after = countDifferences(draw(datasets[0]), draw(datasets[1]));
+    if(after>before+20) {
+      return "sorted insert: the level-of-detail drawing differs in "+after+" pixels"; //$NON-NLS-1$ //$NON-NLS-2$
+    }
+    return null;
+  }
+
+  /**
+   * Takes copies of the points of a ring buffer for a second while another thread appends to it.
+   */
+  static String checkConcurrentReads() {
+    final Dataset ring = new Dataset();
+    ring.setRingBuffer(true);
+    ring.setMaximumPoints(1000);
+    final AtomicBoolean done = new AtomicBoolean();
+    Thread writer = new Thread() {
+      public void run() {
+        double x = 0;
+        while(!done.get()) {
+          ring.append(x++, Math.sin(x));
+          if(((long) x)%97==0) {
+            ring.append(new double[] {x, x+1, x+2}, new double[] {1, 2, 3});
+            x += 3;
+          }
+        }
+      }
+
+    };
+    writer.start();
+    int copies = 0, disordered = 0;
+    long start = System.nanoTime();
+    while(System.nanoTime()-start<1e9) {
+      double[] x = ring.getXPoints();
+      copies++;
+      for(int i = 1; i<x.length; i++) {
+        if(x[i]<=x[i-1]) {
+          disordered++;
+          break;
+        }
+      }
+    }
+    done.set(true);
+    try {
+      writer.join();
+    } catch(InterruptedException ex) {}
+    if(disordered>0) {
+      return "concurrent appends: "+disordered+" of "+copies+" copies are out of order"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    }
+    return null;
+  }
+
+  static String check(String operation) {
+    int n = model.size();
+    double[] x = new double[n], y = new double[n];
+    double xmin = Double.MAX_VALUE, xmax = -Double.MAX_VALUE, ymin = Double.MAX_VALUE, ymax = -Double.MAX_VALUE;
+    int i = 0;
+    for(double[] point : model) {
+      x[i] = point[0];
+      y[i] = point[1];
+      xmin = Math.min(xmin, x[i]);
+      xmax = Math.max(xmax, x[i]);
+      if(!Double.isNaN(y[i])) {
+        ymin = Math.min(ymin, y[i]);
+        ymax = Math.max(ymax, y[i]);
+      }
+      i++;
+    }
+    if(dataset.getIndex()!=n) {
+      return operation+": "+dataset.getIndex()+" points instead of "+n; //$NON-NLS-1$ //$NON-NLS-2$
+    }
+    if(!Arrays.equals(dataset.getXPoints(), x)||!Arrays.equals(dataset.getYPoints(), y)) {
+      return operation+": the points do not match"; //$NON-NLS-1$
+    }
+    if((n>0)&&((dataset.getXMin()!=xmin)||(dataset.getXMax()!=xmax))) {
+      return operation+": the x range does not match"; //$NON-NLS-1$
+    }
+    if((ymin<=ymax)&&((dataset.getYMin()!=ymin)||(dataset.getYMax()!=ymax))) {
+      return operation+": the y range does not match"; //$NON-NLS-1$
+    }
+    return null;
+  }
+
+  public static void main(String[] args) {
+    int operations = (args.length>0) ? Integer.parseInt(args[0]) : 100000;
+    Random random = new Random(42);
+    dataset = new Dataset();
+    dataset.setRingBuffer(true);
+    maxPoints = 16;
+    dataset.setMaximumPoints(maxPoints);
+    double next = 0;
+    String failure = null;
+    for(int op = 0; (op<operations)&&(failure==null); op++) {
+      String operation;
+      int choice = random.nextInt(100);
+      if(choice<60) {
+        double x = (random.nextInt(20)==0) ? Double.NaN : next++;
+        double y = (random.nextInt(20)==0) ? Double.NaN : random.nextGaussian();
+        operation = "append("+x+", "+y+")"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        dataset.append(x, y);
+        add(x, y);
+      } else if(choice<90) {
+        int length = random.nextInt(3*maxPoints+2);
+        int offset = random.nextInt(3);
+        double[] x = new double[offset+length], y = new double[offset+length];
+        for(int i = 0; i<x.length; i++) {
+          x[i] = (random.nextInt(10)==0) ? Double.POSITIVE_INFINITY : next++;
+          y[i] = (random.nextInt(10)==0) ? Double.NaN : random.nextGaussian();
+        }
+        operation = "append(arrays, "+offset+", "+length+")"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        dataset.append(x, y, offset, length);
+        while((length>0)&&(model.size()>maxPoints)) { // arrays trim a lowered maximum even if all points are skipped
+          model.removeFirst();
+        }
+        for(int i = offset; i<offset+length; i++) {
+          add(x[i], y[i]);
+        }
+      } else if(choice<98) {
+        maxPoints = 1+random.nextInt((random.nextBoolean() ? 8 : 256));
+        operation = "setMaximumPoints("+maxPoints+")"; //$NON-NLS-1$ //$NON-NLS-2$
+        dataset.setMaximumPoints(maxPoints);
+      } else {
+        operation = "clear()"; //$NON-NLS-1$
+        dataset.clear();
+        model.clear();
+      }
+      failure = check(operation);
+      if(failure!=null) {
+        failure = "operation "+op+", "+failure; //$NON-NLS-1$ //$NON-NLS-2$
+      }
+    }
+    if(failure==null) {
+      failure = checkLevelOfDetail();
+    }
+    if(failure==null) {
+      failure = checkConcurrentReads();
+    }
+    if(failure!=null) {
+      System.out.println(failure+" FAILED"); //$NON-NLS-1$
+      System.exit(1);
+    }
+    System.out.println(operations+" operations match the model, the level of detail is updated and concurrent copies are in order ok"); //$NON-NLS-1$
+  }
+
+}
+
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */
@@ -0,0 +1,130 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+
+package org.opensourcephysics.benchmark;
+import org.opensourcephysics.numerics.ODE;
+import org.opensourcephysics.numerics.ODEAdaptiveSolver;
+import org.opensourcephysics.numerics.StateEvent;
+import org.opensourcephysics.ode.DenseOutputEventSolver;
+import org.opensourcephysics.ode.Dopri5;
+import org.opensourcephysics.ode.Dopri853;
+import org.opensourcephysics.ode.ODEDenseOutputSolver;
+
+/**
+ * EventSolverTest checks DenseOutputEventSolver on an elastic ball that bounces on the floor.
+ *
+ * The solution between bounces is a parabola, so the adaptive solvers grow their steps until a single step spans
+ * many bounces.  The action reverses the velocity and leaves the height within the tolerance of the event.  The
+ * test checks that every bounce happens at its exact time, that the energy is conserved and that no error is
+ * reported.  The test prints the result for each solver and exits with status 1 if a check fails.
+ *
+ * Usage: java org.opensourcephysics.benchmark.EventSolverTest [duration]
+ */
+public class EventSolverTest {
+  static final double G = 9.8, HEIGHT = 1, TOLERANCE = 1e-9;
+
+  static class Ball implements ODE {
+    double[] state = {HEIGHT, 0, 0}; // y, v, t
+
+    public double[] getState() {
+      return state;
+    }
+
+    public void getRate(double[] state, double[] rate) {
+      rate[0] = state[1];
+      rate[1] = -G;
+      rate[2] = 1;
+    }
+
+  }
+
+  static class Floor implements StateEvent {
+    Ball ball;
+    int bounces;
+    double worstTime; // largest error of the time of a bounce
+
+    Floor(Ball ball) {
+      this.ball = ball;
+    }
+
+    public double getTolerance() {
+      return TOLERANCE;
+    }
+
+    public double evaluate(double[] state) {
+      return state[0];
+    }
+
+    public boolean action() {
+      double fall = Math.sqrt(2*HEIGHT/G);
+      worstTime = Math.max(worstTime, Math.abs(ball.state[2]-(2*bounces+1)*fall));
+      bounces++;
+      ball.state[1] = -ball.state[1];
+      return false;
+    }
+
+  }
+
+  public static void main(String[] args) {
+    double duration = (args.length>0) ? Double.parseDouble(args[0]) : 1000;
+    boolean failed = false;
+    for(int n = 0; n<2; n++) {
+      Ball ball = new Ball();
+      ODEDenseOutputSolver core = (n==0) ? (ODEDenseOutputSolver) new Dopri5(ball) : new Dopri853(ball);
+      core.setTolerance(TOLERANCE);
+      DenseOutputEventSolver solver = new DenseOutputEventSolver(ball, core);
+      Floor floor = new Floor(ball);
+      solver.addEvent(floor);
+      solver.initialize(0.01);
+      int errors = 0, steps = 0;
+      while((ball.state[2]<duration)&&(steps<1000000)) {
+        solver.step();
+        steps++;
+        if(solver.getErrorCode()!=ODEAdaptiveSolver.NO_ERROR) {
+          errors++;
+        }
+      }
+      double fall = Math.sqrt(2*HEIGHT/G);
+      int expected = (int) Math.floor((ball.state[2]-fall)/(2*fall))+1;
+      double energy = 0.5*ball.state[1]*ball.state[1]+G*ball.state[0];
+      boolean ok = (errors==0)&&(Math.abs(floor.bounces-expected)<=1)&&(floor.worstTime<1e-6)
+                   &&(Math.abs(energy-G*HEIGHT)<1e-6)&&(Math.abs(solver.getStepSize())<1e3);
+      System.out.println(core.getClass().getSimpleName()+": t = "+ball.state[2]+", bounces = "+floor.bounces+" (expected "+expected+"), worst time error = "+floor.worstTime+", energy = "+energy+", step size = "+solver.getStepSize()+", errors = "+errors+(ok ? " ok" : " FAILED")); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$ //$NON-NLS-8$ //$NON-NLS-9$ //$NON-NLS-10$
+      failed |= !ok;
+    }
+    if(failed) {
+      System.exit(1);
+    }
+  }
+
+}
+
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */
@@ -0,0 +1,121 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+
+package org.opensourcephysics.benchmark;
+import java.io.File;
+import java.io.IOException;
+import org.opensourcephysics.display.Dataset;
+import org.opensourcephysics.display.HeadlessRenderer;
+import org.opensourcephysics.display.PlottingPanel;
+
+/**
+ * HeadlessRenderBenchmark measures the frames per second of a HeadlessRenderer that draws 1920x1080 plots of
+ * travelling waves.  Each row of the table lists:
+ *
+ * <pre>
+ * format         PNG or RAW
+ * threads        the parallelism of the renderer
+ * frames         the number of frames
+ * frames/s       the frames drawn and written per second
+ * MB/frame       the size of a frame on disk
+ * </pre>
+ *
+ * The frames are written to a temporary directory that is deleted afterwards.  Run with
+ * -Djava.awt.headless=true on a machine without a display.
+ *
+ * Usage: java -Djava.awt.headless=true org.opensourcephysics.benchmark.HeadlessRenderBenchmark [frames] [maximum number of threads]
+ */
+public class HeadlessRenderBenchmark {
+  static final int WIDTH = 1920, HEIGHT = 1080;
+  static final int WAVES = 3, POINTS = 2000;
+
+  static class Waves implements HeadlessRenderer.Scene {
+    public void initialize(PlottingPanel panel) {
+      panel.setPreferredMinMax(0, 2*Math.PI, -1.5, 1.5);
+      panel.setTitle("travelling waves"); //$NON-NLS-1$
+      for(int i = 0; i<WAVES; i++) {
+        Dataset dataset = new Dataset();
+        dataset.setConnected(true);
+        dataset.setMarkerShape(Dataset.NO_MARKER);
+        panel.addDrawable(dataset);
+      }
+    }
+
+    public void setFrame(PlottingPanel panel, int frame) {
+      java.util.List<Dataset> waves = panel.getDrawables(Dataset.class);
+      for(int i = 0; i<waves.size(); i++) {
+        Dataset dataset = waves.get(i);
+        dataset.clear();
+        double[] x = new double[POINTS], y = new double[POINTS];
+        for(int j = 0; j<POINTS; j++) {
+          x[j] = 2*Math.PI*j/(POINTS-1);
+          y[j] = Math.sin((i+1)*x[j]-0.05*frame);
+        }
+        dataset.append(x, y);
+      }
+    }
+
+  }
+
+  public static void main(String[] args) throws IOException {
+    int frames = (args.length>0) ? Integer.parseInt(args[0]) : 200;
+    int maxThreads = (args.length>1) ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+    File directory = File.createTempFile("frames", ""); //$NON-NLS-1$ //$NON-NLS-2$
+    directory.delete();
+    System.out.println(WIDTH+"x"+HEIGHT+", headless = "+java.awt.GraphicsEnvironment.isHeadless()); //$NON-NLS-1$ //$NON-NLS-2$
+    System.out.printf("%-8s %8s %8s %10s %10s%n", "format", "threads", "frames", "frames/s", "MB/frame"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$
+    Waves scene = new Waves();
+    for(int format = HeadlessRenderer.RAW; format>=HeadlessRenderer.PNG; format--) {
+      for(int threads = 1; threads<=maxThreads; threads *= 2) {
+        HeadlessRenderer renderer = new HeadlessRenderer(WIDTH, HEIGHT);
+        renderer.setFormat(format);
+        renderer.setCompressionQuality(0.75f);
+        renderer.setParallelism(threads);
+        renderer.render(scene, 0, Math.min(frames, 2*threads), directory, "warmup"); // load classes and compile //$NON-NLS-1$
+        long start = System.nanoTime();
+        renderer.render(scene, 0, frames, directory, "frame"); //$NON-NLS-1$
+        double seconds = (System.nanoTime()-start)*1e-9;
+        long bytes = 0;
+        for(File file : directory.listFiles()) {
+          if(file.getName().startsWith("frame")) { //$NON-NLS-1$
+            bytes += file.length();
+          }
+          file.delete();
+        }
+        System.out.printf("%-8s %8d %8d %10.1f %10.2f%n", (format==HeadlessRenderer.RAW) ? "RAW" : "PNG", threads, frames, frames/seconds, bytes/1e6/frames); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+      }
+    }
+    directory.delete();
+  }
+
+}
+
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */
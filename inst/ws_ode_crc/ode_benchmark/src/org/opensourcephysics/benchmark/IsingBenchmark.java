@@ -0,0 +1,110 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+
+package org.opensourcephysics.benchmark;
+import org.opensourcephysics.sip.ch15.Ising;
+import org.opensourcephysics.sip.ch15.IsingEngine;
+
+/**
+ * IsingBenchmark measures the spin updates per second of the algorithms of IsingEngine at the critical
+ * temperature.  An update is an attempted flip of the Metropolis algorithms and a flipped spin of a cluster.
+ * Each row of the table lists:
+ *
+ * <pre>
+ * algorithm      the algorithm
+ * threads        the parallelism of the engine
+ * steps          the number of timed steps
+ * updates/s      the spin updates per second
+ * flips/s        the flipped spins per second
+ * speedup        the updates per second divided by those of one thread
+ * </pre>
+ *
+ * A Wolff step flips a single cluster.  The lattice starts with disordered spins and is equilibrated for a few
+ * sweeps before the timing.
+ *
+ * Usage: java -Xmx2g org.opensourcephysics.benchmark.IsingBenchmark [L] [maximum number of threads]
+ */
+public class IsingBenchmark {
+  static final String[] NAMES = {"checkerboard", "multispin", "Wolff", "Swendsen-Wang"}; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+  static final double MIN_SECONDS = 2;
+
+  public static void main(String[] args) {
+    int L = (args.length>0) ? Integer.parseInt(args[0]) : 4096;
+    int maxThreads = (args.length>1) ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+    System.out.println("L = "+L+", T = "+Ising.criticalTemperature); //$NON-NLS-1$ //$NON-NLS-2$
+    System.out.printf("%-14s %8s %6s %12s %12s %8s%n", "algorithm", "threads", "steps", "updates/s", "flips/s", "speedup"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$ //$NON-NLS-7$
+    for(int algorithm = 0; algorithm<NAMES.length; algorithm++) {
+      if((algorithm==IsingEngine.MULTISPIN)&&(L%64!=0)) {
+        continue;
+      }
+      IsingEngine engine = new IsingEngine(L, algorithm);
+      engine.setSeed(42);
+      for(int i = 0; i<L; i++) {
+        for(int j = 0; j<L; j++) {
+          engine.setSpin(i, j, ((i*31+j*17)%7<3) ? 1 : -1);
+        }
+      }
+      double single = 0;
+      for(int threads = 1; threads<=maxThreads; threads *= 2) {
+        engine.setParallelism(threads);
+        if(algorithm==IsingEngine.WOLFF) { // warm up with single clusters until 3N spins have been flipped
+          engine.resetData();
+          while(engine.getAcceptedMoves()<3.0*L*L) {
+            engine.step();
+          }
+        } else {
+          for(int step = 0; step<3; step++) {
+            engine.step();
+          }
+        }
+        engine.resetData();
+        long start = System.nanoTime();
+        int steps = 0;
+        while((steps<2)||(System.nanoTime()-start<MIN_SECONDS*1e9)) {
+          engine.step();
+          steps++;
+        }
+        double seconds = (System.nanoTime()-start)*1e-9;
+        double updates = engine.getUpdatesPerSecond();
+        if(threads==1) {
+          single = updates;
+        }
+        System.out.printf("%-14s %8d %6d %12.3e %12.3e %8.2f%n", NAMES[algorithm], threads, steps, updates, engine.getAcceptedMoves()/seconds, updates/single); //$NON-NLS-1$
+        if((algorithm==IsingEngine.WOLFF)&&(threads==1)) {
+          break; // the cluster growth is sequential
+        }
+      }
+      engine.setParallelism(1);
+    }
+  }
+}
+
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */
@@ -0,0 +1,170 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+
+package org.opensourcephysics.benchmark;
+import java.util.Random;
+import org.opensourcephysics.numerics.NBodyForceSolver;
+
+/**
+ * NBodyBenchmark measures the cost and the force error of the methods of NBodyForceSolver.
+ *
+ * The bodies of equal mass form a Plummer sphere in three dimensions and an exponential disk in two
+ * dimensions, with a softening length of 0.01 of the scale radius.  The error of a body is the distance of
+ * its acceleration from the direct sum divided by the size of the direct sum.  It is computed for a sample
+ * of bodies.  Each row of the table lists:
+ *
+ * <pre>
+ * dim            the dimension
+ * bodies         the number of bodies
+ * method         direct or the opening angle of Barnes-Hut
+ * ms/eval        the time of an evaluation of all accelerations
+ * inter/body     the number of interactions per body, the cost independent of the machine
+ * rms error      the root mean square relative error of the sample
+ * max error      the largest relative error of the sample
+ * </pre>
+ *
+ * The rows of one size give the curve of the force error versus the cost.
+ *
+ * Usage: java org.opensourcephysics.benchmark.NBodyBenchmark [largest number of bodies]
+ */
+public class NBodyBenchmark {
+  static final double[] ANGLES = {0.2, 0.35, 0.5, 0.7, 1.0};
+  static final int DIRECT_LIMIT = 20000; // larger systems are not timed with the direct sum
+  static final int SAMPLE = 500;
+  static final double SOFTENING = 0.01;
+  static final double MIN_SECONDS = 0.5;
+
+  static double[] createBodies(int dim, int n, long seed) {
+    Random random = new Random(seed);
+    double[] r = new double[dim*n];
+    for(int i = 0; i<n; i++) {
+      if(dim==3) { // Plummer sphere of unit scale radius
+        double radius = 1/Math.sqrt(Math.pow(random.nextDouble()*0.999, -2.0/3.0)-1);
+        double z = 2*random.nextDouble()-1, phi = 2*Math.PI*random.nextDouble(), s = Math.sqrt(1-z*z);
+        r[3*i] = radius*s*Math.cos(phi);
+        r[3*i+1] = radius*s*Math.sin(phi);
+        r[3*i+2] = radius*z;
+      } else { // exponential disk of unit scale length
+        double radius = -Math.log((1-random.nextDouble())*(1-random.nextDouble()));
+        double phi = 2*Math.PI*random.nextDouble();
+        r[2*i] = radius*Math.cos(phi);
+        r[2*i+1] = radius*Math.sin(phi);
+      }
+    }
+    return r;
+  }
+
+  /**
+   * Computes the exact accelerations of the sample bodies.
+   */
+  static double[] sampleAccelerations(int dim, int n, double[] r, int[] sample) {
+    double[] a = new double[dim*sample.length];
+    double eps2 = SOFTENING*SOFTENING;
+    for(int s = 0; s<sample.length; s++) {
+      int i = sample[s];
+      for(int j = 0; j<n; j++) {
+        if(j==i) {
+          continue;
+        }
+        double r2 = eps2;
+        for(int d = 0; d<dim; d++) {
+          double dx = r[dim*j+d]-r[dim*i+d];
+          r2 += dx*dx;
+        }
+        double f = 1/(r2*Math.sqrt(r2));
+        for(int d = 0; d<dim; d++) {
+          a[dim*s+d] += f*(r[dim*j+d]-r[dim*i+d]);
+        }
+      }
+    }
+    return a;
+  }
+
+  static void run(int dim, int n) {
+    double[] r = createBodies(dim, n, 12345);
+    int[] sample = new int[Math.min(SAMPLE, n)];
+    for(int s = 0; s<sample.length; s++) {
+      sample[s] = (int) ((long) s*n/sample.length);
+    }
+    double[] exact = sampleAccelerations(dim, n, r, sample);
+    double[] acc = new double[dim*n];
+    NBodyForceSolver solver = new NBodyForceSolver(dim);
+    solver.setSoftening(SOFTENING);
+    for(int m = -1; m<ANGLES.length; m++) {
+      if(m<0) {
+        if(n>DIRECT_LIMIT) {
+          continue;
+        }
+        solver.setMethod(NBodyForceSolver.DIRECT);
+      } else {
+        solver.setMethod(NBodyForceSolver.BARNES_HUT);
+        solver.setOpeningAngle(ANGLES[m]);
+      }
+      int evaluations = 0;
+      solver.computeAccelerations(r, n, acc); // warm up
+      long t0 = System.nanoTime();
+      do {
+        solver.computeAccelerations(r, n, acc);
+        evaluations++;
+      } while(System.nanoTime()-t0<MIN_SECONDS*1e9);
+      double ms = (System.nanoTime()-t0)*1e-6/evaluations;
+      double sum2 = 0, max = 0;
+      for(int s = 0; s<sample.length; s++) {
+        double e2 = 0, a2 = 0;
+        for(int d = 0; d<dim; d++) {
+          double diff = acc[dim*sample[s]+d]-exact[dim*s+d];
+          e2 += diff*diff;
+          a2 += exact[dim*s+d]*exact[dim*s+d];
+        }
+        double error = Math.sqrt(e2/a2);
+        sum2 += error*error;
+        max = Math.max(max, error);
+      }
+      String method = (m<0) ? "direct" : String.format("BH %.2f", ANGLES[m]); //$NON-NLS-1$ //$NON-NLS-2$
+      System.out.printf("%3d %8d %-9s %10.2f %10.1f %10.2e %10.2e%n", dim, n, method, ms, //$NON-NLS-1$
+        (double) solver.getNumberOfInteractions()/n, Math.sqrt(sum2/sample.length), max);
+    }
+  }
+
+  public static void main(String[] args) {
+    int largest = (args.length>0) ? Integer.parseInt(args[0]) : 100000;
+    System.out.println("processors: "+Runtime.getRuntime().availableProcessors()); //$NON-NLS-1$
+    System.out.println("dim   bodies method       ms/eval inter/body  rms error  max error"); //$NON-NLS-1$
+    for(int dim = 2; dim<=3; dim++) {
+      for(int n = 1000; n<=largest; n *= 10) {
+        run(dim, n);
+      }
+    }
+  }
+
+}
+
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */
@@ -0,0 +1,127 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+
+package org.opensourcephysics.benchmark;
+import java.util.Arrays;
+import java.util.Random;
+import org.opensourcephysics.numerics.NBodyForceSolver;
+
+/**
+ * NBodyTest checks that the Barnes-Hut accelerations of NBodyForceSolver do not depend on the number of
+ * threads for distributions that make the top of the tree end in leaves.
+ *
+ * The distributions are bodies of which every seventh is at the same point, so that the tree reaches its
+ * full depth with more bodies than a leaf holds, and a Gaussian cloud with a single distant body.  The
+ * accelerations of every parallelism must be the same bits as those of one thread, and their rms error
+ * relative to the direct sum must be below 1%.  The test prints the result for each case and exits with status 1 if a check fails.
+ *
+ * Usage: java org.opensourcephysics.benchmark.NBodyTest
+ */
+public class NBodyTest {
+  static final int[] PARALLELISM = {1, 2, 4, 8};
+
+  static double[] coincident(int n, int dimension, Random random) {
+    double[] positions = new double[dimension*n];
+    for(int i = 0; i<n; i++) {
+      for(int d = 0; d<dimension; d++) {
+        positions[dimension*i+d] = (i%7==0) ? 0.25 : random.nextDouble();
+      }
+    }
+    return positions;
+  }
+
+  static double[] distant(int n, int dimension, Random random) {
+    double[] positions = new double[dimension*n];
+    for(int i = 0; i<dimension*n; i++) {
+      positions[i] = random.nextGaussian();
+    }
+    positions[0] = 1e7;
+    return positions;
+  }
+
+  public static void main(String[] args) {
+    Random random = new Random(42);
+    boolean failed = false;
+    for(int dimension = 2; dimension<=3; dimension++) {
+      for(int distribution = 0; distribution<2; distribution++) {
+        int n = (distribution==0) ? 1000 : 5000;
+        double[] positions = (distribution==0) ? coincident(n, dimension, random) : distant(n, dimension, random);
+        NBodyForceSolver direct = new NBodyForceSolver(dimension);
+        direct.setMethod(NBodyForceSolver.DIRECT);
+        direct.setSoftening(0.01);
+        direct.setParallelism(1);
+        double[] exact = new double[dimension*n];
+        direct.computeAccelerations(positions, n, exact);
+        double[] reference = null;
+        String result = "ok"; //$NON-NLS-1$
+        double worst = 0; // the rms error relative to the rms acceleration
+        for(int p = 0; p<PARALLELISM.length; p++) {
+          NBodyForceSolver tree = new NBodyForceSolver(dimension);
+          tree.setMethod(NBodyForceSolver.BARNES_HUT);
+          tree.setOpeningAngle(0.5);
+          tree.setSoftening(0.01);
+          tree.setParallelism(PARALLELISM[p]);
+          double[] acc = new double[dimension*n];
+          try {
+            tree.computeAccelerations(positions, n, acc);
+          } catch(RuntimeException ex) {
+            result = "parallelism "+PARALLELISM[p]+" throws "+ex+" FAILED"; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+            break;
+          }
+          if(reference==null) {
+            reference = acc;
+            double norm = 0, error = 0;
+            for(int i = 0; i<dimension*n; i++) {
+              norm += exact[i]*exact[i];
+              error += (acc[i]-exact[i])*(acc[i]-exact[i]);
+            }
+            worst = Math.sqrt(error/norm);
+            if(!(worst<0.01)) {
+              result = "relative error "+worst+" FAILED"; //$NON-NLS-1$ //$NON-NLS-2$
+              break;
+            }
+          } else if(!Arrays.equals(acc, reference)) {
+            result = "parallelism "+PARALLELISM[p]+" differs from one thread FAILED"; //$NON-NLS-1$ //$NON-NLS-2$
+            break;
+          }
+        }
+        System.out.println(dimension+"D "+((distribution==0) ? "coincident" : "distant")+" bodies: relative error "+worst+", "+result); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+        failed |= !result.equals("ok"); //$NON-NLS-1$
+      }
+    }
+    if(failed) {
+      System.exit(1);
+    }
+  }
+
+}
+
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */
@@ -0,0 +1,242 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+
+package org.opensourcephysics.benchmark;
+import org.opensourcephysics.numerics.*;
+import org.opensourcephysics.ode.Dopri5;
+
+/**
+ * ParallelRateBenchmark measures the scaling of ParallelRate with the number of threads.
+ *
+ * The problems are a method of lines discretization of the Fisher equation u_t = u_xx + u(1-u) on a
+ * periodic grid, stepped by RK4 and Dopri5, and Lennard-Jones particles in a periodic box with pairwise
+ * forces that are summed in the accumulation phase, stepped by Verlet.  The rate phase of the particles
+ * reuses the forces of the previous evaluation, as in sip.ch08.md.LJParticles.  Each row of the table lists:
+ *
+ * <pre>
+ * problem   the name of the problem and of the solver
+ * eqns      the number of equations
+ * threads   the parallelism of the ParallelRate
+ * ms/step   the time per step
+ * speedup   the time of one thread divided by the time per step
+ * same      yes if the state after the steps is bit for bit the state of one thread
+ * </pre>
+ *
+ * The number of threads is doubled from one up to the given maximum.  Threads beyond the number of
+ * processors do not give a speedup.
+ *
+ * Usage: java org.opensourcephysics.benchmark.ParallelRateBenchmark [maximum number of threads]
+ */
+public class ParallelRateBenchmark {
+  static final int[] GRID_SIZES = {1000, 10000, 100000, 1000000};
+  static final int[] PARTICLES = {250, 2500};
+  static final double MIN_SECONDS = 0.5; // the steps of a row take at least this time
+
+  /**
+   * The Fisher equation on a periodic grid of unit spacing.  Every grid point is an index.
+   */
+  static class Fisher extends ParallelRate {
+    double[] state;
+
+    Fisher(int n) {
+      super(n);
+      state = new double[n];
+      for(int i = 0; i<n; i++) {
+        state[i] = 0.5+0.4*Math.sin(2*Math.PI*i/n)+0.1*Math.sin(37.0*i);
+      }
+    }
+
+    public double[] getState() {
+      return state;
+    }
+
+    protected void computeRate(double[] u, double[] rate, int from, int to) {
+      int n = u.length;
+      for(int i = from; i<to; i++) {
+        double left = u[(i==0) ? n-1 : i-1], right = u[(i==n-1) ? 0 : i+1];
+        rate[i] = left-2*u[i]+right+u[i]*(1-u[i]);
+      }
+    }
+
+  }
+
+  /**
+   * Lennard-Jones particles in a periodic square box.  The state is x, vx, y, vy for every particle followed
+   * by the time, and the sums are the force components.
+   */
+  static class Particles extends ParallelRate {
+    int n;
+    double size;
+    double[] state;
+    Verlet solver;
+
+    Particles(int n) {
+      super(n, 2*n);
+      setPairwise(true);
+      this.n = n;
+      int rows = (int) Math.ceil(Math.sqrt(n));
+      size = 1.2*rows;
+      state = new double[4*n+1];
+      for(int i = 0; i<n; i++) {
+        state[4*i] = 1.2*(i%rows+0.5);
+        state[4*i+1] = 0.5*Math.sin(3.0*i);
+        state[4*i+2] = 1.2*(i/rows+0.5);
+        state[4*i+3] = 0.5*Math.cos(5.0*i);
+      }
+      accumulate(state);
+    }
+
+    public double[] getState() {
+      return state;
+    }
+
+    public void getRate(double[] state, double[] rate) {
+      if((solver==null)||(solver.getRateCounter()==1)) { // Verlet reuses the force of the previous step
+        accumulate(state);
+      }
+      computeRates(state, rate);
+      rate[4*n] = 1;
+    }
+
+    protected void accumulateRange(double[] state, int from, int to, double[] f) {
+      for(int i = from; i<to; i++) {
+        double xi = state[4*i], yi = state[4*i+2], fxi = 0, fyi = 0;
+        for(int j = i+1; j<n; j++) {
+          double dx = separation(xi-state[4*j]), dy = separation(yi-state[4*j+2]);
+          double oneOverR2 = 1.0/(dx*dx+dy*dy);
+          double oneOverR6 = oneOverR2*oneOverR2*oneOverR2;
+          double fOverR = 48.0*oneOverR6*(oneOverR6-0.5)*oneOverR2;
+          fxi += fOverR*dx;
+          fyi += fOverR*dy;
+          f[2*j] -= fOverR*dx;
+          f[2*j+1] -= fOverR*dy;
+        }
+        f[2*i] += fxi;
+        f[2*i+1] += fyi;
+      }
+    }
+
+    protected void computeRate(double[] state, double[] rate, int from, int to) {
+      double[] f = getSums();
+      for(int i = from; i<to; i++) {
+        rate[4*i] = state[4*i+1];
+        rate[4*i+1] = f[2*i];
+        rate[4*i+2] = state[4*i+3];
+        rate[4*i+3] = f[2*i+1];
+      }
+    }
+
+    double separation(double d) {
+      return d-size*Math.rint(d/size);
+    }
+
+  }
+
+  static ParallelRate createProblem(String name, int size) {
+    return name.startsWith("Particles") ? new Particles(size) : new Fisher(size);
+  }
+
+  static ODESolver createSolver(String name, ParallelRate ode) {
+    if(name.endsWith("Verlet")) {
+      Verlet solver = new Verlet(ode);
+      ((Particles) ode).solver = solver;
+      solver.initialize(0.001);
+      return solver;
+    } else if(name.endsWith("Dopri5")) {
+      Dopri5 solver = new Dopri5(ode);
+      solver.initialize(0.05);
+      solver.setTolerance(1e-6);
+      return solver;
+    }
+    RK4 solver = new RK4(ode);
+    solver.initialize(0.05);
+    return solver;
+  }
+
+  /**
+   * Runs a problem with an increasing number of threads and prints the rows of the table.
+   */
+  static void run(String name, int size, int maxThreads) {
+    double[] reference = null;
+    double serial = 0;
+    int warmup = 0, steps = 0;
+    for(int threads = 1; threads<=maxThreads; threads *= 2) {
+      ParallelRate ode = createProblem(name, size);
+      ode.setParallelism(threads);
+      ODESolver solver = createSolver(name, ode);
+      if(warmup==0) { // the warm up of one thread calibrates the number of steps
+        long t0 = System.nanoTime();
+        do {
+          solver.step();
+          warmup++;
+        } while(System.nanoTime()-t0<MIN_SECONDS*0.2e9);
+        steps = 5*warmup;
+      } else {
+        for(int i = 0; i<warmup; i++) {
+          solver.step();
+        }
+      }
+      long t0 = System.nanoTime();
+      for(int i = 0; i<steps; i++) {
+        solver.step();
+      }
+      double ms = (System.nanoTime()-t0)*1e-6/steps;
+      double[] state = ode.getState();
+      boolean same = true;
+      if(reference==null) {
+        reference = state.clone();
+        serial = ms;
+      } else {
+        for(int i = 0; i<state.length; i++) {
+          same &= Double.doubleToLongBits(state[i])==Double.doubleToLongBits(reference[i]);
+        }
+      }
+      System.out.printf("%-17s %8d %7d %10.3f %7.2f   %s%n", name, state.length, threads, ms, serial/ms, same ? "yes" : "no"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+      ode.setParallelism(1); // shuts the pool down
+    }
+  }
+
+  public static void main(String[] args) {
+    int maxThreads = (args.length>0) ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+    System.out.println("processors: "+Runtime.getRuntime().availableProcessors());                     //$NON-NLS-1$
+    System.out.println("problem               eqns threads    ms/step speedup   same");              //$NON-NLS-1$
+    for(int size : GRID_SIZES) {
+      run("Fisher/RK4", size, maxThreads);    //$NON-NLS-1$
+      run("Fisher/Dopri5", size, maxThreads); //$NON-NLS-1$
+    }
+    for(int n : PARTICLES) {
+      run("Particles/Verlet", n, maxThreads); //$NON-NLS-1$
+    }
+  }
+
+}
+
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */
@@ -0,0 +1,146 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+package org.opensourcephysics.benchmark;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import org.opensourcephysics.numerics.*;
+import org.opensourcephysics.ode.*;
+
+/**
+ * RKStepBenchmark measures the cost of a single step of the explicit Runge-Kutta solvers.
+ *
+ * The ODE is a set of uncoupled harmonic oscillators so that the rate computation is cheap and the
+ * time is dominated by the solver.  The table lists the time per step in nanoseconds and the number of
+ * bytes allocated per step for state sizes from 2 to 100,000.  Allocation is measured with the
+ * HotSpot thread allocation counter and is reported as n/a on other virtual machines.
+ *
+ * Usage: java org.opensourcephysics.benchmark.RKStepBenchmark [seconds per measurement]
+ */
+public class RKStepBenchmark {
+  static final int[] SIZES = {2, 10, 100, 1000, 10000, 100000};
+  static final String[] SOLVERS = {"RK4", "RK45", "CashKarp45", "DormandPrince45", "Fehlberg8", "Dopri5", "Dopri853"};
+
+  /**
+   * Uncoupled harmonic oscillators with state x0, v0, x1, v1, ...
+   */
+  static class Oscillators implements ODE {
+    double[] state;
+
+    Oscillators(int n) {
+      state = new double[n];
+      for(int i = 0; i<n; i += 2) {
+        state[i] = 1;
+      }
+    }
+
+    public double[] getState() {
+      return state;
+    }
+
+    public void getRate(double[] state, double[] rate) {
+      for(int i = 0; i<state.length-1; i += 2) {
+        rate[i] = state[i+1];
+        rate[i+1] = -state[i];
+      }
+    }
+
+  }
+
+  static ODESolver createSolver(String name, ODE ode) {
+    if(name.equals("Dopri5")) {
+      return new Dopri5(ode);
+    } else if(name.equals("Dopri853")) {
+      return new Dopri853(ode);
+    } else if(name.equals("RK45")) {
+      return new RK45(ode);
+    }
+    return ODESolverFactory.createODESolver(ode, name);
+  }
+
+  /**
+   * Gets the number of bytes allocated by the current thread or -1 if the virtual machine does not support it.
+   */
+  static long allocatedBytes() {
+    ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+    if(bean instanceof com.sun.management.ThreadMXBean) {
+      return((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+    return -1;
+  }
+
+  /**
+   * Steps the solver for the given time and returns the time per step and the bytes allocated per step.
+   */
+  static double[] measure(ODESolver solver, Oscillators ode, double seconds) {
+    long duration = (long) (seconds*1e9);
+    long steps = 0, batch = 1;
+    long bytes0 = allocatedBytes();
+    long t0 = System.nanoTime(), t = t0;
+    while(t-t0<duration) {
+      for(long i = 0; i<batch; i++) {
+        solver.step();
+      }
+      steps += batch;
+      batch = Math.min(2*batch, 1<<16);
+      t = System.nanoTime();
+      if(Math.abs(ode.state[0])>10) { // keep the solution bounded
+        for(int j = 0; j<ode.state.length; j += 2) {
+          ode.state[j] = 1;
+          ode.state[j+1] = 0;
+        }
+      }
+    }
+    long bytes1 = allocatedBytes();
+    double bytesPerStep = (bytes0<0) ? -1 : (bytes1-bytes0)/(double) steps;
+    return new double[] {(t-t0)/(double) steps, bytesPerStep};
+  }
+
+  public static void main(String[] args) {
+    double seconds = (args.length>0) ? Double.parseDouble(args[0]) : 1.0;
+    System.out.println("solver\tnumEqn\tns/step\tbytes/step"); //$NON-NLS-1$
+    for(int s = 0; s<SOLVERS.length; s++) {
+      for(int n = 0; n<SIZES.length; n++) {
+        Oscillators ode = new Oscillators(SIZES[n]);
+        ODESolver solver = createSolver(SOLVERS[s], ode);
+        if(solver instanceof ODEAdaptiveSolver) {
+          ((ODEAdaptiveSolver) solver).setTolerance(1e-6);
+        }
+        solver.initialize(0.01);
+        measure(solver, ode, seconds/2); // warm up
+        double[] result = measure(solver, ode, seconds);
+        String bytes = (result[1]<0) ? "n/a" : String.valueOf(Math.round(result[1])); //$NON-NLS-1$
+        System.out.println(SOLVERS[s]+"\t"+SIZES[n]+"\t"+Math.round(result[0])+"\t"+bytes); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+      }
+    }
+  }
+
+}
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */
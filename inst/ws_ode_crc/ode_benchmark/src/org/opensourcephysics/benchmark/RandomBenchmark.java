@@ -0,0 +1,251 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+
+package org.opensourcephysics.benchmark;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import org.opensourcephysics.numerics.random.*;
+
+/**
+ * RandomBenchmark compares the generators of org.opensourcephysics.numerics.random with Math.random,
+ * java.util.Random and ThreadLocalRandom.
+ *
+ * The first table gives the time per number of a single thread for nextDouble, nextInt(bound) and fill.
+ * The second table gives the throughput of a Metropolis-like loop, two random site indices and one double
+ * per trial, when every thread runs its own share of the trials.  Math.random and java.util.Random are
+ * shared by all threads, ThreadLocalRandom is per thread and the generators of this package are split
+ * streams, one per task.  Every generator is measured in a separate virtual machine.
+ *
+ * Usage: java org.opensourcephysics.benchmark.RandomBenchmark [maximum number of threads]
+ */
+public class RandomBenchmark {
+  static final int COUNT = 1<<24;
+  static final int L = 1024;
+  static final String[] NAMES = {"Math.random", "java.util.Random", "ThreadLocalRandom", "Xoshiro256StarStar", "PCG32", "Philox4x32"}; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$ //$NON-NLS-6$
+  static final Random SHARED = new Random(42);
+  static volatile double sink;
+
+  static RandomGenerator create(int g, long seed) {
+    switch(g) {
+    case 3 :
+      return new Xoshiro256StarStar(seed);
+    case 4 :
+      return new PCG32(seed);
+    default :
+      return new Philox4x32(seed);
+    }
+  }
+
+  static double nextDoubles(int g, RandomGenerator r, Random random, int count) {
+    double sum = 0;
+    switch(g) {
+    case 0 :
+      for(int i = 0; i<count; i++) {
+        sum += Math.random();
+      }
+      break;
+    case 1 :
+      for(int i = 0; i<count; i++) {
+        sum += random.nextDouble();
+      }
+      break;
+    case 2 :
+      ThreadLocalRandom t = ThreadLocalRandom.current();
+      for(int i = 0; i<count; i++) {
+        sum += t.nextDouble();
+      }
+      break;
+    default :
+      for(int i = 0; i<count; i++) {
+        sum += r.nextDouble();
+      }
+    }
+    return sum;
+  }
+
+  static double nextInts(int g, RandomGenerator r, Random random, int count) {
+    long sum = 0;
+    switch(g) {
+    case 0 :
+      for(int i = 0; i<count; i++) {
+        sum += (int) (Math.random()*L);
+      }
+      break;
+    case 1 :
+      for(int i = 0; i<count; i++) {
+        sum += random.nextInt(L);
+      }
+      break;
+    case 2 :
+      ThreadLocalRandom t = ThreadLocalRandom.current();
+      for(int i = 0; i<count; i++) {
+        sum += t.nextInt(L);
+      }
+      break;
+    default :
+      for(int i = 0; i<count; i++) {
+        sum += r.nextInt(L);
+      }
+    }
+    return sum;
+  }
+
+  /**
+   * A Metropolis-like loop: two site indices and an acceptance test per trial.
+   */
+  static double trials(int g, RandomGenerator r, int count) {
+    long accepted = 0;
+    switch(g) {
+    case 0 :
+      for(int i = 0; i<count; i++) {
+        int site = (int) (Math.random()*L)+L*(int) (Math.random()*L);
+        if(Math.random()<0.3) {
+          accepted += site;
+        }
+      }
+      break;
+    case 1 :
+      for(int i = 0; i<count; i++) {
+        int site = SHARED.nextInt(L)+L*SHARED.nextInt(L);
+        if(SHARED.nextDouble()<0.3) {
+          accepted += site;
+        }
+      }
+      break;
+    case 2 :
+      ThreadLocalRandom t = ThreadLocalRandom.current();
+      for(int i = 0; i<count; i++) {
+        int site = t.nextInt(L)+L*t.nextInt(L);
+        if(t.nextDouble()<0.3) {
+          accepted += site;
+        }
+      }
+      break;
+    default :
+      for(int i = 0; i<count; i++) {
+        int site = r.nextInt(L)+L*r.nextInt(L);
+        if(r.nextDouble()<0.3) {
+          accepted += site;
+        }
+      }
+    }
+    return accepted;
+  }
+
+  static double nanosPerNumber(int g, int test) {
+    RandomGenerator r = (g>=3) ? create(g, 42) : null;
+    Random random = new Random(42);
+    double[] a = new double[4096];
+    double best = Double.MAX_VALUE;
+    for(int repeat = 0; repeat<5; repeat++) { // the first repetitions warm up
+      long t0 = System.nanoTime();
+      if(test==0) {
+        sink += nextDoubles(g, r, random, COUNT);
+      } else if(test==1) {
+        sink += nextInts(g, r, random, COUNT);
+      } else {
+        for(int i = 0; i<COUNT; i += a.length) {
+          if(r!=null) {
+            r.fill(a);
+          } else {
+            for(int k = 0; k<a.length; k++) {
+              a[k] = (g==0) ? Math.random() : (g==1) ? random.nextDouble() : ThreadLocalRandom.current().nextDouble();
+            }
+          }
+          sink += a[i&(a.length-1)];
+        }
+      }
+      best = Math.min(best, (System.nanoTime()-t0)/(double) COUNT);
+    }
+    return best;
+  }
+
+  static double trialsPerSecond(final int g, int threads) throws InterruptedException {
+    final int perThread = COUNT/threads;
+    final RandomGenerator[] streams = (g>=3) ? create(g, 42).split(threads) : new RandomGenerator[threads];
+    double best = Double.MAX_VALUE;
+    for(int repeat = 0; repeat<3; repeat++) {
+      Thread[] workers = new Thread[threads];
+      for(int t = 0; t<threads; t++) {
+        final RandomGenerator r = streams[t];
+        workers[t] = new Thread() {
+          public void run() {
+            sink += trials(g, r, perThread);
+          }
+
+        };
+      }
+      long t0 = System.nanoTime();
+      for(Thread worker : workers) {
+        worker.start();
+      }
+      for(Thread worker : workers) {
+        worker.join();
+      }
+      best = Math.min(best, (System.nanoTime()-t0)*1e-9);
+    }
+    return perThread*threads/best;
+  }
+
+  /**
+   * Runs the tests of one generator.  Every generator runs in its own virtual machine, so that the
+   * compiler sees a single generator class as in a simulation.
+   */
+  static void runGenerator(int g, int maxThreads) throws InterruptedException {
+    System.out.printf("%-18s %10.2f %10.2f %8.2f", NAMES[g], nanosPerNumber(g, 0), nanosPerNumber(g, 1), nanosPerNumber(g, 2)); //$NON-NLS-1$
+    for(int threads = 1; threads<=maxThreads; threads *= 2) {
+      System.out.printf(" %8.1f", trialsPerSecond(g, threads)*1e-6); //$NON-NLS-1$
+    }
+    System.out.println();
+  }
+
+  public static void main(String[] args) throws Exception {
+    int maxThreads = (args.length>0) ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+    if(args.length>1) {
+      runGenerator(Integer.parseInt(args[1]), maxThreads);
+      return;
+    }
+    System.out.println("processors: "+Runtime.getRuntime().availableProcessors()); //$NON-NLS-1$
+    System.out.print("                   [ns per number]                  [Mtrials/s for 1, 2, 4 ... threads]\n"); //$NON-NLS-1$
+    System.out.println("generator          nextDouble nextInt(L)     fill"); //$NON-NLS-1$
+    String java = System.getProperty("java.home")+"/bin/java"; //$NON-NLS-1$ //$NON-NLS-2$
+    for(int g = 0; g<NAMES.length; g++) {
+      ProcessBuilder builder = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"), //$NON-NLS-1$ //$NON-NLS-2$
+        RandomBenchmark.class.getName(), Integer.toString(maxThreads), Integer.toString(g));
+      builder.redirectErrorStream(true);
+      builder.redirectOutput(ProcessBuilder.Redirect.INHERIT);
+      builder.start().waitFor();
+    }
+  }
+
+}
+
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */
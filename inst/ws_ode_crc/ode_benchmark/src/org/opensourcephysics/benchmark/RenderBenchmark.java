@@ -0,0 +1,134 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+
+package org.opensourcephysics.benchmark;
+import java.util.ArrayList;
+import org.opensourcephysics.display.Dataset;
+import org.opensourcephysics.display.PlottingPanel;
+
+/**
+ * RenderBenchmark measures the doStep rate of a simulation loop that renders a plotting panel after every
+ * step, as AbstractSimulation does when stepsPerDisplay is one.  The model is a chain of harmonic
+ * oscillators whose positions are appended to ring buffer datasets.  Each row of the table lists:
+ *
+ * <pre>
+ * display        off, synchronous rendering or asynchronous rendering
+ * steps/s        the doStep calls per second
+ * images/s       the images drawn per second
+ * dropped/s      the images per second that were replaced before they were painted
+ * </pre>
+ *
+ * The panel reports that it is showing so that it renders without a screen.  The synchronous panel draws
+ * its image on the simulation thread and then waits for the event thread.  The asynchronous panel draws on
+ * its render thread while the simulation continues.
+ *
+ * Usage: java org.opensourcephysics.benchmark.RenderBenchmark [number of points] [seconds]
+ */
+public class RenderBenchmark {
+  static final String[] MODES = {"off", "synchronous", "asynchronous"}; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+  static final int N = 1000;
+  static final int TRACES = 4;
+
+  static class ShowingPanel extends PlottingPanel {
+    ShowingPanel() {
+      super("t", "x", null); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
+    public boolean isShowing() {
+      return true;
+    }
+
+  }
+
+  public static void main(String[] args) {
+    int points = (args.length>0) ? Integer.parseInt(args[0]) : 20000;
+    double seconds = (args.length>1) ? Double.parseDouble(args[1]) : 3;
+    System.out.println("points = "+points+", traces = "+TRACES+", oscillators = "+N); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    System.out.printf("%-14s %12s %12s %12s%n", "display", "steps/s", "images/s", "dropped/s"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+    for(int mode = 0; mode<MODES.length; mode++) {
+      ShowingPanel panel = new ShowingPanel();
+      panel.setSize(640, 480);
+      panel.setBuffered(true);
+      panel.setAsyncRendering(mode==2);
+      ArrayList<Dataset> traces = new ArrayList<Dataset>();
+      for(int i = 0; i<TRACES; i++) {
+        Dataset dataset = new Dataset();
+        dataset.setConnected(true);
+        dataset.setMarkerShape(Dataset.NO_MARKER);
+        dataset.setRingBuffer(true);
+        dataset.setMaximumPoints(points);
+        traces.add(dataset);
+        panel.addDrawable(dataset);
+      }
+      double[] x = new double[N], v = new double[N];
+      x[N/2] = 1;
+      double t = 0, dt = 0.01;
+      long start = System.nanoTime(), steps = 0;
+      while(System.nanoTime()-start<seconds*1e9) {
+        t = doStep(x, v, t, dt, traces);
+        steps++;
+        if(mode>0) {
+          panel.render();
+        }
+      }
+      double elapsed = (System.nanoTime()-start)*1e-9;
+      long images = (mode==1) ? steps : panel.getRenderedImageCount();
+      System.out.printf("%-14s %12.1f %12.1f %12.1f%n", MODES[mode], steps/elapsed, images/elapsed, panel.getDroppedImageCount()/elapsed); //$NON-NLS-1$
+      panel.setAsyncRendering(false);
+    }
+    System.exit(0);
+  }
+
+  /**
+   * Advances the chain of oscillators by a velocity Verlet step and appends the positions of a few of them.
+   */
+  static double doStep(double[] x, double[] v, double t, double dt, ArrayList<Dataset> traces) {
+    for(int i = 0; i<N; i++) {
+      double left = (i>0) ? x[i-1] : 0, right = (i<N-1) ? x[i+1] : 0;
+      v[i] += 0.5*dt*(left+right-2*x[i]);
+    }
+    for(int i = 0; i<N; i++) {
+      x[i] += dt*v[i];
+    }
+    for(int i = 0; i<N; i++) {
+      double left = (i>0) ? x[i-1] : 0, right = (i<N-1) ? x[i+1] : 0;
+      v[i] += 0.5*dt*(left+right-2*x[i]);
+    }
+    t += dt;
+    for(int i = 0; i<traces.size(); i++) {
+      traces.get(i).append(t, x[N/2+i]);
+    }
+    return t;
+  }
+
+}
+
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */
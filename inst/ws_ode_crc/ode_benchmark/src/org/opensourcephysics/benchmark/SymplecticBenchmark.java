@@ -0,0 +1,252 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+
+package org.opensourcephysics.benchmark;
+import org.opensourcephysics.numerics.*;
+
+/**
+ * SymplecticBenchmark compares the energy conservation and the cost of the symplectic solvers with
+ * RK45MultiStep on long orbit integrations.
+ *
+ * The problems are an eccentric Kepler orbit and the figure-eight orbit of three equal masses, the system of
+ * sip.ch05.ThreeBody.  Every solver takes the same number of steps of the same size; RK45MultiStep adapts its
+ * internal steps to a tolerance of 1e-6 within each step.  Each row of the table lists:
+ *
+ * <pre>
+ * problem   the name of the problem
+ * solver    the name of the solver
+ * forces    the number of force evaluations per step
+ * ns/step   the time per step
+ * dE(first) the largest relative energy error in the first tenth of the run
+ * dE(last)  the largest relative energy error in the last tenth of the run
+ * </pre>
+ *
+ * The energy is sampled every 97 steps.  The energy error of the symplectic solvers oscillates but does not
+ * grow, so that dE(first) and dE(last) are of the same size until roundoff dominates.  The error of
+ * RK45MultiStep grows with the length of the run.
+ *
+ * Usage: java org.opensourcephysics.benchmark.SymplecticBenchmark [number of steps]
+ */
+public class SymplecticBenchmark {
+  static final String[] SOLVERS = {"VelocityVerlet", "ForestRuth", "Yoshida4", "PEFRL", "Yoshida6", "Yoshida8", "RK45MultiStep"};
+  static final int SAMPLE_INTERVAL = 97; // steps between energy samples, not a divisor of the orbit periods
+
+  /**
+   * A system of point masses in the plane with gravitational interactions that can be stepped by a
+   * SymplecticSolver and, through its interleaved state x1, vx1, y1, vy1, ..., t, by an ODESolver.
+   */
+  static class Gravity implements SeparableHamiltonianODE, ODE {
+    String name;
+    double[] mass;
+    double[] q, v, a;
+    double[] state;
+
+    Gravity(String name, double[] mass, double[] q, double[] v) {
+      this.name = name;
+      this.mass = mass;
+      this.q = q;
+      this.v = v;
+      a = new double[q.length];
+      state = new double[2*q.length+1];
+      for(int i = 0; i<q.length; i++) {
+        state[2*i] = q[i];
+        state[2*i+1] = v[i];
+      }
+    }
+
+    static Gravity kepler() {
+      double e = 0.5; // start at the perihelion of an orbit with semi-major axis 1
+      return new Gravity("Kepler", new double[] {1}, new double[] {1-e, 0}, new double[] {0, Math.sqrt((1+e)/(1-e))});
+    }
+
+    static Gravity figureEight() {
+      double x = 0.97000436, y = -0.24308753, vx = -0.93240737, vy = -0.86473146;
+      return new Gravity("ThreeBody", new double[] {1, 1, 1}, new double[] {x, y, -x, -y, 0, 0}, new double[] {-vx/2, -vy/2, -vx/2, -vy/2, vx, vy});
+    }
+
+    public double[] getPositions() {
+      return q;
+    }
+
+    public double[] getVelocities() {
+      return v;
+    }
+
+    public void getAccelerations(double[] q, double[] a) {
+      int n = mass.length;
+      if(n==1) { // a body around a fixed center
+        double r2 = q[0]*q[0]+q[1]*q[1];
+        double r3 = r2*Math.sqrt(r2);
+        a[0] = -q[0]/r3;
+        a[1] = -q[1]/r3;
+        return;
+      }
+      for(int i = 0; i<2*n; i++) {
+        a[i] = 0;
+      }
+      for(int i = 0; i<n; i++) {
+        for(int j = i+1; j<n; j++) {
+          double dx = q[2*i]-q[2*j];
+          double dy = q[2*i+1]-q[2*j+1];
+          double r2 = dx*dx+dy*dy;
+          double r3 = r2*Math.sqrt(r2);
+          a[2*i] -= mass[j]*dx/r3;
+          a[2*i+1] -= mass[j]*dy/r3;
+          a[2*j] += mass[i]*dx/r3;
+          a[2*j+1] += mass[i]*dy/r3;
+        }
+      }
+    }
+
+    public double[] getState() {
+      return state;
+    }
+
+    public void getRate(double[] state, double[] rate) {
+      int m = q.length;
+      for(int i = 0; i<m; i++) {
+        q[i] = state[2*i];
+      }
+      getAccelerations(q, a);
+      for(int i = 0; i<m; i++) {
+        rate[2*i] = state[2*i+1];
+        rate[2*i+1] = a[i];
+      }
+      rate[2*m] = 1;
+    }
+
+    /**
+     * Copies the interleaved state of the ODESolver to the positions and velocities.
+     */
+    void stateToArrays() {
+      for(int i = 0; i<q.length; i++) {
+        q[i] = state[2*i];
+        v[i] = state[2*i+1];
+      }
+    }
+
+    double energy() {
+      int n = mass.length;
+      double e = 0;
+      for(int i = 0; i<n; i++) {
+        e += 0.5*mass[i]*(v[2*i]*v[2*i]+v[2*i+1]*v[2*i+1]);
+      }
+      if(n==1) {
+        return e-1/Math.sqrt(q[0]*q[0]+q[1]*q[1]);
+      }
+      for(int i = 0; i<n; i++) {
+        for(int j = i+1; j<n; j++) {
+          double dx = q[2*i]-q[2*j];
+          double dy = q[2*i+1]-q[2*j+1];
+          e -= mass[i]*mass[j]/Math.sqrt(dx*dx+dy*dy);
+        }
+      }
+      return e;
+    }
+
+  }
+
+  static SymplecticSolver createSymplecticSolver(String name, SeparableHamiltonianODE ode) {
+    if(name.equals("VelocityVerlet")) {
+      return SymplecticSolver.VelocityVerlet(ode);
+    } else if(name.equals("ForestRuth")) {
+      return SymplecticSolver.ForestRuth(ode);
+    } else if(name.equals("Yoshida4")) {
+      return SymplecticSolver.Yoshida4(ode);
+    } else if(name.equals("PEFRL")) {
+      return SymplecticSolver.PEFRL(ode);
+    } else if(name.equals("Yoshida6")) {
+      return SymplecticSolver.Yoshida6(ode);
+    }
+    return SymplecticSolver.Yoshida8(ode);
+  }
+
+  /**
+   * Runs a solver and prints a row of the table.
+   */
+  static void run(Gravity problem, String name, double stepSize, long steps) {
+    ODESolver solver;
+    String forces;
+    boolean symplectic = !name.equals("RK45MultiStep");
+    if(symplectic) {
+      SymplecticSolver s = createSymplecticSolver(name, problem);
+      forces = String.valueOf(s.getForceEvaluationsPerStep());
+      solver = s;
+    } else {
+      RK45MultiStep rk = new RK45MultiStep(problem);
+      rk.setTolerance(1e-6);
+      rk.setStatisticsEnabled(true);
+      solver = rk;
+      forces = null;
+    }
+    solver.initialize(stepSize);
+    double e0 = problem.energy();
+    double first = 0, last = 0; // largest energy errors in the first and in the last tenth of the run
+    long tenth = steps/10, nanos = 0, taken = 0;
+    while(taken<steps) {
+      long n = Math.min(SAMPLE_INTERVAL, steps-taken);
+      long t0 = System.nanoTime();
+      for(long i = 0; i<n; i++) {
+        solver.step();
+      }
+      nanos += System.nanoTime()-t0;
+      taken += n;
+      if(!symplectic) {
+        problem.stateToArrays();
+      }
+      double error = Math.abs((problem.energy()-e0)/e0);
+      if(taken<=tenth) {
+        first = Math.max(first, error);
+      } else if(taken>steps-tenth) {
+        last = Math.max(last, error);
+      }
+    }
+    if(!symplectic) {
+      ODESolverStatistics stats = ((RK45MultiStep) solver).getStatistics();
+      forces = String.format("%.1f", stats.getRateEvaluations()/(double) steps); //$NON-NLS-1$
+    }
+    System.out.println(problem.name+"\t"+name+"\t"+forces+"\t"+Math.round(nanos/(double) steps)+"\t" //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+                       +String.format("%.2e\t%.2e", first, last)); //$NON-NLS-1$
+  }
+
+  public static void main(String[] args) {
+    long steps = (args.length>0) ? (long) Double.parseDouble(args[0]) : 10000000L;
+    System.out.println("problem\tsolver\tforces\tns/step\tdE(first)\tdE(last)"); //$NON-NLS-1$
+    for(int s = 0; s<SOLVERS.length; s++) {
+      run(Gravity.kepler(), SOLVERS[s], 2*Math.PI/400, steps);
+    }
+    for(int s = 0; s<SOLVERS.length; s++) {
+      run(Gravity.figureEight(), SOLVERS[s], 0.005, steps);
+    }
+  }
+
+}
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */
@@ -0,0 +1,454 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+package org.opensourcephysics.benchmark;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Random;
+import org.opensourcephysics.numerics.*;
+import org.opensourcephysics.ode.*;
+import org.opensourcephysics.ode.ODEInterpolationSolver;
+import org.opensourcephysics.ode.IRK.Radau5Adaptive;
+import org.opensourcephysics.sip.ch06.Lorenz;
+
+/**
+ * WorkPrecisionBenchmark compares the cost and the accuracy of the ODE solvers on a set of standard problems.
+ *
+ * Every solver that can be created by ODESolverFactory is run together with the MultistepSolvers and
+ * ODEInterpolationSolver factory methods, the Radau5Adaptive implicit solver and the variable order multistep
+ * solvers AdamsBashforthMoulton and BDF.  The problems are a simple harmonic oscillator, an eccentric Kepler
+ * orbit, the Lorenz attractor, the stiff Robertson chemical kinetics and a Lennard-Jones cluster.  Fixed step
+ * solvers are run with a sequence of step sizes and adaptive solvers with a sequence of tolerances.  Solvers
+ * that maintain a uniform step size are asked for ten steps of equal length.  Each row of the table lists:
+ *
+ * <pre>
+ * problem   the name of the problem
+ * solver    the name of the solver
+ * setting   the step size of a fixed step solver or the tolerance of an adaptive solver
+ * steps     the number of invocations of the solver's step method
+ * rates     the number of rate evaluations
+ * ms/run    the time required to integrate the problem from start to end
+ * steps/s   the throughput in steps per second
+ * rates/s   the number of rate evaluations per second
+ * error     the maximum global error at the end time relative to the magnitude of each state variable
+ * </pre>
+ *
+ * The error is computed from the exact solution if it is known and from a Dopri853 solution with a tight
+ * tolerance otherwise.  Runs that take longer than the time limit are reported as capped, runs that produce a
+ * non-finite state as diverged, and runs in which the solver throws an exception as failed.
+ *
+ * Usage: java org.opensourcephysics.benchmark.WorkPrecisionBenchmark [seconds per measurement] [problem]
+ */
+public class WorkPrecisionBenchmark {
+  static final String[] FIXED_STEP_SOLVERS = {"RK4", "Adams4", "Adams5", "Adams6", "Butcher5", "Euler", "EulerRichardson", "Fehlberg8", "Heun3", "Ralston2", "Verlet"};
+  static final String[] ADAPTIVE_SOLVERS = {"CashKarp45", "DormandPrince45", "Radau5Adaptive", "AdamsBashforthMoulton", "BDF"};
+  static final String[] UNIFORM_STEP_SOLVERS = {"Multistep", "MultistepSolvers.Dopri5", "MultistepSolvers.Dopri853", "MultistepSolvers.Radau5", "MultistepSolvers.RK45", "ODEInterpolationSolver.Dopri5", "ODEInterpolationSolver.Dopri853", "ODEInterpolationSolver.Radau5"};
+  static final double[] TOLERANCES = {1e-3, 1e-5, 1e-7, 1e-9, 1e-11};
+  static final int NUM_REFINEMENTS = 5; // the number of step sizes for fixed step solvers
+  static final int NUM_UNIFORM_STEPS = 10;
+  static final double REFERENCE_TOLERANCE = 1e-12;
+  static final int FIXED = 0, ADAPTIVE = 1, UNIFORM = 2;
+  static long maxNanos = 10000000000L;  // time limit for a single run
+
+  /**
+   * Thrown when a run exceeds the time limit.
+   */
+  static class TimeLimitException extends RuntimeException {}
+
+  /**
+   * A test problem.  The last state variable is the time.
+   */
+  static abstract class Problem implements ODE {
+    String name;
+    double tEnd;
+    int baseSteps;       // the number of steps of the largest fixed step size
+    boolean secondOrder; // the state is x, v pairs followed by the time
+    double[] initialState, state, reference;
+    long rateCount;
+    long deadline = Long.MAX_VALUE;
+
+    Problem(String name, double tEnd, int baseSteps, boolean secondOrder, double[] initialState) {
+      this.name = name;
+      this.tEnd = tEnd;
+      this.baseSteps = baseSteps;
+      this.secondOrder = secondOrder;
+      this.initialState = initialState;
+      state = initialState.clone();
+    }
+
+    /**
+     * Gets the exact state at the end time or null if the solution is not known.
+     */
+    double[] getExactSolution() {
+      return null;
+    }
+
+    abstract void computeRate(double[] state, double[] rate);
+
+    void reset() {
+      System.arraycopy(initialState, 0, state, 0, state.length);
+      rateCount = 0;
+    }
+
+    public double[] getState() {
+      return state;
+    }
+
+    /**
+     * Counts the rate evaluations and stops a run that exceeds the time limit.  The limit is checked here
+     * because a solver may never return from a step that does not converge.
+     */
+    public void getRate(double[] state, double[] rate) {
+      if(((++rateCount&1023)==0)&&(System.nanoTime()>deadline)) {
+        throw new TimeLimitException();
+      }
+      computeRate(state, rate);
+    }
+
+  }
+
+  /**
+   * A harmonic oscillator with state x, v, t.
+   */
+  static class SHO extends Problem {
+    SHO() {
+      super("SHO", 10, 100, true, new double[] {1, 0, 0}); //$NON-NLS-1$
+    }
+
+    double[] getExactSolution() {
+      return new double[] {Math.cos(tEnd), -Math.sin(tEnd), tEnd};
+    }
+
+    void computeRate(double[] state, double[] rate) {
+      rate[0] = state[1];
+      rate[1] = -state[0];
+      rate[2] = 1;
+    }
+
+  }
+
+  /**
+   * A Kepler orbit with eccentricity 0.5 and state x, vx, y, vy, t integrated for one period.
+   */
+  static class Kepler extends Problem {
+    Kepler() {
+      super("Kepler", 2*Math.PI, 200, true, new double[] {0.5, 0, 0, Math.sqrt(3), 0}); //$NON-NLS-1$
+    }
+
+    double[] getExactSolution() {
+      double[] exact = initialState.clone();
+      exact[4] = tEnd;
+      return exact;
+    }
+
+    void computeRate(double[] state, double[] rate) {
+      double r2 = state[0]*state[0]+state[2]*state[2];
+      double r3 = r2*Math.sqrt(r2);
+      rate[0] = state[1];
+      rate[1] = -state[0]/r3;
+      rate[2] = state[3];
+      rate[3] = -state[2]/r3;
+      rate[4] = 1;
+    }
+
+  }
+
+  /**
+   * The Lorenz attractor from chapter 6 of the csm text with state x, y, z, t.
+   */
+  static class LorenzProblem extends Problem {
+    Lorenz lorenz;
+
+    LorenzProblem(Lorenz lorenz) {
+      super("Lorenz", 2, 200, false, lorenz.getState().clone()); //$NON-NLS-1$
+      this.lorenz = lorenz;
+    }
+
+    void computeRate(double[] state, double[] rate) {
+      lorenz.getRate(state, rate);
+    }
+
+  }
+
+  /**
+   * Robertson's stiff chemical kinetics with state y1, y2, y3, t.
+   */
+  static class Robertson extends Problem {
+    Robertson() {
+      super("Robertson", 10, 2500, false, new double[] {1, 0, 0, 0}); //$NON-NLS-1$
+    }
+
+    void computeRate(double[] state, double[] rate) {
+      double r1 = 0.04*state[0];
+      double r2 = 1e4*state[1]*state[2];
+      double r3 = 3e7*state[1]*state[1];
+      rate[0] = -r1+r2;
+      rate[1] = r1-r2-r3;
+      rate[2] = r3;
+      rate[3] = 1;
+    }
+
+  }
+
+  /**
+   * A two-dimensional Lennard-Jones cluster with state x, vx, y, vy for every particle followed by the time.
+   * The forces are computed by summing over all pairs of particles.  Periodic boundaries are not used because
+   * the discontinuity of the minimum image force would limit the accuracy of every solver.
+   */
+  static class LJCluster extends Problem {
+    int n;
+
+    LJCluster(int nx) {
+      super("LJ"+(nx*nx), 1, 100, true, latticeState(nx)); //$NON-NLS-1$
+      n = nx*nx;
+    }
+
+    /**
+     * Places the particles on a square lattice with random velocities and zero total momentum.
+     */
+    static double[] latticeState(int nx) {
+      int n = nx*nx;
+      double[] state = new double[4*n+1];
+      Random random = new Random(1);
+      double vxSum = 0, vySum = 0;
+      for(int i = 0; i<n; i++) {
+        state[4*i] = 1.12*(i%nx);
+        state[4*i+1] = random.nextDouble()-0.5;
+        state[4*i+2] = 1.12*(i/nx);
+        state[4*i+3] = random.nextDouble()-0.5;
+        vxSum += state[4*i+1];
+        vySum += state[4*i+3];
+      }
+      for(int i = 0; i<n; i++) {
+        state[4*i+1] -= vxSum/n;
+        state[4*i+3] -= vySum/n;
+      }
+      return state;
+    }
+
+    void computeRate(double[] state, double[] rate) {
+      for(int i = 0; i<n; i++) {
+        rate[4*i] = state[4*i+1];
+        rate[4*i+1] = 0;
+        rate[4*i+2] = state[4*i+3];
+        rate[4*i+3] = 0;
+      }
+      for(int i = 0; i<n-1; i++) {
+        for(int j = i+1; j<n; j++) {
+          double dx = state[4*i]-state[4*j];
+          double dy = state[4*i+2]-state[4*j+2];
+          double oneOverR2 = 1.0/(dx*dx+dy*dy);
+          double oneOverR6 = oneOverR2*oneOverR2*oneOverR2;
+          double fOverR = 48.0*oneOverR6*(oneOverR6-0.5)*oneOverR2;
+          rate[4*i+1] += fOverR*dx;
+          rate[4*i+3] += fOverR*dy;
+          rate[4*j+1] -= fOverR*dx;
+          rate[4*j+3] -= fOverR*dy;
+        }
+      }
+      rate[4*n] = 1;
+    }
+
+  }
+
+  static ODESolver createSolver(String name, ODE ode) {
+    if(name.equals("Radau5Adaptive")) {                      //$NON-NLS-1$
+      return new Radau5Adaptive(ode);
+    } else if(name.equals("AdamsBashforthMoulton")) {        //$NON-NLS-1$
+      return new AdamsBashforthMoulton(ode);
+    } else if(name.equals("BDF")) {                          //$NON-NLS-1$
+      return new BDF(ode);
+    } else if(name.equals("Dopri853")) {                     //$NON-NLS-1$
+      return new Dopri853(ode);
+    } else if(name.equals("MultistepSolvers.Dopri5")) {      //$NON-NLS-1$
+      return MultistepSolvers.Dopri5(ode);
+    } else if(name.equals("MultistepSolvers.Dopri853")) {    //$NON-NLS-1$
+      return MultistepSolvers.Dopri853(ode);
+    } else if(name.equals("MultistepSolvers.Radau5")) {      //$NON-NLS-1$
+      return MultistepSolvers.Radau5(ode);
+    } else if(name.equals("MultistepSolvers.RK45")) {        //$NON-NLS-1$
+      return MultistepSolvers.RK45(ode);
+    } else if(name.equals("ODEInterpolationSolver.Dopri5")) { //$NON-NLS-1$
+      return ODEInterpolationSolver.Dopri5(ode);
+    } else if(name.equals("ODEInterpolationSolver.Dopri853")) { //$NON-NLS-1$
+      return ODEInterpolationSolver.Dopri853(ode);
+    } else if(name.equals("ODEInterpolationSolver.Radau5")) { //$NON-NLS-1$
+      return ODEInterpolationSolver.Radau5(ode);
+    }
+    return ODESolverFactory.createODESolver(ode, name);
+  }
+
+  /**
+   * Integrates a problem from zero to the end time.
+   *
+   * @param problem the problem
+   * @param solverName the name of the solver
+   * @param kind FIXED, ADAPTIVE or UNIFORM
+   * @param setting the number of steps of a fixed step solver or the tolerance of an adaptive solver
+   * @return the number of steps
+   */
+  static long integrate(Problem problem, String solverName, int kind, double setting) {
+    problem.reset();
+    ODESolver solver = createSolver(solverName, problem);
+    long steps = 0;
+    if(kind==FIXED) {
+      int n = (int) setting;
+      solver.initialize(problem.tEnd/n);
+      for(int i = 0; i<n; i++) {
+        solver.step();
+        steps++;
+      }
+    } else if(kind==UNIFORM) {
+      solver.initialize(problem.tEnd/NUM_UNIFORM_STEPS);
+      ((ODEAdaptiveSolver) solver).setTolerance(setting);
+      for(int i = 0; i<NUM_UNIFORM_STEPS; i++) {
+        solver.step();
+        steps++;
+      }
+    } else {
+      double[] state = problem.state;
+      int last = state.length-1;
+      solver.initialize(problem.tEnd/NUM_UNIFORM_STEPS); // the initial trial step
+      ((ODEAdaptiveSolver) solver).setTolerance(setting);
+      while(problem.tEnd-state[last]>1e-12*problem.tEnd) {
+        double remaining = problem.tEnd-state[last];
+        if(solver.getStepSize()>remaining) {
+          solver.setStepSize(remaining);
+        }
+        solver.step();
+        steps++;
+      }
+    }
+    return steps;
+  }
+
+  /**
+   * Gets the maximum error of the state variables excluding the time.
+   * The error is absolute for values smaller than one and relative otherwise.
+   */
+  static double globalError(double[] state, double[] reference) {
+    double error = 0;
+    for(int i = 0; i<reference.length-1; i++) {
+      error = Math.max(error, Math.abs(state[i]-reference[i])/Math.max(1, Math.abs(reference[i])));
+    }
+    return error;
+  }
+
+  /**
+   * Runs a solver on a problem with a single setting and prints a row of the table.
+   */
+  static void measure(PrintStream out, Problem problem, String solverName, int kind, double setting, double seconds) {
+    String label = problem.name+"\t"+solverName+"\t"                                           //$NON-NLS-1$ //$NON-NLS-2$
+                   +String.format("%.2e", (kind==FIXED) ? problem.tEnd/setting : setting)+"\t"; //$NON-NLS-1$ //$NON-NLS-2$
+    long steps;
+    problem.deadline = System.nanoTime()+maxNanos;
+    try {
+      steps = integrate(problem, solverName, kind, setting); // warm up and check the result
+    } catch(TimeLimitException ex) {
+      out.println(label+"capped"); //$NON-NLS-1$
+      return;
+    } catch(RuntimeException ex) {
+      out.println(label+"failed: "+ex); //$NON-NLS-1$
+      return;
+    } finally {
+      problem.deadline = Long.MAX_VALUE;
+    }
+    long rates = problem.rateCount;
+    double error = globalError(problem.state, problem.reference);
+    if(Double.isNaN(error)||Double.isInfinite(error)) {
+      out.println(label+steps+"\t"+rates+"\tdiverged"); //$NON-NLS-1$ //$NON-NLS-2$
+      return;
+    }
+    long duration = (long) (seconds*1e9);
+    int runs = 0;
+    long t0 = System.nanoTime(), t;
+    do {
+      integrate(problem, solverName, kind, setting);
+      runs++;
+      t = System.nanoTime();
+    } while(t-t0<duration);
+    double secondsPerRun = (t-t0)*1e-9/runs;
+    out.println(label+steps+"\t"+rates+"\t"+String.format("%.3f", 1000*secondsPerRun)+"\t"      //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+                +Math.round(steps/secondsPerRun)+"\t"+Math.round(rates/secondsPerRun)+"\t" //$NON-NLS-1$ //$NON-NLS-2$
+                +String.format("%.2e", error));                                             //$NON-NLS-1$
+  }
+
+  static void run(PrintStream out, Problem problem, double seconds) {
+    problem.reference = problem.getExactSolution();
+    if(problem.reference==null) {
+      integrate(problem, "Dopri853", ADAPTIVE, REFERENCE_TOLERANCE); //$NON-NLS-1$
+      problem.reference = problem.state.clone();
+    }
+    for(int s = 0; s<FIXED_STEP_SOLVERS.length; s++) {
+      if(FIXED_STEP_SOLVERS[s].equals("Verlet")&&!problem.secondOrder) { //$NON-NLS-1$
+        continue; // Verlet requires x, v pairs
+      }
+      for(int k = 0, n = problem.baseSteps; k<NUM_REFINEMENTS; k++, n *= 2) {
+        measure(out, problem, FIXED_STEP_SOLVERS[s], FIXED, n, seconds);
+      }
+    }
+    for(int s = 0; s<ADAPTIVE_SOLVERS.length; s++) {
+      for(int k = 0; k<TOLERANCES.length; k++) {
+        measure(out, problem, ADAPTIVE_SOLVERS[s], ADAPTIVE, TOLERANCES[k], seconds);
+      }
+    }
+    for(int s = 0; s<UNIFORM_STEP_SOLVERS.length; s++) {
+      for(int k = 0; k<TOLERANCES.length; k++) {
+        measure(out, problem, UNIFORM_STEP_SOLVERS[s], UNIFORM, TOLERANCES[k], seconds);
+      }
+    }
+  }
+
+  public static void main(String[] args) {
+    double seconds = (args.length>0) ? Double.parseDouble(args[0]) : 0.5;
+    String only = (args.length>1) ? args[1] : null;
+    Lorenz lorenz = new Lorenz();
+    lorenz.initialize(1, 1, 20);
+    Problem[] problems = {new SHO(), new Kepler(), new LorenzProblem(lorenz), new Robertson(), new LJCluster(12)};
+    PrintStream out = System.out;
+    // discard diagnostic output printed by the solvers so that it neither corrupts the table nor the timing
+    System.setOut(new PrintStream(new OutputStream() {
+      public void write(int b) {}
+
+    }));
+    try {
+      out.println("problem\tsolver\tsetting\tsteps\trates\tms/run\tsteps/s\trates/s\terror"); //$NON-NLS-1$
+      for(int p = 0; p<problems.length; p++) {
+        if((only==null)||problems[p].name.equalsIgnoreCase(only)) {
+          run(out, problems[p], seconds);
+        }
+      }
+    } finally {
+      System.setOut(out);
+    }
+  }
+
+}
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */
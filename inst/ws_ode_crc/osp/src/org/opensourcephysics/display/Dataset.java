@@ -14,7 +14,6 @@ import java.awt.Shape;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Ellipse2D;
 import java.awt.geom.GeneralPath;
-import java.awt.geom.Point2D;
 import java.awt.geom.Rectangle2D;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
@@ -23,6 +22,7 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.StringTokenizer;
 import javax.swing.table.AbstractTableModel;
@@ -156,7 +156,42 @@ public class Dataset extends AbstractTableModel implements Measurable, LogMeasur
 
   protected ArrayList<ErrorBar> errorBars = new ArrayList<ErrorBar>();
   protected Shape customMarker = new Rectangle2D.Double(-markerSize/2, -markerSize/2, markerSize, markerSize);
-  
+
+  private boolean levelOfDetail = false;
+  // draw from the min/max pyramid instead of the general path
+
+  private static final int LEAF_SHIFT = 3;
+  // a node of the lowest level of the pyramid holds 8 points
+
+  private int[][] levels = new int[0][];
+  // node i of level k holds the points i*2^(k+3) to (i+1)*2^(k+3)-1; levels[k][4*i] to levels[k][4*i+3] are the
+  // indices of the points with the smallest x, largest x, smallest y and largest y, or -1 if all y are NaN
+
+  private int levelCount = 0;
+  // the number of points in the pyramid
+
+  private GeneralPath pixelPath = new GeneralPath();
+  private boolean pixelPathStarted;
+  private double scaleX, offsetX, scaleY, offsetY, pixelWidth, pixelHeight;
+  private int[] nodePoints = new int[6];
+  private long[] markedPixels = new long[0];
+  private int markedWidth, markedHeight;
+
+  private boolean ringBuffer = false;
+  // drop the oldest point as each new point is appended once maxPoints have been stored
+
+  private int head = 0;
+  // the array index of the first point; the points wrap around the end of the arrays after points are removed
+
+  private int gap = -1;
+  // the point in front of which the free space of the arrays is kept while sorted data is inserted, or -1
+
+  private boolean rangeStale = false;
+  // an extreme value was removed so the minimum and maximum values are found again when they are needed
+
+  private int pathCount = 0;
+  // the number of points in the general path
+
   /**
    *  Dataset constructor.
    */
@@ -239,6 +274,7 @@ public class Dataset extends AbstractTableModel implements Measurable, LogMeasur
    * @param  _sorted  <code>true<\code> to sort
    */
   public void setSorted(boolean _sorted) {
+    normalizePoints();
     sorted = _sorted;
     if(sorted) {
       insertionSort();
@@ -258,6 +294,35 @@ public class Dataset extends AbstractTableModel implements Measurable, LogMeasur
     }
   }
 
+  /**
+   *  Sets level-of-detail drawing.  The points are divided into blocks of 8, 16, 32, ... consecutive points
+   *  that form a pyramid, and the points with the smallest and largest x and y of every block are kept up to
+   *  date as data is appended.  A block within a column or a row of pixels is drawn by its first, last and
+   *  extreme points, and a block outside the panel by its first and last point.  Markers are drawn once per
+   *  pixel that holds points.  The plot looks the same as a plot of every point, but the time to draw it grows
+   *  with the size of the panel rather than the number of points.
+   *
+   *  The general path is not built in this mode.  Bars, posts and markers on log scales are drawn point by point.
+   *
+   * @param  lod  <code>true<\code> to draw the levels of detail
+   */
+  public void setLevelOfDetail(boolean lod) {
+    if(levelOfDetail==lod) {
+      return;
+    }
+    levelOfDetail = lod;
+    recalculatePath();
+  }
+
+  /**
+   *  Gets the level-of-detail flag.
+   *
+   * @return  <code>true<\code> if levels of detail are drawn
+   */
+  public boolean isLevelOfDetail() {
+    return levelOfDetail;
+  }
+
   /**
    *  Sets the data point fill, edge, and error bar colors to the same color.
    *
@@ -391,6 +456,26 @@ public class Dataset extends AbstractTableModel implements Measurable, LogMeasur
     this.maxPoints = maxPoints;
   }
 
+  /**
+   *  Sets the ring buffer flag.  Once the maximum number of points has been stored, a dataset that is a ring
+   *  buffer drops its oldest point as each new point is appended.  Otherwise a quarter of the points are dropped
+   *  when the dataset is full.  Sorted datasets always drop the points with the smallest x.
+   *
+   * @param  ring  <code>true<\code> to drop one point at a time
+   */
+  public void setRingBuffer(boolean ring) {
+    ringBuffer = ring;
+  }
+
+  /**
+   *  Gets the ring buffer flag.
+   *
+   * @return    <code>true<\code> if the oldest point is dropped as each new point is appended
+   */
+  public boolean isRingBuffer() {
+    return ringBuffer;
+  }
+
   /**
    * Gets the half-width of the data point marker.
    *
@@ -493,6 +578,7 @@ public class Dataset extends AbstractTableModel implements Measurable, LogMeasur
    */
   public boolean isMeasured() {
     if(visible) {
+      checkRange();
       return ymin<Double.MAX_VALUE; // changed by D.Brown
       // return index >= 1;
     }
@@ -505,6 +591,7 @@ public class Dataset extends AbstractTableModel implements Measurable, LogMeasur
    * @return    xmin
    */
   public double getXMin() {
+    checkRange();
     return xmin;
   }
 
@@ -514,6 +601,7 @@ public class Dataset extends AbstractTableModel implements Measurable, LogMeasur
    * @return    xmax
    */
   public double getXMax() {
+    checkRange();
     return xmax;
   }
 
@@ -523,6 +611,7 @@ public class Dataset extends AbstractTableModel implements Measurable, LogMeasur
    * @return    ymin
    */
   public double getYMin() {
+    checkRange();
     return ymin;
   }
 
@@ -532,6 +621,7 @@ public class Dataset extends AbstractTableModel implements Measurable, LogMeasur
    * @return    ymax
    */
   public double getYMax() {
+    checkRange();
     return ymax;
   }
 
@@ -540,6 +630,7 @@ public class Dataset extends AbstractTableModel implements Measurable, LogMeasur
    * @return minimum
    */
   public double getXMinLogscale() {
+    checkRange();
     return xminLogscale;
   }
 
@@ -548,6 +639,7 @@ public class Dataset extends AbstractTableModel implements Measurable, LogMeasur
    * @return maximum
    */
   public double getXMaxLogscale() {
+    checkRange();
     return xmaxLogscale;
   }
 
@@ -556,6 +648,7 @@ public class Dataset extends AbstractTableModel implements Measurable, LogMeasur
    * @return minimum
    */
   public double getYMinLogscale() {
+    checkRange();
     return yminLogscale;
   }
 
@@ -564,6 +657,7 @@ public class Dataset extends AbstractTableModel implements Measurable, LogMeasur
    * @return maximum
    */
   public double getYMaxLogscale() {
+    checkRange();
     return ymaxLogscale;
   }
 
@@ -573,7 +667,8 @@ public class Dataset extends AbstractTableModel implements Measurable, LogMeasur
    *
    * @return a double[index][2] array of data
    */
-  public double[][] getPoints() {
+  public synchronized double[][] getPoints() {
+    normalizePoints();
     double[][] temp = new double[index][2];
     for(int i = 0; i<index; i++) {
       temp[i] = new double[] {xpoints[i], ypoints[i]};
@@ -587,7 +682,7 @@ public class Dataset extends AbstractTableModel implements Measurable, LogMeasur
    *
    * @return a double[2][index] array of data
    */
-  public double[][] getData2D() {
+  public synchronized double[][] getData2D() {
     double[][] data = new double[2][index];
     data[0] = getXPoints();
     data[1] = getYPoints();
@@ -619,7 +714,8 @@ public class Dataset extends AbstractTableModel implements Measurable, LogMeasur
    *
    * @return xpoints[]
    */
-  public double[] getXPoints() {
+  public synchronized double[] getXPoints() {
+    normalizePoints();
     double[] temp = new double[index];
     System.arraycopy(xpoints, 0, temp, 0, index);
     return temp;
@@ -630,7 +726,8 @@ public class Dataset extends AbstractTableModel implements Measurable, LogMeasur
    *
    * @return    ypoints[]
    */
-  public double[] getYPoints() {
+  public synchronized double[] getYPoints() {
+    normalizePoints();
     double[] temp = new double[index];
     System.arraycopy(ypoints, 0, temp, 0, index);
     return temp;
@@ -730,7 +827,7 @@ public class Dataset extends AbstractTableModel implements Measurable, LogMeasur
    */
   public Object getValueAt(int rowIndex, int columnIndex) {
     columnIndex = Dataset.convertTableColumnIndex(colVisible, columnIndex);
-    rowIndex = rowIndex*stride;
+    rowIndex = arrayIndex(rowIndex*stride);
     // conversionFactor added by D Brown Dec 2010
     if(columnIndex==0) {
       return new Double(xpoints[rowIndex]);
@@ -772,23 +869,42 @@ public class Dataset extends AbstractTableModel implements Measurable, LogMeasur
    * @param  x
    * @param  y
    */
-  public void append(double x, double y) {
+  public synchronized void append(double x, double y) {
     if(Double.isNaN(x)||Double.isInfinite(x)||Double.isInfinite(y)) {
       return;
     }
+    if(ringBuffer&&!sorted) {
+      if(index>=maxPoints) {
+        removeFirstPoints(index-maxPoints+1);
+      } else if(index>=xpoints.length) { // grow the ring without dropping points
+        normalizePoints();
+        int newCapacity = Math.min(xpoints.length*2, maxPoints);
+        xpoints = Arrays.copyOf(xpoints, newCapacity);
+        ypoints = Arrays.copyOf(ypoints, newCapacity);
+      }
+    }
     if(index>=xpoints.length) {
       increaseCapacity(xpoints.length*2);
     }
-    xpoints[index] = x;
-    ypoints[index] = y;
-    // generalPath.append(new Rectangle2D.Double(x, y, 0, 0), true);
-    if(!Double.isNaN(y)) {
-      Point2D curPt = generalPath.getCurrentPoint();
-      if(curPt==null) {
-        generalPath.moveTo((float) x, (float) y);
-      } else {
-        generalPath.lineTo((float) x, (float) y);
+    if(sorted&&(index>0)&&((gap>=0)||(x<xpoints[arrayIndex(index-1)]))) {
+      // insert the datum into the gap in front of the first larger x
+      int i = (x<xpoints[arrayIndex(index-1)]) ? insertionPoint(x) : index;
+      moveGap(i);
+      xpoints[gap] = x;
+      ypoints[gap] = y;
+      gap++;
+      if((i<pathCount)||(i<levelCount)) { // the later points have moved
+        recalculatePath();
+      }
+    } else {
+      if(gap>=0) {
+        normalizePoints();
       }
+      int i = arrayIndex(index);
+      xpoints[i] = x;
+      ypoints[i] = y;
+    }
+    if(!Double.isNaN(y)) {
       ymax = Math.max(y, ymax);
       ymin = Math.min(y, ymin);
       if(y>0) {
@@ -803,12 +919,6 @@ public class Dataset extends AbstractTableModel implements Measurable, LogMeasur
       xminLogscale = Math.min(x, xminLogscale);
     }
     index++;
-    // move the new datum if x is less than the last value.
-    if(sorted&&(index>1)&&(x<xpoints[index-2])) {
-      moveDatum(index-1);
-      // the new datum is out of place so move it
-      recalculatePath();
-    }
   }
 
   /**
@@ -834,14 +944,68 @@ public class Dataset extends AbstractTableModel implements Measurable, LogMeasur
    * @param  _ypoints
    */
   public void append(double[] _xpoints, double[] _ypoints) {
-    boolean badData = false;
-    for(int i = 0; i<_xpoints.length; i++) {
+    append(_xpoints, _ypoints, 0, _xpoints.length);
+  }
+
+  /**
+   * Appends part of (x,y) arrays to the Dataset. Any y value of Double.NaN is treated as null
+   * in plots and tables and points with an x value of Double.NaN or an infinite value are skipped.
+   *
+   * The points are filtered, measured and copied in a single pass.  The general path is built
+   * when the dataset is drawn.  If the dataset is sorted, the new points are sorted by a merge sort
+   * and merged with the stored points, so data that is already sorted is appended in linear time.
+   *
+   * @param  _xpoints
+   * @param  _ypoints
+   * @param  offset the index of the first point in the arrays
+   * @param  length the number of points
+   */
+  public synchronized void append(double[] _xpoints, double[] _ypoints, int offset, int length) {
+    boolean ring = ringBuffer&&!sorted;
+    if(!ring&&(length>maxPoints)) { // cannot add more than the maximum capacity
+      offset += length-maxPoints;
+      length = maxPoints;
+    }
+    if(length<1) {
+      return;
+    }
+    if(ring&&(index>maxPoints)) { // the maximum has been lowered
+      removeFirstPoints(index-maxPoints);
+    }
+    normalizePoints();
+    if(index+length>xpoints.length) {
+      if(ring) { // grow the ring without dropping points
+        int newCapacity = Math.max(xpoints.length, Math.min(Math.max(xpoints.length*2, index+length), maxPoints));
+        xpoints = Arrays.copyOf(xpoints, newCapacity);
+        ypoints = Arrays.copyOf(ypoints, newCapacity);
+      } else {
+        increaseCapacity(xpoints.length+length);
+      }
+    }
+    int n = index, dropped = 0;
+    int limit = ring ? Math.min(maxPoints, xpoints.length) : xpoints.length;
+    boolean inOrder = true;
+    double lastx = (index>0) ? xpoints[index-1] : -Double.MAX_VALUE;
+    for(int i = offset, end = offset+length; i<end; i++) {
       double xp = _xpoints[i];
       double yp = _ypoints[i];
       if(Double.isNaN(xp)||Double.isInfinite(xp)||Double.isInfinite(yp)) {
-        badData = true;
         continue;
       }
+      int k = head+n;
+      if(k>=xpoints.length) {
+        k -= xpoints.length;
+      }
+      if(n>=limit) { // the ring is full so the oldest point is dropped
+        head = (head+1)%xpoints.length;
+        dropped++;
+        n--;
+      }
+      xpoints[k] = xp;
+      ypoints[k] = yp;
+      n++;
+      inOrder = inOrder&&(xp>=lastx);
+      lastx = xp;
       xmax = Math.max(xp, xmax);
       xmin = Math.min(xp, xmin);
       if(xp>0) {
@@ -855,33 +1019,16 @@ public class Dataset extends AbstractTableModel implements Measurable, LogMeasur
           ymaxLogscale = Math.max(yp, ymaxLogscale);
           yminLogscale = Math.min(yp, yminLogscale);
         }
-        Point2D curPt = generalPath.getCurrentPoint();
-        if(curPt==null) {
-          generalPath.moveTo((float) xp, (float) yp);
-        } else {
-          generalPath.lineTo((float) xp, (float) yp);
-        }
       }
     }
-    int pointsAdded = _xpoints.length;
-    int availableSpots = xpoints.length-index;
-    boolean increasedCapacity = false;
-    if(pointsAdded>availableSpots) {
-      increaseCapacity(xpoints.length+pointsAdded);
-      increasedCapacity = true;
-    }
-    pointsAdded = Math.min(pointsAdded, maxPoints); //cannot add more than the maximum capacity
-    System.arraycopy(_xpoints, Math.max(0, _xpoints.length-pointsAdded), xpoints, index, pointsAdded);
-    System.arraycopy(_ypoints, Math.max(0, _xpoints.length-pointsAdded), ypoints, index, pointsAdded);
-    index += pointsAdded;
-    if(badData) {
-      removeBadData();
-    }
-    if(sorted) {
-      insertionSort();
+    index = n;
+    if(dropped>0) {
+      rangeStale = true;
+      recalculatePath();
     }
-    if(increasedCapacity) {
-      resetXYMinMax();
+    if(sorted&&!inOrder) {
+      mergeSort(xpoints, ypoints, 0, index);
+      recalculatePath();
     }
   }
 
@@ -925,9 +1072,10 @@ public class Dataset extends AbstractTableModel implements Measurable, LogMeasur
    *    separated by tabs.
    *    @param outputFile
    */
-  public void write(String outputFile) {
+  public synchronized void write(String outputFile) {
     try {
       PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(outputFile)));
+      normalizePoints();
       for(int i = 0; i<index; i++) {
         writer.println(xpoints[i]+"\t"+ypoints[i]);         //$NON-NLS-1$
       }
@@ -945,10 +1093,11 @@ public class Dataset extends AbstractTableModel implements Measurable, LogMeasur
    * @param  drawingPanel
    * @param  g
    */
-  public void draw(DrawingPanel drawingPanel, Graphics g) {
+  public synchronized void draw(DrawingPanel drawingPanel, Graphics g) {
     if(!visible) {
       return;
     }
+    normalizePoints();
     try {
       Graphics2D g2 = (Graphics2D) g;
       if(markerShape!=NO_MARKER) {
@@ -963,11 +1112,13 @@ public class Dataset extends AbstractTableModel implements Measurable, LogMeasur
   /**
    *  Clear all data from this Dataset.
    */
-  public void clear() {
+  public synchronized void clear() {
     index = 0;
+    head = 0;
+    gap = -1;
     xpoints = new double[initialSize];
     ypoints = new double[initialSize];
-    generalPath.reset();
+    recalculatePath();
     errorBars.clear();
     resetXYMinMax();
   }
@@ -977,7 +1128,8 @@ public class Dataset extends AbstractTableModel implements Measurable, LogMeasur
    *
    * @return    the data
    */
-  public String toString() {
+  public synchronized String toString() {
+    normalizePoints();
     if(index==0) {
       return "No data in dataset."; //$NON-NLS-1$
     }
@@ -1095,47 +1247,25 @@ public class Dataset extends AbstractTableModel implements Measurable, LogMeasur
   }
 
   /**
-   *  Perform an insertion sort of the data set. Since data will be partially
-   *  sorted this should be fast. Added by W. Christian.
+   *  Sorts the data set by increasing x.  Runs of sorted points are merged, so partially
+   *  sorted data is sorted quickly and unsorted data is sorted in O(n log n) time.
+   *  Points with equal x keep their order.
    */
   protected void insertionSort() {
-    boolean dataChanged = false;
-    if(index<2) {
-      return;
-      // need at least two points to sort.
-    }
-    for(int i = 1; i<index; i++) {
-      if(xpoints[i]<xpoints[i-1]) {
-        // is the i-th datum smaller?
-        dataChanged = true;
-        moveDatum(i);
-      }
-    }
-    if(dataChanged) {
+    normalizePoints();
+    if(mergeSort(xpoints, ypoints, 0, index)) {
       recalculatePath();
     }
   }
 
   /**
-   *  Recalculate the general path.
+   *  Recalculate the general path.  Subclasses that change the points in place call this method.
+   *  The path is built again when it is drawn.
    */
   protected void recalculatePath() {
     generalPath.reset();
-    if(index<1) {
-      return;
-    }
-    int i = 0;
-    for(; i<index; i++) {
-      if(!Double.isNaN(ypoints[i])) {
-        generalPath.moveTo((float) xpoints[i], (float) ypoints[i]);
-        break;
-      }
-    }
-    for(int j = i+1; j<index; j++) {
-      if(!Double.isNaN(ypoints[j])) {
-        generalPath.lineTo((float) xpoints[j], (float) ypoints[j]);
-      }
-    }
+    pathCount = 0;
+    levelCount = 0; // the pyramid is built again when it is drawn
   }
 
   /**
@@ -1148,19 +1278,86 @@ public class Dataset extends AbstractTableModel implements Measurable, LogMeasur
       return;
       // zero-th point cannot be out-of-place
     }
+    normalizePoints();
     double x = xpoints[loc];
     // save the old values
     double y = ypoints[loc];
-    for(int i = 0; i<index; i++) {
-      if(xpoints[i]>x) {
-        // find the insertion point
-        System.arraycopy(xpoints, i, xpoints, i+1, loc-i);
-        xpoints[i] = x;
-        System.arraycopy(ypoints, i, ypoints, i+1, loc-i);
-        ypoints[i] = y;
-        return;
+    int lo = 0, hi = loc; // find the insertion point
+    while(lo<hi) {
+      int mid = (lo+hi)>>>1;
+      if(xpoints[mid]>x) {
+        hi = mid;
+      } else {
+        lo = mid+1;
       }
     }
+    if(lo<loc) {
+      System.arraycopy(xpoints, lo, xpoints, lo+1, loc-lo);
+      xpoints[lo] = x;
+      System.arraycopy(ypoints, lo, ypoints, lo+1, loc-lo);
+      ypoints[lo] = y;
+    }
+  }
+
+  /**
+   *  Gets the array index of a point.  The points are stored in order from index 0 of the xpoints and ypoints
+   *  arrays when they are drawn and when they are copied, but the oldest points may be removed from the front
+   *  of the arrays and the free space of the arrays may be in front of the larger x values of a sorted dataset.
+   *
+   * @param  i  the point
+   * @return    the array index
+   */
+  protected int arrayIndex(int i) {
+    int k = head+i;
+    if((gap>=0)&&(i>=gap)) {
+      k += xpoints.length-index;
+    }
+    return(k<xpoints.length) ? k : k-xpoints.length;
+  }
+
+  /**
+   *  Stores the points in order from index 0 of the xpoints and ypoints arrays.
+   *  Subclasses that read the arrays outside of the draw method call this method first.
+   *  Appends, copies and draws synchronize on the dataset, so that a dataset can be drawn while another
+   *  thread appends points.
+   */
+  protected synchronized void normalizePoints() {
+    if(gap>=0) {
+      int n = xpoints.length-index; // the length of the gap
+      System.arraycopy(xpoints, gap+n, xpoints, gap, index-gap);
+      System.arraycopy(ypoints, gap+n, ypoints, gap, index-gap);
+      gap = -1;
+    }
+    if(head!=0) {
+      rotate(xpoints, head);
+      rotate(ypoints, head);
+      head = 0;
+    }
+  }
+
+  /**
+   *  Removes the oldest points.  The arrays are not copied.
+   *
+   * @param  n  the number of points
+   */
+  protected synchronized void removeFirstPoints(int n) {
+    n = Math.min(n, index);
+    if(n<1) {
+      return;
+    }
+    if(gap>=0) {
+      normalizePoints();
+    }
+    for(int i = 0; (i<n)&&!rangeStale; i++) {
+      double x = xpoints[arrayIndex(i)], y = ypoints[arrayIndex(i)];
+      rangeStale = (x==xmin)||(x==xmax)||(y==ymin)||(y==ymax)||(x==xminLogscale)||(y==yminLogscale);
+    }
+    head = (head+n)%xpoints.length;
+    index -= n;
+    if(index==0) {
+      head = 0;
+    }
+    recalculatePath();
   }
 
   /**
@@ -1181,8 +1378,10 @@ public class Dataset extends AbstractTableModel implements Measurable, LogMeasur
     if(noNumbers) {
       return;
     }
-    AffineTransform at = drawingPanel.getPixelTransform();
-    Shape s = generalPath.createTransformedShape(at);
+    if(!levelOfDetail) {
+      updatePath();
+    }
+    Shape s = levelOfDetail ? getPixelPath(drawingPanel) : generalPath.createTransformedShape(drawingPanel.getPixelTransform());
     g2.setColor(lineColor);
     g2.draw(s);
   }
@@ -1205,8 +1404,10 @@ public class Dataset extends AbstractTableModel implements Measurable, LogMeasur
     if(noNumbers) {
       return;
     }
-    AffineTransform at = drawingPanel.getPixelTransform();
-    Shape s = generalPath.createTransformedShape(at);
+    if(!levelOfDetail) {
+      updatePath();
+    }
+    Shape s = levelOfDetail ? getPixelPath(drawingPanel) : generalPath.createTransformedShape(drawingPanel.getPixelTransform());
     g2.setColor(fillColor);
     g2.fill(s);
     g2.setColor(edgeColor);
@@ -1224,10 +1425,6 @@ public class Dataset extends AbstractTableModel implements Measurable, LogMeasur
       this.drawFilledPlot(drawingPanel, g2);
       return;
     }
-    double xp = 0;
-    double yp = 0;
-    Shape shape = null;
-    int size = markerSize*2+1;
     Shape clipShape = g2.getClip();
     // increase the clip so as to include the entire marker
     g2.setClip(drawingPanel.leftGutter-markerSize-1, drawingPanel.topGutter-markerSize-1, drawingPanel.getWidth()-drawingPanel.leftGutter-drawingPanel.rightGutter+2+2*markerSize, drawingPanel.getHeight()-drawingPanel.bottomGutter-drawingPanel.topGutter+2+2*markerSize);
@@ -1235,88 +1432,31 @@ public class Dataset extends AbstractTableModel implements Measurable, LogMeasur
     if(viewRect!=null) { // decrease the clip if we are in a scroll pane
       g2.clipRect(viewRect.x, viewRect.y, viewRect.x+viewRect.width, viewRect.y+viewRect.height);
     }
-    for(int i = 0; i<index; i++) {
-      if(Double.isNaN(ypoints[i])) {
-        continue;
-      }
-      if(drawingPanel.isLogScaleX()&&(xpoints[i]<=0)) {
-        continue;
+    if(levelOfDetail&&(markerShape!=BAR)&&(markerShape!=POST)&&!drawingPanel.isLogScaleX()&&!drawingPanel.isLogScaleY()) {
+      updateLevels();
+      markedWidth = drawingPanel.getWidth();
+      markedHeight = drawingPanel.getHeight();
+      int n = (markedWidth*markedHeight+63)/64;
+      if(markedPixels.length<n) {
+        markedPixels = new long[n];
+      } else {
+        Arrays.fill(markedPixels, 0, n, 0);
       }
-      if(drawingPanel.isLogScaleY()&&(ypoints[i]<=0)) {
-        continue;
+      if(levels.length>0) {
+        drawMarkers(levels.length-1, 0, drawingPanel, g2);
       }
-      xp = drawingPanel.xToPix(xpoints[i]);
-      yp = drawingPanel.yToPix(ypoints[i]);
-      switch(markerShape) {
-         case BAR :                                      // draw a bar graph.
-           double bottom = Math.min(drawingPanel.yToPix(0), drawingPanel.yToPix(drawingPanel.getYMin()));
-           double barHeight = bottom-yp;
-           if(barHeight>0) {
-             shape = new Rectangle2D.Double(xp-markerSize, yp, size, barHeight);
-           } else {
-             shape = new Rectangle2D.Double(xp-markerSize, bottom, size, -barHeight);
-           }
-           g2.setColor(fillColor);
-           g2.fill(shape);
-           if(edgeColor!=fillColor) {
-             g2.setColor(edgeColor);
-             g2.draw(shape);
-           }
-           break;
-         case POST :
-           bottom = Math.min(drawingPanel.yToPix(0), drawingPanel.yToPix(drawingPanel.getYMin()));
-           shape = new Rectangle2D.Double(xp-markerSize, yp-markerSize, size, size);
-           g2.setColor(edgeColor);
-           g2.drawLine((int) xp, (int) yp, (int) xp, (int) bottom);
-           g2.setColor(fillColor);
-           g2.fill(shape);
-           if(edgeColor!=fillColor) {
-             g2.setColor(edgeColor);
-             g2.draw(shape);
-           }
-           break;
-         case SQUARE :
-           shape = new Rectangle2D.Double(xp-markerSize, yp-markerSize, size, size);
-           g2.setColor(fillColor);
-           g2.fill(shape);
-           if(edgeColor!=fillColor) {
-             g2.setColor(edgeColor);
-             g2.draw(shape);
-           }
-           break;
-         case CIRCLE :
-           shape = new Ellipse2D.Double(xp-markerSize, yp-markerSize, size, size);
-           g2.setColor(fillColor);
-           g2.fill(shape);
-           if(edgeColor!=fillColor) {
-             g2.setColor(edgeColor);
-             g2.draw(shape);
-           }
-           break;
-         case PIXEL :
-           shape = new Rectangle2D.Double(xp, yp, 1, 1); // this produces a one pixel shape
-           g2.setColor(edgeColor);
-           g2.draw(shape);
-           // draw and center the point
-           break;
-         case CUSTOM :
-           Shape temp = AffineTransform.getTranslateInstance(xp, yp).createTransformedShape(customMarker);
-           g2.setColor(fillColor);
-           g2.fill(temp);
-           if(edgeColor!=fillColor) {
-             g2.setColor(edgeColor);
-             g2.draw(temp);
-           }
-           break;
-         default :
-           shape = new Rectangle2D.Double(xp-markerSize, yp-markerSize, size, size);
-           g2.setColor(fillColor);
-           g2.fill(shape);
-           if(edgeColor!=fillColor) {
-             g2.setColor(edgeColor);
-             g2.draw(shape);
-           }
-           break;
+    } else {
+      for(int i = 0; i<index; i++) {
+        if(Double.isNaN(ypoints[i])) {
+          continue;
+        }
+        if(drawingPanel.isLogScaleX()&&(xpoints[i]<=0)) {
+          continue;
+        }
+        if(drawingPanel.isLogScaleY()&&(ypoints[i]<=0)) {
+          continue;
+        }
+        drawMarker(drawingPanel, g2, drawingPanel.xToPix(xpoints[i]), drawingPanel.yToPix(ypoints[i]));
       }
     }
     Iterator<ErrorBar> it = errorBars.iterator();
@@ -1327,23 +1467,347 @@ public class Dataset extends AbstractTableModel implements Measurable, LogMeasur
   }
 
   /**
-   *  Removes infinities and NaN (x only) from the dataset.
+   *  Draws a marker.
+   *
+   * @param  drawingPanel
+   * @param  g2
+   * @param  xp  the x pixel
+   * @param  yp  the y pixel
    */
-  private void removeBadData() {
-    for(int i = 0; i<index; i++) {
-      if(Double.isNaN(xpoints[i])||Double.isInfinite(xpoints[i])||Double.isInfinite(ypoints[i])) {
-        if((index==1)||(i==index-1)) {
-          // we only have one point and it is a bad point!
-          index--;
+  private void drawMarker(DrawingPanel drawingPanel, Graphics2D g2, double xp, double yp) {
+    Shape shape = null;
+    int size = markerSize*2+1;
+    switch(markerShape) {
+       case BAR :                                      // draw a bar graph.
+         double bottom = Math.min(drawingPanel.yToPix(0), drawingPanel.yToPix(drawingPanel.getYMin()));
+         double barHeight = bottom-yp;
+         if(barHeight>0) {
+           shape = new Rectangle2D.Double(xp-markerSize, yp, size, barHeight);
+         } else {
+           shape = new Rectangle2D.Double(xp-markerSize, bottom, size, -barHeight);
+         }
+         g2.setColor(fillColor);
+         g2.fill(shape);
+         if(edgeColor!=fillColor) {
+           g2.setColor(edgeColor);
+           g2.draw(shape);
+         }
+         break;
+       case POST :
+         bottom = Math.min(drawingPanel.yToPix(0), drawingPanel.yToPix(drawingPanel.getYMin()));
+         shape = new Rectangle2D.Double(xp-markerSize, yp-markerSize, size, size);
+         g2.setColor(edgeColor);
+         g2.drawLine((int) xp, (int) yp, (int) xp, (int) bottom);
+         g2.setColor(fillColor);
+         g2.fill(shape);
+         if(edgeColor!=fillColor) {
+           g2.setColor(edgeColor);
+           g2.draw(shape);
+         }
+         break;
+       case SQUARE :
+         shape = new Rectangle2D.Double(xp-markerSize, yp-markerSize, size, size);
+         g2.setColor(fillColor);
+         g2.fill(shape);
+         if(edgeColor!=fillColor) {
+           g2.setColor(edgeColor);
+           g2.draw(shape);
+         }
+         break;
+       case CIRCLE :
+         shape = new Ellipse2D.Double(xp-markerSize, yp-markerSize, size, size);
+         g2.setColor(fillColor);
+         g2.fill(shape);
+         if(edgeColor!=fillColor) {
+           g2.setColor(edgeColor);
+           g2.draw(shape);
+         }
+         break;
+       case PIXEL :
+         shape = new Rectangle2D.Double(xp, yp, 1, 1); // this produces a one pixel shape
+         g2.setColor(edgeColor);
+         g2.draw(shape);
+         // draw and center the point
+         break;
+       case CUSTOM :
+         Shape temp = AffineTransform.getTranslateInstance(xp, yp).createTransformedShape(customMarker);
+         g2.setColor(fillColor);
+         g2.fill(temp);
+         if(edgeColor!=fillColor) {
+           g2.setColor(edgeColor);
+           g2.draw(temp);
+         }
+         break;
+       default :
+         shape = new Rectangle2D.Double(xp-markerSize, yp-markerSize, size, size);
+         g2.setColor(fillColor);
+         g2.fill(shape);
+         if(edgeColor!=fillColor) {
+           g2.setColor(edgeColor);
+           g2.draw(shape);
+         }
+         break;
+    }
+  }
+
+  /**
+   *  Draws the markers of a node of the pyramid.  Points that fall on the same pixel give the same marker,
+   *  so only the first of them is drawn.  The pixels with markers are marked in a bitmap.
+   */
+  private void drawMarkers(int k, int node, DrawingPanel drawingPanel, Graphics2D g2) {
+    int[] level = levels[k];
+    int f = 4*node;
+    if((f>=level.length)||(level[f]<0)) {
+      return;
+    }
+    int left = drawingPanel.xToPix(xpoints[level[f]]), right = drawingPanel.xToPix(xpoints[level[f+1]]);
+    int bottom = drawingPanel.yToPix(ypoints[level[f+2]]), top = drawingPanel.yToPix(ypoints[level[f+3]]);
+    int margin = markerSize+1;
+    if((right<-margin)||(left>drawingPanel.getWidth()+margin)||(bottom<-margin)||(top>drawingPanel.getHeight()+margin)) {
+      return;
+    }
+    if((left==right)&&(top==bottom)) {
+      drawMarkerOnce(drawingPanel, g2, left, top);
+      return;
+    }
+    if(k>0) {
+      drawMarkers(k-1, 2*node, drawingPanel, g2);
+      drawMarkers(k-1, 2*node+1, drawingPanel, g2);
+      return;
+    }
+    int start = node<<LEAF_SHIFT, end = Math.min(index, start+(1<<LEAF_SHIFT));
+    for(int i = start; i<end; i++) {
+      if(!Double.isNaN(ypoints[i])) {
+        drawMarkerOnce(drawingPanel, g2, drawingPanel.xToPix(xpoints[i]), drawingPanel.yToPix(ypoints[i]));
+      }
+    }
+  }
+
+  private void drawMarkerOnce(DrawingPanel drawingPanel, Graphics2D g2, int xp, int yp) {
+    if((xp>=0)&&(xp<markedWidth)&&(yp>=0)&&(yp<markedHeight)) {
+      int pixel = yp*markedWidth+xp;
+      long bit = 1L<<pixel;
+      if((markedPixels[pixel>>>6]&bit)!=0) {
+        return;
+      }
+      markedPixels[pixel>>>6] |= bit;
+    }
+    drawMarker(drawingPanel, g2, xp, yp);
+  }
+
+  /**
+   *  Gets the line through the points in pixel coordinates from the pyramid.
+   *
+   * @param  drawingPanel
+   * @return the path
+   */
+  private GeneralPath getPixelPath(DrawingPanel drawingPanel) {
+    updateLevels();
+    double[] m = drawingPanel.getPixelMatrix(); // the transformation has no shear
+    scaleX = m[0];
+    offsetX = m[4];
+    scaleY = m[3];
+    offsetY = m[5];
+    pixelWidth = drawingPanel.getWidth();
+    pixelHeight = drawingPanel.getHeight();
+    pixelPath.reset();
+    pixelPathStarted = false;
+    if(levels.length>0) {
+      addToPixelPath(levels.length-1, 0);
+    }
+    return pixelPath;
+  }
+
+  /**
+   *  Adds the points of a node of the pyramid to the pixel path.
+   */
+  private void addToPixelPath(int k, int node) {
+    int[] level = levels[k];
+    int f = 4*node;
+    if((f>=level.length)||(level[f]<0)) {
+      return;
+    }
+    int start = node<<(LEAF_SHIFT+k), end = Math.min(index, start+(1<<(LEAF_SHIFT+k)));
+    double x0 = scaleX*xpoints[level[f]]+offsetX, x1 = scaleX*xpoints[level[f+1]]+offsetX;
+    double y0 = scaleY*ypoints[level[f+2]]+offsetY, y1 = scaleY*ypoints[level[f+3]]+offsetY;
+    double left = Math.min(x0, x1), right = Math.max(x0, x1);
+    double top = Math.min(y0, y1), bottom = Math.max(y0, y1);
+    int first = start, last = end-1;
+    while(Double.isNaN(ypoints[first])) {
+      first++;
+    }
+    while(Double.isNaN(ypoints[last])) {
+      last--;
+    }
+    if((right<0)||(left>pixelWidth)||(bottom<0)||(top>pixelHeight)) {
+      // the points are on the far side of a border, and so is the line from the first to the last point
+      addToPixelPath(first);
+      addToPixelPath(last);
+      return;
+    }
+    if((Math.round(left)==Math.round(right))||(Math.round(top)==Math.round(bottom))) {
+      // in a column or row of pixels the line fills the pixels between the extreme points
+      // and the first and last points connect the neighbors; strokes are normalized to the nearest pixel
+      int[] p = nodePoints;
+      p[0] = first;
+      p[1] = last;
+      System.arraycopy(level, f, p, 2, 4);
+      Arrays.sort(p);
+      for(int i = 0; i<p.length; i++) {
+        if((i==0)||(p[i]!=p[i-1])) {
+          addToPixelPath(p[i]);
+        }
+      }
+      return;
+    }
+    if(k>0) {
+      addToPixelPath(k-1, 2*node);
+      addToPixelPath(k-1, 2*node+1);
+      return;
+    }
+    for(int i = first; i<=last; i++) {
+      if(!Double.isNaN(ypoints[i])) {
+        addToPixelPath(i);
+      }
+    }
+  }
+
+  private void addToPixelPath(int i) {
+    float x = (float) (scaleX*xpoints[i]+offsetX), y = (float) (scaleY*ypoints[i]+offsetY);
+    if(pixelPathStarted) {
+      pixelPath.lineTo(x, y);
+    } else {
+      pixelPath.moveTo(x, y);
+      pixelPathStarted = true;
+    }
+  }
+
+  /**
+   *  Adds the points that were appended since the last update to the pyramid.
+   */
+  private void updateLevels() {
+    if((levelCount==0)||(levelCount>index)) {
+      levels = new int[0][];
+      levelCount = 0;
+    }
+    for(int i = levelCount; i<index; i++) {
+      while((levels.length==0)||((i>>(LEAF_SHIFT+levels.length-1))>0)) {
+        addLevel();
+      }
+      double x = xpoints[i], y = ypoints[i];
+      if(Double.isNaN(y)) {
+        continue;
+      }
+      for(int k = 0; k<levels.length; k++) {
+        int f = 4*(i>>(LEAF_SHIFT+k));
+        int[] level = levels[k];
+        if(f>=level.length) {
+          level = levels[k] = growLevel(level, f+4);
+        }
+        if(level[f]<0) { // the first point of the node
+          level[f] = level[f+1] = level[f+2] = level[f+3] = i;
+          continue;
+        }
+        boolean changed = false;
+        if(x<xpoints[level[f]]) {
+          level[f] = i;
+          changed = true;
+        }
+        if(x>xpoints[level[f+1]]) {
+          level[f+1] = i;
+          changed = true;
+        }
+        if(y<ypoints[level[f+2]]) {
+          level[f+2] = i;
+          changed = true;
+        }
+        if(y>ypoints[level[f+3]]) {
+          level[f+3] = i;
+          changed = true;
+        }
+        if(!changed) { // the point is not an extreme of the larger nodes either
           break;
-          // exit the loop
         }
-        System.arraycopy(xpoints, i+1, xpoints, i, index-i-1);
-        System.arraycopy(ypoints, i+1, ypoints, i, index-i-1);
-        index--;
-        i--;
       }
     }
+    levelCount = index;
+  }
+
+  /**
+   *  Adds a level above the top level of the pyramid.  Its first node holds the points of the first node of
+   *  the old top level.
+   */
+  private void addLevel() {
+    int k = levels.length;
+    int[] level = growLevel(new int[0], 64);
+    if(k>0) {
+      System.arraycopy(levels[k-1], 0, level, 0, 4);
+    }
+    levels = Arrays.copyOf(levels, k+1);
+    levels[k] = level;
+  }
+
+  private static int[] growLevel(int[] level, int minLength) {
+    int n = level.length;
+    level = Arrays.copyOf(level, Math.max(minLength, 2*n));
+    Arrays.fill(level, n, level.length, -1);
+    return level;
+  }
+
+  /**
+   *  Sorts points by increasing x with a stable merge sort that starts from the runs of sorted points.
+   *
+   * @param  x     the x values
+   * @param  y     the y values
+   * @param  from  the first point
+   * @param  to    the point after the last point
+   * @return       <code>true<\code> if points were moved
+   */
+  private static boolean mergeSort(double[] x, double[] y, int from, int to) {
+    int[] runs = new int[16]; // the first point of each run of sorted points
+    int count = 1;
+    for(int i = from+1; i<to; i++) {
+      if(x[i]<x[i-1]) {
+        if(count+1>=runs.length) {
+          runs = Arrays.copyOf(runs, 2*runs.length);
+        }
+        runs[count++] = i-from;
+      }
+    }
+    if(count==1) {
+      return false;
+    }
+    int n = to-from;
+    runs[count] = n;
+    double[] ax = Arrays.copyOfRange(x, from, to), ay = Arrays.copyOfRange(y, from, to);
+    double[] bx = new double[n], by = new double[n];
+    while(count>1) {
+      int k = 0;
+      for(int r = 0; r<count; r += 2) {
+        int lo = runs[r], mid = runs[Math.min(r+1, count)], hi = runs[Math.min(r+2, count)];
+        for(int i = lo, j = mid, m = lo; m<hi; m++) {
+          if((j>=hi)||((i<mid)&&(ax[i]<=ax[j]))) {
+            bx[m] = ax[i];
+            by[m] = ay[i++];
+          } else {
+            bx[m] = ax[j];
+            by[m] = ay[j++];
+          }
+        }
+        runs[k++] = lo;
+      }
+      runs[k] = n;
+      count = k;
+      double[] temp = ax;
+      ax = bx;
+      bx = temp;
+      temp = ay;
+      ay = by;
+      by = temp;
+    }
+    System.arraycopy(ax, 0, x, from, n);
+    System.arraycopy(ay, 0, y, from, n);
+    return true;
   }
 
   /**
@@ -1352,6 +1816,7 @@ public class Dataset extends AbstractTableModel implements Measurable, LogMeasur
    * @param  newCapacity
    */
   private synchronized void increaseCapacity(int newCapacity) {
+    normalizePoints();
     int pointsAdded = newCapacity-xpoints.length;
     newCapacity = Math.min(newCapacity, maxPoints); // do not let the number of data points exceed maxPoints
     int newIndex = Math.min(index, (3*newCapacity)/4); // drop 1/4 of the old data if the capacity is no longer increasing
@@ -1373,15 +1838,109 @@ public class Dataset extends AbstractTableModel implements Measurable, LogMeasur
     index = newIndex;
   }
 
+  /**
+   *  Builds the part of the general path that holds the points appended since the path was last drawn.
+   */
+  private void updatePath() {
+    if(pathCount>index) {
+      recalculatePath();
+    }
+    boolean started = pathCount>0;
+    for(int i = pathCount; i<index; i++) {
+      if(!Double.isNaN(ypoints[i])) {
+        if(started) {
+          generalPath.lineTo((float) xpoints[i], (float) ypoints[i]);
+        } else {
+          generalPath.moveTo((float) xpoints[i], (float) ypoints[i]);
+          started = true;
+        }
+      }
+    }
+    pathCount = started ? index : 0;
+  }
+
+  /**
+   *  Finds the first point of a sorted dataset whose x is larger than the given x.
+   *
+   * @param  x
+   * @return    the point
+   */
+  private int insertionPoint(double x) {
+    int lo = 0, hi = index;
+    while(lo<hi) {
+      int mid = (lo+hi)>>>1;
+      if(xpoints[arrayIndex(mid)]>x) {
+        hi = mid;
+      } else {
+        lo = mid+1;
+      }
+    }
+    return lo;
+  }
+
+  /**
+   *  Moves the free space of the arrays in front of the given point.  Only the points between the old and the
+   *  new position of the gap are copied, so data that arrives almost sorted is inserted in constant time.
+   *
+   * @param  i  the point
+   */
+  private void moveGap(int i) {
+    if(gap<0) {
+      if(head!=0) {
+        normalizePoints();
+      }
+      gap = index;
+    }
+    int n = xpoints.length-index; // the length of the gap
+    if(i<gap) {
+      System.arraycopy(xpoints, i, xpoints, i+n, gap-i);
+      System.arraycopy(ypoints, i, ypoints, i+n, gap-i);
+    } else if(i>gap) {
+      System.arraycopy(xpoints, gap+n, xpoints, gap, i-gap);
+      System.arraycopy(ypoints, gap+n, ypoints, gap, i-gap);
+    }
+    gap = i;
+  }
+
+  /**
+   *  Rotates an array so that the element at the given index becomes the first element.
+   *
+   * @param  a  the array
+   * @param  k  the index
+   */
+  private static void rotate(double[] a, int k) {
+    int n = a.length;
+    if(k<=n-k) {
+      double[] temp = Arrays.copyOf(a, k);
+      System.arraycopy(a, k, a, 0, n-k);
+      System.arraycopy(temp, 0, a, n-k, k);
+    } else {
+      double[] temp = Arrays.copyOfRange(a, k, n);
+      System.arraycopy(a, 0, a, n-k, k);
+      System.arraycopy(temp, 0, a, 0, n-k);
+    }
+  }
+
+  /**
+   *  Finds the minimum and maximum values again if an extreme value has been removed.
+   */
+  private void checkRange() {
+    if(rangeStale) {
+      resetXYMinMax();
+    }
+  }
+
   /**
    *  Reset the minimum and maximum values.
    */
-  private void resetXYMinMax() {
+  private synchronized void resetXYMinMax() {
+    rangeStale = false;
     xmax = xmaxLogscale = -Double.MAX_VALUE;
     ymax = ymaxLogscale = -Double.MAX_VALUE;
     xmin = xminLogscale = Double.MAX_VALUE;
     ymin = yminLogscale = Double.MAX_VALUE;
-    for(int i = 0; i<index; i++) {
+    for(int j = 0; j<index; j++) {
+      int i = arrayIndex(j);
       if(Double.isNaN(xpoints[i])||Double.isInfinite(xpoints[i])||Double.isInfinite(ypoints[i])) {
         continue;
       }
@@ -1494,6 +2053,8 @@ public class Dataset extends AbstractTableModel implements Measurable, LogMeasur
       control.setValue("marker_size", data.getMarkerSize());   //$NON-NLS-1$
       control.setValue("sorted", data.isSorted());             //$NON-NLS-1$
       control.setValue("connected", data.isConnected());       //$NON-NLS-1$
+      control.setValue("level_of_detail", data.levelOfDetail); //$NON-NLS-1$
+      control.setValue("ring_buffer", data.ringBuffer);        //$NON-NLS-1$
       control.setValue("name", data.name);                     //$NON-NLS-1$
       control.setValue("x_name", data.xColumnName);            //$NON-NLS-1$
       control.setValue("y_name", data.yColumnName);            //$NON-NLS-1$
@@ -1542,6 +2103,12 @@ public class Dataset extends AbstractTableModel implements Measurable, LogMeasur
       }
       data.setSorted(control.getBoolean("sorted"));       //$NON-NLS-1$
       data.setConnected(control.getBoolean("connected")); //$NON-NLS-1$
+      if(control.getPropertyNames().contains("level_of_detail")) {   //$NON-NLS-1$
+        data.setLevelOfDetail(control.getBoolean("level_of_detail")); //$NON-NLS-1$
+      }
+      if(control.getPropertyNames().contains("ring_buffer")) {   //$NON-NLS-1$
+        data.setRingBuffer(control.getBoolean("ring_buffer")); //$NON-NLS-1$
+      }
       data.name = control.getString("name");          //$NON-NLS-1$
       data.xColumnName = control.getString("x_name"); //$NON-NLS-1$
       data.yColumnName = control.getString("y_name"); //$NON-NLS-1$
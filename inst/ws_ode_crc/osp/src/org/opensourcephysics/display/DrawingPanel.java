@@ -16,6 +16,7 @@ import java.awt.Font;
 import java.awt.Frame;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.GraphicsConfiguration;
 import java.awt.GraphicsDevice;
 import java.awt.Rectangle;
 import java.awt.RenderingHints;
@@ -34,7 +35,12 @@ import java.lang.reflect.InvocationTargetException;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
 import javax.swing.JMenuItem;
 import javax.swing.JPanel;
 import javax.swing.JPopupMenu;
@@ -119,6 +125,7 @@ public class DrawingPanel extends JPanel implements ActionListener, Renderable {
   protected BufferedImage offscreenImage = new BufferedImage(1, 1, BufferedImage.TYPE_INT_RGB);
   protected BufferedImage workingImage = offscreenImage;
   private boolean buffered = false;                                        // true will draw this component using an off-screen image
+  private volatile AsyncRenderer asyncRenderer;                            // renders images on its own thread; null if rendering is synchronous
   protected TextPanel trMessageBox = new TextPanel();                      // text box in top right hand corner for message
   protected TextPanel tlMessageBox = new TextPanel();                      // text box in top left hand corner for message
   protected TextPanel brMessageBox = new TextPanel();                      // text box in lower right hand corner for message
@@ -492,7 +499,7 @@ public class DrawingPanel extends JPanel implements ActionListener, Renderable {
       return false; // panel is too small to draw anything useful
     }
     if((workingImage==null)||(width!=workingImage.getWidth())||(height!=workingImage.getHeight())) {
-      this.workingImage = getGraphicsConfiguration().createCompatibleImage(width, height);
+      this.workingImage = createImage(getGraphicsConfiguration(), width, height);
       invalidateImage(); // validImage = false; // buffer image is not valid
     }
     if(this.workingImage==null) { // image could not be created
@@ -502,6 +509,21 @@ public class DrawingPanel extends JPanel implements ActionListener, Renderable {
     return true; // the buffered image has been created and is the correct size
   }
 
+  /**
+   * Creates an image that is compatible with the screen or an RGB image if the panel is not displayed.
+   *
+   * @param gc the graphics configuration of the panel, may be null
+   * @param width
+   * @param height
+   * @return the image
+   */
+  private static BufferedImage createImage(GraphicsConfiguration gc, int width, int height) {
+    if(gc!=null) {
+      return gc.createCompatibleImage(width, height);
+    }
+    return new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+  }
+
   /**
    *  Performs the action for the refresh timer by rendering (redrawing) the panel.
    *
@@ -535,6 +557,15 @@ public class DrawingPanel extends JPanel implements ActionListener, Renderable {
     if(!isShowing()||isIconified()) {
       return offscreenImage; // no need to draw if the frame is not visible
     }
+    AsyncRenderer renderer = asyncRenderer;
+    if(renderer!=null) { // the render thread draws the image and repaints the panel
+      renderer.request();
+      BufferedImage image = renderer.handOutLatest(); // the image is not redrawn while the caller holds it
+      if(image!=null) {
+        offscreenImage = image;
+      }
+      return offscreenImage;
+    }
     if(buffered&&checkWorkingImage()) {
       validImage = true; // drawing into the working image will produce a valid image
       render(workingImage);
@@ -658,7 +689,19 @@ public class DrawingPanel extends JPanel implements ActionListener, Renderable {
       return;
     }
     viewRect = findViewRect(); // find the clipping rectangle within a scroll pane viewport
-    if(buffered) {                                 // paint bufferImage onto screen
+    AsyncRenderer renderer = asyncRenderer;
+    if(renderer!=null) {                           // paint the newest image from the render thread
+      BufferedImage image = renderer.takeImage();
+      if((image==null)||!validImage||(getWidth()!=image.getWidth())||(getHeight()!=image.getHeight())) {
+        renderer.request();                        // image is not valid so render it again
+      }
+      if((image==null)||(getWidth()!=image.getWidth())||(getHeight()!=image.getHeight())) {
+        g.setColor(Color.WHITE);
+        g.fillRect(0, 0, getWidth(), getHeight());
+      } else {
+        g.drawImage(image, 0, 0, null);
+      }
+    } else if(buffered) {                          // paint bufferImage onto screen
       if(!validImage||(getWidth()!=offscreenImage.getWidth())||(getHeight()!=offscreenImage.getHeight())) {
         if((getWidth()!=offscreenImage.getWidth())||(getHeight()!=offscreenImage.getHeight())) {
           g.setColor(Color.WHITE);
@@ -938,6 +981,91 @@ public class DrawingPanel extends JPanel implements ActionListener, Renderable {
     return buffered;
   }
 
+  /**
+   * Sets the asynchronous rendering option.
+   *
+   * An asynchronous panel draws its images on a render thread.  The render method asks for a new image
+   * and returns immediately, so a simulation thread never waits for the image or for the event thread.
+   * Finished images are handed to the event thread without locks and an image that has not been painted
+   * when a newer image is finished is dropped.  Drawables are drawn while the simulation continues, just
+   * as they are when an unbuffered panel is repainted.
+   *
+   * @param async true to render on a render thread
+   */
+  public void setAsyncRendering(boolean async) {
+    if(async==(asyncRenderer!=null)) {
+      return;
+    }
+    if(async) {
+      setDoubleBuffered(false); // turn off Java buffering because the render thread buffers the images
+      asyncRenderer = new AsyncRenderer();
+      if(isDisplayable()) {
+        asyncRenderer.start();
+      }
+    } else {
+      asyncRenderer.stop();
+      asyncRenderer = null;
+      setDoubleBuffered(!buffered);
+    }
+    invalidateImage(); // validImage = false;
+    repaint();
+  }
+
+  /**
+   * Starts the render thread when the panel is added to a displayable container.
+   * Overrides <code>JComponent.addNotify</code>.
+   */
+  public void addNotify() {
+    super.addNotify();
+    AsyncRenderer renderer = asyncRenderer;
+    if(renderer!=null) {
+      renderer.start();
+    }
+  }
+
+  /**
+   * Stops the render thread when the panel is removed from its container so that the thread
+   * does not keep the panel alive.  A new thread is started if the panel is added again.
+   * Overrides <code>JComponent.removeNotify</code>.
+   */
+  public void removeNotify() {
+    AsyncRenderer renderer = asyncRenderer;
+    if(renderer!=null) {
+      renderer.stop();
+      asyncRenderer = new AsyncRenderer();
+    }
+    super.removeNotify();
+  }
+
+  /**
+   * Gets the asynchronous rendering option.
+   *
+   * @return true if images are rendered on a render thread
+   */
+  public boolean isAsyncRendering() {
+    return asyncRenderer!=null;
+  }
+
+  /**
+   * Gets the number of images drawn by the render thread.
+   *
+   * @return the number of images, or zero if rendering is synchronous
+   */
+  public long getRenderedImageCount() {
+    AsyncRenderer renderer = asyncRenderer;
+    return(renderer==null) ? 0 : renderer.rendered;
+  }
+
+  /**
+   * Gets the number of images drawn by the render thread that were replaced by a newer image before they were painted.
+   *
+   * @return the number of images, or zero if rendering is synchronous
+   */
+  public long getDroppedImageCount() {
+    AsyncRenderer renderer = asyncRenderer;
+    return(renderer==null) ? 0 : renderer.dropped;
+  }
+
   /**
    * Makes the component visible or invisible.
    * Overrides <code>JComponent.setVisible</code>.
@@ -2654,6 +2782,135 @@ public class DrawingPanel extends JPanel implements ActionListener, Renderable {
 
   }
 
+  /**
+   * AsyncRenderer draws the panel into a pool of images on its own thread.
+   *
+   * A request sets a flag and wakes the thread, so requests that arrive while an image is being drawn are
+   * merged into the next image.  A finished image is published by swapping it into an atomic reference.
+   * The event thread swaps the published image out when it paints and returns the image it painted
+   * before to the pool.  An image that is replaced before the event thread takes it is dropped.
+   * Images that are handed out by the render method or to the video capture tool are never returned
+   * to the pool because the renderer cannot know when their consumers are done with them.
+   */
+  private class AsyncRenderer implements Runnable {
+    final Thread thread = new Thread(this, "DrawingPanel renderer"); //$NON-NLS-1$
+    final AtomicBoolean requested = new AtomicBoolean();
+    final AtomicReference<BufferedImage> published = new AtomicReference<BufferedImage>();
+    final ConcurrentLinkedQueue<BufferedImage> pool = new ConcurrentLinkedQueue<BufferedImage>();
+    final HashSet<BufferedImage> handedOut = new HashSet<BufferedImage>(); // images that must not be redrawn
+    BufferedImage painted;                // the image painted by the event thread
+    volatile BufferedImage latest;        // the newest finished image
+    volatile boolean running = true;
+    volatile long rendered, dropped;
+
+    AsyncRenderer() {
+      thread.setDaemon(true);
+    }
+
+    void request() {
+      if(!requested.getAndSet(true)) {
+        LockSupport.unpark(thread);
+      }
+    }
+
+    void start() {
+      if(thread.getState()==Thread.State.NEW) {
+        thread.start();
+      }
+    }
+
+    void stop() {
+      running = false;
+      LockSupport.unpark(thread);
+    }
+
+    /**
+     * Hands out the newest finished image.  The image is kept out of the pool from now on.
+     *
+     * @return the image, or null if no image has been finished
+     */
+    synchronized BufferedImage handOutLatest() {
+      BufferedImage image = latest;
+      if(image!=null) {
+        handedOut.add(image);
+      }
+      return image;
+    }
+
+    /**
+     * Returns an image to the pool unless it has been handed out.
+     *
+     * @param image the image
+     */
+    synchronized void recycle(BufferedImage image) {
+      if(!handedOut.remove(image)) {
+        pool.offer(image);
+      }
+    }
+
+    /**
+     * Takes the newest published image.  Called by the event thread.
+     *
+     * @return the image, or null if no image has been published
+     */
+    BufferedImage takeImage() {
+      BufferedImage image = published.getAndSet(null);
+      if(image!=null) {
+        if(painted!=null) {
+          recycle(painted);
+        }
+        painted = image;
+      }
+      return painted;
+    }
+
+    public void run() {
+      while(running) {
+        if(!requested.getAndSet(false)) {
+          LockSupport.park(this);
+          continue;
+        }
+        Rectangle r = getBounds();
+        if((r.width<=2)||(r.height<=2)) {
+          continue; // panel is too small to draw anything useful
+        }
+        BufferedImage image = pool.poll();
+        while((image!=null)&&((image.getWidth()!=r.width)||(image.getHeight()!=r.height))) {
+          image = pool.poll(); // discard images that have the wrong size
+        }
+        if(image==null) {
+          image = createImage(getGraphicsConfiguration(), r.width, r.height);
+        }
+        validImage = true; // drawing into the image will produce a valid image
+        try {
+          render(image);
+        } catch(RuntimeException ex) { // a drawable changed while it was drawn so drop the image
+          OSPLog.finest("Exception in render thread:"+ex.toString()); //$NON-NLS-1$
+          pool.offer(image);
+          continue;
+        }
+        latest = image;
+        rendered++;
+        VideoTool vidCap = DrawingPanel.this.vidCap;
+        if(vidCap!=null) {
+          synchronized(this) {
+            handedOut.add(image);
+          }
+        }
+        BufferedImage old = published.getAndSet(image);
+        if(old!=null) {
+          recycle(old);
+          dropped++;
+        }
+        if(vidCap!=null) {
+          vidCap.addFrame(image);
+        }
+        repaint();
+      }
+    }
+
+  }
+
   class GlassPanel extends JPanel {
     public void render(Graphics g) {
       Component[] c = glassPanelLayout.getComponents();
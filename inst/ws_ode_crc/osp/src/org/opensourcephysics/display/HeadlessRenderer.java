@@ -0,0 +1,357 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+package org.opensourcephysics.display;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Iterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageOutputStream;
+
+/**
+ * HeadlessRenderer draws sequences of frames of a plotting panel into images and writes them to disk
+ * without a screen, so it runs with java.awt.headless=true.
+ *
+ * The frames are drawn in parallel.  Every thread has its own renderer that holds a plotting panel, an
+ * image that is reused for every frame and an encoder.  A Scene adds drawables to each panel once and then
+ * sets the data of each frame, so drawables are never shared between threads.
+ *
+ * PNG frames are written to numbered files.  RAW frames are written as 8-bit RGB pixels to a single file in
+ * frame order, which video encoders read as raw video, for example
+ * <code>ffmpeg -f rawvideo -pix_fmt rgb24 -s 1920x1080 -i frames.rgb movie.mp4</code>.
+ *
+ * @version 1.0
+ */
+public class HeadlessRenderer {
+  public static final int PNG = 0, RAW = 1;
+  private final int width, height;
+  private int format = PNG;
+  private float compressionQuality = -1; // the writer's default
+  private int parallelism = Runtime.getRuntime().availableProcessors();
+  private ForkJoinPool pool;
+  private Renderer[] renderers = new Renderer[0];
+  private Renderer callerRenderer;
+  // the current sequence
+  private Scene scene;
+  private int first, end;
+  private final AtomicInteger nextFrame = new AtomicInteger();
+  private File directory;
+  private String prefix;
+  private FileChannel channel;
+  private volatile IOException exception;
+
+  /**
+   * Scene sets up the plotting panels of a HeadlessRenderer.
+   */
+  public interface Scene {
+    /**
+     * Adds the drawables to a new panel and sets its axes.  Each thread has its own panel.
+     *
+     * @param panel the panel
+     */
+    public void initialize(PlottingPanel panel);
+
+    /**
+     * Sets the drawables of a panel to a frame.  This method is called by the thread that owns the panel
+     * and frames are not called in order.
+     *
+     * @param panel the panel
+     * @param frame the frame
+     */
+    public void setFrame(PlottingPanel panel, int frame);
+
+  }
+
+  /**
+   * Constructs a HeadlessRenderer that draws images of the given size.
+   *
+   * @param width the width in pixels
+   * @param height the height in pixels
+   */
+  public HeadlessRenderer(int width, int height) {
+    if((width<1)||(height<1)) {
+      throw new IllegalArgumentException("Image size must be positive."); //$NON-NLS-1$
+    }
+    this.width = width;
+    this.height = height;
+  }
+
+  /**
+   * Sets the file format.
+   *
+   * @param format PNG or RAW
+   */
+  public void setFormat(int format) {
+    if((format!=PNG)&&(format!=RAW)) {
+      throw new IllegalArgumentException("Unknown image format "+format); //$NON-NLS-1$
+    }
+    this.format = format;
+  }
+
+  public int getFormat() {
+    return format;
+  }
+
+  /**
+   * Sets the compression quality of PNG files.  A quality of 1 writes the files fastest and a quality of 0
+   * writes the smallest files.  A negative quality uses the default of the image writer.
+   *
+   * @param quality the quality
+   */
+  public void setCompressionQuality(float quality) {
+    compressionQuality = Math.min(quality, 1);
+  }
+
+  public float getCompressionQuality() {
+    return compressionQuality;
+  }
+
+  /**
+   * Sets the number of threads.  A value of one renders in the calling thread.
+   *
+   * @param n the number of threads
+   */
+  public void setParallelism(int n) {
+    n = Math.max(1, n);
+    if(n!=parallelism) {
+      parallelism = n;
+      if(pool!=null) {
+        pool.shutdown();
+        pool = null;
+      }
+    }
+  }
+
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  public int getWidth() {
+    return width;
+  }
+
+  public int getHeight() {
+    return height;
+  }
+
+  /**
+   * Draws a frame in the calling thread.  The image is reused by the next call.
+   *
+   * @param scene the scene
+   * @param frame the frame
+   * @return the image
+   */
+  public BufferedImage render(Scene scene, int frame) {
+    if(callerRenderer==null) {
+      callerRenderer = new Renderer();
+    }
+    callerRenderer.draw(scene, frame);
+    return callerRenderer.image;
+  }
+
+  /**
+   * Draws a sequence of frames and writes them to a directory.  PNG frames are written to files named by
+   * the prefix and the six digit frame number.  RAW frames are written to the file named by the prefix and
+   * the extension rgb.
+   *
+   * @param scene the scene
+   * @param first the first frame
+   * @param count the number of frames
+   * @param directory the directory
+   * @param prefix the start of the file names
+   * @throws IOException if a file cannot be written
+   */
+  public synchronized void render(Scene scene, int first, int count, File directory, String prefix) throws IOException {
+    if(!directory.isDirectory()&&!directory.mkdirs()) {
+      throw new IOException("Cannot create directory "+directory); //$NON-NLS-1$
+    }
+    this.scene = scene;
+    this.first = first;
+    this.end = first+count;
+    this.directory = directory;
+    this.prefix = prefix;
+    nextFrame.set(first);
+    exception = null;
+    if(format==RAW) {
+      RandomAccessFile file = new RandomAccessFile(new File(directory, prefix+".rgb"), "rw"); //$NON-NLS-1$ //$NON-NLS-2$
+      channel = file.getChannel(); // closing the channel closes the file
+    }
+    try {
+      if(channel!=null) { // cut an old file to the length of the frames and write the last byte to extend a new one
+        long length = 3L*width*height*count;
+        channel.truncate(length);
+        if(length>0) {
+          channel.write(ByteBuffer.allocate(1), length-1);
+        }
+      }
+      int n = Math.max(1, Math.min(parallelism, count));
+      if(renderers.length!=n) {
+        Renderer[] old = renderers;
+        renderers = new Renderer[n];
+        for(int i = 0; i<n; i++) {
+          renderers[i] = (i<old.length) ? old[i] : new Renderer();
+        }
+      }
+      if(n==1) {
+        renderers[0].compute();
+      } else {
+        if(pool==null) {
+          pool = new ForkJoinPool(parallelism);
+        }
+        for(int i = 0; i<n; i++) {
+          renderers[i].reinitialize();
+        }
+        pool.invoke(new RecursiveAction() {
+          protected void compute() {
+            ForkJoinTask.invokeAll(renderers);
+          }
+
+        });
+      }
+    } finally {
+      if(channel!=null) {
+        channel.close();
+        channel = null;
+      }
+      this.scene = null;
+    }
+    if(exception!=null) {
+      throw exception;
+    }
+  }
+
+  /**
+   * A renderer draws frames into its own panel and image and writes them with its own encoder.
+   */
+  private class Renderer extends RecursiveAction {
+    final BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+    final int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    PlottingPanel panel;
+    Scene panelScene; // the scene that initialized the panel
+    ImageWriter writer;
+    ImageWriteParam param;
+    ByteBuffer buffer;
+
+    protected void compute() {
+      int frame;
+      while((exception==null)&&((frame = nextFrame.getAndIncrement())<end)) {
+        draw(scene, frame);
+        try {
+          if(format==RAW) {
+            writeRaw(frame);
+          } else {
+            writePNG(frame);
+          }
+        } catch(IOException ex) {
+          exception = ex;
+        }
+      }
+    }
+
+    void draw(Scene scene, int frame) {
+      if(panelScene!=scene) {
+        panel = new PlottingPanel("x", "y", null); //$NON-NLS-1$ //$NON-NLS-2$
+        panel.setSize(width, height);
+        scene.initialize(panel);
+        panelScene = scene;
+      }
+      scene.setFrame(panel, frame);
+      for(int i = 0; i<3; i++) { // paint again if autoscaling changed the scale while the panel was painted
+        panel.validateImage();
+        panel.render(image);
+        if(panel.isValidImage()) {
+          break;
+        }
+      }
+    }
+
+    void writePNG(int frame) throws IOException {
+      if(writer==null) {
+        Iterator<ImageWriter> it = ImageIO.getImageWritersByFormatName("png"); //$NON-NLS-1$
+        if(!it.hasNext()) {
+          throw new IOException("No PNG image writer."); //$NON-NLS-1$
+        }
+        writer = it.next();
+        param = writer.getDefaultWriteParam();
+        if((compressionQuality>=0)&&param.canWriteCompressed()) {
+          param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+          param.setCompressionQuality(compressionQuality);
+        }
+      }
+      File file = new File(directory, prefix+String.format("%06d.png", frame)); //$NON-NLS-1$
+      file.delete(); // the stream does not truncate an old file
+      ImageOutputStream out = ImageIO.createImageOutputStream(file);
+      if(out==null) {
+        throw new IOException("Cannot write file "+file); //$NON-NLS-1$
+      }
+      try {
+        writer.setOutput(out);
+        writer.write(null, new IIOImage(image, null, null), param);
+      } finally {
+        writer.reset();
+        out.close();
+      }
+    }
+
+    void writeRaw(int frame) throws IOException {
+      if(buffer==null) {
+        buffer = ByteBuffer.allocate(3*width*height);
+      }
+      byte[] bytes = buffer.array();
+      for(int i = 0, j = 0, n = pixels.length; i<n; i++) {
+        int rgb = pixels[i];
+        bytes[j++] = (byte) (rgb>>16);
+        bytes[j++] = (byte) (rgb>>8);
+        bytes[j++] = (byte) rgb;
+      }
+      buffer.clear();
+      long position = 3L*width*height*(frame-first);
+      while(buffer.hasRemaining()) {
+        channel.write(buffer, position+buffer.position());
+      }
+    }
+
+  }
+
+}
+
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */
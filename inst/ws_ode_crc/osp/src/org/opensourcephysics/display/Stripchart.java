@@ -33,6 +33,7 @@ public class Stripchart extends Dataset {
     super();
     xrange = Math.abs(_xrange);
     yrange = Math.abs(_yrange);
+    setRingBuffer(true);
   }
 
   /**
@@ -62,7 +63,7 @@ public class Stripchart extends Dataset {
    * @param  x
    * @param  y
    */
-  public void append(double x, double y) {
+  public synchronized void append(double x, double y) {
     if(!enabled) {
       super.append(x, y);
       return;
@@ -81,7 +82,7 @@ public class Stripchart extends Dataset {
    * @param  _xpoints
    * @param  _ypoints
    */
-  public void append(double[] _xpoints, double[] _ypoints) {
+  public synchronized void append(double[] _xpoints, double[] _ypoints) {
     if(!enabled) {
       super.append(_xpoints, _ypoints);
       return;
@@ -103,44 +104,73 @@ public class Stripchart extends Dataset {
   /**
    *  Clears all data from this Dataset.
    */
-  public void clear() {
+  public synchronized void clear() {
     super.clear();
     lastx = xpoints[0];
   }
 
   /**
    * Trims data points whose x values are outside the xrange from the dataset.
+   * The points are removed from the front of the ring buffer without copying the arrays.
    */
   private void trim() {
-    if((index>0)&&(xpoints[0]<lastx-xrange)) {
-      int counter = 0;
-      while((counter<index)&&(xpoints[counter]<lastx-xrange)) {
-        counter++;
-      }
-      System.arraycopy(xpoints, counter, xpoints, 0, index-counter);
-      System.arraycopy(ypoints, counter, ypoints, 0, index-counter);
-      index = index-counter;
+    int counter = 0;
+    while((counter<index)&&(xpoints[arrayIndex(counter)]<lastx-xrange)) {
+      counter++;
     }
-    if(rightToLeft) {
-      xmin = lastx-xrange;
-    } else {
-      xmin = lastx;
+    removeFirstPoints(counter);
+  }
+
+  /**
+   * Gets the x world coordinate for the left hand side of the panel.
+   *
+   * @return xmin
+   */
+  public double getXMin() {
+    if(!enabled) {
+      return super.getXMin();
     }
-    if(rightToLeft) {
-      xmax = lastx;
-    } else {
-      xmax = lastx-xrange;
+    return rightToLeft ? lastx-xrange : lastx;
+  }
+
+  /**
+   * Gets the x world coordinate for the right hand side of the panel.
+   *
+   * @return xmax
+   */
+  public double getXMax() {
+    if(!enabled) {
+      return super.getXMax();
     }
-    ymin = ymax = ypoints[0];
-    for(int i = 1; i<index; i++) {
-      ymin = Math.min(ymin, ypoints[i]);
-      ymax = Math.max(ymax, ypoints[i]);
+    return rightToLeft ? lastx : lastx-xrange;
+  }
+
+  /**
+   * Gets the y world coordinate for the bottom of the panel.
+   * The y values are centered within the y range if they span less than the y range.
+   *
+   * @return ymin
+   */
+  public double getYMin() {
+    double min = super.getYMin(), max = super.getYMax();
+    if(enabled&&(max-min<yrange)) {
+      return(max+min-yrange)/2.0;
     }
-    if(ymax-ymin<yrange) {
-      ymin = (ymax+ymin-yrange)/2.0;
-      ymax = (ymax+ymin+yrange)/2.0;
+    return min;
+  }
+
+  /**
+   * Gets the y world coordinate for the top of the panel.
+   * The y values are centered within the y range if they span less than the y range.
+   *
+   * @return ymax
+   */
+  public double getYMax() {
+    double min = super.getYMin(), max = super.getYMax();
+    if(enabled&&(max-min<yrange)) {
+      return(max+min+yrange)/2.0;
     }
-    recalculatePath();
+    return max;
   }
 
   /**
@@ -27,6 +27,44 @@ import org.opensourcephysics.controls.XMLLoader;
 public class Trail extends AbstractTrail implements LogMeasurable {
   GeneralPath generalPath = new GeneralPath();
   boolean connected = true;
+  int maxPoints = 0;       // the maximum number of points in the ring buffer; zero if the trail is not limited
+  double[] xpoints, ypoints;
+  byte[] segments;         // how each point in the ring buffer is joined to the previous point
+  int head;                // the array index of the oldest point in the ring buffer
+  boolean pathStale;       // the general path is built from the ring buffer when it is drawn
+  boolean rangeStale;      // an extreme value was dropped from the ring buffer
+  static final byte LINE = 0, DOT = 1, MOVE = 2;
+
+  /**
+   * Sets the maximum number of points in the trail.
+   *
+   * The points of a limited trail are kept in a ring buffer and the oldest point is dropped as
+   * each new point is added.  The path is built from the buffer when the trail is drawn.
+   * Setting the maximum clears the trail.
+   *
+   * @param max the maximum number of points, or zero for a trail without a limit
+   */
+  public synchronized void setMaximumPoints(int max) {
+    maxPoints = Math.max(0, max);
+    if(maxPoints>0) {
+      xpoints = new double[maxPoints];
+      ypoints = new double[maxPoints];
+      segments = new byte[maxPoints];
+    } else {
+      xpoints = ypoints = null;
+      segments = null;
+    }
+    clear();
+  }
+
+  /**
+   * Gets the maximum number of points in the trail.
+   *
+   * @return the maximum number of points, or zero if the trail is not limited
+   */
+  public int getMaximumPoints() {
+    return maxPoints;
+  }
 
   /**
    * Adds a point to the trail.
@@ -37,6 +75,10 @@ public class Trail extends AbstractTrail implements LogMeasurable {
     if(closed) {
       throw new IllegalStateException("Cannot add points to a closed trail."); //$NON-NLS-1$
     }
+    if(maxPoints>0) {
+      addToBuffer(x, y, connected ? LINE : DOT);
+      return;
+    }
     if(!connected||(numpts==0)) {
       generalPath.moveTo((float) x, (float) y);
     }
@@ -62,6 +104,10 @@ public class Trail extends AbstractTrail implements LogMeasurable {
    * @param y double
    */
   public synchronized void moveToPoint(double x, double y) {
+    if(maxPoints>0) {
+      addToBuffer(x, y, MOVE);
+      return;
+    }
     generalPath.moveTo((float) x, (float) y);
     xmin = Math.min(xmin, x);
     xmax = Math.max(xmax, x);
@@ -84,7 +130,11 @@ public class Trail extends AbstractTrail implements LogMeasurable {
    */
   public void closeTrail() {
     closed = true;
-    generalPath.closePath();
+    if(maxPoints>0) {
+      pathStale = true;
+    } else {
+      generalPath.closePath();
+    }
   }
 
   /**
@@ -119,6 +169,108 @@ public class Trail extends AbstractTrail implements LogMeasurable {
     xmin = xminLogscale = Double.MAX_VALUE;
     ymin = yminLogscale = Double.MAX_VALUE;
     generalPath.reset();
+    head = 0;
+    pathStale = rangeStale = false;
+  }
+
+  /**
+   * Determines if this trail scales the drawing panel.
+   *
+   * @return boolean
+   */
+  public boolean isMeasured() {
+    if(rangeStale) {
+      findRange();
+    }
+    return super.isMeasured();
+  }
+
+  /**
+   * Stores a point in the ring buffer.  The oldest point is dropped if the buffer is full.
+   *
+   * @param x double
+   * @param y double
+   * @param segment how the point is joined to the previous point
+   */
+  private void addToBuffer(double x, double y, byte segment) {
+    int i = head+numpts;
+    if(numpts<maxPoints) {
+      numpts++;
+    } else {
+      i = head;
+      head = (head+1)%maxPoints;
+      double xold = xpoints[i], yold = ypoints[i];
+      if((xold==xmin)||(xold==xmax)||(xold==xminLogscale)||(yold==ymin)||(yold==ymax)||(yold==yminLogscale)) {
+        rangeStale = true;
+      }
+    }
+    if(i>=maxPoints) {
+      i -= maxPoints;
+    }
+    xpoints[i] = x;
+    ypoints[i] = y;
+    segments[i] = segment;
+    pathStale = true;
+    xmin = Math.min(xmin, x);
+    xmax = Math.max(xmax, x);
+    if(x>0) {
+      xminLogscale = Math.min(xminLogscale, x);
+      xmaxLogscale = Math.max(xmaxLogscale, x);
+    }
+    ymin = Math.min(ymin, y);
+    ymax = Math.max(ymax, y);
+    if(y>0) {
+      yminLogscale = Math.min(yminLogscale, y);
+      ymaxLogscale = Math.max(ymaxLogscale, y);
+    }
+  }
+
+  /**
+   * Builds the general path from the points in the ring buffer.
+   */
+  private synchronized void buildPath() {
+    generalPath.reset();
+    for(int j = 0; j<numpts; j++) {
+      int i = (head+j)%maxPoints;
+      float x = (float) xpoints[i], y = (float) ypoints[i];
+      if((j==0)||(segments[i]!=LINE)) {
+        generalPath.moveTo(x, y);
+      }
+      if(segments[i]!=MOVE) {
+        generalPath.lineTo(x, y);
+      }
+    }
+    if(closed) {
+      generalPath.closePath();
+    }
+    pathStale = false;
+  }
+
+  /**
+   * Finds the minimum and maximum values of the points in the ring buffer.
+   */
+  private synchronized void findRange() {
+    xmax = xmaxLogscale = -Double.MAX_VALUE;
+    ymax = ymaxLogscale = -Double.MAX_VALUE;
+    xmin = xminLogscale = Double.MAX_VALUE;
+    ymin = yminLogscale = Double.MAX_VALUE;
+    for(int j = 0; j<numpts; j++) {
+      int i = (head+j)%maxPoints;
+      double x = xpoints[i], y = ypoints[i];
+      xmin = Math.min(xmin, x);
+      xmax = Math.max(xmax, x);
+      if(x>0) {
+        xminLogscale = Math.min(xminLogscale, x);
+        xmaxLogscale = Math.max(xmaxLogscale, x);
+      }
+      ymin = Math.min(ymin, y);
+      ymax = Math.max(ymax, y);
+      if(y>0) {
+        yminLogscale = Math.min(yminLogscale, y);
+        ymaxLogscale = Math.max(ymaxLogscale, y);
+      }
+    }
+    rangeStale = false;
   }
 
   /**
@@ -129,6 +281,9 @@ public class Trail extends AbstractTrail implements LogMeasurable {
     if(numpts==0) {
       return;
     }
+    if(pathStale) {
+      buildPath();
+    }
     Graphics2D g2 = (Graphics2D) g;
     g2.setColor(color);
     // transform from world to pixel coordinates
@@ -158,6 +313,9 @@ public class Trail extends AbstractTrail implements LogMeasurable {
   private static class Loader extends XMLLoader {
     public void saveObject(XMLControl control, Object obj) {
       Trail trail = (Trail) obj;
+      if(trail.pathStale) {
+        trail.buildPath();
+      }
       control.setValue("connected", trail.connected);      //$NON-NLS-1$
       control.setValue("color", trail.color);              //$NON-NLS-1$
       control.setValue("number of pts", trail.numpts);     //$NON-NLS-1$
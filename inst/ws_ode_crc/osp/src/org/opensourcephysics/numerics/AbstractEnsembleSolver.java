@@ -0,0 +1,251 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+package org.opensourcephysics.numerics;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * AbstractEnsembleSolver provides a common superclass for solvers that advance every member of an EnsembleODE.
+ *
+ * The members are divided into fixed blocks when the solver is initialized.  Blocks are stepped
+ * independently, either sequentially or as fork/join tasks, and every block writes only to the rows
+ * of its own members.  The result of a step therefore does not depend on the number of threads.
+ *
+ * Solvers keep references to the rows of the ODE's state arrays.  Clients should invoke the solver's
+ * initialize method if they replace a row rather than change its values.
+ *
+ * @version 1.0
+ */
+public abstract class AbstractEnsembleSolver implements ODESolver {
+  protected double stepSize = 0.1; // parameter increment such as delta time
+  protected int numMembers = 0;    // number of members in the ensemble
+  protected int numEqn = 0;        // number of equations per member
+  protected EnsembleODE ode;       // object that computes the rates
+  protected double[][] states;     // the ensemble's state arrays
+  protected int[] blockStart = new int[] {0}; // first member of every block; the last entry is numMembers
+  private int blockSize = 256;
+  private int parallelism = Runtime.getRuntime().availableProcessors();
+  private ForkJoinPool pool;
+  private BlockTask[] tasks;
+
+  /**
+   * Constructs the solver for an ensemble of differential equations.
+   *
+   * @param _ode the ensemble of differential equations.
+   */
+  public AbstractEnsembleSolver(EnsembleODE _ode) {
+    ode = _ode;
+  }
+
+  /**
+   * Initializes the solver.
+   *
+   * The number of members and the number of equations are determined by invoking getStates() on the ODE.
+   * Subclasses allocate their work arrays in the allocateArrays method.
+   *
+   * @param _stepSize
+   */
+  public void initialize(double _stepSize) {
+    stepSize = _stepSize;
+    states = ode.getStates();
+    if((states==null)||(states.length==0)) { // ensemble not defined
+      numMembers = 0;
+      numEqn = 0;
+    } else {
+      numMembers = states.length;
+      numEqn = states[0].length;
+    }
+    int numBlocks = (numMembers+blockSize-1)/blockSize;
+    blockStart = new int[numBlocks+1];
+    for(int b = 0; b<numBlocks; b++) {
+      blockStart[b] = b*blockSize;
+    }
+    blockStart[numBlocks] = numMembers;
+    tasks = new BlockTask[numBlocks];
+    for(int b = 0; b<numBlocks; b++) {
+      tasks[b] = new BlockTask(b);
+    }
+    allocateArrays();
+  }
+
+  /**
+   * Allocates the work arrays.  Invoked by initialize after the size of the ensemble is known.
+   */
+  abstract protected void allocateArrays();
+
+  /**
+   * Advances the members of a block.  Blocks may be stepped concurrently so implementations must
+   * only write to the rows that belong to the block.
+   *
+   * @param block the block index
+   */
+  abstract protected void stepBlock(int block);
+
+  /**
+   * Steps (advances) every member of the ensemble by the stepSize.
+   *
+   * @return the step size
+   */
+  public double step() {
+    double[][] current = ode.getStates();
+    if(current==null) {
+      return stepSize;
+    }
+    if((current!=states)||(current.length!=numMembers)||((numMembers>0)&&(current[0].length!=numEqn))) {
+      initialize(stepSize);
+    }
+    int numBlocks = tasks.length;
+    if((parallelism<=1)||(numBlocks<=1)) {
+      for(int b = 0; b<numBlocks; b++) {
+        stepBlock(b);
+      }
+    } else {
+      if(pool==null) {
+        pool = new ForkJoinPool(parallelism);
+      }
+      for(int b = 0; b<numBlocks; b++) {
+        tasks[b].reinitialize();
+      }
+      pool.invoke(new RecursiveAction() {
+        protected void compute() {
+          ForkJoinTask.invokeAll(tasks);
+        }
+
+      });
+    }
+    return stepSize;
+  }
+
+  /**
+   * Sets the number of threads used to step the ensemble.  A value of one steps the blocks sequentially.
+   *
+   * @param n the number of threads
+   */
+  public void setParallelism(int n) {
+    n = Math.max(1, n);
+    if(n!=parallelism) {
+      parallelism = n;
+      if(pool!=null) {
+        pool.shutdown();
+        pool = null;
+      }
+    }
+  }
+
+  /**
+   * Gets the number of threads used to step the ensemble.
+   *
+   * @return the number of threads
+   */
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * Sets the number of members in a block.  Blocks are the unit of work given to a thread.
+   * The solver must be initialized after the block size is changed.
+   *
+   * @param n the number of members
+   */
+  public void setBlockSize(int n) {
+    blockSize = Math.max(1, n);
+  }
+
+  /**
+   * Gets the number of members in a block.
+   *
+   * @return the number of members
+   */
+  public int getBlockSize() {
+    return blockSize;
+  }
+
+  /**
+   * Gets the number of members in the ensemble.
+   *
+   * @return the number of members
+   */
+  public int getNumberOfMembers() {
+    return numMembers;
+  }
+
+  /**
+   * Sets the step size.
+   *
+   * @param _stepSize
+   */
+  public void setStepSize(double _stepSize) {
+    stepSize = _stepSize;
+  }
+
+  /**
+   * Gets the step size.
+   *
+   * @return the step size
+   */
+  public double getStepSize() {
+    return stepSize;
+  }
+
+  /**
+   * Creates an array that references rows of the given arrays.  The returned array is used to pass a
+   * block of members to the EnsembleODE getRates method without copying data.
+   *
+   * @param rows the rows
+   * @param from the first row
+   * @param to one past the last row
+   * @return the view
+   */
+  protected static double[][] view(double[][] rows, int from, int to) {
+    double[][] v = new double[to-from][];
+    System.arraycopy(rows, from, v, 0, to-from);
+    return v;
+  }
+
+  /**
+   * A task that steps a single block.
+   */
+  private class BlockTask extends RecursiveAction {
+    final int block;
+
+    BlockTask(int block) {
+      this.block = block;
+    }
+
+    protected void compute() {
+      stepBlock(block);
+    }
+
+  }
+
+}
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */
@@ -13,10 +13,11 @@ package org.opensourcephysics.numerics;
  * @author       Wolfgang Christian
  * @version 1.0
  */
-public abstract class AbstractODESolver extends Object implements ODESolver {
+public abstract class AbstractODESolver extends Object implements ODESolver, ODESolverStats {
   protected double stepSize = 0.1; // parameter increment such as delta time
   protected int numEqn = 0;        // number of equations
   protected ODE ode;               // object that computes rate
+  protected ODESolverStatistics statistics; // null unless statistics are enabled
 
   /**
    * Constructs the ODESolver for a system of ordinary differential equations.
@@ -79,6 +80,35 @@ public abstract class AbstractODESolver extends Object implements ODESolver {
     return stepSize;
   }
 
+  /**
+   * Enables or disables the collection of statistics.
+   *
+   * The ODE is wrapped while statistics are enabled so that its rate evaluations are counted.
+   *
+   * @param enabled true to collect statistics
+   */
+  public void setStatisticsEnabled(boolean enabled) {
+    if(enabled==(statistics!=null)) {
+      return;
+    }
+    if(enabled) {
+      statistics = new ODESolverStatistics();
+      ode = statistics.monitor(ode);
+    } else {
+      ode = ODESolverStatistics.unmonitor(ode);
+      statistics = null;
+    }
+  }
+
+  /**
+   * Gets the statistics.
+   *
+   * @return the statistics or null if they are disabled
+   */
+  public ODESolverStatistics getStatistics() {
+    return statistics;
+  }
+
 }
 
 /*
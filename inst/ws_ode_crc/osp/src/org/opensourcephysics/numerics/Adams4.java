@@ -66,6 +66,9 @@ public class Adams4 extends RK4 {
       stepSize = super.step();
       counter++;
     } else {
+      if(statistics!=null) {
+        statistics.stepStarted(); // the start-up steps are counted by super.step()
+      }
       for(int i = 0; i<numEqn; i++) { // Predictor
         temp_state[i] = state[i]+stepSize*(55*fn[i]-59*fn1[i]+37*fn2[i]-9*fn3[i])/24;
       }
@@ -73,6 +76,9 @@ public class Adams4 extends RK4 {
       for(int i = 0; i<numEqn; i++) { // Corrector
         state[i] = state[i]+stepSize*(9*temp_rate[i]+19*fn[i]-5*fn1[i]+fn2[i])/24;
       }
+      if(statistics!=null) {
+        statistics.stepFinished(stepSize);
+      }
     }
     System.arraycopy(fn2, 0, fn3, 0, numEqn);
     System.arraycopy(fn1, 0, fn2, 0, numEqn);
@@ -67,6 +67,9 @@ public class Adams5 extends Butcher5 {
       stepSize = super.step();
       counter++;
     } else {
+      if(statistics!=null) {
+        statistics.stepStarted(); // the start-up steps are counted by super.step()
+      }
       for(int i = 0; i<numEqn; i++) { // Predictor
         temp_state[i] = state[i]+stepSize*(1901*fn[i]-2774*fn1[i]+2616*fn2[i]-1274*fn3[i]+251*fn4[i])/720;
       }
@@ -74,6 +77,9 @@ public class Adams5 extends Butcher5 {
       for(int i = 0; i<numEqn; i++) { // Corrector
         state[i] = state[i]+stepSize*(251*temp_rate[i]+646*fn[i]-264*fn1[i]+106*fn2[i]-19*fn3[i])/720;
       }
+      if(statistics!=null) {
+        statistics.stepFinished(stepSize);
+      }
     }
     System.arraycopy(fn3, 0, fn4, 0, numEqn);
     System.arraycopy(fn2, 0, fn3, 0, numEqn);
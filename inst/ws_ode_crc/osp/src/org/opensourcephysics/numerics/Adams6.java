@@ -68,6 +68,9 @@ public class Adams6 extends Fehlberg8 {
       stepSize = super.step();
       counter++;
     } else {
+      if(statistics!=null) {
+        statistics.stepStarted(); // the start-up steps are counted by super.step()
+      }
       for(int i = 0; i<numEqn; i++) { // Predictor
         temp_state[i] = state[i]+stepSize*(4277*fn[i]-7923*fn1[i]+9982*fn2[i]-7298*fn3[i]+2877*fn4[i]-475*fn5[i])/720;
       }
@@ -75,6 +78,9 @@ public class Adams6 extends Fehlberg8 {
       for(int i = 0; i<numEqn; i++) { // Corrector
         state[i] = state[i]+stepSize*(475*temp_rate[i]+1427*fn[i]-798*fn1[i]+482*fn2[i]-173*fn3[i]+27*fn4[i])/1440;
       }
+      if(statistics!=null) {
+        statistics.stepFinished(stepSize);
+      }
     }
     System.arraycopy(fn4, 0, fn5, 0, numEqn);
     System.arraycopy(fn3, 0, fn4, 0, numEqn);
@@ -57,6 +57,9 @@ public class Butcher5 extends AbstractODESolver {
     if(state==null) {
       return stepSize;
     }
+    if(statistics!=null) {
+      statistics.stepStarted();
+    }
     if(state.length!=numEqn) {
       initialize(stepSize);
     }
@@ -84,6 +87,9 @@ public class Butcher5 extends AbstractODESolver {
     for(int i = 0; i<numEqn; i++) {
       state[i] = state[i]+stepSize*(7*rate1[i]+32*rate3[i]+12*rate4[i]+32*rate5[i]+7*rate6[i])/90.0;
     }
+    if(statistics!=null) {
+      statistics.stepFinished(stepSize);
+    }
     return stepSize;
   }
 
@@ -13,7 +13,7 @@ package org.opensourcephysics.numerics;
  * @author       F. Esquembre
  * @version 1.0
  */
-public class CashKarp45 implements ODEAdaptiveSolver {
+public class CashKarp45 implements ODEAdaptiveSolver, ODESolverStats {
   int error_code = ODEAdaptiveSolver.NO_ERROR;
   // embedding constants Cash-Karp 4th and 5th order
   static final double[][] a = {
@@ -28,9 +28,11 @@ public class CashKarp45 implements ODEAdaptiveSolver {
   private double stepSize = 0.01;
   private int numEqn = 0;
   private double[] temp_state;
+  private double[] err_state;
+  private double[] coeff = new double[numStages]; // coefficients times the step size
   private double[][] k;
-  private double truncErr;
   private ODE ode;
+  protected ODESolverStatistics statistics; // null unless statistics are enabled
   protected double tol = 1.0e-6;
   protected boolean enableExceptions = false;
 
@@ -61,6 +63,7 @@ public class CashKarp45 implements ODEAdaptiveSolver {
     if(numEqn!=state.length) {
       numEqn = state.length;
       temp_state = new double[numEqn];
+      err_state = new double[numEqn];
       k = new double[numStages][numEqn]; // six intermediate rates
     }
   }
@@ -79,34 +82,29 @@ public class CashKarp45 implements ODEAdaptiveSolver {
     int iterations = 10;
     double currentStep = stepSize, error = 0;
     double state[] = ode.getState();
+    if(statistics!=null) {
+      statistics.stepStarted();
+    }
     ode.getRate(state, k[0]); // get the initial rate
     do {
       iterations--;
       currentStep = stepSize;
-      // Compute the k's
+      // Compute the k's; the kernels add several rate arrays per pass over memory
       for(int s = 1; s<numStages; s++) {
-        for(int i = 0; i<numEqn; i++) {
-          temp_state[i] = state[i];
-          for(int j = 0; j<s; j++) {
-            temp_state[i] = temp_state[i]+stepSize*a[s-1][j]*k[j][i];
-          }
-        }
+        RKStageKernels.combine(state, stepSize, a[s-1], k, s, coeff, temp_state, numEqn);
         ode.getRate(temp_state, k[s]);
       }
       // Compute the error
-      error = 0;
-      for(int i = 0; i<numEqn; i++) {
-        truncErr = 0;
-        for(int s = 0; s<numStages; s++) {
-          truncErr = truncErr+stepSize*er[s]*k[s][i];
-        }
-        error = Math.max(error, Math.abs(truncErr));
-      }
+      RKStageKernels.combine(null, stepSize, er, k, numStages, coeff, err_state, numEqn);
+      error = RKStageKernels.maxAbs(err_state, numEqn);
       if(error<=Float.MIN_VALUE) { // error too small to be meaningful,
         error = tol/1.0e5;         // increase stepSize x10
       }
       // find h step for the next try.
       if(error>tol) {              // shrink, no more than x10
+        if((statistics!=null)&&(iterations>0)) {
+          statistics.stepRejected();
+        }
         double fac = 0.9*Math.pow(error/tol, -0.25);
         stepSize = stepSize*Math.max(fac, 0.1);
       } else if(error<tol/10.0) {  // grow, but no more than factor of 10
@@ -117,9 +115,11 @@ public class CashKarp45 implements ODEAdaptiveSolver {
       }
     } while((error>tol)&&(iterations>0));
     // advance the state
-    for(int i = 0; i<numEqn; i++) {
-      for(int s = 0; s<numStages; s++) {
-        state[i] += currentStep*b5[s]*k[s][i];
+    RKStageKernels.combine(state, currentStep, b5, k, numStages, coeff, state, numEqn);
+    if(statistics!=null) {
+      statistics.stepFinished(currentStep);
+      if(iterations==0) {
+        statistics.stepFailed();
       }
     }
     if(iterations==0) {
@@ -197,6 +197,31 @@ public class CashKarp45 implements ODEAdaptiveSolver {
     return error_code;
   }
 
+  /**
+   * Enables or disables the collection of statistics.
+   * @param enabled true to collect statistics
+   */
+  public void setStatisticsEnabled(boolean enabled) {
+    if(enabled==(statistics!=null)) {
+      return;
+    }
+    if(enabled) {
+      statistics = new ODESolverStatistics();
+      ode = statistics.monitor(ode);
+    } else {
+      ode = ODESolverStatistics.unmonitor(ode);
+      statistics = null;
+    }
+  }
+
+  /**
+   * Gets the statistics.
+   * @return the statistics or null if they are disabled
+   */
+  public ODESolverStatistics getStatistics() {
+    return statistics;
+  }
+
 }
 
 /*
@@ -8,8 +8,9 @@
  */
 
 package org.opensourcephysics.numerics;
-
-import java.util.Arrays;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
 /**
  *
@@ -18,7 +19,7 @@ import java.util.Arrays;
  * @author       F. Esquembre
  * @version 1.0
  */
-public class DormandPrince45 implements ODEAdaptiveSolver {
+public class DormandPrince45 implements ODEAdaptiveSolver, ODESolverStats {
   int error_code = ODEAdaptiveSolver.NO_ERROR;
   // embedding constants Dormand-Prince 4th and 5th order
   static final double[][] a = {
@@ -33,9 +34,11 @@ public class DormandPrince45 implements ODEAdaptiveSolver {
   private volatile double stepSize = 0.01;
   private int numEqn = 0;
   private double[] temp_state;
+  private double[] err_state;
+  private double[] coeff = new double[numStages]; // coefficients times the step size
   private double[][] k;
-  private double truncErr;
   private ODE ode;
+  protected ODESolverStatistics statistics; // null unless statistics are enabled
   protected double tol = 1.0e-6;
   protected boolean enableExceptions = false;
 
@@ -66,6 +69,7 @@ public class DormandPrince45 implements ODEAdaptiveSolver {
     if(numEqn!=state.length) {
       numEqn = state.length;
       temp_state = new double[numEqn];
+      err_state = new double[numEqn];
       k = new double[numStages][numEqn]; // six intermediate rates
     }
   }
@@ -80,76 +84,48 @@ public class DormandPrince45 implements ODEAdaptiveSolver {
    * @return the step size
    */
   public double step() {
-//	  System.out.print("Top first Step --------------------- \n");
-//	  System.out.println(Arrays.deepToString(k));
     error_code = ODEAdaptiveSolver.NO_ERROR;
     int iterations = 10;
     double currentStep = stepSize, error = 0;
-    
     double state[] = ode.getState();
-//    System.out.println(Arrays.toString(k[0]));
+    if(statistics!=null) {
+      statistics.stepStarted();
+    }
     ode.getRate(state, k[0]); // get the initial rate
-//    System.out.println(Arrays.toString(k[0]) + "\n");
-    // NEW iteration
     do {
-//    	System.out.print("NEW iteration \n");
-//        System.out.print("state:"); System.out.println(Arrays.toString(state));
-//        System.out.println(Arrays.deepToString(k));
       iterations--;
       currentStep = stepSize;
-      // Compute the k's
-      int cum = 0;
+      // Compute the k's; the kernels add several rate arrays per pass over memory
       for(int s = 1; s<numStages; s++) {
-        for(int i = 0; i<numEqn; i++) {
-          temp_state[i] = state[i];
-          for(int j = 0; j<s; j++) {
-            temp_state[i] = temp_state[i] + stepSize * a[s-1][j] * k[j][i];
-//            System.out.format("[%d][%d] tempState=%12f, stepSize=%12f, a=%12f, k=%12f \n", s, j, temp_state[i], stepSize, a[s-1][j], k[j][i]);
-            cum = cum +1;
-          }
-        }
-        // print k array
-//        System.out.format("k[%d]=", s);
-//        System.out.println(Arrays.toString(k[s]));
+        RKStageKernels.combine(state, stepSize, a[s-1], k, s, coeff, temp_state, numEqn);
         ode.getRate(temp_state, k[s]);
-      } // end for "s"
-//      System.out.format("cum=%d \n", cum);
-      
-      // Compute the error
-      error = 0;
-      for(int i = 0; i<numEqn; i++) {
-        truncErr = 0;
-        for(int s = 0; s<numStages; s++) {
-          truncErr = truncErr + stepSize * er[s] * k[s][i];
-//          System.out.format("[%d] [%s] error = %12f truncError=%12f er=%12f, k=%12f \n", i, s, error, truncErr, er[s] , k[s][i]);
-        }
-        error = Math.max(error, Math.abs(truncErr));
-        
       }
-//      System.out.format("[after trunc] error = %12f \n", error);
+      // Compute the error
+      RKStageKernels.combine(null, stepSize, er, k, numStages, coeff, err_state, numEqn);
+      error = RKStageKernels.maxAbs(err_state, numEqn);
       if(error<=Float.MIN_VALUE) { // error too small to be meaningful,
-//    	  System.out.print("error <= Float.MIN_VALUE --------- \n");
         error = tol/1.0e5;         // increase stepSize x10
       }
       // find h step for the next try.
       if(error>tol) {              // shrink, no more than x10
-//    	  System.out.print("error > tol ++++++ \n");
+        if((statistics!=null)&&(iterations>0)) {
+          statistics.stepRejected();
+        }
         double fac = 0.9*Math.pow(error/tol, -0.25);
         stepSize = stepSize*Math.max(fac, 0.1);
       } else if(error<tol/10.0) {  // grow, but no more than factor of 10
-//    	  System.out.print("inside if else ++++++ \n");
         double fac = 0.9*Math.pow(error/tol, -0.2);
         if(fac>1) {                // sometimes fac is <1 because error/tol is close to one
           stepSize = stepSize*Math.min(fac, 10);
         }
       }
-//      System.out.format("error=%10f, tol=%10f, iterations=%d \n", error, tol, iterations);
     } while((error>tol)&&(iterations>0));
     // advance the state
-//    System.out.print("OUTSIDE LOOP ------- \n");
-    for(int i = 0; i<numEqn; i++) {
-      for(int s = 0; s<numStages; s++) {
-        state[i] += currentStep * b5[s] * k[s][i];
+    RKStageKernels.combine(state, currentStep, b5, k, numStages, coeff, state, numEqn);
+    if(statistics!=null) {
+      statistics.stepFinished(currentStep);
+      if(iterations==0) {
+        statistics.stepFailed();
       }
     }
     if(iterations==0) {
@@ -158,7 +134,6 @@ public class DormandPrince45 implements ODEAdaptiveSolver {
         throw new ODESolverException("DormanPrince45 ODE solver did not converge."); //$NON-NLS-1$
       }
     }
-//    System.out.format("currentStep=%12f \n", currentStep);
     return currentStep; // the value of the step actually taken.
   }
 
@@ -230,6 +205,62 @@ public class DormandPrince45 implements ODEAdaptiveSolver {
     return error_code;
   }
 
+  /**
+   * Enables or disables the collection of statistics.
+   * @param enabled true to collect statistics
+   */
+  public void setStatisticsEnabled(boolean enabled) {
+    if(enabled==(statistics!=null)) {
+      return;
+    }
+    if(enabled) {
+      statistics = new ODESolverStatistics();
+      ode = statistics.monitor(ode);
+    } else {
+      ode = ODESolverStatistics.unmonitor(ode);
+      statistics = null;
+    }
+  }
+
+  /**
+   * Gets the statistics.
+   * @return the statistics or null if they are disabled
+   */
+  public ODESolverStatistics getStatistics() {
+    return statistics;
+  }
+
+  /**
+   * Returns a serializer that saves the adaptive step size and the tolerance in a checkpoint.
+   *
+   * @return the serializer
+   */
+  public static ODESolverCheckpoint.StateSerializer getSerializer() {
+    return new Serializer();
+  }
+
+  /**
+   * A class to save and load the internal state of a DormandPrince45 solver.
+   */
+  static class Serializer implements ODESolverCheckpoint.StateSerializer {
+    public void saveState(DataOutput out, ODESolver obj) throws IOException {
+      DormandPrince45 solver = (DormandPrince45) obj;
+      out.writeDouble(solver.stepSize);
+      out.writeDouble(solver.tol);
+      out.writeBoolean(solver.enableExceptions);
+      out.writeInt(solver.error_code);
+    }
+
+    public void loadState(DataInput in, ODESolver obj) throws IOException {
+      DormandPrince45 solver = (DormandPrince45) obj;
+      solver.stepSize = in.readDouble();
+      solver.tol = in.readDouble();
+      solver.enableExceptions = in.readBoolean();
+      solver.error_code = in.readInt();
+    }
+
+  }
+
 }
 
 /*
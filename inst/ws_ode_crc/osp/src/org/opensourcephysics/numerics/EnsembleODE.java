@@ -0,0 +1,66 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+package org.opensourcephysics.numerics;
+
+/**
+ * EnsembleODE defines many copies (members) of the same system of differential equations so that
+ * an ensemble solver can advance all members in a single call.
+ *
+ * Every member has its own state array and all members have the same number of state variables.
+ * The rows of the arrays passed to getRates are independent.  Ensemble solvers may therefore invoke
+ * getRates with any subset of the members, in any order, and from more than one thread at a time.
+ *
+ * @see EnsembleRK4
+ * @see EnsembleRK45MultiStep
+ */
+public interface EnsembleODE {
+  /**
+   * Gets the state variables of every member of the ensemble.
+   *
+   * The first index is the member and the second index is the state variable.  The solver advances the
+   * solution and copies new values into these arrays at the end of the solution step.
+   *
+   * @return states  the states
+   */
+  public double[][] getStates();
+
+  /**
+   * Gets the rates of change using the argument's state variables.
+   *
+   * Row m of the rates array must be computed using only row m of the states array.
+   *
+   * @param states  the state arrays
+   * @param rates   the rate arrays
+   */
+  public void getRates(double[][] states, double[][] rates);
+
+}
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */
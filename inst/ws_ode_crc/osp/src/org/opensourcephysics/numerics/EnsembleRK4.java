@@ -0,0 +1,125 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+package org.opensourcephysics.numerics;
+
+/**
+ * Title:        EnsembleRK4
+ * Description:  A fourth order Runge-Kutta solver that advances every member of an EnsembleODE.
+ *
+ * Every member takes the same fixed step.  The results are identical to stepping each member with RK4.
+ *
+ * @see RK4
+ * @version 1.0
+ */
+public class EnsembleRK4 extends AbstractEnsembleSolver {
+  private double[][] rate1, rate2, rate3, rate4, estimated_state;
+  private double[][][] stateViews, rate1Views, rate2Views, rate3Views, rate4Views, estimatedViews;
+
+  /**
+   * Constructs the EnsembleRK4 solver for an ensemble of ordinary differential equations.
+   *
+   * @param ode the ensemble of differential equations.
+   */
+  public EnsembleRK4(EnsembleODE ode) {
+    super(ode);
+    initialize(stepSize);
+  }
+
+  /**
+   * Allocates the rate and state arrays and the block views of these arrays.
+   */
+  protected void allocateArrays() {
+    rate1 = new double[numMembers][numEqn];
+    rate2 = new double[numMembers][numEqn];
+    rate3 = new double[numMembers][numEqn];
+    rate4 = new double[numMembers][numEqn];
+    estimated_state = new double[numMembers][numEqn];
+    int numBlocks = blockStart.length-1;
+    stateViews = new double[numBlocks][][];
+    rate1Views = new double[numBlocks][][];
+    rate2Views = new double[numBlocks][][];
+    rate3Views = new double[numBlocks][][];
+    rate4Views = new double[numBlocks][][];
+    estimatedViews = new double[numBlocks][][];
+    for(int b = 0; b<numBlocks; b++) {
+      int from = blockStart[b], to = blockStart[b+1];
+      stateViews[b] = view(states, from, to);
+      rate1Views[b] = view(rate1, from, to);
+      rate2Views[b] = view(rate2, from, to);
+      rate3Views[b] = view(rate3, from, to);
+      rate4Views[b] = view(rate4, from, to);
+      estimatedViews[b] = view(estimated_state, from, to);
+    }
+  }
+
+  /**
+   * Steps the members of a block.
+   *
+   * @param block the block index
+   */
+  protected void stepBlock(int block) {
+    double[][] state = stateViews[block];
+    double[][] r1 = rate1Views[block], r2 = rate2Views[block], r3 = rate3Views[block], r4 = rate4Views[block];
+    double[][] est = estimatedViews[block];
+    int n = state.length;
+    double h = stepSize;
+    ode.getRates(state, r1);
+    for(int m = 0; m<n; m++) {
+      double[] x = state[m], r = r1[m], e = est[m];
+      for(int i = 0; i<numEqn; i++) {
+        e[i] = x[i]+h*r[i]/2;
+      }
+    }
+    ode.getRates(est, r2);
+    for(int m = 0; m<n; m++) {
+      double[] x = state[m], r = r2[m], e = est[m];
+      for(int i = 0; i<numEqn; i++) {
+        e[i] = x[i]+h*r[i]/2;
+      }
+    }
+    ode.getRates(est, r3);
+    for(int m = 0; m<n; m++) {
+      double[] x = state[m], r = r3[m], e = est[m];
+      for(int i = 0; i<numEqn; i++) {
+        e[i] = x[i]+h*r[i];
+      }
+    }
+    ode.getRates(est, r4);
+    for(int m = 0; m<n; m++) {
+      double[] x = state[m], k1 = r1[m], k2 = r2[m], k3 = r3[m], k4 = r4[m];
+      for(int i = 0; i<numEqn; i++) {
+        x[i] = x[i]+h*(k1[i]+2*k2[i]+2*k3[i]+k4[i])/6.0;
+      }
+    }
+  }
+
+}
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */
@@ -0,0 +1,408 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+package org.opensourcephysics.numerics;
+
+/**
+ * Title:        EnsembleRK45MultiStep
+ * Description:  Perform multiple RK4/5 steps on every member of an EnsembleODE so that a uniform step size is maintained
+ *
+ * Every member keeps its own adaptive step size.  Members that need many small steps do not slow down
+ * members that cross the fixed step in one step because the rates are only evaluated for members that
+ * have not yet reached the end of the fixed step.
+ *
+ * The default coefficients are the Dormand-Prince coefficients used by DormandPrince45.  Subclasses
+ * may supply another embedded Runge-Kutta pair through the protected constructor.
+ *
+ * @see RK45MultiStep
+ * @version 1.0
+ */
+public class EnsembleRK45MultiStep extends AbstractEnsembleSolver implements ODEAdaptiveSolver {
+  protected volatile int error_code = NO_ERROR;
+  protected double tol = 1.0e-6;
+  protected int maxIterations = 200;
+  protected boolean enableExceptions = false;
+  protected final double[][] a;       // stage coefficients
+  protected final double[] b;         // solution coefficients
+  protected final double[] er;        // error coefficients
+  protected final int numStages;      // number of intermediate rate computations
+  protected final boolean endRate;    // true if the error estimate uses the rate at the end of the step
+  private double[] memberStepSize;
+  private double[] remainder;
+  private int[] active;
+  private double[][][] k;             // intermediate rates indexed by member, stage and equation
+  private double[][] temp_state, next_state;
+  private double[][][] yViews, tViews, nViews, kViews[];
+
+  /**
+   * Constructs the EnsembleRK45MultiStep solver for an ensemble of ordinary differential equations.
+   *
+   * @param ode the ensemble of differential equations.
+   */
+  public EnsembleRK45MultiStep(EnsembleODE ode) {
+    this(ode, DormandPrince45.a, DormandPrince45.b5, DormandPrince45.er, false);
+  }
+
+  /**
+   * Constructs the solver using an embedded Runge-Kutta pair.
+   *
+   * @param ode the ensemble of differential equations.
+   * @param a the stage coefficients
+   * @param b the coefficients of the solution
+   * @param er the error coefficients
+   * @param endRate true if the last error coefficient multiplies the rate at the end of the step
+   */
+  protected EnsembleRK45MultiStep(EnsembleODE ode, double[][] a, double[] b, double[] er, boolean endRate) {
+    super(ode);
+    this.a = a;
+    this.b = b;
+    this.er = er;
+    this.endRate = endRate;
+    numStages = b.length;
+    initialize(stepSize);
+  }
+
+  /**
+   * Allocates the rate and state arrays.
+   */
+  protected void allocateArrays() {
+    memberStepSize = new double[numMembers];
+    for(int m = 0; m<numMembers; m++) {
+      memberStepSize[m] = stepSize/2; // be conservative with the adaptive solver
+    }
+    remainder = new double[numMembers];
+    active = new int[numMembers];
+    k = new double[numMembers][endRate ? numStages+1 : numStages][numEqn];
+    temp_state = new double[numMembers][numEqn];
+    next_state = new double[numMembers][numEqn];
+    int numBlocks = blockStart.length-1;
+    yViews = new double[numBlocks][][];
+    tViews = new double[numBlocks][][];
+    nViews = new double[numBlocks][][];
+    kViews = new double[numBlocks][][][];
+  }
+
+  /**
+   * Steps the members of a block.
+   *
+   * @param block the block index
+   */
+  protected void stepBlock(int block) {
+    int from = blockStart[block], to = blockStart[block+1];
+    double h0 = stepSize;
+    int count = 0;
+    for(int m = from; m<to; m++) {
+      double h = memberStepSize[m];
+      if((h*h0<=0)||(Math.abs(h)>Math.abs(h0))||(h0-h==h0)) {
+        memberStepSize[m] = h0; // reset the step size and let it adapt to an optimum size
+      }
+      remainder[m] = h0;
+      active[from+count] = m;
+      count++;
+    }
+    int[] needRate = null;
+    int numNeedRate = count; // every member needs its initial rate
+    int counter = 0;
+    while(count>0) {
+      counter++;
+      // evaluate the initial rates of members that have moved
+      if(numNeedRate==count) {
+        double[][] yv = fill(yViews, block, count, states, from);
+        double[][] rv = fillStage(block, 0, count, from);
+        ode.getRates(yv, rv);
+      } else if(numNeedRate>0) {
+        double[][] yv = new double[numNeedRate][];
+        double[][] rv = new double[numNeedRate][];
+        for(int j = 0; j<numNeedRate; j++) {
+          yv[j] = states[needRate[j]];
+          rv[j] = k[needRate[j]][0];
+        }
+        ode.getRates(yv, rv);
+      }
+      double[][] tv = fill(tViews, block, count, temp_state, from);
+      for(int s = 1; s<numStages; s++) {
+        double[] as = a[s-1];
+        for(int j = 0; j<count; j++) {
+          int m = active[from+j];
+          double h = memberStep(m);
+          double[] y = states[m], t = temp_state[m];
+          double[][] km = k[m];
+          for(int i = 0; i<numEqn; i++) {
+            t[i] = y[i];
+          }
+          for(int q = 0; q<s; q++) {
+            double c = h*as[q];
+            if(c==0) {
+              continue;
+            }
+            double[] kq = km[q];
+            for(int i = 0; i<numEqn; i++) {
+              t[i] += c*kq[i];
+            }
+          }
+        }
+        ode.getRates(tv, fillStage(block, s, count, from));
+      }
+      for(int j = 0; j<count; j++) {
+        int m = active[from+j];
+        double h = memberStep(m);
+        double[] y = states[m], n = next_state[m];
+        double[][] km = k[m];
+        for(int i = 0; i<numEqn; i++) {
+          n[i] = y[i];
+        }
+        for(int s = 0; s<numStages; s++) {
+          double c = h*b[s];
+          if(c==0) {
+            continue;
+          }
+          double[] ks = km[s];
+          for(int i = 0; i<numEqn; i++) {
+            n[i] += c*ks[i];
+          }
+        }
+      }
+      if(endRate) {
+        ode.getRates(fill(nViews, block, count, next_state, from), fillStage(block, numStages, count, from));
+      }
+      // accept or reject the step of every active member
+      int stillActive = 0;
+      numNeedRate = 0;
+      for(int j = 0; j<count; j++) {
+        int m = active[from+j];
+        double h = memberStep(m);
+        boolean truncated = (h!=memberStepSize[m]);
+        double err = estimateError(states[m], next_state[m], k[m], h);
+        double hNew = estimateStepSize(h, err);
+        if(err<=1) {
+          double[] y = states[m];
+          System.arraycopy(next_state[m], 0, y, 0, numEqn);
+          remainder[m] -= h;
+          if(!truncated) {
+            memberStepSize[m] = hNew;
+          }
+          if(endRate) { // the rate at the end of the step is the next initial rate
+            double[][] km = k[m];
+            double[] swap = km[0];
+            km[0] = km[numStages];
+            km[numStages] = swap;
+          }
+        } else {
+          memberStepSize[m] = hNew;
+        }
+        if(Math.abs(remainder[m])<=tol*Math.abs(h0)) {
+          continue; // this member is done
+        }
+        if((Math.abs(memberStepSize[m])<tol*Math.abs(h0)/10.0)||(counter>maxIterations)) {
+          error_code = DID_NOT_CONVERGE;
+          if(enableExceptions) {
+            throw new ODESolverException("EnsembleRK45MultiStep ODE solver did not converge."); //$NON-NLS-1$
+          }
+          continue;
+        }
+        active[from+stillActive] = m;
+        stillActive++;
+        if((err<=1)&&!endRate) {
+          if(needRate==null) {
+            needRate = new int[count];
+          }
+          needRate[numNeedRate] = m;
+          numNeedRate++;
+        }
+      }
+      count = stillActive;
+    }
+  }
+
+  /**
+   * Gets the step that will be taken by a member.  A step never passes the end of the fixed step.
+   *
+   * @param m the member
+   * @return the step
+   */
+  private double memberStep(int m) {
+    double h = memberStepSize[m];
+    return (Math.abs(remainder[m])<Math.abs(h)) ? remainder[m] : h;
+  }
+
+  /**
+   * Fills a block view with the rows of the active members.
+   */
+  private double[][] fill(double[][][] views, int block, int count, double[][] rows, int from) {
+    double[][] v = views[block];
+    if((v==null)||(v.length!=count)) {
+      v = views[block] = new double[count][];
+    }
+    for(int j = 0; j<count; j++) {
+      v[j] = rows[active[from+j]];
+    }
+    return v;
+  }
+
+  /**
+   * Fills a block view with the stage rates of the active members.
+   */
+  private double[][] fillStage(int block, int stage, int count, int from) {
+    double[][][] kv = kViews[block];
+    if(kv==null) {
+      kv = kViews[block] = new double[numStages+1][][];
+    }
+    double[][] v = kv[stage];
+    if((v==null)||(v.length!=count)) {
+      v = kv[stage] = new double[count][];
+    }
+    for(int j = 0; j<count; j++) {
+      v[j] = k[active[from+j]][stage];
+    }
+    return v;
+  }
+
+  /**
+   * Estimates the error of a member's step relative to the tolerance.  A step is accepted if the
+   * returned value is less than or equal to one.
+   *
+   * The default uses the maximum absolute error of the Dormand-Prince pair.
+   *
+   * @param initial the state at the start of the step
+   * @param next the state at the end of the step
+   * @param rates the intermediate rates
+   * @param h the step size
+   * @return the relative error
+   */
+  protected double estimateError(double[] initial, double[] next, double[][] rates, double h) {
+    double error = 0;
+    for(int i = 0; i<numEqn; i++) {
+      double truncErr = 0;
+      for(int s = 0; s<er.length; s++) {
+        truncErr += h*er[s]*rates[s][i];
+      }
+      error = Math.max(error, Math.abs(truncErr));
+    }
+    if(error<=Float.MIN_VALUE) { // error too small to be meaningful,
+      error = tol/1.0e5;         // increase stepSize x10
+    }
+    return error/tol;
+  }
+
+  /**
+   * Estimates the step size of the next try.
+   *
+   * @param h the step size of this try
+   * @param err the relative error of this try
+   * @return the new step size
+   */
+  protected double estimateStepSize(double h, double err) {
+    if(err>1) {             // shrink, no more than x10
+      double fac = 0.9*Math.pow(err, -0.25);
+      return h*Math.max(fac, 0.1);
+    } else if(err<0.1) {    // grow, but no more than factor of 10
+      double fac = 0.9*Math.pow(err, -0.2);
+      if(fac>1) {           // sometimes fac is <1 because error/tol is close to one
+        return h*Math.min(fac, 10);
+      }
+    }
+    return h;
+  }
+
+  /**
+   * Steps (advances) every member of the ensemble by the fixed step size.
+   *
+   * @return the step size
+   */
+  public double step() {
+    error_code = NO_ERROR;
+    return super.step();
+  }
+
+  /**
+   * Gets the adaptive step size of a member.
+   *
+   * @param m the member
+   * @return the step size
+   */
+  public double getMemberStepSize(int m) {
+    return memberStepSize[m];
+  }
+
+  /**
+   * Sets the maximum number of iterations.
+   * @param n maximum
+   */
+  public void setMaxIterations(int n) {
+    maxIterations = Math.max(1, n);
+  }
+
+  /**
+   * Enables runtime exceptions if the solver does not converge.
+   * @param enable boolean
+   */
+  public void enableRuntimeExpecptions(boolean enable) {
+    this.enableExceptions = enable;
+  }
+
+  /**
+   * Method setTolerance
+   *
+   * @param _tol
+   */
+  public void setTolerance(double _tol) {
+    tol = Math.abs(_tol);
+    if(tol<1.0E-12) {
+      String err_msg = "Error: EnsembleRK45MultiStep ODE solver tolerance cannot be smaller than 1.0e-12."; //$NON-NLS-1$
+      if(enableExceptions) {
+        throw new ODESolverException(err_msg);
+      }
+      System.err.println(err_msg);
+      tol = 1.0e-12;
+    }
+  }
+
+  /**
+   * Method getTolerance
+   *
+   * @return tolerance
+   */
+  public double getTolerance() {
+    return tol;
+  }
+
+  /**
+   * Gets the error code.
+   * Error codes:
+   *   ODEAdaptiveSolver.NO_ERROR
+   *   ODEAdaptiveSolver.DID_NOT_CONVERGE
+   * @return int
+   */
+  public int getErrorCode() {
+    return error_code;
+  }
+
+}
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */
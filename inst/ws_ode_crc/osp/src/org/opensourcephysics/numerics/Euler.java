@@ -50,10 +50,16 @@ public class Euler extends AbstractODESolver {
    */
   public double step() {
     double[] state = ode.getState();
+    if(statistics!=null) {
+      statistics.stepStarted();
+    }
     ode.getRate(state, rate);
     for(int i = 0; i<numEqn; i++) {
       state[i] = state[i]+stepSize*rate[i];
     }
+    if(statistics!=null) {
+      statistics.stepFinished(stepSize);
+    }
     return stepSize;
   }
 
@@ -60,6 +60,9 @@ public class EulerRichardson extends AbstractODESolver {
    */
   public double step() {
     double[] state = ode.getState();
+    if(statistics!=null) {
+      statistics.stepStarted();
+    }
     ode.getRate(state, rate); // get the rate at the start
     double dt2 = stepSize/2;
     for(int i = 0; i<numEqn; i++) {
@@ -70,6 +73,9 @@ public class EulerRichardson extends AbstractODESolver {
     for(int i = 0; i<numEqn; i++) {
       state[i] = state[i]+stepSize*rate[i];
     }
+    if(statistics!=null) {
+      statistics.stepFinished(stepSize);
+    }
     return stepSize;
   }
 
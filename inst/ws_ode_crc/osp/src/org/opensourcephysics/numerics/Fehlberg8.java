@@ -64,6 +64,9 @@ public class Fehlberg8 extends AbstractODESolver {
     if(state==null) {
       return stepSize;
     }
+    if(statistics!=null) {
+      statistics.stepStarted();
+    }
     if(state.length!=numEqn) {
       initialize(stepSize);
     }
@@ -119,6 +122,9 @@ public class Fehlberg8 extends AbstractODESolver {
     for(int i = 0; i<numEqn; i++) {
       state[i] = state[i]+stepSize*(34./105.*rate6[i]+9./35.*rate7[i]+9./35.*rate8[i]+9./280.*rate9[i]+9./280.*rate10[i]+41./840.*rate12[i]+41./840.*rate13[i]);
     }
+    if(statistics!=null) {
+      statistics.stepFinished(stepSize);
+    }
     return stepSize;
   }
 
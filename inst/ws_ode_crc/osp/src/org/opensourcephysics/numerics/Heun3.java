@@ -53,6 +53,9 @@ public class Heun3 extends AbstractODESolver {
    */
   public double step() {
     double state[] = ode.getState();
+    if(statistics!=null) {
+      statistics.stepStarted();
+    }
     if(state.length!=numEqn) {
       initialize(stepSize);
     }
@@ -68,6 +71,9 @@ public class Heun3 extends AbstractODESolver {
     for(int i = 0; i<numEqn; i++) {
       state[i] = state[i]+stepSize*(rate1[i]+3.0*rate3[i])/4.0;
     }
+    if(statistics!=null) {
+      statistics.stepFinished(stepSize);
+    }
     return stepSize;
   }
 
@@ -108,6 +108,9 @@ public class LeapFrog extends AbstractODESolver {
   public double step() {
     // state[]: x1, d x1/dt, x2, d x2/dt .... xN, d xN/dt, t
     double[] state = ode.getState();
+    if(statistics!=null) {
+      statistics.stepStarted();
+    }
     if(state.length!=numEqn) {
       initialize(stepSize);
     }
@@ -126,6 +129,9 @@ public class LeapFrog extends AbstractODESolver {
       state[numEqn-1] += stepSize*rate[numEqn-1]; // usually the independent variable
     }
     System.arraycopy(currentState, 0, priorState, 0, numEqn); // save the current state as the prior state
+    if(statistics!=null) {
+      statistics.stepFinished(stepSize);
+    }
     return stepSize;
   }
 
@@ -0,0 +1,449 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+
+package org.opensourcephysics.numerics;
+
+/**
+ * MultirateSolver advances ODEs whose state variables evolve on different time scales.
+ *
+ * The state is partitioned into fast and slow components.  In each step the fast components are advanced
+ * first by a number of fourth order Runge-Kutta substeps.  During the substeps the slow components are
+ * extrapolated by the cubic Hermite polynomial through the slow state and rate at the start of this step and
+ * of the previous step.  The slow components are then advanced by one fourth order Runge-Kutta step that
+ * uses the fast values at the middle and at the end of the step.  If the ODE implements PartitionedODE only
+ * the components of a group are evaluated, so that a step costs four evaluations of the slow components and
+ * four evaluations of the fast components per substep.
+ *
+ * The partition and the number of substeps are either given by the user or detected from the error
+ * estimates of a step and two half steps of the full system: components whose estimated local error exceeds
+ * the tolerance are fast, and the number of substeps is doubled until the error of their substeps, summed
+ * over a step, is within the tolerance.  Each estimate costs eleven evaluations of the full system and the
+ * detection is repeated at a regular interval of steps.  Components that are driven by fast components are
+ * detected as fast if the tolerance is small.
+ *
+ * Example:
+ * <pre>
+ *   MultirateSolver solver = new MultirateSolver(ode, new int[] {2, 3}, 20); // components 2 and 3 are fast
+ *   solver.setStepSize(0.1);
+ *   solver.step();
+ * </pre>
+ *
+ * @version 1.0
+ */
+public class MultirateSolver extends AbstractODESolver {
+  /**
+   * Largest number of substeps chosen by the detection
+   */
+  static final public int MAX_SUBSTEPS = 1024;
+  private PartitionedODE partitioned; // null if the ODE can only be evaluated in full
+  private boolean detect;          // true if the partition is detected
+  private double tol;
+  private int repartitionInterval;
+  private int stepsSincePartition;
+  private int substeps;
+  private int[] fast, slow;
+  private long componentEvaluations;
+  private double[] rate1, rate2, rate3, rate4, work, temp, fastMid;
+  private double[] previousSlow, previousRate; // slow history for the extrapolation
+  private double previousStep;
+  private boolean hasHistory;
+
+  /**
+   * Constructs a solver that detects the fast components.
+   *
+   * @param ode the system of differential equations
+   */
+  public MultirateSolver(ODE ode) {
+    super(ode);
+    init(ode);
+    detect = true;
+  }
+
+  /**
+   * Constructs a solver with a given partition.
+   *
+   * @param ode the system of differential equations
+   * @param fastComponents the indices of the fast components
+   * @param substeps the number of substeps of the fast components per step
+   */
+  public MultirateSolver(ODE ode, int[] fastComponents, int substeps) {
+    super(ode);
+    init(ode);
+    setPartition(fastComponents, substeps);
+  }
+
+  private void init(ODE ode) {
+    partitioned = (ode instanceof PartitionedODE) ? (PartitionedODE) ode : null;
+    tol = 1.0e-6;
+    repartitionInterval = 100;
+  }
+
+  /**
+   * Initializes the solver and allocates the arrays.  The history of the slow components is cleared.
+   *
+   * @param stepSize the step size
+   */
+  public void initialize(double stepSize) {
+    super.initialize(stepSize);
+    rate1 = new double[numEqn];
+    rate2 = new double[numEqn];
+    rate3 = new double[numEqn];
+    rate4 = new double[numEqn];
+    work = new double[numEqn];
+    temp = new double[numEqn];
+    fastMid = new double[numEqn];
+    previousSlow = new double[numEqn];
+    previousRate = new double[numEqn];
+    hasHistory = false;
+    if((fast!=null)&&(fast.length+slow.length!=numEqn)) { // the number of equations has changed
+      fast = slow = null;
+    }
+  }
+
+  /**
+   * Sets the fast components and the number of substeps.  The detection of the partition is switched off.
+   *
+   * @param fastComponents the indices of the fast components
+   * @param substeps the number of substeps, rounded up to an even number
+   */
+  public void setPartition(int[] fastComponents, int substeps) {
+    boolean[] isFast = new boolean[numEqn];
+    for(int i = 0; i<fastComponents.length; i++) {
+      if((fastComponents[i]<0)||(fastComponents[i]>=numEqn)) {
+        throw new IllegalArgumentException("Component index out of range: "+fastComponents[i]); //$NON-NLS-1$
+      }
+      isFast[fastComponents[i]] = true;
+    }
+    setPartition(isFast, substeps);
+    detect = false;
+  }
+
+  private void setPartition(boolean[] isFast, int m) {
+    int nFast = 0;
+    for(int i = 0; i<numEqn; i++) {
+      if(isFast[i]) {
+        nFast++;
+      }
+    }
+    fast = new int[nFast];
+    slow = new int[numEqn-nFast];
+    for(int i = 0, f = 0, s = 0; i<numEqn; i++) {
+      if(isFast[i]) {
+        fast[f++] = i;
+      } else {
+        slow[s++] = i;
+      }
+    }
+    substeps = Math.max(2, m+(m&1)); // the fast values are needed at the middle of the step
+    hasHistory = false;
+  }
+
+  /**
+   * Enables the detection of the fast components.
+   *
+   * @param tol the tolerance of the error of a step
+   * @param interval the number of steps between detections, zero to detect only at the next step
+   */
+  public void detectPartition(double tol, int interval) {
+    this.tol = Math.abs(tol);
+    repartitionInterval = interval;
+    detect = true;
+    fast = slow = null;
+  }
+
+  /**
+   * Steps the differential equations by the step size.
+   *
+   * @return the step size
+   */
+  public double step() {
+    double[] state = ode.getState();
+    if(state==null) {
+      return stepSize;
+    }
+    if(state.length!=numEqn) {
+      initialize(stepSize);
+    }
+    if(statistics!=null) {
+      statistics.stepStarted();
+    }
+    if((fast==null)||(detect&&(repartitionInterval>0)&&(stepsSincePartition>=repartitionInterval))) {
+      if(detect) {
+        detectPartition(state);
+      } else {
+        setPartition(new boolean[numEqn], 2); // an empty partition if the ODE has grown
+      }
+    }
+    multirateStep(state);
+    stepsSincePartition++;
+    if(statistics!=null) {
+      statistics.stepFinished(stepSize);
+    }
+    return stepSize;
+  }
+
+  /**
+   * Takes a multirate step.
+   */
+  private void multirateStep(double[] state) {
+    double h = stepSize;
+    // slow rate at the start of the step; the fast rate of the first substep is computed below
+    evaluate(state, rate1, slow);
+    // advance the fast components with the extrapolated slow components
+    System.arraycopy(state, 0, work, 0, numEqn);
+    if(fast.length>0) {
+      double dt = h/substeps;
+      for(int n = 0; n<substeps; n++) {
+        double t0 = n*dt;
+        extrapolate(work, state, t0);
+        evaluate(work, rate2, fast);
+        for(int i = 0; i<fast.length; i++) {
+          int j = fast[i];
+          temp[j] = work[j]+0.5*dt*rate2[j];
+        }
+        extrapolate(temp, state, t0+0.5*dt);
+        evaluate(temp, rate3, fast);
+        for(int i = 0; i<fast.length; i++) {
+          int j = fast[i];
+          temp[j] = work[j]+0.5*dt*rate3[j];
+          rate2[j] += 2*rate3[j];
+        }
+        evaluate(temp, rate3, fast);
+        for(int i = 0; i<fast.length; i++) {
+          int j = fast[i];
+          temp[j] = work[j]+dt*rate3[j];
+          rate2[j] += 2*rate3[j];
+        }
+        extrapolate(temp, state, t0+dt);
+        evaluate(temp, rate3, fast);
+        for(int i = 0; i<fast.length; i++) {
+          int j = fast[i];
+          work[j] += dt*(rate2[j]+rate3[j])/6;
+        }
+        if(2*(n+1)==substeps) {
+          System.arraycopy(work, 0, fastMid, 0, numEqn);
+        }
+      }
+    }
+    // advance the slow components with the fast values at the middle and at the end of the step
+    if(slow.length>0) {
+      System.arraycopy(fastMid, 0, temp, 0, numEqn);
+      for(int i = 0; i<slow.length; i++) {
+        int j = slow[i];
+        temp[j] = state[j]+0.5*h*rate1[j];
+      }
+      evaluate(temp, rate2, slow);
+      for(int i = 0; i<slow.length; i++) {
+        int j = slow[i];
+        temp[j] = state[j]+0.5*h*rate2[j];
+      }
+      evaluate(temp, rate3, slow);
+      System.arraycopy(work, 0, temp, 0, numEqn);
+      for(int i = 0; i<slow.length; i++) {
+        int j = slow[i];
+        temp[j] = state[j]+h*rate3[j];
+      }
+      evaluate(temp, rate4, slow);
+      for(int i = 0; i<slow.length; i++) {
+        int j = slow[i];
+        previousSlow[j] = state[j];
+        previousRate[j] = rate1[j];
+        work[j] = state[j]+h*(rate1[j]+2*rate2[j]+2*rate3[j]+rate4[j])/6;
+      }
+      previousStep = h;
+      hasHistory = true;
+    }
+    System.arraycopy(work, 0, state, 0, numEqn);
+  }
+
+  /**
+   * Sets the slow components of y to their extrapolated values at the time t after the start of the step.
+   */
+  private void extrapolate(double[] y, double[] state, double t) {
+    if(!hasHistory) {
+      for(int i = 0; i<slow.length; i++) {
+        int j = slow[i];
+        y[j] = state[j]+t*rate1[j];
+      }
+      return;
+    }
+    // cubic Hermite polynomial through the start of the previous step (x=0) and of this step (x=1)
+    double hp = previousStep;
+    double x = 1+t/hp, x2 = x*x, x3 = x2*x;
+    double h00 = 2*x3-3*x2+1, h10 = (x3-2*x2+x)*hp, h01 = 3*x2-2*x3, h11 = (x3-x2)*hp;
+    for(int i = 0; i<slow.length; i++) {
+      int j = slow[i];
+      y[j] = h00*previousSlow[j]+h10*previousRate[j]+h01*state[j]+h11*rate1[j];
+    }
+  }
+
+  /**
+   * Compares a step of the full system with two half steps and partitions the components by their
+   * estimated errors.  The number of substeps is then doubled until the errors of the fast components,
+   * accumulated over the substeps of a macro step, are within the tolerance.  The state is not changed.
+   */
+  private void detectPartition(double[] state) {
+    boolean[] isFast = new boolean[numEqn];
+    double maxRatio = 0;
+    estimateError(state, stepSize);
+    for(int i = 0; i<numEqn; i++) {
+      double ratio = errorRatio(i);
+      if(ratio>1) {
+        isFast[i] = true;
+        maxRatio = Math.max(maxRatio, ratio);
+      }
+    }
+    // the local error of a fourth order step scales with the fifth power of the step size
+    int m = (int) Math.ceil(Math.pow(maxRatio, 0.2));
+    // the estimate is unreliable if the fast components are not resolved by the macro step
+    while((m>1)&&(m<MAX_SUBSTEPS)) {
+      double h = stepSize/m;
+      estimateError(state, h);
+      boolean resolved = true;
+      for(int i = 0; i<numEqn; i++) {
+        if(isFast[i]&&(m*errorRatio(i)>1)) {
+          resolved = false;
+          break;
+        }
+      }
+      if(resolved) {
+        break;
+      }
+      m = Math.min(2*m, MAX_SUBSTEPS);
+    }
+    setPartition(isFast, m);
+    stepsSincePartition = 0;
+  }
+
+  /**
+   * Estimates the error of every component in a step of the full system by comparing the step with two half
+   * steps.  The two half steps are left in work and the difference in fastMid.
+   */
+  private void estimateError(double[] state, double h) {
+    System.arraycopy(state, 0, work, 0, numEqn);
+    rk4(work, h, true);
+    System.arraycopy(work, 0, fastMid, 0, numEqn);
+    System.arraycopy(state, 0, work, 0, numEqn);
+    rk4(work, h/2, false);
+    rk4(work, h/2, true);
+    for(int i = 0; i<numEqn; i++) {
+      fastMid[i] = (work[i]-fastMid[i])/15;
+    }
+  }
+
+  /**
+   * Gets the ratio of the estimated error of a component to the tolerance.
+   */
+  private double errorRatio(int i) {
+    return Math.abs(fastMid[i])/(tol*Math.max(1, Math.abs(work[i])));
+  }
+
+  /**
+   * Takes a fourth order Runge-Kutta step of the full system.  The rate at the start of the step is reused
+   * from rate1 unless evaluate is true.
+   */
+  private void rk4(double[] y, double h, boolean evaluate) {
+    if(evaluate) {
+      evaluateAll(y, rate1);
+    }
+    for(int i = 0; i<numEqn; i++) {
+      temp[i] = y[i]+0.5*h*rate1[i];
+    }
+    evaluateAll(temp, rate2);
+    for(int i = 0; i<numEqn; i++) {
+      temp[i] = y[i]+0.5*h*rate2[i];
+    }
+    evaluateAll(temp, rate3);
+    for(int i = 0; i<numEqn; i++) {
+      temp[i] = y[i]+h*rate3[i];
+    }
+    evaluateAll(temp, rate4);
+    for(int i = 0; i<numEqn; i++) {
+      y[i] += h*(rate1[i]+2*rate2[i]+2*rate3[i]+rate4[i])/6;
+    }
+  }
+
+  private void evaluateAll(double[] y, double[] rate) {
+    ode.getRate(y, rate);
+    componentEvaluations += numEqn;
+  }
+
+  /**
+   * Evaluates the rates of a group of components.
+   */
+  private void evaluate(double[] y, double[] rate, int[] components) {
+    if(components.length==0) {
+      return;
+    }
+    if(partitioned==null) {
+      evaluateAll(y, rate);
+      return;
+    }
+    componentEvaluations += components.length;
+    if(statistics==null) {
+      partitioned.getRate(y, rate, components);
+    } else {
+      long start = statistics.rateStarted();
+      partitioned.getRate(y, rate, components);
+      statistics.rateFinished(start);
+    }
+  }
+
+  /**
+   * Gets the indices of the fast components.
+   *
+   * @return the fast components or null if they have not yet been detected
+   */
+  public int[] getFastComponents() {
+    return (fast==null) ? null : fast.clone();
+  }
+
+  /**
+   * Gets the number of substeps of the fast components.
+   *
+   * @return the number of substeps
+   */
+  public int getSubsteps() {
+    return substeps;
+  }
+
+  /**
+   * Gets the number of rate components that have been evaluated.  A full evaluation counts as the number
+   * of equations.
+   *
+   * @return the number of evaluated components
+   */
+  public long getComponentEvaluations() {
+    return componentEvaluations;
+  }
+
+}
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */
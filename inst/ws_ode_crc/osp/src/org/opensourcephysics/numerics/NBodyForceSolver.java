@@ -0,0 +1,980 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+package org.opensourcephysics.numerics;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * NBodyForceSolver computes the gravitational accelerations of N bodies in two or three dimensions.
+ *
+ * Two methods are available:
+ *
+ * <ul>
+ * <li>DIRECT sums over all pairs and costs O(N^2) operations.</li>
+ * <li>BARNES_HUT sorts the bodies along a Morton curve and builds a quadtree or octree over the sorted
+ * bodies.  The cells are described by their mass, center of mass and quadrupole moment.  Small cells of
+ * the tree are groups of bodies that share a list of interactions: a cell whose bodies are all within the
+ * distance b of its center of mass acts on the group if b/d &lt; theta, where d is the distance of the center
+ * of mass from the bounding box of the group.  Otherwise the cell is opened.  An evaluation costs O(N log N)
+ * operations.  The opening angle theta controls the accuracy, theta = 0 gives the direct sum.</li>
+ * </ul>
+ *
+ * The tree is stored in primitive arrays that are only reallocated if the number of bodies grows.  The
+ * bounding box, the keys, the subtrees and the accelerations are computed by fork/join tasks on a pool of
+ * the given parallelism.  Every body sums its own acceleration in a fixed order, so the result does not
+ * depend on the number of threads.
+ *
+ * The positions are read from a flat array, such as the state of an ODE.  The coordinate d of body i is
+ * <code>state[offset+i*bodyStride+d*coordinateStride]</code> and its acceleration is stored in
+ * <code>acc[dimension*i+d]</code>.  Example for the state x, vx, y, vy, ... of a planar ODE:
+ * <pre>
+ * NBodyForceSolver gravity = new NBodyForceSolver(2);
+ * gravity.setSoftening(0.01);
+ * public void getRate(double[] state, double[] rate) {
+ *   gravity.computeAccelerations(state, 0, 4, 2, n, acc);
+ *   for(int i = 0; i&lt;n; i++) {
+ *     rate[4*i] = state[4*i+1];
+ *     rate[4*i+1] = acc[2*i];
+ *     ...
+ * </pre>
+ *
+ * References:
+ *    J. Barnes, P. Hut, A hierarchical O(N log N) force-calculation algorithm, Nature 324 (1986) 446-449.
+ *    J. Barnes, A modified tree code: don't laugh; it runs, J. Comput. Phys. 87 (1990) 161-170.
+ *    J. K. Salmon, M. S. Warren, Skeletons from the treecode closet, J. Comput. Phys. 111 (1994) 136-155.
+ *
+ * @see ParallelRate
+ * @version 1.0
+ */
+public class NBodyForceSolver {
+  public static final int DIRECT = 0, BARNES_HUT = 1;
+  static final int BOX = 0, KEYS = 1, GATHER = 2, FORCE = 3;
+  static final int BLOCK_SIZE = 1024; // bodies of a task
+  static final int GROUP_SIZE = 32;   // the largest number of bodies that share an interaction list
+  private final int dimension;
+  private final int levels;          // the depth of the Morton keys
+  private int method = BARNES_HUT;
+  private double theta = 0.5;
+  private double softening2 = 0;
+  private double G = 1;
+  private int leafSize = 8;
+  private boolean quadrupole = true;
+  private final int numQuadrupole;    // the independent components of the quadrupole moment
+  private double[] masses;
+  private int parallelism = Runtime.getRuntime().availableProcessors();
+  private ForkJoinPool pool;
+  // the bodies
+  private int n = 0;
+  private double[] state, acc;
+  private int offset, bodyStride, coordinateStride;
+  private double[] positions = new double[0]; // sorted along the Morton curve for BARNES_HUT
+  private double[] sortedMasses = new double[0];
+  private long[] keys = new long[0], keyBuffer = new long[0];
+  private int[] order = new int[0], orderBuffer = new int[0];
+  private double[] blockMin = new double[0], blockMax = new double[0];
+  private long[] blockInteractions = new long[0];
+  private BodyTask[] tasks = new BodyTask[0];
+  private double[] boxMin;
+  private double boxSize;
+  // the tree, the nodes of a subtree with the bodies lo to hi are in [2*lo, 2*hi), the top nodes follow 2*n
+  private int root;
+  private int numTopNodes;
+  private int[] bodyStart = new int[0], bodyEnd = new int[0];
+  private int[] firstChild = new int[0], next = new int[0];
+  private double[] nodeMass = new double[0], nodeRadius = new double[0];
+  private double[] nodeCenter = new double[0], nodeQuadrupole = new double[0];
+  private int[] groups = new int[0];   // the cells that share interaction lists, in the order of the bodies
+  private int numGroups;
+  private int[] blockGroups = new int[0]; // the first group of every block
+  private ArrayList<SubtreeTask> subtrees = new ArrayList<SubtreeTask>();
+
+  /**
+   * Constructs a solver.
+   *
+   * @param dimension two or three
+   */
+  public NBodyForceSolver(int dimension) {
+    if((dimension!=2)&&(dimension!=3)) {
+      throw new IllegalArgumentException("The dimension must be 2 or 3."); //$NON-NLS-1$
+    }
+    this.dimension = dimension;
+    levels = (dimension==2) ? 31 : 21;
+    numQuadrupole = (dimension==2) ? 3 : 6;
+    boxMin = new double[dimension];
+  }
+
+  /**
+   * Sets the method, DIRECT or BARNES_HUT.
+   *
+   * @param method the method
+   */
+  public void setMethod(int method) {
+    if((method!=DIRECT)&&(method!=BARNES_HUT)) {
+      throw new IllegalArgumentException("Unknown method "+method+"."); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+    this.method = method;
+  }
+
+  public int getMethod() {
+    return method;
+  }
+
+  /**
+   * Sets the opening angle of the Barnes-Hut method.  Smaller angles are more accurate and more expensive.
+   *
+   * @param theta the opening angle, 0.5 by default
+   */
+  public void setOpeningAngle(double theta) {
+    this.theta = Math.max(0, theta);
+  }
+
+  public double getOpeningAngle() {
+    return theta;
+  }
+
+  /**
+   * Sets the softening length eps.  The acceleration of a point mass is G m r/(r^2+eps^2)^(3/2).
+   *
+   * @param eps the softening length
+   */
+  public void setSoftening(double eps) {
+    softening2 = eps*eps;
+  }
+
+  public double getSoftening() {
+    return Math.sqrt(softening2);
+  }
+
+  public void setGravitationalConstant(double G) {
+    this.G = G;
+  }
+
+  public double getGravitationalConstant() {
+    return G;
+  }
+
+  /**
+   * Sets the masses of the bodies.
+   *
+   * @param masses the masses, or null for unit masses
+   */
+  public void setMasses(double[] masses) {
+    this.masses = masses;
+  }
+
+  /**
+   * Sets whether the cells include their quadrupole moments.  The quadrupole moments reduce the error of
+   * the Barnes-Hut method by an order of magnitude at a small cost.
+   *
+   * @param quadrupole true to include the quadrupole moments, the default
+   */
+  public void setQuadrupole(boolean quadrupole) {
+    this.quadrupole = quadrupole;
+  }
+
+  public boolean isQuadrupole() {
+    return quadrupole;
+  }
+
+  /**
+   * Sets the largest number of bodies in a leaf of the tree.
+   *
+   * @param size the size of the leaves, 8 by default
+   */
+  public void setLeafSize(int size) {
+    leafSize = Math.max(1, size);
+  }
+
+  /**
+   * Sets the number of threads.  A value of one computes in the calling thread.
+   *
+   * @param n the number of threads
+   */
+  public void setParallelism(int n) {
+    n = Math.max(1, n);
+    if(n!=parallelism) {
+      parallelism = n;
+      if(pool!=null) {
+        pool.shutdown();
+        pool = null;
+      }
+    }
+  }
+
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * Computes the accelerations of bodies whose coordinates follow each other in an array.
+   *
+   * @param positions the coordinates, dimension values per body
+   * @param n the number of bodies
+   * @param acc the array that receives the accelerations, dimension values per body
+   */
+  public void computeAccelerations(double[] positions, int n, double[] acc) {
+    computeAccelerations(positions, 0, dimension, 1, n, acc);
+  }
+
+  /**
+   * Computes the accelerations.
+   *
+   * @param state the array that holds the coordinates
+   * @param offset the index of the first coordinate of the first body
+   * @param bodyStride the distance between the coordinates of consecutive bodies
+   * @param coordinateStride the distance between the coordinates of a body
+   * @param n the number of bodies
+   * @param acc the array that receives the accelerations, dimension values per body
+   */
+  public void computeAccelerations(double[] state, int offset, int bodyStride, int coordinateStride, int n, double[] acc) {
+    if(n==0) {
+      return;
+    }
+    this.state = state;
+    this.offset = offset;
+    this.bodyStride = bodyStride;
+    this.coordinateStride = coordinateStride;
+    this.acc = acc;
+    allocate(n);
+    if(method==BARNES_HUT) {
+      run(BOX);
+      boxSize = 0;
+      for(int d = 0; d<dimension; d++) {
+        double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+        for(int b = 0; b<tasks.length; b++) {
+          min = Math.min(min, blockMin[dimension*b+d]);
+          max = Math.max(max, blockMax[dimension*b+d]);
+        }
+        boxMin[d] = min;
+        boxSize = Math.max(boxSize, max-min);
+      }
+      boxSize = (boxSize>0) ? boxSize*(1+1e-12) : 1;
+      run(KEYS);
+      sortKeys();
+    }
+    run(GATHER);
+    if(method==BARNES_HUT) {
+      buildTree();
+    }
+    run(FORCE);
+    this.state = null;
+    this.acc = null;
+  }
+
+  /**
+   * Gets the number of interactions of a body with a body or a cell in the last evaluation.  This is a
+   * measure of the cost that does not depend on the machine.
+   *
+   * @return the number of interactions
+   */
+  public long getNumberOfInteractions() {
+    long sum = 0;
+    for(int b = 0; b<tasks.length; b++) {
+      sum += blockInteractions[b];
+    }
+    return sum;
+  }
+
+  /**
+   * Gets the number of cells of the last tree.
+   *
+   * @return the number of cells
+   */
+  public int getNumberOfCells() {
+    if(method!=BARNES_HUT) {
+      return 0;
+    }
+    int count = 0;
+    for(int node = root; node>=0; node = (firstChild[node]>=0) ? firstChild[node] : next[node]) {
+      count++;
+    }
+    return count;
+  }
+
+  private void allocate(int n) {
+    this.n = n;
+    if(positions.length<dimension*n) {
+      positions = new double[dimension*n];
+      sortedMasses = new double[n];
+      keys = new long[n];
+      keyBuffer = new long[n];
+      order = new int[n];
+      orderBuffer = new int[n];
+      ensureNodeCapacity(2*n+16);
+    }
+    int numBlocks = (n+BLOCK_SIZE-1)/BLOCK_SIZE;
+    if(tasks.length!=numBlocks) {
+      tasks = new BodyTask[numBlocks];
+      for(int b = 0; b<numBlocks; b++) {
+        tasks[b] = new BodyTask(b);
+      }
+      blockMin = new double[dimension*numBlocks];
+      blockMax = new double[dimension*numBlocks];
+      blockInteractions = new long[numBlocks];
+      blockGroups = new int[numBlocks+1];
+    }
+  }
+
+  private void ensureNodeCapacity(int capacity) {
+    if(bodyStart.length>=capacity) {
+      return;
+    }
+    capacity = Math.max(capacity, bodyStart.length+bodyStart.length/2);
+    bodyStart = grow(bodyStart, capacity);
+    bodyEnd = grow(bodyEnd, capacity);
+    firstChild = grow(firstChild, capacity);
+    next = grow(next, capacity);
+    nodeMass = grow(nodeMass, capacity);
+    nodeRadius = grow(nodeRadius, capacity);
+    nodeCenter = grow(nodeCenter, dimension*capacity);
+    nodeQuadrupole = grow(nodeQuadrupole, numQuadrupole*capacity);
+  }
+
+  private static int[] grow(int[] array, int capacity) {
+    int[] a = new int[capacity];
+    System.arraycopy(array, 0, a, 0, array.length);
+    return a;
+  }
+
+  private static double[] grow(double[] array, int capacity) {
+    double[] a = new double[capacity];
+    System.arraycopy(array, 0, a, 0, array.length);
+    return a;
+  }
+
+  /**
+   * Sorts the keys and the order of the bodies by a least significant digit radix sort.
+   */
+  private void sortKeys() {
+    int[] count = new int[257];
+    long[] k = keys, kb = keyBuffer;
+    int[] o = order, ob = orderBuffer;
+    for(int shift = 0; shift<dimension*levels; shift += 8) {
+      Arrays.fill(count, 0);
+      for(int i = 0; i<n; i++) {
+        count[(int) ((k[i]>>>shift)&0xff)+1]++;
+      }
+      if(count[(int) ((k[0]>>>shift)&0xff)+1]==n) {
+        continue; // all keys have the same digit
+      }
+      for(int i = 0; i<256; i++) {
+        count[i+1] += count[i];
+      }
+      for(int i = 0; i<n; i++) {
+        int pos = count[(int) ((k[i]>>>shift)&0xff)]++;
+        kb[pos] = k[i];
+        ob[pos] = o[i];
+      }
+      long[] tk = k;
+      k = kb;
+      kb = tk;
+      int[] to = o;
+      o = ob;
+      ob = to;
+    }
+    keys = k;
+    keyBuffer = kb;
+    order = o;
+    orderBuffer = ob;
+  }
+
+  /**
+   * Builds the top of the tree in the calling thread and the subtrees with few bodies in parallel.
+   */
+  private void buildTree() {
+    int threshold = (parallelism<=1) ? n : Math.max(4*leafSize, n/(8*parallelism));
+    subtrees.clear();
+    numTopNodes = 0;
+    if(n<=threshold) {
+      root = 0;
+      subtrees.add(new SubtreeTask(0, 0, n, 0, -1));
+    } else {
+      root = topNode();
+      buildTop(root, 0, n, 0, -1, threshold);
+    }
+    if((parallelism<=1)||(subtrees.size()<=1)) {
+      for(SubtreeTask task : subtrees) {
+        task.compute();
+      }
+    } else {
+      if(pool==null) {
+        pool = new ForkJoinPool(parallelism);
+      }
+      pool.invoke(new RecursiveAction() {
+        protected void compute() {
+          ForkJoinTask.invokeAll(subtrees);
+        }
+
+      });
+    }
+    // the children of a top node are allocated after the node, top nodes that are leaves have their moments
+    for(int node = 2*n+numTopNodes-1; node>=2*n; node--) {
+      if(firstChild[node]>=0) {
+        combineChildren(node);
+      }
+    }
+    collectGroups();
+  }
+
+  /**
+   * Finds the largest cells with at most GROUP_SIZE bodies and the first group of every block of bodies.
+   */
+  private void collectGroups() {
+    if(groups.length<n) {
+      groups = new int[n];
+    }
+    numGroups = 0;
+    int block = 0;
+    int node = root;
+    while(node>=0) {
+      if((firstChild[node]<0)||(bodyEnd[node]-bodyStart[node]<=GROUP_SIZE)) {
+        while(block*BLOCK_SIZE<=bodyStart[node]) {
+          blockGroups[block++] = numGroups;
+        }
+        groups[numGroups++] = node;
+        node = next[node];
+      } else {
+        node = firstChild[node];
+      }
+    }
+    while(block<=tasks.length) {
+      blockGroups[block++] = numGroups;
+    }
+  }
+
+  private int topNode() {
+    ensureNodeCapacity(2*n+numTopNodes+1);
+    return 2*n+numTopNodes++;
+  }
+
+  private void buildTop(int node, int lo, int hi, int level, int nextNode, int threshold) {
+    level = commonLevel(lo, hi, level);
+    initNode(node, lo, hi, nextNode);
+    if((hi-lo<=leafSize)||(level==levels)) {
+      leafMoments(node);
+      return;
+    }
+    int[] bounds = new int[(1<<dimension)+1];
+    int numChildren = split(lo, hi, level, bounds);
+    int[] ids = new int[numChildren];
+    for(int c = 0; c<numChildren; c++) {
+      ids[c] = (bounds[c+1]-bounds[c]<=threshold) ? 2*bounds[c] : topNode();
+    }
+    firstChild[node] = ids[0];
+    for(int c = 0; c<numChildren; c++) {
+      int childNext = (c<numChildren-1) ? ids[c+1] : nextNode;
+      if(ids[c]<2*n) {
+        subtrees.add(new SubtreeTask(ids[c], bounds[c], bounds[c+1], level+1, childNext));
+      } else {
+        buildTop(ids[c], bounds[c], bounds[c+1], level+1, childNext, threshold);
+      }
+    }
+  }
+
+  /**
+   * Finds the first level at which the keys of the bodies lo to hi differ.
+   */
+  private int commonLevel(int lo, int hi, int level) {
+    while((level<levels)&&(digit(keys[lo], level)==digit(keys[hi-1], level))) {
+      level++;
+    }
+    return level;
+  }
+
+  private int digit(long key, int level) {
+    return (int) (key>>>(dimension*(levels-1-level)))&((1<<dimension)-1);
+  }
+
+  /**
+   * Divides the bodies lo to hi into the children of a cell.
+   *
+   * @return the number of children
+   */
+  private int split(int lo, int hi, int level, int[] bounds) {
+    int numChildren = 0;
+    bounds[0] = lo;
+    for(int i = lo+1; i<hi; i++) {
+      if(digit(keys[i], level)!=digit(keys[i-1], level)) {
+        bounds[++numChildren] = i;
+      }
+    }
+    bounds[++numChildren] = hi;
+    return numChildren;
+  }
+
+  private void initNode(int node, int lo, int hi, int nextNode) {
+    bodyStart[node] = lo;
+    bodyEnd[node] = hi;
+    firstChild[node] = -1;
+    next[node] = nextNode;
+  }
+
+  /**
+   * Computes the moments of a leaf from its bodies.
+   */
+  private void leafMoments(int node) {
+    int lo = bodyStart[node], hi = bodyEnd[node];
+    int c = dimension*node;
+    double m = 0;
+    Arrays.fill(nodeCenter, c, c+dimension, 0);
+    for(int i = lo; i<hi; i++) {
+      double mi = sortedMasses[i];
+      m += mi;
+      for(int d = 0; d<dimension; d++) {
+        nodeCenter[c+d] += mi*positions[dimension*i+d];
+      }
+    }
+    nodeMass[node] = m;
+    centerOfMass(node, m);
+    int q = numQuadrupole*node;
+    Arrays.fill(nodeQuadrupole, q, q+numQuadrupole, 0);
+    double radius = 0;
+    for(int i = lo; i<hi; i++) {
+      double r2 = 0;
+      for(int d = 0; d<dimension; d++) {
+        double dx = positions[dimension*i+d]-nodeCenter[c+d];
+        r2 += dx*dx;
+      }
+      radius = Math.max(radius, r2);
+      addQuadrupole(q, sortedMasses[i], positions, dimension*i, c);
+    }
+    nodeRadius[node] = Math.sqrt(radius);
+  }
+
+  /**
+   * Computes the moments of a cell from its children.
+   */
+  private void combineChildren(int node) {
+    int c = dimension*node;
+    double m = 0;
+    Arrays.fill(nodeCenter, c, c+dimension, 0);
+    for(int child = firstChild[node]; child!=next[node]; child = next[child]) {
+      double mc = nodeMass[child];
+      m += mc;
+      for(int d = 0; d<dimension; d++) {
+        nodeCenter[c+d] += mc*nodeCenter[dimension*child+d];
+      }
+    }
+    nodeMass[node] = m;
+    centerOfMass(node, m);
+    int q = numQuadrupole*node;
+    Arrays.fill(nodeQuadrupole, q, q+numQuadrupole, 0);
+    double radius = 0;
+    for(int child = firstChild[node]; child!=next[node]; child = next[child]) {
+      double r2 = 0;
+      for(int d = 0; d<dimension; d++) {
+        double dx = nodeCenter[dimension*child+d]-nodeCenter[c+d];
+        r2 += dx*dx;
+      }
+      radius = Math.max(radius, Math.sqrt(r2)+nodeRadius[child]);
+      int qc = numQuadrupole*child;
+      for(int k = 0; k<numQuadrupole; k++) { // the parallel axis theorem
+        nodeQuadrupole[q+k] += nodeQuadrupole[qc+k];
+      }
+      addQuadrupole(q, nodeMass[child], nodeCenter, dimension*child, c);
+    }
+    nodeRadius[node] = radius;
+  }
+
+  private void centerOfMass(int node, double m) {
+    int c = dimension*node;
+    if(m!=0) {
+      for(int d = 0; d<dimension; d++) {
+        nodeCenter[c+d] /= m;
+      }
+    } else { // massless bodies, use the geometric center
+      int lo = bodyStart[node], hi = bodyEnd[node];
+      for(int d = 0; d<dimension; d++) {
+        nodeCenter[c+d] = 0.5*(positions[dimension*lo+d]+positions[dimension*(hi-1)+d]);
+      }
+    }
+  }
+
+  /**
+   * Adds the quadrupole moment m(3 y y - y^2 I) of a point mass at y relative to the center of a cell.  The
+   * components are xx, xy, yy in two dimensions and xx, xy, xz, yy, yz, zz in three dimensions.
+   */
+  private void addQuadrupole(int q, double m, double[] source, int p, int c) {
+    double x = source[p]-nodeCenter[c], y = source[p+1]-nodeCenter[c+1];
+    if(dimension==2) {
+      double r2 = x*x+y*y;
+      nodeQuadrupole[q] += m*(3*x*x-r2);
+      nodeQuadrupole[q+1] += m*3*x*y;
+      nodeQuadrupole[q+2] += m*(3*y*y-r2);
+    } else {
+      double z = source[p+2]-nodeCenter[c+2];
+      double r2 = x*x+y*y+z*z;
+      nodeQuadrupole[q] += m*(3*x*x-r2);
+      nodeQuadrupole[q+1] += m*3*x*y;
+      nodeQuadrupole[q+2] += m*3*x*z;
+      nodeQuadrupole[q+3] += m*(3*y*y-r2);
+      nodeQuadrupole[q+4] += m*3*y*z;
+      nodeQuadrupole[q+5] += m*(3*z*z-r2);
+    }
+  }
+
+  /**
+   * Computes the accelerations of the bodies of a group.  The cells that act on the group as a whole and the
+   * bodies of the opened leaves are collected in lists, which are then summed for every body.
+   *
+   * @return the number of interactions
+   */
+  private long groupAccelerations(int group, BodyTask task) {
+    int lo = bodyStart[group], hi = bodyEnd[group];
+    double[] boxCenter = task.boxCenter, boxHalf = task.boxHalf;
+    for(int d = 0; d<dimension; d++) {
+      double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+      for(int i = lo; i<hi; i++) {
+        min = Math.min(min, positions[dimension*i+d]);
+        max = Math.max(max, positions[dimension*i+d]);
+      }
+      boxCenter[d] = 0.5*(min+max);
+      boxHalf[d] = 0.5*(max-min);
+    }
+    double theta2 = theta*theta;
+    int numCells = 0, numBodies = 0;
+    int node = root;
+    while(node>=0) {
+      boolean overlap = (bodyStart[node]<hi)&&(bodyEnd[node]>lo);
+      if(!overlap) {
+        double d2 = 0; // the distance of the center of mass from the box of the group
+        for(int d = 0; d<dimension; d++) {
+          double dx = Math.abs(nodeCenter[dimension*node+d]-boxCenter[d])-boxHalf[d];
+          if(dx>0) {
+            d2 += dx*dx;
+          }
+        }
+        if(nodeRadius[node]*nodeRadius[node]<theta2*d2) {
+          numCells = task.addCell(numCells, node);
+          node = next[node];
+          continue;
+        }
+      }
+      if(firstChild[node]>=0) {
+        node = firstChild[node];
+      } else {
+        for(int j = bodyStart[node]; j<bodyEnd[node]; j++) {
+          numBodies = task.addBody(numBodies, j);
+        }
+        node = next[node];
+      }
+    }
+    // the sources are copied into contiguous arrays, the bodies of the group are last
+    int numSources = numBodies+((quadrupole) ? 0 : numCells);
+    int numQuadrupoles = (quadrupole) ? numCells : 0;
+    task.ensureSources(numSources, numQuadrupoles);
+    double[] sx = task.sx, sy = task.sy, sz = task.sz, sm = task.sm;
+    int s = 0;
+    for(int c = 0; c<numCells-numQuadrupoles; c++, s++) {
+      int cell = task.cells[c];
+      sx[s] = nodeCenter[dimension*cell];
+      sy[s] = nodeCenter[dimension*cell+1];
+      sz[s] = (dimension==3) ? nodeCenter[dimension*cell+2] : 0;
+      sm[s] = nodeMass[cell];
+    }
+    int self = -1;
+    for(int b = 0; b<numBodies; b++, s++) {
+      int j = task.bodies[b];
+      if(j==lo) {
+        self = s;
+      }
+      sx[s] = positions[dimension*j];
+      sy[s] = positions[dimension*j+1];
+      sz[s] = (dimension==3) ? positions[dimension*j+2] : 0;
+      sm[s] = sortedMasses[j];
+    }
+    double[] qc = task.quadrupoles; // the center, the mass and the six components of every cell
+    for(int c = 0; c<numQuadrupoles; c++) {
+      int cell = task.cells[c], p = 10*c, q = numQuadrupole*cell;
+      qc[p] = nodeCenter[dimension*cell];
+      qc[p+1] = nodeCenter[dimension*cell+1];
+      qc[p+2] = (dimension==3) ? nodeCenter[dimension*cell+2] : 0;
+      qc[p+3] = nodeMass[cell];
+      if(dimension==2) {
+        qc[p+4] = nodeQuadrupole[q];
+        qc[p+5] = nodeQuadrupole[q+1];
+        qc[p+6] = 0;
+        qc[p+7] = nodeQuadrupole[q+2];
+        qc[p+8] = 0;
+        qc[p+9] = 0;
+      } else {
+        System.arraycopy(nodeQuadrupole, q, qc, p+4, 6);
+      }
+    }
+    for(int k = lo; k<hi; k++, self++) { // the bodies of the group are consecutive sources
+      double x = positions[dimension*k], y = positions[dimension*k+1];
+      double z = (dimension==3) ? positions[dimension*k+2] : 0;
+      double ax = 0, ay = 0, az = 0;
+      for(int c = 0; c<numQuadrupoles; c++) {
+        // with r from the center of mass to the body: -M r/r^3 + Q r/r^5 - 5/2 (r.Q.r) r/r^7
+        int p = 10*c;
+        double dx = x-qc[p], dy = y-qc[p+1], dz = z-qc[p+2];
+        double r2 = dx*dx+dy*dy+dz*dz+softening2;
+        double ir2 = 1/r2, ir3 = ir2/Math.sqrt(r2), ir5 = ir3*ir2;
+        double qx = qc[p+4]*dx+qc[p+5]*dy+qc[p+6]*dz;
+        double qy = qc[p+5]*dx+qc[p+7]*dy+qc[p+8]*dz;
+        double qz = qc[p+6]*dx+qc[p+8]*dy+qc[p+9]*dz;
+        double f = -qc[p+3]*ir3-2.5*(dx*qx+dy*qy+dz*qz)*ir5*ir2;
+        ax += f*dx+qx*ir5;
+        ay += f*dy+qy*ir5;
+        az += f*dz+qz*ir5;
+      }
+      for(int j = 0; j<numSources; j++) {
+        if(j==self) {
+          continue;
+        }
+        double dx = sx[j]-x, dy = sy[j]-y, dz = sz[j]-z;
+        double r2 = dx*dx+dy*dy+dz*dz+softening2;
+        double f = sm[j]/(r2*Math.sqrt(r2));
+        ax += f*dx;
+        ay += f*dy;
+        az += f*dz;
+      }
+      int i = dimension*order[k];
+      acc[i] = G*ax;
+      acc[i+1] = G*ay;
+      if(dimension==3) {
+        acc[i+2] = G*az;
+      }
+    }
+    return (long) (hi-lo)*(numCells+numBodies-1);
+  }
+
+  private int directAcceleration(int k, double[] a) {
+    int pk = dimension*k;
+    for(int d = 0; d<dimension; d++) {
+      a[d] = 0;
+    }
+    for(int j = 0; j<n; j++) {
+      if(j!=k) {
+        addPointMass(a, pk, dimension*j, positions, sortedMasses[j]);
+      }
+    }
+    return n-1;
+  }
+
+  private void addPointMass(double[] a, int pk, int pj, double[] source, double m) {
+    if(dimension==2) {
+      double dx = source[pj]-positions[pk], dy = source[pj+1]-positions[pk+1];
+      double r2 = dx*dx+dy*dy+softening2;
+      double f = m/(r2*Math.sqrt(r2));
+      a[0] += f*dx;
+      a[1] += f*dy;
+    } else {
+      double dx = source[pj]-positions[pk], dy = source[pj+1]-positions[pk+1], dz = source[pj+2]-positions[pk+2];
+      double r2 = dx*dx+dy*dy+dz*dz+softening2;
+      double f = m/(r2*Math.sqrt(r2));
+      a[0] += f*dx;
+      a[1] += f*dy;
+      a[2] += f*dz;
+    }
+  }
+
+  private void run(int phase) {
+    for(int b = 0; b<tasks.length; b++) {
+      tasks[b].phase = phase;
+    }
+    if((parallelism<=1)||(tasks.length<=1)) {
+      for(int b = 0; b<tasks.length; b++) {
+        tasks[b].compute();
+      }
+      return;
+    }
+    if(pool==null) {
+      pool = new ForkJoinPool(parallelism);
+    }
+    for(int b = 0; b<tasks.length; b++) {
+      tasks[b].reinitialize();
+    }
+    pool.invoke(new RecursiveAction() {
+      protected void compute() {
+        ForkJoinTask.invokeAll(tasks);
+      }
+
+    });
+  }
+
+  /**
+   * A task that computes a phase for a block of bodies.
+   */
+  private class BodyTask extends RecursiveAction {
+    final int block;
+    int phase;
+    final double[] a = new double[dimension];
+    final long[] q = new long[3];
+    final double[] boxCenter = new double[3], boxHalf = new double[3];
+    int[] cells = new int[256], bodies = new int[256];
+    double[] sx = new double[0], sy = new double[0], sz = new double[0], sm = new double[0];
+    double[] quadrupoles = new double[0];
+
+    BodyTask(int block) {
+      this.block = block;
+    }
+
+    protected void compute() {
+      int from = block*BLOCK_SIZE, to = Math.min(n, from+BLOCK_SIZE);
+      switch(phase) {
+      case BOX :
+        for(int d = 0; d<dimension; d++) {
+          double min = Double.POSITIVE_INFINITY, max = Double.NEGATIVE_INFINITY;
+          for(int i = from; i<to; i++) {
+            double x = state[offset+i*bodyStride+d*coordinateStride];
+            min = Math.min(min, x);
+            max = Math.max(max, x);
+          }
+          blockMin[dimension*block+d] = min;
+          blockMax[dimension*block+d] = max;
+        }
+        break;
+      case KEYS :
+        long cells = 1L<<levels;
+        for(int i = from; i<to; i++) {
+          for(int d = 0; d<dimension; d++) {
+            double x = state[offset+i*bodyStride+d*coordinateStride];
+            q[d] = Math.min(cells-1, (long) ((x-boxMin[d])/boxSize*cells));
+          }
+          long key = 0;
+          for(int bit = levels-1; bit>=0; bit--) {
+            for(int d = 0; d<dimension; d++) {
+              key = (key<<1)|((q[d]>>>bit)&1);
+            }
+          }
+          keys[i] = key;
+          order[i] = i;
+        }
+        break;
+      case GATHER :
+        for(int k = from; k<to; k++) {
+          int i = (method==BARNES_HUT) ? order[k] : k;
+          for(int d = 0; d<dimension; d++) {
+            positions[dimension*k+d] = state[offset+i*bodyStride+d*coordinateStride];
+          }
+          sortedMasses[k] = (masses==null) ? 1 : masses[i];
+        }
+        break;
+      default :
+        long interactions = 0;
+        if(method==BARNES_HUT) {
+          for(int g = blockGroups[block]; g<blockGroups[block+1]; g++) {
+            interactions += groupAccelerations(groups[g], this);
+          }
+        } else {
+          for(int k = from; k<to; k++) {
+            interactions += directAcceleration(k, a);
+            for(int d = 0; d<dimension; d++) {
+              acc[dimension*k+d] = G*a[d];
+            }
+          }
+        }
+        blockInteractions[block] = interactions;
+      }
+    }
+
+    int addCell(int count, int node) {
+      if(count==cells.length) {
+        cells = grow(cells, 2*count);
+      }
+      cells[count] = node;
+      return count+1;
+    }
+
+    void ensureSources(int numSources, int numQuadrupoles) {
+      if(sx.length<numSources) {
+        int size = Math.max(numSources, 2*sx.length);
+        sx = new double[size];
+        sy = new double[size];
+        sz = new double[size];
+        sm = new double[size];
+      }
+      if(quadrupoles.length<10*numQuadrupoles) {
+        quadrupoles = new double[Math.max(10*numQuadrupoles, 2*quadrupoles.length)];
+      }
+    }
+
+    int addBody(int count, int j) {
+      if(count==bodies.length) {
+        bodies = grow(bodies, 2*count);
+      }
+      bodies[count] = j;
+      return count+1;
+    }
+
+  }
+
+  /**
+   * A task that builds the subtree of a range of bodies in the nodes 2*lo to 2*hi-1.
+   */
+  private class SubtreeTask extends RecursiveAction {
+    final int node, lo, hi, level, nextNode;
+    int cursor;
+    final int[][] bounds = new int[levels+1][(1<<dimension)+1]; // the children of every level
+
+    SubtreeTask(int node, int lo, int hi, int level, int nextNode) {
+      this.node = node;
+      this.lo = lo;
+      this.hi = hi;
+      this.level = level;
+      this.nextNode = nextNode;
+    }
+
+    protected void compute() {
+      cursor = node+1;
+      build(node, lo, hi, level, nextNode);
+    }
+
+    private void build(int node, int lo, int hi, int level, int nextNode) {
+      level = commonLevel(lo, hi, level);
+      initNode(node, lo, hi, nextNode);
+      if((hi-lo<=leafSize)||(level==levels)) {
+        leafMoments(node);
+        return;
+      }
+      int[] b = bounds[level];
+      int numChildren = split(lo, hi, level, b);
+      int first = cursor;
+      cursor += numChildren;
+      firstChild[node] = first;
+      for(int c = 0; c<numChildren; c++) {
+        build(first+c, b[c], b[c+1], level+1, (c<numChildren-1) ? first+c+1 : nextNode);
+      }
+      combineChildren(node);
+    }
+
+  }
+
+}
+
+
+
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */
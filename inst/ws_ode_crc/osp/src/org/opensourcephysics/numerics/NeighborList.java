@@ -0,0 +1,325 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+package org.opensourcephysics.numerics;
+import java.util.Arrays;
+
+/**
+ * NeighborList finds the pairs of particles in a periodic rectangular box whose separation is smaller than
+ * a cutoff radius.
+ *
+ * The particles are sorted into square cells that are at least as large as the cutoff plus a skin, so that
+ * the partners of a particle are in its own cell or in one of the eight adjacent cells.  The pairs within the
+ * cutoff plus the skin are stored as a Verlet list, which stays valid until a particle has moved by more than
+ * half the skin.  The list is only built again when update detects such a displacement, so that the cost of
+ * a force evaluation is proportional to the number of particles.  Boxes that are smaller than three cells
+ * across are searched pair by pair.
+ *
+ * The list is stored in primitive arrays: the partners j&gt;i of particle i are
+ * neighbors[start[i]] ... neighbors[start[i+1]-1].  Every pair appears once.
+ *
+ * Example:
+ * <pre>
+ * NeighborList list = new NeighborList(Lx, Ly, 2.5, 0.3);
+ * list.update(state, 0, state, 2, 4, N); // x and y are interleaved with the velocities
+ * int[] start = list.getStart(), neighbors = list.getNeighbors();
+ * for(int i = 0; i&lt;N; i++) {
+ *   for(int k = start[i]; k&lt;start[i+1]; k++) {
+ *     int j = neighbors[k];
+ *     double dx = PBC.separation(state[4*i]-state[4*j], Lx);
+ *     ...
+ * </pre>
+ *
+ * Pairs of the list may be farther apart than the cutoff, so the force loop must test the separation.
+ *
+ * @see PBC
+ * @version 1.0
+ */
+public class NeighborList {
+  private double lx, ly;
+  private double cutoff, skin;
+  private int numParticles = 0;
+  private int[] start = new int[1];
+  private int[] neighbors = new int[0];
+  private int numPairs = 0;
+  // cells
+  private int ncx, ncy;
+  private int[] head = new int[0]; // the first particle of every cell, -1 if the cell is empty
+  private int[] next = new int[0]; // the next particle in the cell of every particle, -1 at the end
+  // positions at the time of the last build
+  private double[] x0 = new double[0], y0 = new double[0];
+  private double[] lastX, lastY;     // the arrays of the last build
+  private boolean valid = false;
+  private int numBuilds = 0;
+
+  /**
+   * Constructs a neighbor list.
+   *
+   * @param lx the width of the box
+   * @param ly the height of the box
+   * @param cutoff the cutoff radius
+   * @param skin the additional distance of the Verlet list
+   */
+  public NeighborList(double lx, double ly, double cutoff, double skin) {
+    setBox(lx, ly);
+    setCutoff(cutoff, skin);
+  }
+
+  /**
+   * Sets the size of the box.  The list is built again by the next update if the size has changed.
+   *
+   * @param lx the width of the box
+   * @param ly the height of the box
+   */
+  public void setBox(double lx, double ly) {
+    if((lx!=this.lx)||(ly!=this.ly)) {
+      this.lx = lx;
+      this.ly = ly;
+      valid = false;
+    }
+  }
+
+  /**
+   * Sets the cutoff radius and the skin.  A larger skin makes the list longer but lets it be used for more
+   * steps.  The list is built again by the next update if a value has changed.
+   *
+   * @param cutoff the cutoff radius
+   * @param skin the additional distance of the Verlet list
+   */
+  public void setCutoff(double cutoff, double skin) {
+    if((cutoff!=this.cutoff)||(skin!=this.skin)) {
+      this.cutoff = cutoff;
+      this.skin = Math.max(0, skin);
+      valid = false;
+    }
+  }
+
+  /**
+   * Marks the list as outdated, e.g., after the particles have been moved by other means than small steps.
+   */
+  public void invalidate() {
+    valid = false;
+  }
+
+  /**
+   * Builds the list if a particle has moved by more than half the skin since the last build or if the
+   * particles or the box have changed.
+   *
+   * @param x the array that holds the x coordinates
+   * @param xOffset the index of the x coordinate of the first particle
+   * @param y the array that holds the y coordinates
+   * @param yOffset the index of the y coordinate of the first particle
+   * @param stride the distance between the coordinates of consecutive particles
+   * @param n the number of particles
+   * @return true if the list has been built
+   */
+  public boolean update(double[] x, int xOffset, double[] y, int yOffset, int stride, int n) {
+    if(valid&&(n==numParticles)&&(x==lastX)&&(y==lastY)) {
+      double limit = 0.25*skin*skin;
+      int i = 0;
+      for(; i<n; i++) {
+        double dx = PBC.separation(x[xOffset+i*stride]-x0[i], lx);
+        double dy = PBC.separation(y[yOffset+i*stride]-y0[i], ly);
+        if(dx*dx+dy*dy>limit) {
+          break;
+        }
+      }
+      if(i==n) {
+        return false;
+      }
+    }
+    build(x, xOffset, y, yOffset, stride, n);
+    return true;
+  }
+
+  /**
+   * Builds the list if needed.  The coordinates are in separate arrays.
+   *
+   * @param x the x coordinates
+   * @param y the y coordinates
+   * @param n the number of particles
+   * @return true if the list has been built
+   */
+  public boolean update(double[] x, double[] y, int n) {
+    return update(x, 0, y, 0, 1, n);
+  }
+
+  /**
+   * Builds the list.
+   *
+   * @param x the array that holds the x coordinates
+   * @param xOffset the index of the x coordinate of the first particle
+   * @param y the array that holds the y coordinates
+   * @param yOffset the index of the y coordinate of the first particle
+   * @param stride the distance between the coordinates of consecutive particles
+   * @param n the number of particles
+   */
+  public void build(double[] x, int xOffset, double[] y, int yOffset, int stride, int n) {
+    if(n!=numParticles) {
+      numParticles = n;
+      start = new int[n+1];
+      next = new int[n];
+      x0 = new double[n];
+      y0 = new double[n];
+    }
+    for(int i = 0; i<n; i++) {
+      x0[i] = PBC.position(x[xOffset+i*stride], lx);
+      y0[i] = PBC.position(y[yOffset+i*stride], ly);
+    }
+    double range = cutoff+skin;
+    ncx = (int) Math.floor(lx/range);
+    ncy = (int) Math.floor(ly/range);
+    numPairs = 0;
+    if((ncx<3)||(ncy<3)) {
+      buildAllPairs(range*range);
+    } else {
+      buildFromCells(range*range);
+    }
+    lastX = x;
+    lastY = y;
+    valid = true;
+    numBuilds++;
+  }
+
+  /**
+   * Sorts the particles into cells and searches the own and the adjacent cells of every particle.
+   */
+  private void buildFromCells(double range2) {
+    int numCells = ncx*ncy;
+    if(head.length!=numCells) {
+      head = new int[numCells];
+    }
+    Arrays.fill(head, -1);
+    int n = numParticles;
+    for(int i = n-1; i>=0; i--) { // the particles of a cell are in increasing order
+      int c = cell(x0[i], lx, ncx)+ncx*cell(y0[i], ly, ncy);
+      next[i] = head[c];
+      head[c] = i;
+    }
+    for(int i = 0; i<n; i++) {
+      start[i] = numPairs;
+      double xi = x0[i], yi = y0[i];
+      int cx = cell(xi, lx, ncx), cy = cell(yi, ly, ncy);
+      for(int ix = cx-1; ix<=cx+1; ix++) {
+        int col = (ix<0) ? ix+ncx : (ix>=ncx) ? ix-ncx : ix;
+        for(int iy = cy-1; iy<=cy+1; iy++) {
+          int row = (iy<0) ? iy+ncy : (iy>=ncy) ? iy-ncy : iy;
+          for(int j = head[col+ncx*row]; j>=0; j = next[j]) {
+            if(j>i) {
+              addIfClose(i, j, xi, yi, range2);
+            }
+          }
+        }
+      }
+    }
+    start[n] = numPairs;
+  }
+
+  /**
+   * Tests every pair, used if the box holds fewer than three cells in a direction.
+   */
+  private void buildAllPairs(double range2) {
+    int n = numParticles;
+    for(int i = 0; i<n; i++) {
+      start[i] = numPairs;
+      double xi = x0[i], yi = y0[i];
+      for(int j = i+1; j<n; j++) {
+        addIfClose(i, j, xi, yi, range2);
+      }
+    }
+    start[n] = numPairs;
+  }
+
+  private void addIfClose(int i, int j, double xi, double yi, double range2) {
+    double dx = PBC.separation(xi-x0[j], lx);
+    double dy = PBC.separation(yi-y0[j], ly);
+    if(dx*dx+dy*dy<range2) {
+      if(numPairs==neighbors.length) {
+        int[] grown = new int[Math.max(16, 2*neighbors.length)];
+        System.arraycopy(neighbors, 0, grown, 0, numPairs);
+        neighbors = grown;
+      }
+      neighbors[numPairs++] = j;
+    }
+  }
+
+  private static int cell(double r, double size, int n) {
+    int c = (int) (r*n/size);
+    return (c>=n) ? n-1 : c;
+  }
+
+  /**
+   * Gets the index of the first partner of every particle in the array of neighbors.  The entry after the
+   * last particle is the number of pairs.
+   *
+   * @return the start indices
+   */
+  public int[] getStart() {
+    return start;
+  }
+
+  /**
+   * Gets the partners of all particles.
+   *
+   * @return the neighbors
+   */
+  public int[] getNeighbors() {
+    return neighbors;
+  }
+
+  /**
+   * Gets the number of pairs in the list.
+   *
+   * @return the number of pairs
+   */
+  public int getNumberOfPairs() {
+    return numPairs;
+  }
+
+  /**
+   * Gets the number of times the list has been built.
+   *
+   * @return the number of builds
+   */
+  public int getNumberOfBuilds() {
+    return numBuilds;
+  }
+
+  public double getCutoff() {
+    return cutoff;
+  }
+
+  public double getSkin() {
+    return skin;
+  }
+
+}
+
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */
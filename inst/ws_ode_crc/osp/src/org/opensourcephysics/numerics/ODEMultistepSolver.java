@@ -6,6 +6,9 @@
  */
 
 package org.opensourcephysics.numerics;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
 /**
  * ODEMultistepSolver performs multiple ODE steps so that a uniform step size is maintained.
@@ -13,7 +16,7 @@ package org.opensourcephysics.numerics;
  * @author       Wolfgang Christian
  * @version 1.0
  */
-public class ODEMultistepSolver implements ODEAdaptiveSolver {
+public class ODEMultistepSolver implements ODEAdaptiveSolver, ODESolverStats {
   private static int maxMessages = 3; // maximum number of error messages
   protected int err_code = NO_ERROR;
   protected int maxIterations = 200;
@@ -106,6 +109,26 @@ public class ODEMultistepSolver implements ODEAdaptiveSolver {
     return err_code;
   }
 
+  /**
+   * Enables or disables the collection of statistics by the adaptive engine.
+   * The statistics count the steps of the engine; steps of the fixed step size
+   * that could not be completed are counted as failed steps.
+   * @param enabled true to collect statistics
+   */
+  public void setStatisticsEnabled(boolean enabled) {
+    if(odeEngine instanceof ODESolverStats) {
+      ((ODESolverStats) odeEngine).setStatisticsEnabled(enabled);
+    }
+  }
+
+  /**
+   * Gets the statistics of the adaptive engine.
+   * @return the statistics or null if they are disabled
+   */
+  public ODESolverStatistics getStatistics() {
+    return (odeEngine instanceof ODESolverStats) ? ((ODESolverStats) odeEngine).getStatistics() : null;
+  }
+
   /**
    * Steps (advances) the differential equations by the stepSize.
    *
@@ -158,6 +181,10 @@ public class ODEMultistepSolver implements ODEAdaptiveSolver {
       // check to see if roundoff error prevents further calculation.
       if((odeEngine.getErrorCode()!=ODEAdaptiveSolver.NO_ERROR)||(Math.abs(oldRemainder-remainder)<=Float.MIN_VALUE)||(tol*fixedStepSize/10.0>odeEngine.getStepSize())||(counter>maxIterations)) {
         err_msg = "ODEMultiStep did not converge. Remainder="+remainder; //$NON-NLS-1$
+        ODESolverStatistics statistics = getStatistics();
+        if((statistics!=null)&&(odeEngine.getErrorCode()==ODEAdaptiveSolver.NO_ERROR)) { // failures of the engine are already counted
+          statistics.stepFailed();
+        }
         err_code = ODEAdaptiveSolver.DID_NOT_CONVERGE;
         if(enableExceptions) {
           throw new ODESolverException(err_msg);
@@ -203,6 +230,10 @@ public class ODEMultistepSolver implements ODEAdaptiveSolver {
       // check to see if roundoff error prevents further calculation.
       if((odeEngine.getErrorCode()!=ODEAdaptiveSolver.NO_ERROR)||(Math.abs(oldRemainder-remainder)<=Float.MIN_VALUE)||(tol*fixedStepSize/10.0<odeEngine.getStepSize())||(counter>maxIterations)) {
         err_msg = "ODEMultiStep did not converge. Remainder="+remainder; //$NON-NLS-1$
+        ODESolverStatistics statistics = getStatistics();
+        if((statistics!=null)&&(odeEngine.getErrorCode()==ODEAdaptiveSolver.NO_ERROR)) { // failures of the engine are already counted
+          statistics.stepFailed();
+        }
         err_code = ODEAdaptiveSolver.DID_NOT_CONVERGE;
         if(enableExceptions) {
           throw new ODESolverException(err_msg);
@@ -267,6 +298,53 @@ public class ODEMultistepSolver implements ODEAdaptiveSolver {
     return fixedStepSize;
   }
 
+  /**
+   * Returns a serializer that saves the fixed step size and the internal state of the adaptive engine in a
+   * checkpoint.  The engine's class must have a serializer too.
+   *
+   * @return the serializer
+   */
+  public static ODESolverCheckpoint.StateSerializer getSerializer() {
+    return new Serializer();
+  }
+
+  /**
+   * A class to save and load the internal state of an ODEMultistepSolver and of its engine.
+   */
+  static class Serializer implements ODESolverCheckpoint.StateSerializer {
+    public void saveState(DataOutput out, ODESolver obj) throws IOException {
+      ODEMultistepSolver solver = (ODEMultistepSolver) obj;
+      out.writeDouble(solver.fixedStepSize);
+      out.writeInt(solver.maxIterations);
+      out.writeBoolean(solver.enableExceptions);
+      out.writeInt(solver.err_code);
+      out.writeUTF(solver.odeEngine.getClass().getName());
+      engineSerializer(solver).saveState(out, solver.odeEngine);
+    }
+
+    public void loadState(DataInput in, ODESolver obj) throws IOException {
+      ODEMultistepSolver solver = (ODEMultistepSolver) obj;
+      solver.fixedStepSize = in.readDouble();
+      solver.maxIterations = in.readInt();
+      solver.enableExceptions = in.readBoolean();
+      solver.err_code = in.readInt();
+      if(!in.readUTF().equals(solver.odeEngine.getClass().getName())) {
+        throw new IOException("The checkpoint was written with a different engine."); //$NON-NLS-1$
+      }
+      solver.internalODE.setInitialConditions(); // the engine steps the copy of the restored state
+      engineSerializer(solver).loadState(in, solver.odeEngine);
+    }
+
+    private ODESolverCheckpoint.StateSerializer engineSerializer(ODEMultistepSolver solver) {
+      ODESolverCheckpoint.StateSerializer serializer = ODESolverCheckpoint.getSerializer(solver.odeEngine.getClass());
+      if(serializer==null) {
+        throw new IllegalArgumentException("No checkpoint serializer for "+solver.odeEngine.getClass().getName()+"."); //$NON-NLS-1$ //$NON-NLS-2$
+      }
+      return serializer;
+    }
+
+  }
+
   /**
    * A class that saves an internal state that may be different from the orginal ODE.
    * This internal state is used with interpolation solvers.
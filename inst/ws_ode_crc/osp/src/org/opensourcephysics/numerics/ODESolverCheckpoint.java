@@ -0,0 +1,370 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+package org.opensourcephysics.numerics;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.zip.CRC32;
+
+/**
+ * ODESolverCheckpoint writes and reads binary checkpoints of an ODE and the internal state of its solver.
+ *
+ * A checkpoint holds the state of the ODE together with everything the solver carries from one step to the
+ * next, such as the adaptive step size, the error of the last step, the history of a multistep method or
+ * the age of a Jacobian.  A solver that is restored from a checkpoint continues bit for bit like the solver
+ * that wrote it.  Statistics are not part of a checkpoint.
+ *
+ * Every solver class supplies its own StateSerializer.  As for XML loaders, a serializer is either
+ * registered with setSerializer or returned by a static getSerializer() method of the solver class.
+ *
+ * Example:
+ * <pre>
+ * Future&lt;File&gt; pending = ODESolverCheckpoint.writeAsync(file, ode, solver);
+ * solver.step(); // the checkpoint holds a copy, stepping does not wait for the file
+ * ...
+ * ODESolverCheckpoint.load(file, newOde, newSolver);
+ * </pre>
+ *
+ * The format is: the magic number 'OSPC', the version, the class name of the solver, the length and the
+ * components of the state, the block of the solver's serializer and the CRC32 of all preceding bytes.
+ *
+ * @version 1.0
+ */
+public class ODESolverCheckpoint {
+  static final int MAGIC = 0x4F535043; // OSPC
+  static final int VERSION = 1;
+  private static Map<Class<?>, StateSerializer> serializers = new HashMap<Class<?>, StateSerializer>();
+  private static ExecutorService writer;
+
+  /**
+   * Saves and loads the internal state of a solver class.
+   */
+  public interface StateSerializer {
+    /**
+     * Writes the internal state of a solver.
+     *
+     * @param out the output
+     * @param solver the solver
+     * @throws IOException if the state cannot be written
+     */
+    public void saveState(DataOutput out, ODESolver solver) throws IOException;
+
+    /**
+     * Reads the internal state of a solver that has been written by saveState.  The solver has been
+     * constructed for an ODE with the same number of equations.
+     *
+     * @param in the input
+     * @param solver the solver
+     * @throws IOException if the state cannot be read
+     */
+    public void loadState(DataInput in, ODESolver solver) throws IOException;
+
+  }
+
+  /**
+   * Private constructor to prevent instantiation.
+   */
+  private ODESolverCheckpoint() {}
+
+  /**
+   * Sets the StateSerializer for a solver class.
+   *
+   * @param classtype the class
+   * @param serializer the serializer
+   */
+  public static void setSerializer(Class<?> classtype, StateSerializer serializer) {
+    synchronized(serializers) {
+      serializers.put(classtype, serializer);
+    }
+  }
+
+  /**
+   * Gets the StateSerializer for a solver class.  A registered serializer is preferred over the static
+   * getSerializer() method of the class.
+   *
+   * @param classtype the class
+   * @return the serializer or null if the class does not have one
+   */
+  public static StateSerializer getSerializer(Class<?> classtype) {
+    StateSerializer serializer;
+    synchronized(serializers) {
+      serializer = serializers.get(classtype);
+    }
+    if(serializer==null) {
+      try {
+        Method method = classtype.getMethod("getSerializer", (Class<?>[]) null); //$NON-NLS-1$
+        if(Modifier.isStatic(method.getModifiers())) {
+          serializer = (StateSerializer) method.invoke(null, (Object[]) null);
+          if(serializer!=null) {
+            setSerializer(classtype, serializer);
+          }
+        }
+      } catch(Exception ex) {}
+    }
+    return serializer;
+  }
+
+  /**
+   * Writes the state of the ODE and of the solver to a byte array.
+   *
+   * @param ode the ODE
+   * @param solver the solver
+   * @return the checkpoint
+   * @throws IllegalArgumentException if the solver does not have a serializer
+   */
+  public static byte[] snapshot(ODE ode, ODESolver solver) {
+    StateSerializer serializer = findSerializer(solver);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream out = new DataOutputStream(bytes);
+    try {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeUTF(solver.getClass().getName());
+      double[] state = ode.getState();
+      out.writeInt(state.length);
+      writeArray(out, state);
+      serializer.saveState(out, solver);
+      out.flush();
+      CRC32 crc = new CRC32();
+      crc.update(bytes.toByteArray());
+      out.writeLong(crc.getValue());
+      out.flush();
+    } catch(IOException ex) { // not thrown by a byte array
+      throw new RuntimeException(ex);
+    }
+    return bytes.toByteArray();
+  }
+
+  /**
+   * Restores the state of the ODE and of the solver from a checkpoint.  The solver must be of the class
+   * that wrote the checkpoint and the ODE must have the same number of equations.  The state is copied into
+   * the array of the ODE after the solver has read its block, so the ODE is unchanged if the checkpoint
+   * cannot be read.
+   *
+   * @param checkpoint the checkpoint
+   * @param ode the ODE
+   * @param solver the solver
+   * @throws IllegalArgumentException if the checkpoint is damaged or does not match the ODE or the solver
+   */
+  public static void restore(byte[] checkpoint, ODE ode, ODESolver solver) {
+    StateSerializer serializer = findSerializer(solver);
+    if(checkpoint.length<8) {
+      throw new IllegalArgumentException("The checkpoint is truncated."); //$NON-NLS-1$
+    }
+    CRC32 crc = new CRC32();
+    int length = checkpoint.length-8;
+    crc.update(checkpoint, 0, length);
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(checkpoint, 0, length));
+    try {
+      if(new DataInputStream(new ByteArrayInputStream(checkpoint, length, 8)).readLong()!=crc.getValue()) {
+        throw new IllegalArgumentException("The checksum of the checkpoint is wrong."); //$NON-NLS-1$
+      }
+      if(in.readInt()!=MAGIC) {
+        throw new IllegalArgumentException("The data is not an ODE solver checkpoint."); //$NON-NLS-1$
+      }
+      int version = in.readInt();
+      if(version!=VERSION) {
+        throw new IllegalArgumentException("Unsupported checkpoint version "+version+"."); //$NON-NLS-1$ //$NON-NLS-2$
+      }
+      String name = in.readUTF();
+      if(!name.equals(solver.getClass().getName())) {
+        throw new IllegalArgumentException("The checkpoint was written by "+name+", not by "+solver.getClass().getName()+"."); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+      }
+      double[] state = ode.getState();
+      if(in.readInt()!=state.length) {
+        throw new IllegalArgumentException("The checkpoint does not match the number of equations of the ODE."); //$NON-NLS-1$
+      }
+      double[] saved = new double[state.length];
+      readArray(in, saved);
+      serializer.loadState(in, solver);
+      if(in.available()!=0) {
+        throw new IllegalArgumentException("The solver did not read the whole checkpoint."); //$NON-NLS-1$
+      }
+      System.arraycopy(saved, 0, state, 0, state.length);
+    } catch(IOException ex) {
+      throw new IllegalArgumentException("The checkpoint cannot be read: "+ex.getMessage(), ex); //$NON-NLS-1$
+    }
+  }
+
+  /**
+   * Writes a checkpoint to a file.  The file is replaced atomically where the file system allows it, so an
+   * interrupted write leaves the previous checkpoint intact.
+   *
+   * @param file the file
+   * @param ode the ODE
+   * @param solver the solver
+   * @throws IOException if the file cannot be written
+   */
+  public static void save(File file, ODE ode, ODESolver solver) throws IOException {
+    write(file, snapshot(ode, solver));
+  }
+
+  /**
+   * Writes a checkpoint to a file in a background thread.  The checkpoint is copied before the method
+   * returns, so the solver can be stepped while the file is written.  Checkpoints are written in the order
+   * of the calls.
+   *
+   * @param file the file
+   * @param ode the ODE
+   * @param solver the solver
+   * @return the future that completes with the file when it has been written
+   */
+  public static Future<File> writeAsync(final File file, ODE ode, ODESolver solver) {
+    final byte[] checkpoint = snapshot(ode, solver);
+    return getWriter().submit(new Callable<File>() {
+      public File call() throws IOException {
+        write(file, checkpoint);
+        return file;
+      }
+
+    });
+  }
+
+  /**
+   * Restores the state of the ODE and of the solver from a checkpoint file.
+   *
+   * @param file the file
+   * @param ode the ODE
+   * @param solver the solver
+   * @throws IOException if the file cannot be read
+   * @throws IllegalArgumentException if the checkpoint is damaged or does not match the ODE or the solver
+   */
+  public static void load(File file, ODE ode, ODESolver solver) throws IOException {
+    restore(Files.readAllBytes(file.toPath()), ode, solver);
+  }
+
+  /**
+   * Writes an array of doubles.  Serializers use this method for the arrays of the solvers.
+   *
+   * @param out the output
+   * @param array the array
+   * @throws IOException if the array cannot be written
+   */
+  public static void writeArray(DataOutput out, double[] array) throws IOException {
+    for(int i = 0; i<array.length; i++) {
+      out.writeDouble(array[i]);
+    }
+  }
+
+  /**
+   * Writes the rows of a two dimensional array of doubles.
+   *
+   * @param out the output
+   * @param array the array
+   * @throws IOException if the array cannot be written
+   */
+  public static void writeArray(DataOutput out, double[][] array) throws IOException {
+    for(int i = 0; i<array.length; i++) {
+      writeArray(out, array[i]);
+    }
+  }
+
+  /**
+   * Reads an array of doubles that has been written by writeArray into an array of the same length.
+   *
+   * @param in the input
+   * @param array the array
+   * @throws IOException if the array cannot be read
+   */
+  public static void readArray(DataInput in, double[] array) throws IOException {
+    for(int i = 0; i<array.length; i++) {
+      array[i] = in.readDouble();
+    }
+  }
+
+  /**
+   * Reads a two dimensional array of doubles that has been written by writeArray into an array of the same
+   * shape.
+   *
+   * @param in the input
+   * @param array the array
+   * @throws IOException if the array cannot be read
+   */
+  public static void readArray(DataInput in, double[][] array) throws IOException {
+    for(int i = 0; i<array.length; i++) {
+      readArray(in, array[i]);
+    }
+  }
+
+  private static StateSerializer findSerializer(ODESolver solver) {
+    StateSerializer serializer = getSerializer(solver.getClass());
+    if(serializer==null) {
+      throw new IllegalArgumentException("No checkpoint serializer for "+solver.getClass().getName()+"."); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+    return serializer;
+  }
+
+  private static void write(File file, byte[] checkpoint) throws IOException {
+    Path target = file.toPath();
+    Path temp = target.resolveSibling(target.getFileName()+".tmp"); //$NON-NLS-1$
+    Files.write(temp, checkpoint);
+    try {
+      Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } catch(AtomicMoveNotSupportedException ex) {
+      Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  private static synchronized ExecutorService getWriter() {
+    if(writer==null) {
+      writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+          Thread thread = new Thread(r, "ODESolverCheckpoint writer"); //$NON-NLS-1$
+          thread.setDaemon(true);
+          return thread;
+        }
+
+      });
+    }
+    return writer;
+  }
+
+}
+
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */
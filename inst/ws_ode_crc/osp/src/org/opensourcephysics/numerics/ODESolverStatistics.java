@@ -0,0 +1,354 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+
+package org.opensourcephysics.numerics;
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * ODESolverStatistics collects the work statistics of an ODE solver: accepted, rejected and failed steps,
+ * rate evaluations, the range and a histogram of the step sizes and the wall time spent in the ODE's
+ * getRate method and in the solver itself.
+ *
+ * The solver reports to the collector from the thread that steps it.  The collector uses no locks; other
+ * threads, such as a JMX console, read the counters directly and may see values that are a step behind.
+ * The clock is read only in one of every samplingInterval steps and the measured times are scaled to all
+ * steps.  The time spent reading the clock is subtracted.  The overhead is then a few nanoseconds per step
+ * and about one nanosecond per rate evaluation, which is less than 2% once a step takes a microsecond.
+ *
+ * Bin k of the step size histogram counts the steps whose absolute size is in
+ * [2^(k-HISTOGRAM_OFFSET), 2^(k-HISTOGRAM_OFFSET+1)).  Smaller and larger steps are counted in the first and
+ * the last bin.
+ *
+ * @version 1.0
+ */
+public class ODESolverStatistics implements ODESolverStatisticsMBean {
+  public static final int HISTOGRAM_BINS = 64;
+  public static final int HISTOGRAM_OFFSET = 40;
+  private static final long CLOCK_COST = measureClockCost(); // time of a System.nanoTime call
+  private int samplingMask = 63;
+  private boolean timing = false; // true while a sampled step is being taken
+  private long stepStart;
+  private long stepCount, sampledSteps, sampledStepTime, sampledRateTime, sampledRates;
+  private long acceptedSteps, rejectedSteps, failedSteps, rateEvaluations;
+  private double minStepSize = Double.POSITIVE_INFINITY, maxStepSize = 0, sumStepSize = 0;
+  private long[] histogram = new long[HISTOGRAM_BINS];
+  private ObjectName objectName;
+
+  /**
+   * Signals the start of a step.  Must be followed by stepFinished.
+   */
+  public void stepStarted() {
+    timing = ((stepCount++)&samplingMask)==0;
+    if(timing) {
+      stepStart = System.nanoTime();
+    }
+  }
+
+  /**
+   * Signals the end of a step.
+   *
+   * @param stepSize the step size that was taken
+   */
+  public void stepFinished(double stepSize) {
+    if(timing) {
+      sampledStepTime += System.nanoTime()-stepStart;
+      sampledSteps++;
+      timing = false;
+    }
+    acceptedSteps++;
+    double h = Math.abs(stepSize);
+    if(h<minStepSize) {
+      minStepSize = h;
+    }
+    if(h>maxStepSize) {
+      maxStepSize = h;
+    }
+    sumStepSize += h;
+    int bin = Math.getExponent(h)+HISTOGRAM_OFFSET;
+    histogram[(bin<0) ? 0 : (bin>=HISTOGRAM_BINS) ? HISTOGRAM_BINS-1 : bin]++;
+  }
+
+  /**
+   * Counts a step attempt that was rejected by the error control and is retried with a smaller step.
+   */
+  public void stepRejected() {
+    rejectedSteps++;
+  }
+
+  /**
+   * Counts a step that did not reach the requested accuracy.
+   */
+  public void stepFailed() {
+    failedSteps++;
+  }
+
+  /**
+   * Signals the start of a rate evaluation.
+   *
+   * @return the value to be passed to rateFinished
+   */
+  public long rateStarted() {
+    rateEvaluations++;
+    return timing ? System.nanoTime() : 0;
+  }
+
+  /**
+   * Signals the end of a rate evaluation.
+   *
+   * @param start the value returned by rateStarted
+   */
+  public void rateFinished(long start) {
+    if(timing) {
+      sampledRateTime += System.nanoTime()-start;
+      sampledRates++;
+    }
+  }
+
+  /**
+   * Wraps an ODE so that its rate evaluations are counted and timed by this collector.
+   *
+   * @param ode the ODE
+   * @return the monitored ODE
+   */
+  public ODE monitor(ODE ode) {
+    return new MonitoredODE(ode, this);
+  }
+
+  /**
+   * Gets the ODE that has been wrapped by the monitor method.
+   *
+   * @param ode the monitored ODE
+   * @return the original ODE
+   */
+  public static ODE unmonitor(ODE ode) {
+    return (ode instanceof MonitoredODE) ? ((MonitoredODE) ode).ode : ode;
+  }
+
+  public long getAcceptedSteps() {
+    return acceptedSteps;
+  }
+
+  public long getRejectedSteps() {
+    return rejectedSteps;
+  }
+
+  /**
+   * Gets the number of steps that did not reach the requested accuracy within the allowed number of iterations.
+   * @return the number of failed steps
+   */
+  public long getFailedSteps() {
+    return failedSteps;
+  }
+
+  public long getRateEvaluations() {
+    return rateEvaluations;
+  }
+
+  public double getMinStepSize() {
+    return (acceptedSteps==0) ? 0 : minStepSize;
+  }
+
+  public double getMaxStepSize() {
+    return maxStepSize;
+  }
+
+  public double getMeanStepSize() {
+    return (acceptedSteps==0) ? 0 : sumStepSize/acceptedSteps;
+  }
+
+  /**
+   * Gets a copy of the step size histogram.
+   * @return the number of steps in each bin
+   */
+  public long[] getStepSizeHistogram() {
+    return histogram.clone();
+  }
+
+  /**
+   * Gets the lower edge of a bin of the step size histogram.
+   * @param bin the bin
+   * @return the smallest step size of the bin
+   */
+  public static double getBinStepSize(int bin) {
+    return Math.scalb(1.0, bin-HISTOGRAM_OFFSET);
+  }
+
+  /**
+   * Gets the estimated wall time of all steps.
+   * @return the time in nanoseconds
+   */
+  public long getStepTime() {
+    return scale(stepTime());
+  }
+
+  /**
+   * Gets the estimated wall time spent in the rate evaluations of the steps.
+   * @return the time in nanoseconds
+   */
+  public long getRateTime() {
+    return scale(rateTime());
+  }
+
+  /**
+   * Gets the estimated wall time that the steps spent outside of the rate evaluations.
+   * @return the time in nanoseconds
+   */
+  public long getSolverTime() {
+    return scale(Math.max(0, stepTime()-rateTime()));
+  }
+
+  /**
+   * Gets the time of the sampled steps without the time spent reading the clock.
+   */
+  private long stepTime() {
+    return Math.max(0, sampledStepTime-(sampledSteps+2*sampledRates)*CLOCK_COST);
+  }
+
+  /**
+   * Gets the time of the rate evaluations of the sampled steps without the time spent reading the clock.
+   */
+  private long rateTime() {
+    return Math.max(0, sampledRateTime-sampledRates*CLOCK_COST);
+  }
+
+  private long scale(long sampledTime) {
+    return (sampledSteps==0) ? 0 : Math.round(sampledTime*((double) stepCount/sampledSteps));
+  }
+
+  /**
+   * Measures the time of a System.nanoTime call as the shortest interval between two consecutive calls.
+   */
+  private static long measureClockCost() {
+    long min = Long.MAX_VALUE;
+    for(int i = 0; i<100000; i++) { // long enough for the loop to be compiled
+      long t0 = System.nanoTime();
+      long t1 = System.nanoTime();
+      if((t1>t0)&&(t1-t0<min)) {
+        min = t1-t0;
+      }
+    }
+    return (min==Long.MAX_VALUE) ? 0 : min;
+  }
+
+  public int getSamplingInterval() {
+    return samplingMask+1;
+  }
+
+  /**
+   * Sets the number of steps per timed step.  The interval is rounded up to a power of two; one times every step.
+   * @param interval the interval
+   */
+  public void setSamplingInterval(int interval) {
+    if(interval<1) {
+      throw new IllegalArgumentException("The sampling interval must be positive."); //$NON-NLS-1$
+    }
+    samplingMask = (interval==1) ? 0 : Integer.highestOneBit(interval-1)*2-1;
+  }
+
+  /**
+   * Clears the statistics.
+   */
+  public void reset() {
+    timing = false;
+    stepCount = sampledSteps = sampledStepTime = sampledRateTime = sampledRates = 0;
+    acceptedSteps = rejectedSteps = failedSteps = rateEvaluations = 0;
+    minStepSize = Double.POSITIVE_INFINITY;
+    maxStepSize = sumStepSize = 0;
+    histogram = new long[HISTOGRAM_BINS];
+  }
+
+  /**
+   * Registers the statistics with the platform MBean server under the name
+   * org.opensourcephysics.numerics:type=ODESolverStatistics,name=<i>name</i>.
+   *
+   * @param name the name of the solver
+   * @return the object name
+   * @throws JMException if the statistics cannot be registered
+   */
+  public ObjectName register(String name) throws JMException {
+    unregister();
+    ObjectName on = new ObjectName("org.opensourcephysics.numerics:type=ODESolverStatistics,name="+ObjectName.quote(name)); //$NON-NLS-1$
+    ManagementFactory.getPlatformMBeanServer().registerMBean(this, on);
+    objectName = on;
+    return on;
+  }
+
+  /**
+   * Removes the statistics from the platform MBean server.
+   */
+  public void unregister() {
+    if(objectName==null) {
+      return;
+    }
+    MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+    try {
+      if(server.isRegistered(objectName)) {
+        server.unregisterMBean(objectName);
+      }
+    } catch(JMException ex) {}
+    objectName = null;
+  }
+
+  public String toString() {
+    return "accepted="+acceptedSteps+" rejected="+rejectedSteps+" failed="+failedSteps+" rates="+rateEvaluations //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+           +" h=["+getMinStepSize()+", "+getMaxStepSize()+"] mean h="+getMeanStepSize()                           //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+           +" rate ns="+getRateTime()+" solver ns="+getSolverTime();                                              //$NON-NLS-1$ //$NON-NLS-2$
+  }
+
+  /**
+   * An ODE that reports its rate evaluations to the statistics.
+   */
+  private static class MonitoredODE implements ODE {
+    ODE ode;
+    ODESolverStatistics statistics;
+
+    MonitoredODE(ODE ode, ODESolverStatistics statistics) {
+      this.ode = ode;
+      this.statistics = statistics;
+    }
+
+    public double[] getState() {
+      return ode.getState();
+    }
+
+    public void getRate(double[] state, double[] rate) {
+      long start = statistics.rateStarted();
+      ode.getRate(state, rate);
+      statistics.rateFinished(start);
+    }
+
+  }
+
+}
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */
@@ -0,0 +1,66 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+
+package org.opensourcephysics.numerics;
+
+/**
+ * ODESolverStats is implemented by ODE solvers that can report statistics about their work.
+ *
+ * Statistics are disabled by default.  Enabling them starts a new collection; the collector can be
+ * registered with the platform MBean server so that a running simulation can be watched from a JMX console.
+ *
+ * Example:
+ * <pre>
+ *   solver.setStatisticsEnabled(true);
+ *   ...
+ *   ODESolverStatistics stats = solver.getStatistics();
+ *   System.out.println(stats);
+ * </pre>
+ *
+ * @version 1.0
+ */
+public interface ODESolverStats {
+  /**
+   * Enables or disables the collection of statistics.
+   *
+   * @param enabled true to collect statistics
+   */
+  public void setStatisticsEnabled(boolean enabled);
+
+  /**
+   * Gets the statistics that have been collected since they were enabled.
+   *
+   * @return the statistics or null if the collection is disabled
+   */
+  public ODESolverStatistics getStatistics();
+
+}
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */
@@ -0,0 +1,57 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+package org.opensourcephysics.numerics;
+
+/**
+ * ODEWithJacobian is an ODE that provides the partial derivatives of its rate equations.
+ *
+ * Implicit solvers, such as Radau5, approximate the Jacobian by finite differences unless the ODE
+ * implements this interface.  An analytic Jacobian saves numEqn rate evaluations per Jacobian and
+ * is usually more accurate.
+ *
+ * The element jacobian[i][j] is the derivative of rate[i] with respect to state[j].  If the ODE also
+ * implements ODEWithJacobianPattern, only the nonzero elements are stored:  jacobian[i][k] is the
+ * derivative of rate[i] with respect to state[pattern[i][k]].
+ *
+ * @see ODEWithJacobianPattern
+ * @version 1.0
+ */
+public interface ODEWithJacobian extends ODE {
+  /**
+   * Gets the Jacobian matrix of the rate equations using the argument's state variables.
+   *
+   * @param state  the state array
+   * @param jacobian  the Jacobian matrix
+   */
+  public void getJacobian(double[] state, double[][] jacobian);
+
+}
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */
@@ -0,0 +1,66 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+package org.opensourcephysics.numerics;
+
+/**
+ * ODEWithJacobianPattern is an ODE whose Jacobian matrix is sparse.
+ *
+ * The pattern lists the distinct column indices of the nonzero elements in every row of the Jacobian,
+ * i.e., the state variables that appear in each rate equation.  Implicit solvers use the pattern to
+ * compute finite difference Jacobians with one rate evaluation per group of independent columns and
+ * to factor the Newton matrices as band or sparse matrices.  The pattern of a banded Jacobian with
+ * lower bandwidth ml and upper bandwidth mu is:
+ *
+ * <pre>
+ * for(int i = 0; i&lt;n; i++) {
+ *   int from = Math.max(0, i-ml), to = Math.min(n-1, i+mu);
+ *   pattern[i] = new int[to-from+1];
+ *   for(int j = from; j&lt;=to; j++) {
+ *     pattern[i][j-from] = j;
+ *   }
+ * }
+ * </pre>
+ *
+ * @see ODEWithJacobian
+ * @version 1.0
+ */
+public interface ODEWithJacobianPattern extends ODE {
+  /**
+   * Gets the column indices of the nonzero elements in each row of the Jacobian matrix.
+   *
+   * The pattern is read when the solver is created and must not change afterwards.
+   *
+   * @return the pattern
+   */
+  public int[][] getJacobianPattern();
+
+}
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */
@@ -0,0 +1,386 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+package org.opensourcephysics.numerics;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * ParallelRate is a base class for large ODEs whose rate is computed in parallel over index ranges.
+ *
+ * The indices are the particles of a molecular dynamics model or the grid points of a method of lines
+ * system.  A rate evaluation has two phases:
+ *
+ * <ol>
+ * <li>The accumulation phase is used for sums over pairs, such as pairwise forces.  The indices are divided
+ * into accumulation ranges and every range adds its contributions to its own array of sums, so the ranges
+ * can run concurrently without write races.  The arrays of the ranges are then added into a single array in
+ * the order of the ranges.</li>
+ * <li>The rate phase computes the rate components of every range of indices from the state and the sums.</li>
+ * </ol>
+ *
+ * The ranges are fork/join tasks on a pool of the given parallelism.  The partition of the indices and the
+ * order of the reduction depend only on the sizes and the range settings, so the rate does not depend on the
+ * number of threads or on the scheduling and has the same bits on machines with different numbers of
+ * processors.
+ *
+ * A ParallelRate is an ODE, so that any solver can step it.  Example of pairwise forces in two dimensions:
+ * <pre>
+ * class Particles extends ParallelRate {
+ *   Particles(int n) {
+ *     super(n, 2*n);   // the sums are the force components
+ *     setPairwise(true);
+ *   }
+ *   protected void accumulateRange(double[] state, int from, int to, double[] f) {
+ *     for(int i = from; i&lt;to; i++) for(int j = i+1; j&lt;n; j++) { ... f[2*i] += fx; f[2*j] -= fx; ... }
+ *   }
+ *   protected void computeRate(double[] state, double[] rate, int from, int to) {
+ *     double[] f = getSums();
+ *     for(int i = from; i&lt;to; i++) { rate[4*i] = state[4*i+1]; rate[4*i+1] = f[2*i]; ... }
+ *   }
+ * }
+ * </pre>
+ *
+ * Components of the rate that do not belong to an index, such as the rate of the time, are set by
+ * overriding getRate.
+ *
+ * @see AbstractEnsembleSolver
+ * @version 1.0
+ */
+public abstract class ParallelRate implements ODE {
+  static final int ACCUMULATE = 0, REDUCE = 1, RATE = 2;
+  static final int DEFAULT_ACCUMULATION_RANGES = 8;
+  static final int MAX_DEFAULT_PARTIAL_SUMS = 1<<20; // the length of the arrays of the default ranges together
+  private int numIndices;
+  private int numSums;
+  private int rangeSize = 1024;
+  private int accumulationRanges = 0;  // zero for the default number of ranges
+  private boolean pairwise = false;
+  private int parallelism = Runtime.getRuntime().availableProcessors();
+  private ForkJoinPool pool;
+  private int[] rangeStart = new int[] {0, 0};
+  private int[] accumulationStart = new int[] {0, 0};
+  private double[][] partialSums = new double[0][];
+  private double[] sums = new double[0];
+  private RangeTask[] rateTasks = new RangeTask[0];
+  private RangeTask[] accumulationTasks = new RangeTask[0];
+  private RangeTask[] reductionTasks = new RangeTask[0];
+  private double[] currentState, currentRate;
+
+  /**
+   * Constructs a ParallelRate without an accumulation phase.
+   *
+   * @param numIndices the number of indices
+   */
+  public ParallelRate(int numIndices) {
+    this(numIndices, 0);
+  }
+
+  /**
+   * Constructs a ParallelRate.
+   *
+   * @param numIndices the number of indices
+   * @param numSums the length of the array of sums of the accumulation phase, zero if there is no such phase
+   */
+  public ParallelRate(int numIndices, int numSums) {
+    setSize(numIndices, numSums);
+  }
+
+  /**
+   * Sets the number of indices and the length of the array of sums.
+   *
+   * @param numIndices the number of indices
+   * @param numSums the length of the array of sums, zero if there is no accumulation phase
+   */
+  public void setSize(int numIndices, int numSums) {
+    this.numIndices = Math.max(0, numIndices);
+    this.numSums = Math.max(0, numSums);
+    partition();
+  }
+
+  /**
+   * Adds the contributions of a range of indices to the sums.  Ranges run concurrently and every range has
+   * its own array of sums, which has been cleared.
+   *
+   * @param state the state
+   * @param from the first index
+   * @param to one past the last index
+   * @param sums the sums of the range
+   */
+  protected void accumulateRange(double[] state, int from, int to, double[] sums) {}
+
+  /**
+   * Computes the rate components of a range of indices.  Ranges run concurrently so implementations must
+   * only write to the components of their own indices.  The sums of the accumulation phase are available
+   * from getSums.
+   *
+   * @param state the state
+   * @param rate the rate
+   * @param from the first index
+   * @param to one past the last index
+   */
+  protected abstract void computeRate(double[] state, double[] rate, int from, int to);
+
+  /**
+   * Gets the rate.  The accumulation phase is run if there are sums, followed by the rate phase.
+   *
+   * @param state the state
+   * @param rate the rate
+   */
+  public void getRate(double[] state, double[] rate) {
+    if(numSums>0) {
+      accumulate(state);
+    }
+    computeRates(state, rate);
+  }
+
+  /**
+   * Runs the accumulation phase and adds the sums of the ranges.  A model that reuses the sums for more than
+   * one rate evaluation, such as the force of a Verlet step, overrides getRate and invokes accumulate and
+   * computeRates itself.
+   *
+   * @param state the state
+   */
+  protected void accumulate(double[] state) {
+    currentState = state;
+    invoke(accumulationTasks);
+    invoke(reductionTasks);
+    currentState = null;
+  }
+
+  /**
+   * Runs the rate phase.
+   *
+   * @param state the state
+   * @param rate the rate
+   */
+  protected void computeRates(double[] state, double[] rate) {
+    currentState = state;
+    currentRate = rate;
+    invoke(rateTasks);
+    currentState = currentRate = null;
+  }
+
+  /**
+   * Gets the sums of the last accumulation phase.
+   *
+   * @return the sums
+   */
+  public double[] getSums() {
+    return sums;
+  }
+
+  /**
+   * Sets the number of threads.  A value of one computes the ranges sequentially in the calling thread.
+   *
+   * @param n the number of threads
+   */
+  public void setParallelism(int n) {
+    n = Math.max(1, n);
+    if(n!=parallelism) {
+      parallelism = n;
+      if(pool!=null) {
+        pool.shutdown();
+        pool = null;
+      }
+    }
+  }
+
+  /**
+   * Gets the number of threads.
+   *
+   * @return the number of threads
+   */
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * Sets the number of indices in a range of the rate phase.  Ranges are the unit of work given to a thread.
+   *
+   * @param n the number of indices
+   */
+  public void setRangeSize(int n) {
+    rangeSize = Math.max(1, n);
+    partition();
+  }
+
+  /**
+   * Gets the number of indices in a range of the rate phase.
+   *
+   * @return the number of indices
+   */
+  public int getRangeSize() {
+    return rangeSize;
+  }
+
+  /**
+   * Sets the number of ranges of the accumulation phase.  Every range clears and fills its own array of sums
+   * and the reduction reads all of the arrays, so a rate evaluation moves about three times the number of
+   * ranges times the number of sums doubles through memory.  More ranges than threads balance uneven ranges
+   * but cost that traffic.  Zero selects 8 ranges, or fewer if the arrays would hold more than 2^20 sums
+   * together, so the default does not exceed 8 MB.  The sums depend on the number of ranges but not on the
+   * number of threads.
+   *
+   * @param n the number of ranges
+   */
+  public void setAccumulationRanges(int n) {
+    accumulationRanges = Math.max(0, n);
+    partition();
+  }
+
+  /**
+   * Gets the number of ranges of the accumulation phase.
+   *
+   * @return the number of ranges
+   */
+  public int getAccumulationRanges() {
+    return accumulationTasks.length;
+  }
+
+  /**
+   * Sets whether the accumulation phase loops over the pairs i&lt;j.  The accumulation ranges then hold equal
+   * numbers of pairs rather than equal numbers of indices.
+   *
+   * @param pairwise true for loops over pairs
+   */
+  public void setPairwise(boolean pairwise) {
+    this.pairwise = pairwise;
+    partition();
+  }
+
+  /**
+   * Divides the indices into the ranges of both phases and the sums into the slices of the reduction.
+   */
+  private void partition() {
+    int n = (numIndices+rangeSize-1)/rangeSize;
+    rangeStart = new int[n+1];
+    for(int r = 0; r<n; r++) {
+      rangeStart[r] = r*rangeSize;
+    }
+    rangeStart[n] = numIndices;
+    rateTasks = createTasks(RATE, n);
+    if(numSums==0) {
+      accumulationTasks = reductionTasks = new RangeTask[0];
+      partialSums = new double[0][];
+      sums = new double[0];
+      return;
+    }
+    int m = (accumulationRanges>0) ? accumulationRanges : Math.min(DEFAULT_ACCUMULATION_RANGES, MAX_DEFAULT_PARTIAL_SUMS/numSums);
+    m = Math.max(1, Math.min(m, numIndices));
+    accumulationStart = new int[m+1];
+    for(int r = 0; r<=m; r++) {
+      double fraction = (double) r/m;
+      if(pairwise) { // the pairs of the indices below i are a fraction 1-(1-i/n)^2 of all pairs
+        fraction = 1-Math.sqrt(1-fraction);
+      }
+      accumulationStart[r] = (int) Math.round(fraction*numIndices);
+    }
+    accumulationStart[m] = numIndices;
+    if((partialSums.length!=m)||(partialSums[0].length!=numSums)) {
+      partialSums = new double[m][numSums];
+    }
+    if(sums.length!=numSums) {
+      sums = new double[numSums];
+    }
+    accumulationTasks = createTasks(ACCUMULATE, m);
+    reductionTasks = createTasks(REDUCE, Math.min(m, (numSums+rangeSize-1)/rangeSize));
+  }
+
+  private RangeTask[] createTasks(int phase, int n) {
+    RangeTask[] tasks = new RangeTask[n];
+    for(int r = 0; r<n; r++) {
+      tasks[r] = new RangeTask(phase, r, n);
+    }
+    return tasks;
+  }
+
+  private void invoke(final RangeTask[] tasks) {
+    if((parallelism<=1)||(tasks.length<=1)) {
+      for(int r = 0; r<tasks.length; r++) {
+        tasks[r].compute();
+      }
+      return;
+    }
+    if(pool==null) {
+      pool = new ForkJoinPool(parallelism);
+    }
+    for(int r = 0; r<tasks.length; r++) {
+      tasks[r].reinitialize();
+    }
+    pool.invoke(new RecursiveAction() {
+      protected void compute() {
+        ForkJoinTask.invokeAll(tasks);
+      }
+
+    });
+  }
+
+  /**
+   * A task that computes a phase of a single range.
+   */
+  private class RangeTask extends RecursiveAction {
+    final int phase, range, numRanges;
+
+    RangeTask(int phase, int range, int numRanges) {
+      this.phase = phase;
+      this.range = range;
+      this.numRanges = numRanges;
+    }
+
+    protected void compute() {
+      switch(phase) {
+      case ACCUMULATE :
+        double[] partial = partialSums[range];
+        Arrays.fill(partial, 0);
+        accumulateRange(currentState, accumulationStart[range], accumulationStart[range+1], partial);
+        break;
+      case REDUCE : // every task adds a slice of the sums in the order of the ranges
+        int from = (int) ((long) range*numSums/numRanges), to = (int) ((long) (range+1)*numSums/numRanges);
+        System.arraycopy(partialSums[0], from, sums, from, to-from);
+        for(int r = 1; r<partialSums.length; r++) {
+          double[] p = partialSums[r];
+          for(int i = from; i<to; i++) {
+            sums[i] += p[i];
+          }
+        }
+        break;
+      default :
+        computeRate(currentState, currentRate, rangeStart[range], rangeStart[range+1]);
+      }
+    }
+
+  }
+
+}
+
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */
@@ -0,0 +1,280 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+package org.opensourcephysics.numerics;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * ParallelTrajectoryRunner integrates independent trajectories of an ODE on a fork/join pool.
+ *
+ * Every trajectory gets its own ODE and its own ODESolver.  The ODE is created by a factory using a copy
+ * of the trajectory's initial state and the solver is created by ODESolverFactory using the solver's name.
+ * Trajectories do not share data so the results are identical to a sequential run for any number of threads.
+ *
+ * Example:
+ * <pre>
+ * ParallelTrajectoryRunner runner = new ParallelTrajectoryRunner(factory, "RK4");
+ * runner.setStepSize(0.01);
+ * double[][] finalStates = runner.run(initialStates, 1000);
+ * </pre>
+ *
+ * @see ODESolverFactory
+ * @version 1.0
+ */
+public class ParallelTrajectoryRunner {
+  private ODEFactory factory;
+  private String solverName;
+  private double stepSize = 0.1;
+  private double tolerance = 0;  // a positive value is passed to adaptive solvers
+  private int parallelism = Runtime.getRuntime().availableProcessors();
+  private int[] errorCodes = new int[0];
+
+  /**
+   * Creates the ODE of a trajectory.
+   */
+  public interface ODEFactory {
+    /**
+     * Creates an ODE whose getState method returns the given initial state.
+     * The factory is invoked from more than one thread at a time.
+     *
+     * @param initialState a copy of the initial state that may be used as the ODE's state array
+     * @return the ODE
+     */
+    public ODE createODE(double[] initialState);
+
+  }
+
+  /**
+   * Receives the state of a trajectory after every step.
+   *
+   * Different trajectories are reported concurrently from different threads.  The steps of a single
+   * trajectory are reported in order from a single thread.
+   */
+  public interface TrajectoryListener {
+    /**
+     * Invoked after a trajectory has been advanced.  The state array belongs to the ODE and must be copied
+     * if it is kept.
+     *
+     * @param trajectory the index of the trajectory
+     * @param step the number of steps that have been taken
+     * @param state the state
+     */
+    public void stepTaken(int trajectory, int step, double[] state);
+
+  }
+
+  /**
+   * Constructs a runner.
+   *
+   * @param factory the factory that creates the ODE of a trajectory
+   * @param solverName the name of the solver as understood by ODESolverFactory
+   */
+  public ParallelTrajectoryRunner(ODEFactory factory, String solverName) {
+    this.factory = factory;
+    this.solverName = solverName;
+  }
+
+  /**
+   * Integrates the trajectories and returns their final states.
+   *
+   * @param initialStates the initial states indexed by trajectory
+   * @param numSteps the number of solver steps
+   * @return the final states indexed by trajectory
+   */
+  public double[][] run(double[][] initialStates, int numSteps) {
+    double[][] finalStates = new double[initialStates.length][];
+    run(initialStates, numSteps, finalStates, null);
+    return finalStates;
+  }
+
+  /**
+   * Integrates the trajectories and reports every step to a listener.
+   *
+   * @param initialStates the initial states indexed by trajectory
+   * @param numSteps the number of solver steps
+   * @param listener the listener
+   */
+  public void run(double[][] initialStates, int numSteps, TrajectoryListener listener) {
+    run(initialStates, numSteps, null, listener);
+  }
+
+  /**
+   * Integrates the trajectories.
+   *
+   * @param initialStates the initial states indexed by trajectory
+   * @param numSteps the number of solver steps
+   * @param finalStates the array that receives the final states; may be null
+   * @param listener the listener that receives every step; may be null
+   */
+  public void run(double[][] initialStates, int numSteps, double[][] finalStates, TrajectoryListener listener) {
+    errorCodes = new int[initialStates.length];
+    if(initialStates.length==0) {
+      return;
+    }
+    if(ODESolverFactory.createODESolver(factory.createODE(initialStates[0].clone()), solverName)==null) {
+      throw new IllegalArgumentException("Unknown ODE solver: "+solverName); //$NON-NLS-1$
+    }
+    if((parallelism<=1)||(initialStates.length==1)) {
+      for(int i = 0; i<initialStates.length; i++) {
+        runTrajectory(i, initialStates[i], numSteps, finalStates, listener);
+      }
+    } else {
+      ForkJoinPool pool = new ForkJoinPool(parallelism);
+      try {
+        pool.invoke(new RunTask(initialStates, numSteps, finalStates, listener, 0, initialStates.length));
+      } finally {
+        pool.shutdown();
+      }
+    }
+  }
+
+  /**
+   * Integrates a single trajectory.
+   */
+  private void runTrajectory(int index, double[] initialState, int numSteps, double[][] finalStates, TrajectoryListener listener) {
+    ODE ode = factory.createODE(initialState.clone());
+    ODESolver solver = ODESolverFactory.createODESolver(ode, solverName);
+    if((tolerance>0)&&(solver instanceof ODEAdaptiveSolver)) {
+      ((ODEAdaptiveSolver) solver).setTolerance(tolerance);
+    }
+    solver.initialize(stepSize);
+    int errorCode = ODEAdaptiveSolver.NO_ERROR;
+    for(int n = 1; n<=numSteps; n++) {
+      solver.step();
+      if((solver instanceof ODEAdaptiveSolver)&&(errorCode==ODEAdaptiveSolver.NO_ERROR)) {
+        errorCode = ((ODEAdaptiveSolver) solver).getErrorCode();
+      }
+      if(listener!=null) {
+        listener.stepTaken(index, n, ode.getState());
+      }
+    }
+    errorCodes[index] = errorCode;
+    if(finalStates!=null) {
+      finalStates[index] = ode.getState().clone();
+    }
+  }
+
+  /**
+   * Sets the step size passed to the solvers.
+   *
+   * @param stepSize the step size
+   */
+  public void setStepSize(double stepSize) {
+    this.stepSize = stepSize;
+  }
+
+  /**
+   * Gets the step size passed to the solvers.
+   *
+   * @return the step size
+   */
+  public double getStepSize() {
+    return stepSize;
+  }
+
+  /**
+   * Sets the tolerance of adaptive solvers.  A value of zero keeps the solver's default.
+   *
+   * @param tol the tolerance
+   */
+  public void setTolerance(double tol) {
+    tolerance = Math.abs(tol);
+  }
+
+  /**
+   * Gets the tolerance of adaptive solvers.
+   *
+   * @return the tolerance
+   */
+  public double getTolerance() {
+    return tolerance;
+  }
+
+  /**
+   * Sets the number of threads.  A value of one runs the trajectories sequentially.
+   *
+   * @param n the number of threads
+   */
+  public void setParallelism(int n) {
+    parallelism = Math.max(1, n);
+  }
+
+  /**
+   * Gets the number of threads.
+   *
+   * @return the number of threads
+   */
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * Gets the first error code reported by the solver of every trajectory in the last run.
+   * Error codes:
+   *   ODEAdaptiveSolver.NO_ERROR
+   *   ODEAdaptiveSolver.DID_NOT_CONVERGE
+   *
+   * @return the error codes indexed by trajectory
+   */
+  public int[] getErrorCodes() {
+    return errorCodes;
+  }
+
+  /**
+   * A task that splits a range of trajectories until a single trajectory remains.
+   */
+  private class RunTask extends RecursiveAction {
+    double[][] initialStates, finalStates;
+    int numSteps, from, to;
+    TrajectoryListener listener;
+
+    RunTask(double[][] initialStates, int numSteps, double[][] finalStates, TrajectoryListener listener, int from, int to) {
+      this.initialStates = initialStates;
+      this.numSteps = numSteps;
+      this.finalStates = finalStates;
+      this.listener = listener;
+      this.from = from;
+      this.to = to;
+    }
+
+    protected void compute() {
+      if(to-from==1) {
+        runTrajectory(from, initialStates[from], numSteps, finalStates, listener);
+      } else if(to>from) {
+        int mid = (from+to)>>>1;
+        invokeAll(new RunTask(initialStates, numSteps, finalStates, listener, from, mid), new RunTask(initialStates, numSteps, finalStates, listener, mid, to));
+      }
+    }
+
+  }
+
+}
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */
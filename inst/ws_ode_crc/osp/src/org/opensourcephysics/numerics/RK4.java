@@ -55,6 +55,9 @@ public class RK4 extends AbstractODESolver {
     if(state==null) {
       return stepSize;
     }
+    if(statistics!=null) {
+      statistics.stepStarted();
+    }
     if(state.length!=numEqn) {
       initialize(stepSize);
     }
@@ -74,6 +77,9 @@ public class RK4 extends AbstractODESolver {
     for(int i = 0; i<numEqn; i++) {
       state[i] = state[i]+stepSize*(rate1[i]+2*rate2[i]+2*rate3[i]+rate4[i])/6.0;
     }
+    if(statistics!=null) {
+      statistics.stepFinished(stepSize);
+    }
     return stepSize;
   }
 
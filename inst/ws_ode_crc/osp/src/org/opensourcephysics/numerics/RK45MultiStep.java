@@ -6,6 +6,9 @@
  */
 
 package org.opensourcephysics.numerics;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 
 /**
  * Title:        RK45MultiStep
@@ -81,6 +84,9 @@ public class RK45MultiStep extends RK45 {
       }
       // check to see if roundoff error prevents further calculation.
       if((error_code!=NO_ERROR)||(Math.abs(oldRemainder-remainder)<=Float.MIN_VALUE)||(tol*fixedStepSize/10.0>super.getStepSize())||(counter>maxIterations)) {
+        if((statistics!=null)&&(error_code==NO_ERROR)) { // failures of the adaptive steps are already counted
+          statistics.stepFailed();
+        }
         error_code = DID_NOT_CONVERGE;
         if(enableExceptions) {
           throw new ODESolverException("RK45 ODE solver did not converge.");                    //$NON-NLS-1$
@@ -124,6 +130,9 @@ public class RK45MultiStep extends RK45 {
       }
       // check to see if roundoff error prevents further calculation.
       if((error_code!=NO_ERROR)||(Math.abs(oldRemainder-remainder)<=Float.MIN_VALUE)||(tol*fixedStepSize/10.0<super.getStepSize())||(counter>maxIterations)) {
+        if((statistics!=null)&&(error_code==NO_ERROR)) { // failures of the adaptive steps are already counted
+          statistics.stepFailed();
+        }
         error_code = DID_NOT_CONVERGE;
         if(enableExceptions) {
           throw new ODESolverException("RK45 ODE solver did not converge.");                 //$NON-NLS-1$
@@ -200,6 +209,35 @@ public class RK45MultiStep extends RK45 {
     return error_code;
   }
 
+  /**
+   * Returns a serializer that saves the fixed and the adaptive step size in a checkpoint.
+   *
+   * @return the serializer
+   */
+  public static ODESolverCheckpoint.StateSerializer getSerializer() {
+    return new Serializer();
+  }
+
+  /**
+   * A class to save and load the internal state of a RK45MultiStep solver.
+   */
+  static class Serializer extends DormandPrince45.Serializer {
+    public void saveState(DataOutput out, ODESolver obj) throws IOException {
+      RK45MultiStep solver = (RK45MultiStep) obj;
+      out.writeDouble(solver.fixedStepSize);
+      out.writeInt(solver.maxIterations);
+      super.saveState(out, obj);
+    }
+
+    public void loadState(DataInput in, ODESolver obj) throws IOException {
+      RK45MultiStep solver = (RK45MultiStep) obj;
+      solver.fixedStepSize = in.readDouble();
+      solver.maxIterations = in.readInt();
+      super.loadState(in, obj);
+    }
+
+  }
+
 }
 
 /*
@@ -0,0 +1,201 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+
+package org.opensourcephysics.numerics;
+
+/**
+ * RKStageKernels combines Runge-Kutta stages with few passes over memory.
+ *
+ * A stage state y + h*(a_1 k_1 + ... + a_s k_s) computed one rate array at a time reads and writes the
+ * state s times.  The kernels here add up to four rate arrays per pass, so that large systems are limited
+ * by memory bandwidth rather than by the number of passes, and the loop bodies are simple enough for the
+ * virtual machine to compile them to SIMD instructions.  Zero coefficients are skipped.
+ *
+ * @version 1.0
+ */
+public final class RKStageKernels {
+  private static final int SMALL = 16;
+
+  private RKStageKernels() {} // all methods are static so prohibit instantiation
+
+  /**
+   * Computes out[i] = y[i] + c[0]*k[0][i] + ... + c[m-1]*k[m-1][i] for i &lt; n.
+   *
+   * The output may be the same array as y but must not be one of the rate arrays.
+   *
+   * @param y the initial state; null for zero
+   * @param c the coefficients, including the step size
+   * @param k the rate arrays
+   * @param m the number of terms
+   * @param out the result
+   * @param n the number of elements
+   */
+  public static void combine(double[] y, double[] c, double[][] k, int m, double[] out, int n) {
+    if(n<=SMALL) { // the set up of the passes costs more than it saves
+      for(int i = 0; i<n; i++) {
+        double sum = (y==null) ? 0 : y[i];
+        for(int j = 0; j<m; j++) {
+          sum += c[j]*k[j][i];
+        }
+        out[i] = sum;
+      }
+      return;
+    }
+    double[] src = y;
+    int j = 0;
+    while(true) {
+      double c0 = 0, c1 = 0, c2 = 0, c3 = 0;
+      double[] k0 = null, k1 = null, k2 = null, k3 = null;
+      int count = 0;
+      for(; (j<m)&&(count<4); j++) {
+        double cj = c[j];
+        if(cj==0) {
+          continue;
+        }
+        switch(count++) {
+        case 0 :
+          c0 = cj;
+          k0 = k[j];
+          break;
+        case 1 :
+          c1 = cj;
+          k1 = k[j];
+          break;
+        case 2 :
+          c2 = cj;
+          k2 = k[j];
+          break;
+        default :
+          c3 = cj;
+          k3 = k[j];
+        }
+      }
+      if(src==null) {
+        switch(count) {
+        case 0 :
+          java.util.Arrays.fill(out, 0, n, 0);
+          break;
+        case 1 :
+          for(int i = 0; i<n; i++) {
+            out[i] = c0*k0[i];
+          }
+          break;
+        case 2 :
+          for(int i = 0; i<n; i++) {
+            out[i] = c0*k0[i]+c1*k1[i];
+          }
+          break;
+        case 3 :
+          for(int i = 0; i<n; i++) {
+            out[i] = c0*k0[i]+c1*k1[i]+c2*k2[i];
+          }
+          break;
+        default :
+          for(int i = 0; i<n; i++) {
+            out[i] = c0*k0[i]+c1*k1[i]+c2*k2[i]+c3*k3[i];
+          }
+        }
+      } else {
+        switch(count) {
+        case 0 :
+          if(src!=out) {
+            System.arraycopy(src, 0, out, 0, n);
+          }
+          break;
+        case 1 :
+          for(int i = 0; i<n; i++) {
+            out[i] = src[i]+c0*k0[i];
+          }
+          break;
+        case 2 :
+          for(int i = 0; i<n; i++) {
+            out[i] = src[i]+c0*k0[i]+c1*k1[i];
+          }
+          break;
+        case 3 :
+          for(int i = 0; i<n; i++) {
+            out[i] = src[i]+c0*k0[i]+c1*k1[i]+c2*k2[i];
+          }
+          break;
+        default :
+          for(int i = 0; i<n; i++) {
+            out[i] = src[i]+c0*k0[i]+c1*k1[i]+c2*k2[i]+c3*k3[i];
+          }
+        }
+      }
+      if(j>=m) {
+        return;
+      }
+      src = out;
+    }
+  }
+
+  /**
+   * Computes out[i] = y[i] + h*(a[0]*k[0][i] + ... + a[m-1]*k[m-1][i]) for i &lt; n.
+   *
+   * @param y the initial state; null for zero
+   * @param h the step size
+   * @param a the coefficients without the step size
+   * @param k the rate arrays
+   * @param m the number of terms
+   * @param work an array of at least m elements that receives the scaled coefficients
+   * @param out the result
+   * @param n the number of elements
+   */
+  public static void combine(double[] y, double h, double[] a, double[][] k, int m, double[] work, double[] out, int n) {
+    for(int j = 0; j<m; j++) {
+      work[j] = h*a[j];
+    }
+    combine(y, work, k, m, out, n);
+  }
+
+  /**
+   * Gets the largest absolute value of the first n elements of an array.
+   *
+   * @param a the array
+   * @param n the number of elements
+   * @return the maximum norm
+   */
+  public static double maxAbs(double[] a, int n) {
+    double max0 = 0, max1 = 0;
+    int i = 0;
+    for(; i<n-1; i += 2) {
+      max0 = Math.max(max0, Math.abs(a[i]));
+      max1 = Math.max(max1, Math.abs(a[i+1]));
+    }
+    if(i<n) {
+      max0 = Math.max(max0, Math.abs(a[i]));
+    }
+    return Math.max(max0, max1);
+  }
+
+}
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */
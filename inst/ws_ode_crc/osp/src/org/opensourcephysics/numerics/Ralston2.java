@@ -49,6 +49,9 @@ public class Ralston2 extends AbstractODESolver {
    */
   public double step() {
     double state[] = ode.getState();
+    if(statistics!=null) {
+      statistics.stepStarted();
+    }
     if(state.length!=numEqn) {
       initialize(stepSize);
     }
@@ -60,6 +63,9 @@ public class Ralston2 extends AbstractODESolver {
     for(int i = 0; i<numEqn; i++) {
       state[i] = state[i]+stepSize*(rate1[i]+2.*rate2[i])/3.0;
     }
+    if(statistics!=null) {
+      statistics.stepFinished(stepSize);
+    }
     return stepSize;
   }
 
@@ -0,0 +1,69 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+
+package org.opensourcephysics.numerics;
+
+/**
+ * SeparableHamiltonianODE describes a mechanical system whose Hamiltonian is the sum of a kinetic energy
+ * that depends only on the velocities and a potential energy that depends only on the positions.
+ *
+ * The equations of motion are dq/dt = v and dv/dt = a(q).  The system provides the accelerations only, so
+ * that a SymplecticSolver evaluates one force per stage instead of the full rate of an ODE.  Positions and
+ * velocities are kept in separate arrays that the solver advances in place.  The accelerations must not
+ * depend on the velocities or explicitly on the time.
+ *
+ * @version 1.0
+ */
+public interface SeparableHamiltonianODE {
+  /**
+   * Gets the positions.  The solver changes the elements of this array.
+   *
+   * @return the positions
+   */
+  public double[] getPositions();
+
+  /**
+   * Gets the velocities.  The array has the length of the positions array and the solver changes its elements.
+   *
+   * @return the velocities
+   */
+  public double[] getVelocities();
+
+  /**
+   * Computes the accelerations at the given positions.
+   *
+   * @param positions the positions
+   * @param accelerations the array that receives the accelerations
+   */
+  public void getAccelerations(double[] positions, double[] accelerations);
+
+}
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */
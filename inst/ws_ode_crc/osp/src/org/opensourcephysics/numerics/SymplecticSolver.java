@@ -0,0 +1,311 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+
+package org.opensourcephysics.numerics;
+
+/**
+ * SymplecticSolver advances a SeparableHamiltonianODE by a symmetric splitting method.
+ *
+ * A step is a sequence of drifts q += c*h*v and kicks v += d*h*a(q).  Methods that start and end with a kick
+ * reuse the acceleration of the last kick at the start of the next step, so that each drift costs one
+ * force evaluation.  The acceleration is recomputed if the positions have been changed between steps.
+ * Methods that start and end with a drift evaluate one force per kick.  All methods conserve the phase
+ * space volume and are time reversible, so that the energy error stays bounded over long runs instead of
+ * drifting.
+ *
+ * The methods are created by factory methods:
+ * <pre>
+ *   VelocityVerlet   2nd order, 1 force evaluation per step
+ *   ForestRuth       4th order, 3 force evaluations per step, position form
+ *   Yoshida4         4th order, 3 force evaluations per step, velocity form
+ *   PEFRL            4th order, 4 force evaluations per step, much smaller error than ForestRuth
+ *   Yoshida6         6th order, 7 force evaluations per step
+ *   Yoshida8         8th order, 15 force evaluations per step
+ * </pre>
+ *
+ * References:
+ *   E. Forest and R. D. Ruth, Physica D 43, 105 (1990).
+ *   H. Yoshida, Phys. Lett. A 150, 262 (1990).
+ *   I. P. Omelyan, I. M. Mryglod and R. Folk, Comput. Phys. Commun. 146, 188 (2002).
+ *
+ * @version 1.0
+ */
+public class SymplecticSolver implements ODESolver, ODESolverStats {
+  // Yoshida's weights of the compositions of the second order method
+  static final double[] YOSHIDA4 = {1/(2-Math.cbrt(2))};
+  static final double[] YOSHIDA6 = {0.784513610477560, 0.235573213359357, -1.17767998417887};
+  static final double[] YOSHIDA8 = {
+    0.914844246229740, 0.253693336566229, -1.44485223686048, -0.158240635368243, 1.93813913762276, -1.96061023297549, 0.102799849391985
+  };
+  // Omelyan, Mryglod and Folk's position extended Forest-Ruth like coefficients
+  static final double PEFRL_XI = 0.1786178958448091;
+  static final double PEFRL_LAMBDA = -0.2123418310626054;
+  static final double PEFRL_CHI = -0.06626458266981849;
+  private SeparableHamiltonianODE ode;
+  private double stepSize = 0.1;
+  private double[] drift;
+  private double[] kick;
+  private boolean kickFirst;
+  private int numEqn = 0;
+  private double[] acceleration;
+  private double[] accelerationPositions; // the positions at which acceleration was computed
+  private boolean accelerationValid = false;
+  private ODESolverStatistics statistics; // null unless statistics are enabled
+
+  /**
+   * Constructs a splitting method from its coefficients.
+   *
+   * If kickFirst is true the step is K(kick[0]) D(drift[0]) K(kick[1]) ... D(drift[m-1]) K(kick[m]) and the
+   * kick array must be one element longer than the drift array.  Otherwise the step is
+   * D(drift[0]) K(kick[0]) ... K(kick[m-1]) D(drift[m]) and the drift array must be one element longer.
+   *
+   * @param ode the system
+   * @param drift the coefficients of the drifts
+   * @param kick the coefficients of the kicks
+   * @param kickFirst true if the step starts with a kick
+   */
+  public SymplecticSolver(SeparableHamiltonianODE ode, double[] drift, double[] kick, boolean kickFirst) {
+    if(kickFirst ? (kick.length!=drift.length+1) : (drift.length!=kick.length+1)) {
+      throw new IllegalArgumentException("Drifts and kicks must alternate."); //$NON-NLS-1$
+    }
+    this.ode = ode;
+    this.drift = drift.clone();
+    this.kick = kick.clone();
+    this.kickFirst = kickFirst;
+    initialize(stepSize);
+  }
+
+  /**
+   * Creates the velocity Verlet method.
+   * @param ode the system
+   * @return the solver
+   */
+  public static SymplecticSolver VelocityVerlet(SeparableHamiltonianODE ode) {
+    return new SymplecticSolver(ode, new double[] {1}, new double[] {0.5, 0.5}, true);
+  }
+
+  /**
+   * Creates the fourth order method of Forest and Ruth in position form.
+   * @param ode the system
+   * @return the solver
+   */
+  public static SymplecticSolver ForestRuth(SeparableHamiltonianODE ode) {
+    double w1 = YOSHIDA4[0], w0 = 1-2*w1;
+    return new SymplecticSolver(ode, new double[] {w1/2, (w0+w1)/2, (w0+w1)/2, w1/2}, new double[] {w1, w0, w1}, false);
+  }
+
+  /**
+   * Creates Yoshida's fourth order composition of the velocity Verlet method.
+   * @param ode the system
+   * @return the solver
+   */
+  public static SymplecticSolver Yoshida4(SeparableHamiltonianODE ode) {
+    return composition(ode, YOSHIDA4);
+  }
+
+  /**
+   * Creates Yoshida's sixth order composition of the velocity Verlet method (solution A).
+   * @param ode the system
+   * @return the solver
+   */
+  public static SymplecticSolver Yoshida6(SeparableHamiltonianODE ode) {
+    return composition(ode, YOSHIDA6);
+  }
+
+  /**
+   * Creates Yoshida's eighth order composition of the velocity Verlet method (solution D).
+   * @param ode the system
+   * @return the solver
+   */
+  public static SymplecticSolver Yoshida8(SeparableHamiltonianODE ode) {
+    return composition(ode, YOSHIDA8);
+  }
+
+  /**
+   * Creates the position extended Forest-Ruth like method of Omelyan, Mryglod and Folk.
+   * @param ode the system
+   * @return the solver
+   */
+  public static SymplecticSolver PEFRL(SeparableHamiltonianODE ode) {
+    double xi = PEFRL_XI, lambda = PEFRL_LAMBDA, chi = PEFRL_CHI;
+    double[] drift = {xi, chi, 1-2*(chi+xi), chi, xi};
+    double[] kick = {(1-2*lambda)/2, lambda, lambda, (1-2*lambda)/2};
+    return new SymplecticSolver(ode, drift, kick, false);
+  }
+
+  /**
+   * Creates the symmetric composition S(w[0]) ... S(w[m-1]) S(w0) S(w[m-1]) ... S(w[0]) of velocity Verlet steps
+   * S(w) = K(w/2) D(w) K(w/2) with w0 = 1-2*sum(w).  Adjacent kicks are merged.
+   */
+  static SymplecticSolver composition(SeparableHamiltonianODE ode, double[] w) {
+    int m = w.length;
+    double[] weights = new double[2*m+1];
+    double w0 = 1;
+    for(int i = 0; i<m; i++) {
+      weights[i] = weights[2*m-i] = w[i];
+      w0 -= 2*w[i];
+    }
+    weights[m] = w0;
+    double[] kick = new double[weights.length+1];
+    for(int i = 0; i<weights.length; i++) {
+      kick[i] += weights[i]/2;
+      kick[i+1] += weights[i]/2;
+    }
+    return new SymplecticSolver(ode, weights, kick, true);
+  }
+
+  /**
+   * Initializes the solver.  The arrays are allocated and the acceleration is computed at the next step.
+   *
+   * @param stepSize the step size
+   */
+  public void initialize(double stepSize) {
+    this.stepSize = stepSize;
+    double[] q = ode.getPositions();
+    numEqn = (q==null) ? 0 : q.length;
+    acceleration = new double[numEqn];
+    accelerationPositions = new double[numEqn];
+    accelerationValid = false;
+  }
+
+  /**
+   * Steps the positions and velocities by the step size.
+   *
+   * @return the step size
+   */
+  public double step() {
+    double[] q = ode.getPositions();
+    double[] v = ode.getVelocities();
+    if(q.length!=numEqn) {
+      initialize(stepSize);
+    }
+    if(statistics!=null) {
+      statistics.stepStarted();
+    }
+    double h = stepSize;
+    if(kickFirst) {
+      if(!accelerationValid||!samePositions(q)) {
+        computeAcceleration(q);
+      }
+      advanceVelocities(v, kick[0]*h);
+      for(int s = 0; s<drift.length; s++) {
+        advancePositions(q, v, drift[s]*h);
+        computeAcceleration(q);
+        advanceVelocities(v, kick[s+1]*h);
+      }
+      System.arraycopy(q, 0, accelerationPositions, 0, numEqn);
+      accelerationValid = true;
+    } else {
+      for(int s = 0; s<kick.length; s++) {
+        advancePositions(q, v, drift[s]*h);
+        computeAcceleration(q);
+        advanceVelocities(v, kick[s]*h);
+      }
+      advancePositions(q, v, drift[kick.length]*h);
+    }
+    if(statistics!=null) {
+      statistics.stepFinished(h);
+    }
+    return h;
+  }
+
+  private void advancePositions(double[] q, double[] v, double c) {
+    for(int i = 0; i<numEqn; i++) {
+      q[i] += c*v[i];
+    }
+  }
+
+  private void advanceVelocities(double[] v, double c) {
+    for(int i = 0; i<numEqn; i++) {
+      v[i] += c*acceleration[i];
+    }
+  }
+
+  private void computeAcceleration(double[] q) {
+    if(statistics==null) {
+      ode.getAccelerations(q, acceleration);
+    } else {
+      long start = statistics.rateStarted();
+      ode.getAccelerations(q, acceleration);
+      statistics.rateFinished(start);
+    }
+  }
+
+  /**
+   * Checks if the positions are those at which the acceleration was computed.
+   */
+  private boolean samePositions(double[] q) {
+    for(int i = 0; i<numEqn; i++) {
+      if(q[i]!=accelerationPositions[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Gets the number of force evaluations per step, not counting the evaluation at the start of a run.
+   *
+   * @return the number of force evaluations
+   */
+  public int getForceEvaluationsPerStep() {
+    return kickFirst ? drift.length : kick.length;
+  }
+
+  public void setStepSize(double stepSize) {
+    this.stepSize = stepSize;
+  }
+
+  public double getStepSize() {
+    return stepSize;
+  }
+
+  /**
+   * Enables or disables the collection of statistics.  Force evaluations are counted as rate evaluations.
+   * @param enabled true to collect statistics
+   */
+  public void setStatisticsEnabled(boolean enabled) {
+    if(enabled==(statistics!=null)) {
+      return;
+    }
+    statistics = enabled ? new ODESolverStatistics() : null;
+  }
+
+  /**
+   * Gets the statistics.
+   * @return the statistics or null if they are disabled
+   */
+  public ODESolverStatistics getStatistics() {
+    return statistics;
+  }
+
+}
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */
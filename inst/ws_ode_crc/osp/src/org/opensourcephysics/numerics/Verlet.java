@@ -6,7 +6,6 @@
  */
 
 package org.opensourcephysics.numerics;
-import java.util.Arrays; // added by ARR
 
 /**
  * Verlet:  A velocity Verlet method ODE solver.
@@ -93,7 +92,9 @@ public class Verlet extends AbstractODESolver {
   public double step() {
     // state[]: x1, d x1/dt, x2, d x2/dt .... xN, d xN/dt, t
     double[] state = ode.getState();
-    System.out.print("state:"); System.out.println(Arrays.toString(state));
+    if(statistics!=null) {
+      statistics.stepStarted();
+    }
     if(state.length!=numEqn) {
       initialize(stepSize);
     }
@@ -114,6 +115,9 @@ public class Verlet extends AbstractODESolver {
     if(numEqn%2==1) {                              // last equation if  we have an odd number of equations
       state[numEqn-1] += stepSize*rate1[numEqn-1]; // usually the independent variable
     }
+    if(statistics!=null) {
+      statistics.stepFinished(stepSize);
+    }
     return stepSize;
   }
 
@@ -0,0 +1,142 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+package org.opensourcephysics.numerics.random;
+
+/**
+ * PCG32 is the pcg32 generator of O'Neill, a 64 bit linear congruential generator whose output is
+ * permuted by a xorshift and a random rotation (XSH RR).
+ *
+ * It produces 32 bits per step and has a period of 2^64.  Every odd increment of the congruential
+ * generator selects a different stream, and advance jumps ahead by any number of steps in O(log n)
+ * operations.  split creates a generator on a new stream.
+ *
+ * Reference: M. E. O'Neill, PCG: a family of simple fast space-efficient statistically good algorithms for
+ * random number generation, Harvey Mudd College HMC-CS-2014-0905 (2014).
+ *
+ * @version 1.0
+ */
+public class PCG32 extends RandomGenerator {
+  private static final long MULTIPLIER = 6364136223846793005L;
+  private long state, increment;
+
+  /**
+   * Constructs a generator with a seed and a stream that differ for every generator.
+   */
+  public PCG32() {
+    this(newSeed(), newSeed());
+  }
+
+  /**
+   * Constructs a generator on the default stream.
+   *
+   * @param seed the seed
+   */
+  public PCG32(long seed) {
+    this(seed, 0xda3e39cb94b95bdbL);
+  }
+
+  /**
+   * Constructs a generator.
+   *
+   * @param seed the seed
+   * @param stream the stream, only the lower 63 bits are used
+   */
+  public PCG32(long seed, long stream) {
+    increment = (stream<<1)|1;
+    setSeed(seed);
+  }
+
+  private PCG32(PCG32 generator) {
+    state = generator.state;
+    increment = generator.increment;
+  }
+
+  /**
+   * Sets the seed and keeps the stream.
+   *
+   * @param seed the seed
+   */
+  public void setSeed(long seed) {
+    state = 0;
+    nextInt();
+    state += seed;
+    nextInt();
+    clearGaussian();
+  }
+
+  public final int nextInt() {
+    long old = state;
+    state = old*MULTIPLIER+increment;
+    int xorshifted = (int) (((old>>>18)^old)>>>27);
+    return Integer.rotateRight(xorshifted, (int) (old>>>59));
+  }
+
+  public long nextLong() {
+    return ((long) nextInt()<<32)|(nextInt()&0xffffffffL);
+  }
+
+  /**
+   * Advances the state by the given number of steps, which may be negative.
+   *
+   * @param delta the number of steps
+   */
+  public void advance(long delta) {
+    long accMultiplier = 1, accIncrement = 0;
+    long multiplier = MULTIPLIER, plus = increment;
+    while(delta!=0) {
+      if((delta&1)!=0) {
+        accMultiplier *= multiplier;
+        accIncrement = accIncrement*multiplier+plus;
+      }
+      plus = (multiplier+1)*plus;
+      multiplier *= multiplier;
+      delta >>>= 1;
+    }
+    state = accMultiplier*state+accIncrement;
+  }
+
+  /**
+   * Creates a generator on a new stream, whose seed and stream are drawn from this generator.
+   *
+   * @return the new generator
+   */
+  public RandomGenerator split() {
+    long seed = nextLong();
+    return new PCG32(seed, nextLong());
+  }
+
+  public RandomGenerator copy() {
+    return new PCG32(this);
+  }
+
+}
+
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */
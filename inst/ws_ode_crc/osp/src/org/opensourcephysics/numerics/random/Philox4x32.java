@@ -0,0 +1,184 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+package org.opensourcephysics.numerics.random;
+
+/**
+ * Philox4x32 is the counter based Philox4x32-10 generator of Salmon et al.
+ *
+ * The numbers are a bijective function of a 128 bit counter and a 64 bit key, so any position of any
+ * stream can be computed without the numbers before it.  Every counter gives four 32 bit words.  The key
+ * selects the stream; split creates a generator whose key is a hash of the key and of the number of the
+ * split, so that nested splits and generators with nearby keys have different streams.  Philox passes the
+ * BigCrush tests.
+ *
+ * Reference: J. K. Salmon, M. A. Moraes, R. O. Dror, D. E. Shaw, Parallel random numbers: as easy as
+ * 1, 2, 3, Proceedings of SC11 (2011).
+ *
+ * @version 1.0
+ */
+public class Philox4x32 extends RandomGenerator {
+  private static final long M0 = 0xD2511F53L, M1 = 0xCD9E8D57L;
+  private static final int W0 = 0x9E3779B9, W1 = 0xBB67AE85;
+  private int key0, key1;
+  private int c0, c1, c2, c3;         // the counter of the next block
+  private final int[] block = new int[4];
+  private int index = 4;              // the next word of the block, 4 if the block is used up
+  private long splitKey;              // the hashed key from which the keys of the splits are derived
+  private long splits;                // the number of splits
+
+  /**
+   * Constructs a generator with a key that differs for every generator.
+   */
+  public Philox4x32() {
+    this(newSeed());
+  }
+
+  /**
+   * Constructs a generator with the given key and a zero counter.
+   *
+   * @param key the key
+   */
+  public Philox4x32(long key) {
+    setSeed(key);
+  }
+
+  /**
+   * Sets the key and resets the counter.
+   *
+   * @param key the key
+   */
+  public void setSeed(long key) {
+    key0 = (int) key;
+    key1 = (int) (key>>>32);
+    splitKey = mix64(key);
+    splits = 0;
+    setPosition(0, 0);
+    clearGaussian();
+  }
+
+  /**
+   * Sets the counter.  The next word is the first word of the block of the counter.
+   *
+   * @param low the lower 64 bits of the counter
+   * @param high the upper 64 bits of the counter
+   */
+  public void setPosition(long low, long high) {
+    c0 = (int) low;
+    c1 = (int) (low>>>32);
+    c2 = (int) high;
+    c3 = (int) (high>>>32);
+    index = 4;
+  }
+
+  /**
+   * Advances the counter by a number of blocks of four words.
+   *
+   * @param blocks the number of blocks
+   */
+  public void skip(long blocks) {
+    long low = (c0&0xffffffffL)|((long) c1<<32);
+    long sum = low+blocks;
+    long high = (c2&0xffffffffL)|((long) c3<<32);
+    if((sum^Long.MIN_VALUE)<(low^Long.MIN_VALUE)) { // the lower half overflowed
+      high++;
+    }
+    c0 = (int) sum;
+    c1 = (int) (sum>>>32);
+    c2 = (int) high;
+    c3 = (int) (high>>>32);
+  }
+
+  /**
+   * Computes the block of the counter and increments the counter.
+   */
+  private void nextBlock() {
+    int x0 = c0, x1 = c1, x2 = c2, x3 = c3;
+    int k0 = key0, k1 = key1;
+    for(int round = 0; round<10; round++) {
+      long p0 = M0*(x0&0xffffffffL), p1 = M1*(x2&0xffffffffL);
+      int y0 = (int) (p1>>>32)^x1^k0;
+      int y1 = (int) p1;
+      int y2 = (int) (p0>>>32)^x3^k1;
+      int y3 = (int) p0;
+      x0 = y0;
+      x1 = y1;
+      x2 = y2;
+      x3 = y3;
+      k0 += W0;
+      k1 += W1;
+    }
+    block[0] = x0;
+    block[1] = x1;
+    block[2] = x2;
+    block[3] = x3;
+    index = 0;
+    if(++c0==0&&++c1==0&&++c2==0) {
+      ++c3;
+    }
+  }
+
+  public final int nextInt() {
+    if(index==4) {
+      nextBlock();
+    }
+    return block[index++];
+  }
+
+  public long nextLong() {
+    return ((long) nextInt()<<32)|(nextInt()&0xffffffffL);
+  }
+
+  /**
+   * Creates a generator with a new key.  The n-th split of a generator with key k has the key
+   * mix64(mix64(k)+n*0x9e3779b97f4a7c15), where mix64 is the SplitMix64 finalizer, so the keys of
+   * different generators and of their splits do not repeat in practice.
+   *
+   * @return the new generator
+   */
+  public RandomGenerator split() {
+    return new Philox4x32(mix64(splitKey+(++splits)*0x9e3779b97f4a7c15L));
+  }
+
+  public RandomGenerator copy() {
+    Philox4x32 generator = new Philox4x32((key0&0xffffffffL)|((long) key1<<32));
+    generator.c0 = c0;
+    generator.c1 = c1;
+    generator.c2 = c2;
+    generator.c3 = c3;
+    System.arraycopy(block, 0, generator.block, 0, 4);
+    generator.index = index;
+    generator.splits = splits;
+    return generator;
+  }
+
+}
+
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */
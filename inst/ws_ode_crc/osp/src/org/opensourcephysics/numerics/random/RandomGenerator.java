@@ -0,0 +1,218 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+package org.opensourcephysics.numerics.random;
+
+/**
+ * RandomGenerator is the base class of the fast pseudo random number generators of this package.
+ *
+ * The generators are not synchronized.  Every thread must use its own generator, and the generators of a
+ * parallel run are obtained with split, so that the run can be reproduced from a single seed:
+ * <pre>
+ * RandomGenerator master = new Xoshiro256StarStar(seed);
+ * RandomGenerator[] streams = master.split(numberOfTasks); // stream i belongs to task i
+ * </pre>
+ *
+ * The streams are assigned to tasks rather than to threads so that the result does not depend on the
+ * scheduling.  Subclasses generate 64 random bits in nextLong; the other methods derive their values from
+ * these bits.
+ *
+ * @version 1.0
+ */
+public abstract class RandomGenerator {
+  private double nextGaussian;
+  private boolean haveNextGaussian = false;
+
+  /**
+   * Gets 64 random bits.
+   *
+   * @return the bits
+   */
+  public abstract long nextLong();
+
+  /**
+   * Sets the seed.  Equal seeds give equal sequences.
+   *
+   * @param seed the seed
+   */
+  public abstract void setSeed(long seed);
+
+  /**
+   * Creates a generator for a new stream that does not overlap with the rest of the stream of this
+   * generator.  This generator is advanced.
+   *
+   * @return the new generator
+   */
+  public abstract RandomGenerator split();
+
+  /**
+   * Creates a generator that produces the same sequence as this generator.
+   *
+   * @return the copy
+   */
+  public abstract RandomGenerator copy();
+
+  /**
+   * Creates generators for independent streams, one for every task of a parallel run.
+   *
+   * @param n the number of streams
+   * @return the generators
+   */
+  public RandomGenerator[] split(int n) {
+    RandomGenerator[] streams = new RandomGenerator[n];
+    for(int i = 0; i<n; i++) {
+      streams[i] = split();
+    }
+    return streams;
+  }
+
+  /**
+   * Gets 32 random bits.
+   *
+   * @return the bits
+   */
+  public int nextInt() {
+    return (int) (nextLong()>>>32);
+  }
+
+  /**
+   * Gets a uniformly distributed integer in [0, bound).  The result is unbiased, it uses the multiply and
+   * reject method of Lemire, which rarely needs more than one draw.
+   *
+   * @param bound the upper bound, must be positive
+   * @return the integer
+   */
+  public int nextInt(int bound) {
+    if(bound<=0) {
+      throw new IllegalArgumentException("The bound must be positive."); //$NON-NLS-1$
+    }
+    long m = (nextInt()&0xffffffffL)*bound;
+    long low = m&0xffffffffL;
+    if(low<bound) {
+      long threshold = (1L<<32)%bound;
+      while(low<threshold) {
+        m = (nextInt()&0xffffffffL)*bound;
+        low = m&0xffffffffL;
+      }
+    }
+    return (int) (m>>>32);
+  }
+
+  /**
+   * Gets a uniformly distributed double in [0, 1) with 53 random bits.
+   *
+   * @return the double
+   */
+  public double nextDouble() {
+    return (nextLong()>>>11)*0x1.0p-53;
+  }
+
+  public boolean nextBoolean() {
+    return nextLong()<0;
+  }
+
+  /**
+   * Gets a normally distributed double with mean 0 and standard deviation 1 by the polar method.
+   *
+   * @return the double
+   */
+  public double nextGaussian() {
+    if(haveNextGaussian) {
+      haveNextGaussian = false;
+      return nextGaussian;
+    }
+    double v1, v2, s;
+    do {
+      v1 = 2*nextDouble()-1;
+      v2 = 2*nextDouble()-1;
+      s = v1*v1+v2*v2;
+    } while((s>=1)||(s==0));
+    double multiplier = Math.sqrt(-2*Math.log(s)/s);
+    nextGaussian = v2*multiplier;
+    haveNextGaussian = true;
+    return v1*multiplier;
+  }
+
+  /**
+   * Fills an array with uniformly distributed doubles in [0, 1).
+   *
+   * @param a the array
+   */
+  public void fill(double[] a) {
+    fill(a, 0, a.length);
+  }
+
+  /**
+   * Fills a range of an array with uniformly distributed doubles in [0, 1).
+   *
+   * @param a the array
+   * @param from the first index
+   * @param to the index after the last index
+   */
+  public void fill(double[] a, int from, int to) {
+    for(int i = from; i<to; i++) {
+      a[i] = nextDouble();
+    }
+  }
+
+  /**
+   * Clears the saved value of the polar method, used by subclasses when the state is set.
+   */
+  protected void clearGaussian() {
+    haveNextGaussian = false;
+  }
+
+  /**
+   * Mixes a seed into well distributed bits by the SplitMix64 generator.
+   *
+   * @param z the seed
+   * @return the bits
+   */
+  static long mix64(long z) {
+    z = (z^(z>>>30))*0xbf58476d1ce4e5b9L;
+    z = (z^(z>>>27))*0x94d049bb133111ebL;
+    return z^(z>>>31);
+  }
+
+  private static long seedUniquifier = 0x5851f42d4c957f2dL;
+
+  /**
+   * Gets a seed that differs for every call, used by the constructors without a seed.
+   *
+   * @return the seed
+   */
+  static synchronized long newSeed() {
+    seedUniquifier += 0x9e3779b97f4a7c15L;
+    return mix64(seedUniquifier^System.nanoTime());
+  }
+
+}
+
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */
@@ -0,0 +1,180 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+package org.opensourcephysics.numerics.random;
+
+/**
+ * Xoshiro256StarStar is the xoshiro256** generator of Blackman and Vigna.
+ *
+ * It has a state of 256 bits, a period of 2^256-1 and passes the BigCrush tests.  A step costs a few
+ * shifts, xors and two multiplications.  jump advances the state by 2^128 steps, so split hands out
+ * streams of 2^128 numbers that do not overlap.
+ *
+ * Reference: D. Blackman, S. Vigna, Scrambled linear pseudorandom number generators,
+ * ACM Trans. Math. Softw. 47 (2021) 36.
+ *
+ * @version 1.0
+ */
+public class Xoshiro256StarStar extends RandomGenerator {
+  private static final long[] JUMP = {0x180ec6d33cfd0abaL, 0xd5a61266f0c9392cL, 0xa9582618e03fc9aaL, 0x39abdc4529b1661cL};
+  private static final long[] LONG_JUMP = {0x76e15d3efefdcbbfL, 0xc5004e441c522fb3L, 0x77710069854ee241L, 0x39109bb02acbe635L};
+  private long s0, s1, s2, s3;
+
+  /**
+   * Constructs a generator with a seed that differs for every generator.
+   */
+  public Xoshiro256StarStar() {
+    setSeed(newSeed());
+  }
+
+  /**
+   * Constructs a generator with the given seed.
+   *
+   * @param seed the seed
+   */
+  public Xoshiro256StarStar(long seed) {
+    setSeed(seed);
+  }
+
+  /**
+   * Constructs a generator with the given state, which must not be all zero.
+   *
+   * @param s0 long
+   * @param s1 long
+   * @param s2 long
+   * @param s3 long
+   */
+  public Xoshiro256StarStar(long s0, long s1, long s2, long s3) {
+    if((s0|s1|s2|s3)==0) {
+      throw new IllegalArgumentException("The state must not be zero."); //$NON-NLS-1$
+    }
+    this.s0 = s0;
+    this.s1 = s1;
+    this.s2 = s2;
+    this.s3 = s3;
+  }
+
+  /**
+   * Sets the state from the seed by the SplitMix64 generator.
+   *
+   * @param seed the seed
+   */
+  public void setSeed(long seed) {
+    long z = seed;
+    s0 = mix64(z += 0x9e3779b97f4a7c15L);
+    s1 = mix64(z += 0x9e3779b97f4a7c15L);
+    s2 = mix64(z += 0x9e3779b97f4a7c15L);
+    s3 = mix64(z += 0x9e3779b97f4a7c15L);
+    clearGaussian();
+  }
+
+  public final long nextLong() {
+    long result = Long.rotateLeft(s1*5, 7)*9;
+    long t = s1<<17;
+    s2 ^= s0;
+    s3 ^= s1;
+    s1 ^= s2;
+    s0 ^= s3;
+    s2 ^= t;
+    s3 = Long.rotateLeft(s3, 45);
+    return result;
+  }
+
+  public void fill(double[] a, int from, int to) {
+    long s0 = this.s0, s1 = this.s1, s2 = this.s2, s3 = this.s3;
+    for(int i = from; i<to; i++) {
+      long result = Long.rotateLeft(s1*5, 7)*9;
+      long t = s1<<17;
+      s2 ^= s0;
+      s3 ^= s1;
+      s1 ^= s2;
+      s0 ^= s3;
+      s2 ^= t;
+      s3 = Long.rotateLeft(s3, 45);
+      a[i] = (result>>>11)*0x1.0p-53;
+    }
+    this.s0 = s0;
+    this.s1 = s1;
+    this.s2 = s2;
+    this.s3 = s3;
+  }
+
+  /**
+   * Advances the state by 2^128 steps.
+   */
+  public void jump() {
+    jump(JUMP);
+  }
+
+  /**
+   * Advances the state by 2^192 steps, used to give every process of a distributed run its own set of
+   * 2^64 jump streams.
+   */
+  public void longJump() {
+    jump(LONG_JUMP);
+  }
+
+  private void jump(long[] polynomial) {
+    long t0 = 0, t1 = 0, t2 = 0, t3 = 0;
+    for(int i = 0; i<polynomial.length; i++) {
+      for(int b = 0; b<64; b++) {
+        if((polynomial[i]&(1L<<b))!=0) {
+          t0 ^= s0;
+          t1 ^= s1;
+          t2 ^= s2;
+          t3 ^= s3;
+        }
+        nextLong();
+      }
+    }
+    s0 = t0;
+    s1 = t1;
+    s2 = t2;
+    s3 = t3;
+  }
+
+  /**
+   * Creates a generator at the current state and jumps this generator ahead by 2^128 steps.
+   *
+   * @return the new generator
+   */
+  public RandomGenerator split() {
+    RandomGenerator stream = copy();
+    jump();
+    return stream;
+  }
+
+  public RandomGenerator copy() {
+    return new Xoshiro256StarStar(s0, s1, s2, s3);
+  }
+
+}
+
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */
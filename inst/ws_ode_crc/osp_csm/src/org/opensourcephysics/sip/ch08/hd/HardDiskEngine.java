@@ -0,0 +1,450 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+package org.opensourcephysics.sip.ch08.hd;
+import org.opensourcephysics.numerics.*;
+
+/**
+ * HardDiskEngine does event driven molecular dynamics of hard disks of unit diameter in a periodic box.
+ *
+ * The box is divided into cells that are at least one diameter wide, so that a disk can only hit the disks in
+ * its own and the eight adjacent cells.  Every disk has one predicted event, the earlier of its first collision
+ * with a disk of these cells and the time at which it leaves its cell.  The events are kept in an indexed
+ * binary heap ordered by time.  After a collision only the two disks are predicted again; the events of other
+ * disks that were going to hit one of them are recognized as outdated by the collision counters when they
+ * reach the top of the heap.  A collision therefore costs O(log N) operations.
+ *
+ * Every disk is moved only at its own events, so that its position x[i], y[i] is valid at its local time.
+ * Use getX and getY or synchronize to get the positions at the current time.
+ *
+ * Reference: D. C. Rapaport, The Art of Molecular Dynamics Simulation, Cambridge University Press 2004.
+ *
+ * @version 1.0
+ */
+public class HardDiskEngine {
+  static final int NONE = -1, CROSS_X = -2, CROSS_Y = -3;
+  double[] x, y, vx, vy;
+  int N;
+  double Lx, Ly;
+  double time = 0;
+  double[] localTime;
+  int[] collisions;    // number of collisions of every disk, used to detect outdated events
+  // cells
+  int ncx, ncy;
+  double cellWidth, cellHeight;
+  int[] cellX, cellY;  // the cell of every disk
+  int[] head, next, previous;
+  // predicted events
+  double[] eventTime;
+  int[] eventPartner;  // a disk or one of NONE, CROSS_X, CROSS_Y
+  int[] partnerCollisions;
+  // indexed heap
+  int[] heap;
+  int[] heapIndex;
+  // the last collision
+  int collider, partner;
+  double virial;
+
+  /**
+   * Constructs the engine.  The engine moves the disks in the given arrays.
+   *
+   * @param x the x coordinates
+   * @param y the y coordinates
+   * @param vx the x components of the velocities
+   * @param vy the y components of the velocities
+   * @param Lx the width of the box
+   * @param Ly the height of the box
+   */
+  public HardDiskEngine(double[] x, double[] y, double[] vx, double[] vy, double Lx, double Ly) {
+    this.x = x;
+    this.y = y;
+    this.vx = vx;
+    this.vy = vy;
+    this.Lx = Lx;
+    this.Ly = Ly;
+    N = x.length;
+    localTime = new double[N];
+    collisions = new int[N];
+    eventTime = new double[N];
+    eventPartner = new int[N];
+    partnerCollisions = new int[N];
+    heap = new int[N];
+    heapIndex = new int[N];
+    ncx = (int) Math.floor(Lx);
+    ncy = (int) Math.floor(Ly);
+    if((ncx<3)||(ncy<3)) { // all disks are neighbors and the periodic images are tested
+      ncx = ncy = 1;
+    }
+    cellWidth = Lx/ncx;
+    cellHeight = Ly/ncy;
+    cellX = new int[N];
+    cellY = new int[N];
+    head = new int[ncx*ncy];
+    next = new int[N];
+    previous = new int[N];
+    for(int c = 0;c<head.length;c++) {
+      head[c] = -1;
+    }
+    for(int i = 0;i<N;i++) {
+      x[i] = PBC.position(x[i], Lx);
+      y[i] = PBC.position(y[i], Ly);
+      cellX[i] = Math.min((int) (x[i]/cellWidth), ncx-1);
+      cellY[i] = Math.min((int) (y[i]/cellHeight), ncy-1);
+      insert(i);
+    }
+    for(int i = 0;i<N;i++) {
+      predict(i);
+      heap[i] = i;
+      heapIndex[i] = i;
+    }
+    for(int k = N/2-1;k>=0;k--) {
+      siftDown(k);
+    }
+  }
+
+  /**
+   * Processes events until two disks collide.
+   *
+   * @return false if no collision will happen
+   */
+  public boolean nextCollision() {
+    if(N<2) {
+      return false;
+    }
+    while(true) {
+      int i = heap[0];
+      int j = eventPartner[i];
+      if(eventTime[i]==Double.POSITIVE_INFINITY) {
+        return false; // no disks approach each other
+      }
+      time = eventTime[i];
+      if(j>=0) {
+        if(collisions[j]==partnerCollisions[i]) {
+          advance(j);
+          advance(i);
+          collide(i, j);
+          predict(i);
+          update(i);
+          predict(j);
+          update(j);
+          return true;
+        }
+        advance(i); // j has collided since the event was predicted
+      } else if(j==CROSS_X) {
+        advance(i);
+        crossX(i);
+      } else if(j==CROSS_Y) {
+        advance(i);
+        crossY(i);
+      } else {
+        advance(i);
+      }
+      predict(i);
+      update(i);
+    }
+  }
+
+  /**
+   * Moves a disk to the current time.
+   */
+  void advance(int i) {
+    double dt = time-localTime[i];
+    x[i] += vx[i]*dt;
+    y[i] += vy[i]*dt;
+    localTime[i] = time;
+    if(ncx==1) {
+      x[i] = PBC.position(x[i], Lx);
+      y[i] = PBC.position(y[i], Ly);
+    }
+  }
+
+  /**
+   * Changes the velocities of two disks at contact.
+   */
+  void collide(int i, int j) {
+    double dx = PBC.separation(x[i]-x[j], Lx);
+    double dy = PBC.separation(y[i]-y[j], Ly);
+    double dvx = vx[i]-vx[j];
+    double dvy = vy[i]-vy[j];
+    double factor = (dx*dvx+dy*dvy)/(dx*dx+dy*dy);
+    double delvx = -factor*dx;
+    double delvy = -factor*dy;
+    vx[i] += delvx;
+    vy[i] += delvy;
+    vx[j] -= delvx;
+    vy[j] -= delvy;
+    virial = delvx*dx+delvy*dy;
+    collisions[i]++;
+    collisions[j]++;
+    collider = i;
+    partner = j;
+  }
+
+  /**
+   * Moves a disk into the next cell in x.  The disk is placed on the boundary of the new cell.
+   */
+  void crossX(int i) {
+    remove(i);
+    if(vx[i]>0) {
+      cellX[i] = (cellX[i]==ncx-1) ? 0 : cellX[i]+1;
+      x[i] = cellX[i]*cellWidth;
+    } else {
+      x[i] = (cellX[i]==0) ? Lx : cellX[i]*cellWidth;
+      cellX[i] = (cellX[i]==0) ? ncx-1 : cellX[i]-1;
+    }
+    insert(i);
+  }
+
+  /**
+   * Moves a disk into the next cell in y.
+   */
+  void crossY(int i) {
+    remove(i);
+    if(vy[i]>0) {
+      cellY[i] = (cellY[i]==ncy-1) ? 0 : cellY[i]+1;
+      y[i] = cellY[i]*cellHeight;
+    } else {
+      y[i] = (cellY[i]==0) ? Ly : cellY[i]*cellHeight;
+      cellY[i] = (cellY[i]==0) ? ncy-1 : cellY[i]-1;
+    }
+    insert(i);
+  }
+
+  /**
+   * Finds the next event of a disk that is at the current time.
+   */
+  void predict(int i) {
+    double best = Double.POSITIVE_INFINITY;
+    int type = NONE, other = -1;
+    if(ncx>1) {
+      if(vx[i]!=0) {
+        double boundary = (vx[i]>0) ? (cellX[i]+1)*cellWidth : cellX[i]*cellWidth;
+        best = Math.max(0, (boundary-x[i])/vx[i]);
+        type = CROSS_X;
+      }
+      if(vy[i]!=0) {
+        double boundary = (vy[i]>0) ? (cellY[i]+1)*cellHeight : cellY[i]*cellHeight;
+        double ty = Math.max(0, (boundary-y[i])/vy[i]);
+        if(ty<best) {
+          best = ty;
+          type = CROSS_Y;
+        }
+      }
+      for(int ix = cellX[i]-1;ix<=cellX[i]+1;ix++) {
+        int col = (ix<0) ? ix+ncx : (ix>=ncx) ? ix-ncx : ix;
+        for(int iy = cellY[i]-1;iy<=cellY[i]+1;iy++) {
+          int row = (iy<0) ? iy+ncy : (iy>=ncy) ? iy-ncy : iy;
+          for(int j = head[col+ncx*row];j>=0;j = next[j]) {
+            if(j!=i) {
+              double tij = collisionTime(i, j, PBC.separation(x[i]-getX(j), Lx), PBC.separation(y[i]-getY(j), Ly));
+              if(tij<best) {
+                best = tij;
+                other = j;
+              }
+            }
+          }
+        }
+      }
+    } else { // a small box, test the periodic images as well
+      for(int j = 0;j<N;j++) {
+        if(j==i) {
+          continue;
+        }
+        double dx = PBC.separation(x[i]-getX(j), Lx), dy = PBC.separation(y[i]-getY(j), Ly);
+        for(int xCell = -1;xCell<=1;xCell++) {
+          for(int yCell = -1;yCell<=1;yCell++) {
+            double tij = collisionTime(i, j, dx+xCell*Lx, dy+yCell*Ly);
+            if(tij<best) {
+              best = tij;
+              other = j;
+            }
+          }
+        }
+      }
+    }
+    if(other>=0) {
+      type = other;
+      partnerCollisions[i] = collisions[other];
+    }
+    eventTime[i] = time+best;
+    eventPartner[i] = type;
+  }
+
+  /**
+   * Computes the time until two approaching disks touch.
+   */
+  double collisionTime(int i, int j, double dx, double dy) {
+    double dvx = vx[i]-vx[j];
+    double dvy = vy[i]-vy[j];
+    double bij = dx*dvx+dy*dvy;
+    if(bij>=0) {
+      return Double.POSITIVE_INFINITY;
+    }
+    double v2 = dvx*dvx+dvy*dvy;
+    double discriminant = bij*bij-v2*(dx*dx+dy*dy-1);
+    if(discriminant<=0) {
+      return Double.POSITIVE_INFINITY;
+    }
+    return Math.max(0, (-bij-Math.sqrt(discriminant))/v2);
+  }
+
+  /**
+   * Gets the x coordinate of a disk at the current time.
+   *
+   * @param i the disk
+   * @return the coordinate
+   */
+  public double getX(int i) {
+    return x[i]+vx[i]*(time-localTime[i]);
+  }
+
+  /**
+   * Gets the y coordinate of a disk at the current time.
+   *
+   * @param i the disk
+   * @return the coordinate
+   */
+  public double getY(int i) {
+    return y[i]+vy[i]*(time-localTime[i]);
+  }
+
+  /**
+   * Moves all disks to the current time.
+   */
+  public void synchronize() {
+    for(int i = 0;i<N;i++) {
+      advance(i);
+    }
+  }
+
+  public double getTime() {
+    return time;
+  }
+
+  /**
+   * Gets the first disk of the last collision.
+   *
+   * @return the disk
+   */
+  public int getCollider() {
+    return collider;
+  }
+
+  /**
+   * Gets the second disk of the last collision.
+   *
+   * @return the disk
+   */
+  public int getPartner() {
+    return partner;
+  }
+
+  /**
+   * Gets the virial r.dv of the last collision.
+   *
+   * @return the virial
+   */
+  public double getVirial() {
+    return virial;
+  }
+
+  private void insert(int i) {
+    int c = cellX[i]+ncx*cellY[i];
+    previous[i] = -1;
+    next[i] = head[c];
+    if(head[c]>=0) {
+      previous[head[c]] = i;
+    }
+    head[c] = i;
+  }
+
+  private void remove(int i) {
+    if(previous[i]>=0) {
+      next[previous[i]] = next[i];
+    } else {
+      head[cellX[i]+ncx*cellY[i]] = next[i];
+    }
+    if(next[i]>=0) {
+      previous[next[i]] = previous[i];
+    }
+  }
+
+  /**
+   * Restores the heap order after the event time of a disk has changed.
+   */
+  private void update(int i) {
+    int k = heapIndex[i];
+    if((k>0)&&(eventTime[heap[(k-1)/2]]>eventTime[i])) {
+      siftUp(k);
+    } else {
+      siftDown(k);
+    }
+  }
+
+  private void siftUp(int k) {
+    int i = heap[k];
+    double t = eventTime[i];
+    while(k>0) {
+      int parent = (k-1)/2;
+      if(eventTime[heap[parent]]<=t) {
+        break;
+      }
+      heap[k] = heap[parent];
+      heapIndex[heap[k]] = k;
+      k = parent;
+    }
+    heap[k] = i;
+    heapIndex[i] = k;
+  }
+
+  private void siftDown(int k) {
+    int i = heap[k];
+    double t = eventTime[i];
+    while(true) {
+      int child = 2*k+1;
+      if(child>=N) {
+        break;
+      }
+      if((child+1<N)&&(eventTime[heap[child+1]]<eventTime[heap[child]])) {
+        child++;
+      }
+      if(eventTime[heap[child]]>=t) {
+        break;
+      }
+      heap[k] = heap[child];
+      heapIndex[heap[k]] = k;
+      k = child;
+    }
+    heap[k] = i;
+    heapIndex[i] = k;
+  }
+}
+
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */
@@ -13,13 +13,14 @@ import org.opensourcephysics.numerics.*;
 /**
  * HardDisks evolves a two-dimensional system of hard disks.
  *
+ * The collisions are found by a HardDiskEngine, which keeps the predicted events in a priority queue and
+ * searches for collision partners in cells, so that a collision costs O(log N) operations.
+ *
  * @author Jan Tobochnik, Wolfgang Christian, Harvey Gould
- * @version 1.1 revised 04/04/2006
+ * @version 1.2 event queue and cells
  */
 public class HardDisks implements Drawable {
-  public double x[], y[], vx[], vy[];
-  public double collisionTime[];
-  public int partner[];
+  public double x[], y[], vx[], vy[]; // positions at the last event of every disk
   public int N;
   public double Lx;
   public double Ly;
@@ -27,9 +28,10 @@ public class HardDisks implements Drawable {
   public int nextCollider, nextPartner;
   public double timeToCollision;
   public double t = 0;
-  public double bigTime = 1.0E10;
   public double temperature;
   public int numberOfCollisions = 0;
+  HardDiskEngine engine;
+  double engineTime;
   // end break
 
   // start break
@@ -40,23 +42,14 @@ public class HardDisks implements Drawable {
     y = new double[N];
     vx = new double[N];
     vy = new double[N];
-    collisionTime = new double[N];
-    partner = new int[N];
     if(configuration.equals("regular")) {
       setRegularPositions();
     } else {
       setRandomPositions();
     }
     setVelocities();
-    for(int i = 0;i<N;++i) {
-      collisionTime[i] = bigTime; // sets unknown collision times to a big number
-    }
-    // finds initial collision times for all particles
-    for(int i = 0;i<N-1;i++) {
-      for(int j = i+1;j<N;j++) {
-        checkCollision(i, j);
-      }
-    }
+    engine = new HardDiskEngine(x, y, vx, vy, Lx, Ly); // finds initial collision times for all particles
+    engineTime = 0;
   }
 
   public void resetAverages() {
@@ -88,22 +81,48 @@ public class HardDisks implements Drawable {
   }
 
   public void setRandomPositions() {
+    // the disks that have been placed are sorted into cells that are at least one diameter wide
+    int ncx = (int) Lx, ncy = (int) Ly;
+    if((ncx<3)||(ncy<3)) { // all disks are compared
+      ncx = ncy = 1;
+    }
+    int[] head = new int[ncx*ncy];
+    int[] next = new int[N];
+    for(int c = 0;c<head.length;c++) {
+      head[c] = -1;
+    }
     boolean overlap;
     for(int i = 0;i<N;++i) {
+      int cx, cy;
       do {
         overlap = false;
         x[i] = Lx*Math.random();
         y[i] = Ly*Math.random();
-        int j = 0;
-        while((j<i)&&!overlap) {
-          double dx = PBC.separation(x[i]-x[j], Lx);
-          double dy = PBC.separation(y[i]-y[j], Ly);
-          if(dx*dx+dy*dy<1.0) {
-            overlap = true;
+        cx = Math.min((int) (x[i]*ncx/Lx), ncx-1);
+        cy = Math.min((int) (y[i]*ncy/Ly), ncy-1);
+        for(int ix = cx-1;(ix<=cx+1)&&!overlap;ix++) {
+          for(int iy = cy-1;(iy<=cy+1)&&!overlap;iy++) {
+            int j = head[(ix+ncx)%ncx+ncx*((iy+ncy)%ncy)];
+            while((j>=0)&&!overlap) {
+              double dx = PBC.separation(x[i]-x[j], Lx);
+              double dy = PBC.separation(y[i]-y[j], Ly);
+              if(dx*dx+dy*dy<1.0) {
+                overlap = true;
+              }
+              j = next[j];
+            }
+            if(ncy==1) {
+              break;
+            }
+          }
+          if(ncx==1) {
+            break;
           }
-          j++;
         }
       } while(overlap);
+      int c = cx+ncx*cy;
+      next[i] = head[c];
+      head[c] = i;
     }
   }
 
@@ -134,116 +153,27 @@ public class HardDisks implements Drawable {
   }
   // end break
 
-  // start break
-  // checkCollision
-  public void checkCollision(int i, int j) {
-    // consider collisions between i and j and periodic images of j
-    double dvx = vx[i]-vx[j];
-    double dvy = vy[i]-vy[j];
-    double v2 = dvx*dvx+dvy*dvy;
-    for(int xCell = -1;xCell<=1;xCell++) {
-      for(int yCell = -1;yCell<=1;yCell++) {
-        double dx = x[i]-x[j]+xCell*Lx;
-        double dy = y[i]-y[j]+yCell*Ly;
-        double bij = dx*dvx+dy*dvy;
-        if(bij<0) {
-          double r2 = dx*dx+dy*dy;
-          double discriminant = bij*bij-v2*(r2-1);
-          if(discriminant>0) {
-            double tij = (-bij-Math.sqrt(discriminant))/v2;
-            if(tij<collisionTime[i]) {
-              collisionTime[i] = tij;
-              partner[i] = j;
-            }
-            if(tij<collisionTime[j]) {
-              collisionTime[j] = tij;
-              partner[j] = i;
-            }
-          }
-        }
-      }
-    }
-  }
-  // end break
-
   // start break
   // step
   public void step() {
-    minimumCollisionTime(); // finds minimum collision time from list of collision times
-    move(); // moves particles for time equal to minimum collision time
+    // processes the events of the queue until two disks collide
+    if(!engine.nextCollision()) {
+      return;
+    }
+    timeToCollision = engine.getTime()-engineTime;
+    engineTime = engine.getTime();
     t += timeToCollision;
-    contact(); // changes velocities of two colliding particles
-    // sets collision times to bigTime for those particles set to collide with
-    // two colliding particles.
-    setDefaultCollisionTimes();
-    newCollisionTimes(); // finds new collision times between all particles
-    // and the two colliding particles
+    nextCollider = engine.getCollider();
+    nextPartner = engine.getPartner();
+    virialSum += engine.getVirial();
     numberOfCollisions++;
   }
 
-  public void minimumCollisionTime() {
-    timeToCollision = bigTime; // sets collision time very large
-    // so that can find minimum collision time
-    for(int k = 0;k<N;k++) {
-      if(collisionTime[k]<timeToCollision) {
-        timeToCollision = collisionTime[k];
-        nextCollider = k;
-      }
-    }
-    nextPartner = partner[nextCollider];
-  }
-
-  public void move() {
-    for(int k = 0;k<N;k++) {
-      collisionTime[k] -= timeToCollision;
-      x[k] = PBC.position(x[k]+vx[k]*timeToCollision, Lx);
-      y[k] = PBC.position(y[k]+vy[k]*timeToCollision, Ly);
-    }
-  }
-
-  public void contact() {
-    // computes collision dynamics between nextCollider and nextPartner at contact
-    double dx = PBC.separation(x[nextCollider]-x[nextPartner], Lx);
-    double dy = PBC.separation(y[nextCollider]-y[nextPartner], Ly);
-    double dvx = vx[nextCollider]-vx[nextPartner];
-    double dvy = vy[nextCollider]-vy[nextPartner];
-    double factor = dx*dvx+dy*dvy;
-    double delvx = -factor*dx;
-    double delvy = -factor*dy;
-    vx[nextCollider] += delvx;
-    vy[nextCollider] += delvy;
-    vx[nextPartner] -= delvx;
-    vy[nextPartner] -= delvy;
-    virialSum += delvx*dx+delvy*dy;
-  }
-
-  public void setDefaultCollisionTimes() {
-    collisionTime[nextCollider] = bigTime;
-    collisionTime[nextPartner] = bigTime;
-    // sets collision times to very big time for all particles set to collide with
-    // the two colliding particles
-    for(int k = 0;k<N;k++) {
-      if(partner[k]==nextCollider) {
-        collisionTime[k] = bigTime;
-      } else if(partner[k]==nextPartner) {
-        collisionTime[k] = bigTime;
-      }
-    }
-  }
-
-  public void newCollisionTimes() {
-    // finds new collision times for all particles which were set to collide
-    // with two colliding particles; also finds new collision
-    // times for two colliding particles.
-    for(int k = 0;k<N;k++) {
-      if((k!=nextCollider)&&(k!=nextPartner)) {
-        checkCollision(k, nextPartner);
-        checkCollision(k, nextCollider);
-      }
-    }
-    // end break
-    // start break
-    // pressure
+  /**
+   * Moves all disks to the current time, so that x and y hold the current positions.
+   */
+  public void synchronize() {
+    engine.synchronize();
   }
 
   /**
@@ -265,15 +195,16 @@ public class HardDisks implements Drawable {
    */
   public void draw(DrawingPanel drawingPanel, Graphics g) {
     double radius = 0.5;
-    if(x==null) {
+    if((x==null)||(engine==null)) {
       return;
     }
     int pxRadius = Math.abs(drawingPanel.xToPix(radius)-drawingPanel.xToPix(0));
     int pyRadius = Math.abs(drawingPanel.yToPix(radius)-drawingPanel.yToPix(0));
     g.setColor(Color.red);
     for(int i = 0;i<N;i++) {
-      int xpix = drawingPanel.xToPix(x[i])-pxRadius;
-      int ypix = drawingPanel.yToPix(y[i])-pyRadius;
+      // the disks are drawn at the current time without moving them
+      int xpix = drawingPanel.xToPix(PBC.position(engine.getX(i), Lx))-pxRadius;
+      int ypix = drawingPanel.yToPix(PBC.position(engine.getY(i), Ly))-pyRadius;
       g.fillOval(xpix, ypix, 2*pxRadius, 2*pyRadius);
     } // draw cell boundaries
     g.setColor(Color.black);
@@ -35,7 +35,10 @@ public class LJParticles implements Drawable, ODE {
   public double virialAccumulator;
   public String initialConfiguration;
   public double radius = 0.5; // radius of particles on screen
+  public double cutoff = 0;    // interaction range, all pairs interact if cutoff is 0
+  public double skin = 0.3;    // additional range of the neighbor list
   Verlet odeSolver = new Verlet(this);
+  NeighborList neighbors;
 
   public void initialize() {
     N = nx*ny;
@@ -197,6 +200,10 @@ public class LJParticles implements Drawable, ODE {
       ax[i] = 0;
       ay[i] = 0;
     }
+    if(cutoff>0) {
+      computeAccelerationWithCutoff();
+      return;
+    }
     for(int i = 0;i<N-1;i++) {
       for(int j = i+1;j<N;j++) {
         double dx = pbcSeparation(state[4*i]-state[4*j], Lx);
@@ -217,6 +224,46 @@ public class LJParticles implements Drawable, ODE {
     }
   }
 
+  /**
+   * Computes the accelerations of the pairs that are closer than the cutoff.  The pairs are taken from a
+   * neighbor list, so that the cost is proportional to N.
+   */
+  void computeAccelerationWithCutoff() {
+    if(neighbors==null) {
+      neighbors = new NeighborList(Lx, Ly, cutoff, skin);
+    } else {
+      neighbors.setBox(Lx, Ly);
+      neighbors.setCutoff(cutoff, skin);
+    }
+    neighbors.update(state, 0, state, 2, 4, N);
+    int[] start = neighbors.getStart();
+    int[] list = neighbors.getNeighbors();
+    double cutoff2 = cutoff*cutoff;
+    for(int i = 0;i<N;i++) {
+      double xi = state[4*i], yi = state[4*i+2];
+      for(int k = start[i];k<start[i+1];k++) {
+        int j = list[k];
+        double dx = PBC.separation(xi-state[4*j], Lx);
+        double dy = PBC.separation(yi-state[4*j+2], Ly);
+        double r2 = dx*dx+dy*dy;
+        if(r2>=cutoff2) {
+          continue;
+        }
+        double oneOverR2 = 1.0/r2;
+        double oneOverR6 = oneOverR2*oneOverR2*oneOverR2;
+        double fOverR = 48.0*oneOverR6*(oneOverR6-0.5)*oneOverR2;
+        double fx = fOverR*dx;
+        double fy = fOverR*dy;
+        ax[i] += fx;
+        ay[i] += fy;
+        ax[j] -= fx;
+        ay[j] -= fy;
+        totalPotentialEnergyAccumulator += 4.0*(oneOverR6*oneOverR6-oneOverR6);
+        virialAccumulator += dx*fx+dy*fy;
+      }
+    }
+  }
+
   // end break
   // start break
   // pbcSeparation
@@ -35,6 +35,7 @@ public class LJParticlesApp extends AbstractSimulation {
     md.Ly = control.getDouble("Ly");
     md.initialConfiguration = control.getString("initial configuration");
     md.dt = control.getDouble("dt");
+    md.cutoff = control.getDouble("cutoff (0 for all pairs)");
     md.initialize();
     display.addDrawable(md);
     display.setPreferredMinMax(0, md.Lx, 0, md.Ly); // assumes vmax = 2*initalTemp and bin width = Vmax/N
@@ -90,6 +91,7 @@ public class LJParticlesApp extends AbstractSimulation {
     control.setValue("initial kinetic energy per particle", 1.0);
     control.setAdjustableValue("dt", 0.01);
     control.setValue("initial configuration", "rectangular");
+    control.setValue("cutoff (0 for all pairs)", 0.0);
     enableStepsPerDisplay(true);
     super.setStepsPerDisplay(10);  // draw configurations every 10 steps
     display.setSquareAspect(true); // so particles will appear as circular disks
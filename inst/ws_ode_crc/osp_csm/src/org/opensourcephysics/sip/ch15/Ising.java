@@ -8,6 +8,7 @@
 package org.opensourcephysics.sip.ch15;
 import java.awt.*;
 import org.opensourcephysics.frames.*;
+import org.opensourcephysics.numerics.random.*;
 
 /**
  * Ising models a two-dimensional system of interacting spins.
@@ -30,6 +31,7 @@ public class Ising {
   public int acceptedMoves = 0;
   public double[] w = new double[9]; // array to hold Boltzmann factors
   public LatticeFrame lattice;
+  public RandomGenerator random = new Xoshiro256StarStar(); // not shared with other threads, unlike Math.random
 
   public void initialize(int L, LatticeFrame displayFrame) {
     lattice = displayFrame;
@@ -75,10 +77,10 @@ public class Ising {
 
   public void doOneMCStep() {
     for(int k = 0;k<N;++k) {
-      int i = (int) (Math.random()*L);
-      int j = (int) (Math.random()*L);
+      int i = random.nextInt(L);
+      int j = random.nextInt(L);
       int dE = 2*lattice.getValue(i, j)*(lattice.getValue((i+1)%L, j)+lattice.getValue((i-1+L)%L, j)+lattice.getValue(i, (j+1)%L)+lattice.getValue(i, (j-1+L)%L));
-      if((dE<=0)||(w[dE]>Math.random())) {
+      if((dE<=0)||(w[dE]>random.nextDouble())) {
         int newSpin = -lattice.getValue(i, j);
         lattice.setValue(i, j, newSpin);
         acceptedMoves++;
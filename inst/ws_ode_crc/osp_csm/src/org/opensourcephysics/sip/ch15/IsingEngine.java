@@ -0,0 +1,761 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+package org.opensourcephysics.sip.ch15;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import org.opensourcephysics.numerics.random.*;
+
+/**
+ * IsingEngine simulates the two-dimensional Ising model with periodic boundary conditions on large lattices.
+ *
+ * The algorithms are:
+ * <pre>
+ * CHECKERBOARD   Metropolis updates of the two sublattices of a checkerboard, one after the other
+ * MULTISPIN      the same updates with the spins of a row coded in the bits of longs, 64 spins per long
+ * WOLFF          Wolff single cluster updates
+ * SWENDSEN_WANG  Swendsen-Wang updates of all clusters
+ * </pre>
+ *
+ * The neighbors of a spin belong to the other sublattice, so all spins of a sublattice can be updated at the
+ * same time.  The rows are divided into blocks that are updated by the threads of a fork/join pool.  Every block
+ * has its own random number stream, so that the spins depend on the seed but not on the number of threads.
+ *
+ * The multi-spin coded update counts the antiparallel neighbors of the 64 spins of a long with bit operations.
+ * A spin with two or more antiparallel neighbors is flipped, a spin with one antiparallel neighbor is flipped with
+ * the probability exp(-4/T) and a spin with none with the probability exp(-8/T).  The flips with the probability
+ * p are found for all spins of a long at once by comparing the binary digits of p with the bits of random longs,
+ * from the most significant digit on until every spin is decided.  About eight random longs are needed for 64
+ * spins.
+ *
+ * A step is a sweep of the lattice with N attempted flips for the Metropolis algorithms and one update of all
+ * clusters for Swendsen-Wang.  A Wolff step flips a fixed number of clusters, see setClustersPerStep.  The bonds
+ * of Swendsen-Wang are drawn in parallel; the clusters are labeled in the calling thread.
+ *
+ * References:
+ *    U. Wolff, Phys. Rev. Lett. 62, 361 (1989).
+ *    R. H. Swendsen and J.-S. Wang, Phys. Rev. Lett. 58, 86 (1987).
+ *
+ * @version 1.0
+ */
+public class IsingEngine {
+  public static final int CHECKERBOARD = 0, MULTISPIN = 1, WOLFF = 2, SWENDSEN_WANG = 3;
+  static final int ROWS = 0, WORDS = 1, BONDS = 2; // phases of the block tasks
+  static final int MAX_BLOCKS = 64;
+  static final int DIGITS = 53;
+  static final long EVEN = 0x5555555555555555L, ODD = 0xAAAAAAAAAAAAAAAAL;
+  int L, N;
+  int words;                        // longs per row of the multi-spin coded lattice
+  int algorithm;
+  double temperature = Ising.criticalTemperature;
+  long threshold4, threshold8;      // exp(-4/T) and exp(-8/T) in units of 2^-53
+  long addThreshold;                // the probability 1-exp(-2/T) of a bond between parallel spins
+  long[] digits = new long[DIGITS]; // the binary digits of exp(-4/T), all bits set for a digit of one
+  byte[] spin;                      // the spins row by row, unless the algorithm is MULTISPIN
+  long[] bits;                      // the multi-spin coded spins, a set bit is spin up
+  int[] stack;                      // the cluster of the Wolff algorithm
+  int clustersPerStep = 1;
+  int[] parent;                     // the clusters of the Swendsen-Wang algorithm
+  byte[] bonds;
+  long energy, magnetization;
+  // observables
+  int mcs;
+  long acceptedMoves, updates, nanos;
+  double energyAccumulator, energySquaredAccumulator;
+  double magnetizationAccumulator, magnetizationSquaredAccumulator, absoluteMagnetizationAccumulator;
+  // blocks of rows
+  int[] rowStart;
+  long[] blockEnergy, blockMagnetization, blockFlips;
+  RandomGenerator random;
+  RandomGenerator[] streams;
+  BlockTask[] tasks;
+  int phase, color;
+  int parallelism = Runtime.getRuntime().availableProcessors();
+  ForkJoinPool pool;
+
+  /**
+   * Constructs the engine for a lattice of L by L spins, all up, that uses the checkerboard algorithm.
+   *
+   * @param L the linear dimension, even
+   */
+  public IsingEngine(int L) {
+    this(L, CHECKERBOARD);
+  }
+
+  /**
+   * Constructs the engine for a lattice of L by L spins, all up.
+   *
+   * @param L the linear dimension, even and for MULTISPIN a multiple of 64
+   * @param algorithm one of CHECKERBOARD, MULTISPIN, WOLFF and SWENDSEN_WANG
+   */
+  public IsingEngine(int L, int algorithm) {
+    if((L<2)||(L%2!=0)) {
+      throw new IllegalArgumentException("The linear dimension must be even: "+L); //$NON-NLS-1$
+    }
+    this.L = L;
+    N = L*L;
+    words = L/64;
+    int n = Math.min(MAX_BLOCKS, L);
+    rowStart = new int[n+1];
+    for(int b = 0; b<=n; b++) {
+      rowStart[b] = (int) ((long) b*L/n);
+    }
+    blockEnergy = new long[n];
+    blockMagnetization = new long[n];
+    blockFlips = new long[n];
+    tasks = new BlockTask[n];
+    for(int b = 0; b<n; b++) {
+      tasks[b] = new BlockTask(b);
+    }
+    spin = new byte[N];
+    for(int i = 0; i<N; i++) {
+      spin[i] = 1;
+    }
+    magnetization = N;
+    energy = -2L*N;
+    this.algorithm = CHECKERBOARD;
+    setAlgorithm(algorithm);
+    setSeed(System.nanoTime());
+    setTemperature(temperature);
+  }
+
+  /**
+   * Sets the algorithm.  The spins are kept.
+   *
+   * @param algorithm one of CHECKERBOARD, MULTISPIN, WOLFF and SWENDSEN_WANG
+   */
+  public void setAlgorithm(int algorithm) {
+    switch(algorithm) {
+    case MULTISPIN :
+      if((L%64)!=0) {
+        throw new IllegalArgumentException("Multi-spin coding needs a multiple of 64 spins per row: "+L); //$NON-NLS-1$
+      }
+      if(this.algorithm!=MULTISPIN) {
+        bits = new long[L*words];
+        for(int i = 0; i<N; i++) {
+          if(spin[i]>0) {
+            bits[i>>6] |= 1L<<i;
+          }
+        }
+        spin = null;
+      }
+      break;
+    case WOLFF :
+    case SWENDSEN_WANG :
+    case CHECKERBOARD :
+      if(this.algorithm==MULTISPIN) {
+        spin = new byte[N];
+        for(int i = 0; i<N; i++) {
+          spin[i] = (byte) ((((bits[i>>6]>>>i)&1)!=0) ? 1 : -1);
+        }
+        bits = null;
+      }
+      break;
+    default :
+      throw new IllegalArgumentException("Unknown algorithm: "+algorithm); //$NON-NLS-1$
+    }
+    this.algorithm = algorithm;
+    if((algorithm==WOLFF)&&(stack==null)) {
+      stack = new int[N];
+    }
+    if((algorithm==SWENDSEN_WANG)&&(parent==null)) {
+      parent = new int[N];
+      bonds = new byte[N];
+    }
+    if(algorithm!=WOLFF) {
+      stack = null;
+    }
+    if(algorithm!=SWENDSEN_WANG) {
+      parent = null;
+      bonds = null;
+    }
+  }
+
+  /**
+   * Gets the algorithm.
+   *
+   * @return one of CHECKERBOARD, MULTISPIN, WOLFF and SWENDSEN_WANG
+   */
+  public int getAlgorithm() {
+    return algorithm;
+  }
+
+  /**
+   * Sets the number of clusters of a Wolff step.  The number must not depend on the clusters, because the
+   * spins at a time that depends on the sizes of the clusters, such as the first time at which N spins have been
+   * flipped, are not distributed with the Boltzmann weights.  N divided by the mean size of a cluster gives the
+   * number of clusters that flip as many spins as a sweep.
+   *
+   * @param n the number of clusters
+   */
+  public void setClustersPerStep(int n) {
+    clustersPerStep = Math.max(1, n);
+  }
+
+  /**
+   * Gets the number of clusters of a Wolff step.
+   *
+   * @return the number of clusters
+   */
+  public int getClustersPerStep() {
+    return clustersPerStep;
+  }
+
+  /**
+   * Sets the temperature in units of J/k.
+   *
+   * @param temperature the temperature
+   */
+  public void setTemperature(double temperature) {
+    this.temperature = temperature;
+    double max = (1L<<DIGITS)-1;
+    threshold4 = (long) Math.min(max, Math.exp(-4.0/temperature)*(1L<<DIGITS));
+    threshold8 = (long) Math.min(max, Math.exp(-8.0/temperature)*(1L<<DIGITS));
+    addThreshold = (long) Math.min(max, -Math.expm1(-2.0/temperature)*(1L<<DIGITS));
+    for(int k = 0; k<DIGITS; k++) {
+      digits[k] = -((threshold4>>>(DIGITS-1-k))&1);
+    }
+  }
+
+  /**
+   * Gets the temperature.
+   *
+   * @return the temperature
+   */
+  public double getTemperature() {
+    return temperature;
+  }
+
+  /**
+   * Sets the seed of the random number streams.  Equal seeds give equal spins for any number of threads.
+   *
+   * @param seed the seed
+   */
+  public void setSeed(long seed) {
+    random = new Xoshiro256StarStar(seed);
+    streams = random.split(tasks.length);
+  }
+
+  /**
+   * Sets the number of threads of the Metropolis algorithms and of the bonds of Swendsen-Wang.
+   *
+   * @param n the number of threads
+   */
+  public void setParallelism(int n) {
+    n = Math.max(1, n);
+    if(n!=parallelism) {
+      parallelism = n;
+      if(pool!=null) {
+        pool.shutdown();
+        pool = null;
+      }
+    }
+  }
+
+  /**
+   * Gets the number of threads.
+   *
+   * @return the number of threads
+   */
+  public int getParallelism() {
+    return parallelism;
+  }
+
+  /**
+   * Gets the linear dimension.
+   *
+   * @return L
+   */
+  public int getL() {
+    return L;
+  }
+
+  /**
+   * Gets a spin.
+   *
+   * @param i the row
+   * @param j the column
+   * @return 1 or -1
+   */
+  public int getSpin(int i, int j) {
+    int site = i*L+j;
+    if(algorithm==MULTISPIN) {
+      return(((bits[site>>6]>>>site)&1)!=0) ? 1 : -1;
+    }
+    return spin[site];
+  }
+
+  /**
+   * Sets a spin.  The energy and the magnetization are updated.
+   *
+   * @param i the row
+   * @param j the column
+   * @param s 1 or -1
+   */
+  public void setSpin(int i, int j, int s) {
+    int old = getSpin(i, j);
+    s = (s>0) ? 1 : -1;
+    if(s==old) {
+      return;
+    }
+    int sum = getSpin((i+1)%L, j)+getSpin((i-1+L)%L, j)+getSpin(i, (j+1)%L)+getSpin(i, (j-1+L)%L);
+    energy += 2*old*sum;
+    magnetization += 2*s;
+    int site = i*L+j;
+    if(algorithm==MULTISPIN) {
+      bits[site>>6] ^= 1L<<site;
+    } else {
+      spin[site] = (byte) s;
+    }
+  }
+
+  /**
+   * Does a sweep of the lattice and accumulates the observables.
+   */
+  public void step() {
+    long start = System.nanoTime();
+    switch(algorithm) {
+    case WOLFF :
+      wolffStep();
+      break;
+    case SWENDSEN_WANG :
+      swendsenWangStep();
+      break;
+    default :
+      metropolisStep();
+    }
+    nanos += System.nanoTime()-start;
+    mcs++;
+    energyAccumulator += energy;
+    energySquaredAccumulator += (double) energy*energy;
+    magnetizationAccumulator += magnetization;
+    magnetizationSquaredAccumulator += (double) magnetization*magnetization;
+    absoluteMagnetizationAccumulator += Math.abs(magnetization);
+  }
+
+  /**
+   * Gets the energy in units of J.
+   *
+   * @return the energy
+   */
+  public long getEnergy() {
+    return energy;
+  }
+
+  /**
+   * Gets the magnetization.
+   *
+   * @return the sum of the spins
+   */
+  public long getMagnetization() {
+    return magnetization;
+  }
+
+  /**
+   * Gets the number of steps since the data was reset.
+   *
+   * @return the number of steps
+   */
+  public int getMCS() {
+    return mcs;
+  }
+
+  /**
+   * Gets the number of flipped spins since the data was reset.
+   *
+   * @return the number of flips
+   */
+  public long getAcceptedMoves() {
+    return acceptedMoves;
+  }
+
+  /**
+   * Gets the number of spin updates per second since the data was reset.  An update is an attempted flip of the
+   * Metropolis algorithms and a flip of a spin of a cluster.
+   *
+   * @return the updates per second
+   */
+  public double getUpdatesPerSecond() {
+    return (nanos==0) ? 0 : updates*1.0e9/nanos;
+  }
+
+  public double meanEnergy() {
+    return energyAccumulator/mcs;
+  }
+
+  public double meanMagnetization() {
+    return magnetizationAccumulator/mcs;
+  }
+
+  public double meanAbsoluteMagnetization() {
+    return absoluteMagnetizationAccumulator/mcs;
+  }
+
+  public double specificHeat() {
+    double energyAverage = energyAccumulator/mcs;
+    double heatCapacity = energySquaredAccumulator/mcs-energyAverage*energyAverage;
+    return heatCapacity/(temperature*temperature*N);
+  }
+
+  public double susceptibility() {
+    double magnetizationAverage = magnetizationAccumulator/mcs;
+    return(magnetizationSquaredAccumulator/mcs-magnetizationAverage*magnetizationAverage)/(temperature*N);
+  }
+
+  public void resetData() {
+    mcs = 0;
+    acceptedMoves = updates = nanos = 0;
+    energyAccumulator = energySquaredAccumulator = 0;
+    magnetizationAccumulator = magnetizationSquaredAccumulator = absoluteMagnetizationAccumulator = 0;
+  }
+
+  private void metropolisStep() {
+    phase = (algorithm==MULTISPIN) ? WORDS : ROWS;
+    for(color = 0; color<2; color++) {
+      invoke();
+      for(int b = 0; b<tasks.length; b++) {
+        energy += blockEnergy[b];
+        magnetization += blockMagnetization[b];
+        acceptedMoves += blockFlips[b];
+      }
+    }
+    updates += N;
+  }
+
+  /**
+   * Updates the spins of a color in the rows of a block.
+   */
+  void updateRows(int block) {
+    RandomGenerator r = streams[block];
+    byte[] s = spin;
+    long dE = 0, dM = 0, flips = 0;
+    for(int i = rowStart[block]; i<rowStart[block+1]; i++) {
+      int row = i*L, up = ((i==0) ? L-1 : i-1)*L, down = ((i==L-1) ? 0 : i+1)*L;
+      for(int j = (i+color)&1; j<L; j += 2) {
+        int si = s[row+j];
+        int left = (j==0) ? L-1 : j-1, right = (j==L-1) ? 0 : j+1;
+        int de = 2*si*(s[up+j]+s[down+j]+s[row+left]+s[row+right]);
+        if((de<=0)||((r.nextLong()>>>11)<((de==4) ? threshold4 : threshold8))) {
+          s[row+j] = (byte) -si;
+          dE += de;
+          dM -= 2*si;
+          flips++;
+        }
+      }
+    }
+    blockEnergy[block] = dE;
+    blockMagnetization[block] = dM;
+    blockFlips[block] = flips;
+  }
+
+  /**
+   * Updates the multi-spin coded spins of a color in the rows of a block.
+   */
+  void updateWords(int block) {
+    RandomGenerator r = streams[block];
+    long[] s = bits;
+    int W = words;
+    long dE = 0, dM = 0, flips = 0;
+    for(int i = rowStart[block]; i<rowStart[block+1]; i++) {
+      int row = i*W, up = ((i==0) ? L-1 : i-1)*W, down = ((i==L-1) ? 0 : i+1)*W;
+      long mask = (((i+color)&1)==0) ? EVEN : ODD; // bit b is column 64k+b of the row
+      for(int k = 0; k<W; k++) {
+        long w = s[row+k];
+        long previous = s[row+((k==0) ? W-1 : k-1)], following = s[row+((k==W-1) ? 0 : k+1)];
+        // a set bit marks an antiparallel neighbor
+        long a1 = w^((w<<1)|(previous>>>63));
+        long a2 = w^((w>>>1)|(following<<63));
+        long a3 = w^s[up+k];
+        long a4 = w^s[down+k];
+        long none = ~(a1|a2|a3|a4)&mask;
+        long one = (a1^a2^a3^a4)&~((a1&a2)|(a3&a4))&mask; // an odd number without a pair is one
+        long flip = mask&~(none|one);
+        if((none|one)!=0) {
+          long accept = bernoulli(none|one, r);
+          flip |= one&accept;
+          long twice = none&accept; // exp(-8/T) is the square of exp(-4/T)
+          if(twice!=0) {
+            flip |= twice&bernoulli(twice, r);
+          }
+        }
+        s[row+k] = w^flip;
+        int n = Long.bitCount(flip);
+        flips += n;
+        dM += 2*(n-2*Long.bitCount(flip&w));
+        dE += 8*n-4*(Long.bitCount(flip&a1)+Long.bitCount(flip&a2)+Long.bitCount(flip&a3)+Long.bitCount(flip&a4));
+      }
+    }
+    blockEnergy[block] = dE;
+    blockMagnetization[block] = dM;
+    blockFlips[block] = flips;
+  }
+
+  /**
+   * Gets bits that are set with the probability exp(-4/T) at the given positions.
+   *
+   * A random long per digit gives the digit of 64 uniform numbers.  A position is decided at the first digit
+   * at which its number differs from the probability.
+   */
+  private long bernoulli(long undecided, RandomGenerator r) {
+    long less = 0;
+    for(int k = 0; (k<DIGITS)&&(undecided!=0); k++) {
+      long u = r.nextLong(), p = digits[k];
+      less |= undecided&~u&p;
+      undecided &= ~(u^p);
+    }
+    return less;
+  }
+
+  /**
+   * Flips the Wolff clusters of a step.  The sites of a cluster are marked with a spin of zero while it grows and
+   * are kept in the stack, so that the bonds across its boundary give the change of the energy.
+   */
+  private void wolffStep() {
+    RandomGenerator r = random;
+    byte[] s = spin;
+    int[] cluster = stack;
+    long flipped = 0;
+    for(int c = 0; c<clustersPerStep; c++) {
+      int seed = r.nextInt(N);
+      byte s0 = s[seed];
+      s[seed] = 0;
+      cluster[0] = seed;
+      int size = 1;
+      for(int k = 0; k<size; k++) {
+        int site = cluster[k];
+        int i = site/L, j = site-i*L;
+        int n0 = (j==0) ? site+L-1 : site-1;
+        int n1 = (j==L-1) ? site-L+1 : site+1;
+        int n2 = (i==0) ? site+N-L : site-L;
+        int n3 = (i==L-1) ? site-N+L : site+L;
+        if((s[n0]==s0)&&((r.nextLong()>>>11)<addThreshold)) {
+          s[n0] = 0;
+          cluster[size++] = n0;
+        }
+        if((s[n1]==s0)&&((r.nextLong()>>>11)<addThreshold)) {
+          s[n1] = 0;
+          cluster[size++] = n1;
+        }
+        if((s[n2]==s0)&&((r.nextLong()>>>11)<addThreshold)) {
+          s[n2] = 0;
+          cluster[size++] = n2;
+        }
+        if((s[n3]==s0)&&((r.nextLong()>>>11)<addThreshold)) {
+          s[n3] = 0;
+          cluster[size++] = n3;
+        }
+      }
+      // a boundary bond to a spin s0 becomes antiparallel and a bond to a spin -s0 becomes parallel
+      long boundary = 0;
+      for(int k = 0; k<size; k++) {
+        int site = cluster[k];
+        int i = site/L, j = site-i*L;
+        boundary += s[(j==0) ? site+L-1 : site-1]+s[(j==L-1) ? site-L+1 : site+1];
+        boundary += s[(i==0) ? site+N-L : site-L]+s[(i==L-1) ? site-N+L : site+L];
+      }
+      byte flippedSpin = (byte) -s0;
+      for(int k = 0; k<size; k++) {
+        s[cluster[k]] = flippedSpin;
+      }
+      energy += 2*s0*boundary;
+      magnetization -= 2*s0*size;
+      flipped += size;
+    }
+    acceptedMoves += flipped;
+    updates += flipped;
+  }
+
+  private void swendsenWangStep() {
+    phase = BONDS;
+    invoke();
+    int[] p = parent;
+    for(int site = 0; site<N; site++) {
+      p[site] = site;
+    }
+    for(int i = 0; i<L; i++) {
+      int row = i*L, down = ((i==L-1) ? 0 : i+1)*L;
+      for(int j = 0; j<L; j++) {
+        int bond = bonds[row+j];
+        if((bond&1)!=0) {
+          union(row+j, row+((j==L-1) ? 0 : j+1));
+        }
+        if((bond&2)!=0) {
+          union(row+j, down+j);
+        }
+      }
+    }
+    // a root is the smallest site of its cluster, so its decision is made before the other sites are reached
+    byte[] s = spin;
+    long flipped = 0, randomBits = 0;
+    int available = 0;
+    for(int site = 0; site<N; site++) {
+      int root = find(site);
+      if(root==site) {
+        if(available==0) {
+          randomBits = random.nextLong();
+          available = 64;
+        }
+        bonds[site] = (byte) (randomBits&1);
+        randomBits >>>= 1;
+        available--;
+      }
+      if(bonds[root]!=0) {
+        s[site] = (byte) -s[site];
+        flipped++;
+      }
+    }
+    acceptedMoves += flipped;
+    updates += N;
+    measure();
+  }
+
+  /**
+   * Draws the bonds of the sites in the rows of a block, bit 0 to the right and bit 1 down.
+   */
+  void drawBonds(int block) {
+    RandomGenerator r = streams[block];
+    byte[] s = spin;
+    for(int i = rowStart[block]; i<rowStart[block+1]; i++) {
+      int row = i*L, down = ((i==L-1) ? 0 : i+1)*L;
+      for(int j = 0; j<L; j++) {
+        int si = s[row+j], bond = 0;
+        if((si==s[row+((j==L-1) ? 0 : j+1)])&&((r.nextLong()>>>11)<addThreshold)) {
+          bond = 1;
+        }
+        if((si==s[down+j])&&((r.nextLong()>>>11)<addThreshold)) {
+          bond |= 2;
+        }
+        bonds[row+j] = (byte) bond;
+      }
+    }
+  }
+
+  private int find(int site) {
+    int[] p = parent;
+    while(p[site]!=site) {
+      p[site] = p[p[site]]; // path halving
+      site = p[site];
+    }
+    return site;
+  }
+
+  private void union(int a, int b) {
+    a = find(a);
+    b = find(b);
+    if(a<b) {
+      parent[b] = a;
+    } else if(b<a) {
+      parent[a] = b;
+    }
+  }
+
+  /**
+   * Computes the energy and the magnetization from the spins.
+   */
+  private void measure() {
+    long sum = 0, up = 0;
+    if(algorithm==MULTISPIN) {
+      int W = words;
+      long antiparallel = 0;
+      for(int i = 0; i<L; i++) {
+        int row = i*W, down = ((i==L-1) ? 0 : i+1)*W;
+        for(int k = 0; k<W; k++) {
+          long w = bits[row+k], following = bits[row+((k==W-1) ? 0 : k+1)];
+          antiparallel += Long.bitCount(w^((w>>>1)|(following<<63)))+Long.bitCount(w^bits[down+k]);
+          up += Long.bitCount(w);
+        }
+      }
+      energy = 2*antiparallel-2L*N;
+      magnetization = 2*up-N;
+      return;
+    }
+    byte[] s = spin;
+    for(int i = 0; i<L; i++) {
+      int row = i*L, down = ((i==L-1) ? 0 : i+1)*L;
+      for(int j = 0; j<L; j++) {
+        int si = s[row+j];
+        sum += si*(s[row+((j==L-1) ? 0 : j+1)]+s[down+j]);
+        up += si;
+      }
+    }
+    energy = -sum;
+    magnetization = up;
+  }
+
+  private void invoke() {
+    if(parallelism<=1) {
+      for(int b = 0; b<tasks.length; b++) {
+        tasks[b].compute();
+      }
+      return;
+    }
+    if(pool==null) {
+      pool = new ForkJoinPool(parallelism);
+    }
+    for(int b = 0; b<tasks.length; b++) {
+      tasks[b].reinitialize();
+    }
+    pool.invoke(new RecursiveAction() {
+      protected void compute() {
+        ForkJoinTask.invokeAll(tasks);
+      }
+
+    });
+  }
+
+  /**
+   * A task that does the current phase for the rows of a block.
+   */
+  private class BlockTask extends RecursiveAction {
+    final int block;
+
+    BlockTask(int block) {
+      this.block = block;
+    }
+
+    protected void compute() {
+      switch(phase) {
+      case ROWS :
+        updateRows(block);
+        break;
+      case WORDS :
+        updateWords(block);
+        break;
+      default :
+        drawBonds(block);
+      }
+    }
+
+  }
+
+}
+
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */
@@ -0,0 +1,143 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+package org.opensourcephysics.sip.ch15;
+import java.awt.*;
+import org.opensourcephysics.controls.*;
+import org.opensourcephysics.frames.*;
+
+/**
+ * IsingEngineApp simulates a two-dimensional Ising model with the algorithms of IsingEngine.
+ *
+ * Large lattices are shown by every k-th spin of every k-th row.  The energy and magnetization per spin are
+ * plotted in datasets named energy and magnetization, so that saved data can be read by IsingAutoCorrelatorApp.
+ *
+ * @version 1.0
+ */
+public class IsingEngineApp extends AbstractSimulation {
+  static final String[] ALGORITHMS = {"checkerboard", "multispin", "Wolff", "Swendsen-Wang"};
+  static final int MAX_DISPLAY = 256; // largest number of displayed rows
+  IsingEngine engine;
+  LatticeFrame displayFrame = new LatticeFrame("Ising Model");
+  PlotFrame plotFrame = new PlotFrame("time", "E and M", "Ising model");
+  int displayStride;
+
+  public IsingEngineApp() {
+    plotFrame.setXYColumnNames(0, "mcs", "M", "magnetization");
+    plotFrame.setXYColumnNames(1, "mcs", "E", "energy");
+  }
+
+  public void initialize() {
+    int L = control.getInt("L");
+    String name = control.getString("algorithm");
+    int algorithm = IsingEngine.CHECKERBOARD;
+    for(int i = 0;i<ALGORITHMS.length;i++) {
+      if(ALGORITHMS[i].equalsIgnoreCase(name.trim())) {
+        algorithm = i;
+      }
+    }
+    engine = new IsingEngine(L, algorithm);
+    engine.setParallelism(control.getInt("threads"));
+    engine.setClustersPerStep(control.getInt("Wolff clusters per step"));
+    engine.setTemperature(control.getDouble("temperature"));
+    displayStride = (L+MAX_DISPLAY-1)/MAX_DISPLAY;
+    int n = L/displayStride;
+    displayFrame.resizeLattice(n, n);
+    displayFrame.setIndexedColor(1, Color.red);
+    displayFrame.setIndexedColor(-1, Color.green);
+    draw();
+    resetData();
+  }
+
+  public void doStep() {
+    engine.step();
+    double N = (double) engine.getL()*engine.getL();
+    plotFrame.append(0, engine.getMCS(), engine.getMagnetization()/N);
+    plotFrame.append(1, engine.getMCS(), engine.getEnergy()/N);
+    draw();
+  }
+
+  void draw() {
+    int n = engine.getL()/displayStride;
+    for(int i = 0;i<n;i++) {
+      for(int j = 0;j<n;j++) {
+        displayFrame.setValue(i, j, engine.getSpin(i*displayStride, j*displayStride));
+      }
+    }
+  }
+
+  public void stop() {
+    double N = (double) engine.getL()*engine.getL();
+    control.println("mcs = "+engine.getMCS());
+    control.println("acceptance probability = "+engine.getAcceptedMoves()/(engine.getMCS()*N));
+    control.println("<E> = "+engine.meanEnergy()/N);
+    control.println("specific heat = "+engine.specificHeat());
+    control.println("<M> = "+engine.meanMagnetization()/N);
+    control.println("<|M|> = "+engine.meanAbsoluteMagnetization()/N);
+    control.println("susceptibility = "+engine.susceptibility());
+    control.println("spin updates per second = "+(float) engine.getUpdatesPerSecond());
+  }
+
+  public void startRunning() {
+    engine.setTemperature(control.getDouble("temperature"));
+  }
+
+  public void reset() {
+    control.setValue("L", 256);
+    control.setValue("algorithm", "checkerboard");
+    control.setValue("threads", Runtime.getRuntime().availableProcessors());
+    control.setValue("Wolff clusters per step", 1);
+    control.setAdjustableValue("temperature", Ising.criticalTemperature);
+    enableStepsPerDisplay(true);
+  }
+
+  public void resetData() {
+    engine.resetData();
+    plotFrame.clearData();
+    plotFrame.repaint();
+    control.clearMessages();
+  }
+
+  /**
+   * Returns an XML.ObjectLoader to save and load data for this program.
+   *
+   * @return the object loader
+   */
+  public static XML.ObjectLoader getLoader() {
+    return new IsingEngineLoader();
+  }
+
+  public static void main(String[] args) {
+    SimulationControl control = SimulationControl.createApp(new IsingEngineApp());
+    control.addButton("resetData", "Reset Data");
+  }
+}
+
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */
@@ -0,0 +1,99 @@
+/*
+ * Open Source Physics software is free software as described near the bottom of this code file.
+ *
+ * For additional information and documentation on Open Source Physics please see:
+ * <http://www.opensourcephysics.org/>
+ */
+
+package org.opensourcephysics.sip.ch15;
+import org.opensourcephysics.controls.*;
+import org.opensourcephysics.display.GUIUtils;
+
+/**
+ * IsingEngineLoader implements the ObjectLoader interface to load and store IsingEngineApp data.
+ *
+ * The spins of large lattices are not stored.  The plot holds the energy and magnetization time series that
+ * are read by IsingAutoCorrelatorApp.
+ *
+ * @version 1.0
+ */
+public class IsingEngineLoader implements XML.ObjectLoader {
+
+  /**
+   * Creates an IsingEngineApp object.
+   *
+   * @param control the xml control
+   * @return a new object
+   */
+  public Object createObject(XMLControl element) {
+    return new IsingEngineApp();
+  }
+
+  /**
+   * Saves data from the IsingEngineApp model into the control.
+   *
+   * @param element XMLControl
+   * @param obj Object
+   */
+  public void saveObject(XMLControl control, Object obj) {
+    IsingEngineApp model = (IsingEngineApp) obj;
+    IsingEngine engine = model.engine;
+    control.setValue("temperature", engine.temperature);
+    control.setValue("mcs", engine.mcs);
+    control.setValue("energy_accumulator", engine.energyAccumulator);
+    control.setValue("energy_squared_accumulator", engine.energySquaredAccumulator);
+    control.setValue("magnetization_accumulator", engine.magnetizationAccumulator);
+    control.setValue("magnetization_squared_accumulator", engine.magnetizationSquaredAccumulator);
+    control.setValue("absolute_magnetization_accumulator", engine.absoluteMagnetizationAccumulator);
+    control.setValue("plot", model.plotFrame); // stores the data in the plot
+  }
+
+  /**
+   * Loads data from the control into the IsingEngineApp model.  The lattice starts again with all spins up.
+   *
+   * @param element XMLControl
+   * @param obj Object
+   * @return Object
+   */
+  public Object loadObject(XMLControl control, Object obj) {
+    IsingEngineApp model = (IsingEngineApp) obj;
+    model.initialize(); // reads values from the GUI into the engine
+    IsingEngine engine = model.engine;
+    engine.setTemperature(control.getDouble("temperature"));
+    engine.mcs = control.getInt("mcs");
+    engine.energyAccumulator = control.getDouble("energy_accumulator");
+    engine.energySquaredAccumulator = control.getDouble("energy_squared_accumulator");
+    engine.magnetizationAccumulator = control.getDouble("magnetization_accumulator");
+    engine.magnetizationSquaredAccumulator = control.getDouble("magnetization_squared_accumulator");
+    engine.absoluteMagnetizationAccumulator = control.getDouble("absolute_magnetization_accumulator");
+    XMLControl childControl = control.getChildControl("plot");
+    childControl.loadObject(model.plotFrame);
+    GUIUtils.repaintAnimatedFrames();
+    return obj;
+  }
+}
+
+
+/*
+ * Open Source Physics software is free software; you can redistribute
+ * it and/or modify it under the terms of the GNU General Public License (GPL) as
+ * published by the Free Software Foundation; either version 2 of the License,
+ * or(at your option) any later version.
+
+ * Code that uses any portion of the code in the org.opensourcephysics package
+ * or any subpackage (subdirectory) of this package must must also be be released
+ * under the GNU GPL license.
+ *
+ * This software is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place, Suite 330, Boston MA 02111-1307 USA
+ * or view the license online at http://www.gnu.org/copyleft/gpl.html
+ *
+ * Copyright (c) 2007  The Open Source Physics project
+ *                     http://www.opensourcephysics.org
+ */